@@ -1021,6 +1021,50 @@ JNIEXPORT void JNICALL Java_cbccore_low_Create_create_1write_1byte(JNIEnv *env,
 #endif
 }
 
+/*
+ * Class:     cbccore_low_Create
+ * Method:    create_write_block
+ * Signature: ([BII)I
+ */
+JNIEXPORT jint JNICALL Java_cbccore_low_Create_create_1write_1block(JNIEnv *env, jobject obj, jbyteArray data, jint off, jint len)
+{
+#ifdef CBC
+	char cdata[64];
+	jint done, n, i;
+	if(data == NULL) {
+		(*env)->ThrowNew(env, (*env)->FindClass(env,
+			"java/lang/NullPointerException"), NULL);
+		return -1;
+	}
+	if(off < 0 || len < 0 ||
+	   off > (*env)->GetArrayLength(env, data) - len) {
+		(*env)->ThrowNew(env, (*env)->FindClass(env,
+			"java/lang/ArrayIndexOutOfBoundsException"), NULL);
+		return -1;
+	}
+	/* libcbc only exports create_write_byte, but at least the block
+	   crosses JNI a buffer at a time; a fixed buffer, so no len can
+	   overflow the small native stack */
+	for(done = 0; done < len; done += n) {
+		n = len - done;
+		if(n > (jint)sizeof(cdata)) {
+			n = sizeof(cdata);
+		}
+		(*env)->GetByteArrayRegion(env, data, off + done, n, (jbyte*)cdata);
+		if((*env)->ExceptionCheck(env)) {
+			return -1;
+		}
+		for(i = 0; i < n; ++i) {
+			create_write_byte(cdata[i]);
+		}
+	}
+	return len;
+#else
+	printf("Java_cbccore_low_Create_create_1write_1block stub\n");
+	return -1;
+#endif
+}
+
 /*
  * Class:     cbccore_low_Create
  * Method:    create_clear_serial_buffer
@@ -516,6 +516,14 @@ JNIEXPORT jint JNICALL Java_cbccore_low_Create_create_1read_1block
 JNIEXPORT void JNICALL Java_cbccore_low_Create_create_1write_1byte
   (JNIEnv *, jobject, jchar);
 
+/*
+ * Class:     cbccore_low_Create
+ * Method:    create_write_block
+ * Signature: ([BII)I
+ */
+JNIEXPORT jint JNICALL Java_cbccore_low_Create_create_1write_1block
+  (JNIEnv *, jobject, jbyteArray, jint, jint);
+
 /*
  * Class:     cbccore_low_Create
  * Method:    create_clear_serial_buffer
@@ -316,3 +316,63 @@ JNIEXPORT void JNICALL Java_cbccore_low_Motor_ao(JNIEnv* env, jobject obj)
 #endif
 }
 
+/*
+ * Class:     Motor
+ * Method:    mav_group
+ * Signature: (I[I)V
+ */
+JNIEXPORT void JNICALL Java_cbccore_low_Motor_mav_1group(JNIEnv* env, jobject obj, jint mask, jintArray velocities)
+{
+#ifdef CBC
+    /* copy first, so the motors are set back to back */
+    jint values[4];
+    int i;
+    if(velocities == NULL) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env,
+            "java/lang/NullPointerException"), NULL);
+        return;
+    }
+    (*env)->GetIntArrayRegion(env, velocities, 0, 4, values);
+    if((*env)->ExceptionCheck(env)) {
+        return; /* too short, values is garbage */
+    }
+    for(i = 0; i < 4; ++i) {
+        if(mask & (1 << i)) {
+            mav(i, values[i]);
+        }
+    }
+#else
+    printf("Java_cbccore_low_Motor_mav_1group stub\n");
+#endif
+}
+
+/*
+ * Class:     Motor
+ * Method:    get_motor_position_counters
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_cbccore_low_Motor_get_1motor_1position_1counters(JNIEnv* env, jobject obj, jintArray counters)
+{
+#ifdef CBC
+    jint values[4];
+    int i;
+    /* check before reading, rather than read counters nothing can take */
+    if(counters == NULL) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env,
+            "java/lang/NullPointerException"), NULL);
+        return;
+    }
+    if((*env)->GetArrayLength(env, counters) < 4) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env,
+            "java/lang/ArrayIndexOutOfBoundsException"), NULL);
+        return;
+    }
+    for(i = 0; i < 4; ++i) {
+        values[i] = get_motor_position_counter(i);
+    }
+    (*env)->SetIntArrayRegion(env, counters, 0, 4, values);
+#else
+    printf("Java_cbccore_low_Motor_get_1motor_1position_1counters stub\n");
+#endif
+}
+
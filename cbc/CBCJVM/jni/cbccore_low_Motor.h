@@ -30,6 +30,8 @@ JNIEXPORT void JNICALL Java_cbccore_low_Motor_fd (JNIEnv *env, jobject, jint);
 JNIEXPORT void JNICALL Java_cbccore_low_Motor_bk (JNIEnv *env, jobject, jint);
 JNIEXPORT void JNICALL Java_cbccore_low_Motor_off (JNIEnv *env, jobject, jint);
 JNIEXPORT void JNICALL Java_cbccore_low_Motor_ao (JNIEnv *env, jobject);
+JNIEXPORT void JNICALL Java_cbccore_low_Motor_mav_1group (JNIEnv *env, jobject, jint, jintArray);
+JNIEXPORT void JNICALL Java_cbccore_low_Motor_get_1motor_1position_1counters (JNIEnv *env, jobject, jintArray);
 
 #ifdef __cplusplus
 }
@@ -189,3 +189,26 @@ JNIEXPORT jint Java_cbccore_low_Sensor_sonar_1inches(JNIEnv* env, jobject obj, j
 #endif
 }
 
+/*
+ * Class:     cbccore_low_Sensor
+ * Method:    sensor_snapshot
+ * Signature: ([I)V
+ */
+JNIEXPORT void Java_cbccore_low_Sensor_sensor_1snapshot(JNIEnv* env, jobject obj, jintArray frame)
+{
+#ifdef CBC
+	/* layout must match the SNAPSHOT_* constants in cbccore.low.Sensor */
+	jint values[19];
+	int i;
+	for(i = 0; i < 8; ++i) {
+		values[i] = digital(i + 8);
+		values[8 + i] = analog10(i);
+	}
+	values[16] = accel_x();
+	values[17] = accel_y();
+	values[18] = accel_z();
+	(*env)->SetIntArrayRegion(env, frame, 0, 19, values);
+#else
+	printf("Java_cbccore_low_Sensor_sensor_1snapshot stub\n");
+#endif
+}
@@ -21,6 +21,7 @@ JNIEXPORT jint JNICALL Java_cbccore_low_Sensor_accel_1y (JNIEnv *env, jobject);
 JNIEXPORT jint JNICALL Java_cbccore_low_Sensor_accel_1z (JNIEnv *env, jobject);
 JNIEXPORT jint JNICALL Java_cbccore_low_Sensor_sonar (JNIEnv *env, jobject, jint);
 JNIEXPORT jint JNICALL Java_cbccore_low_Sensor_sonar_1inches (JNIEnv *env, jobject, jint);
+JNIEXPORT void JNICALL Java_cbccore_low_Sensor_sensor_1snapshot (JNIEnv *env, jobject, jintArray);
 
 #ifdef __cplusplus
 }
@@ -53,13 +53,13 @@ public class Botball {
 		@Override
 		public void run() {
 			try {
-				Thread.sleep((long)(secs * 1000));			
+				Clock.get().sleep((long)(secs * 1000));			
 			} catch(InterruptedException e) {
 				e.printStackTrace();			
 			}	
 			Motor.allOff();
 			Servo.disableAll();
-			System.exit(0);	
+			Device.exit(0);	
 		}
 	}
 	
@@ -94,7 +94,7 @@ public class Botball {
 		int delta = lightOff - lightOn;
 		if(delta < 200) {
 			System.out.println("Bad Calibration.");
-			System.exit(1);
+			Device.exit(1);
 		}
 		while(light.getValueHigh() > lightOn + (delta / 2));
 	}
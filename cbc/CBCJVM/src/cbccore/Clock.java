@@ -0,0 +1,138 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Where everything in cbccore gets the time from, and sleeps through. On the
+ * CBC this is just <code>SystemClock</code>, the wall clock. A simulator may
+ * swap in its own, like <code>cbccore.low.simulator.VirtualClock</code>, so
+ * that simulated time doesn't have to keep pace with the real thing.
+ * <p>
+ * Code measuring how long something takes, or waiting for a while, should go
+ * through <code>Clock.get()</code> rather than calling
+ * <code>System.currentTimeMillis()</code> or <code>Thread.sleep()</code>
+ * directly. Only differences between readings mean anything; the zero point
+ * is up to the clock.
+ *
+ * @author Benjamin Woodruff
+ * @see    SystemClock
+ */
+
+public abstract class Clock {
+	private static volatile Clock clock = new SystemClock();
+	
+	/**
+	 * Gets the clock in use, the wall clock unless something else has been
+	 * set.
+	 */
+	public static Clock get() {
+		return clock;
+	}
+	
+	/**
+	 * Replaces the clock in use. Should be done before anything starts
+	 * timing, as readings from different clocks can't be compared.
+	 *
+	 * @param  clock  The new clock
+	 */
+	public static void set(Clock clock) {
+		if(clock == null) {
+			throw new NullPointerException("clock");
+		}
+		Clock.clock = clock;
+	}
+	
+	/**
+	 * @return  The current time, in nanoseconds
+	 */
+	public abstract long nanoTime();
+	
+	/**
+	 * @return  The current time, in milliseconds
+	 */
+	public long millis() {
+		return nanoTime() / 1000000L;
+	}
+	
+	/**
+	 * Blocks the calling thread until this clock has moved forward by at least
+	 * <code>nanos</code>. Returns right away if <code>nanos</code> isn't
+	 * positive.
+	 *
+	 * @param  nanos  How long to sleep, in nanoseconds
+	 */
+	public abstract void sleepNanos(long nanos) throws InterruptedException;
+	
+	/**
+	 * Like <code>Thread.sleep</code>, but in this clock's time.
+	 *
+	 * @param  millis  How long to sleep, in milliseconds
+	 */
+	public void sleep(long millis) throws InterruptedException {
+		sleepNanos(millis * 1000000L);
+	}
+	
+	/**
+	 * Busy waits until this clock has moved forward by at least
+	 * <code>nanos</code>, without ever putting the thread to sleep. Wakes up
+	 * closer to the deadline than <code>sleepNanos</code>, which on the CBC
+	 * can overshoot by a scheduler tick, at the price of a whole core.
+	 *
+	 * @param  nanos  How long to wait, in nanoseconds
+	 * @param  yield  Whether to <code>Thread.yield</code> while waiting, so
+	 *                    other threads still get to run
+	 */
+	public void spinNanos(long nanos, boolean yield)
+	                      throws InterruptedException {
+		long deadline = nanoTime() + nanos;
+		while(nanoTime() - deadline < 0) {
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if(yield) {
+				Thread.yield();
+			}
+		}
+	}
+	
+	/**
+	 * Waits for a latch to open, for when one thread has to wait on work done
+	 * by another. A simulated clock counts a thread waiting here as asleep,
+	 * so time can move on while it waits. The latch should then be opened
+	 * with <code>countDown</code>, so that the waiter is woken at the same
+	 * moment.
+	 *
+	 * @param  latch  The latch to wait for
+	 * @see    #countDown
+	 */
+	public void await(CountDownLatch latch) throws InterruptedException {
+		latch.await();
+	}
+	
+	/**
+	 * Counts down a latch that threads may be waiting on through
+	 * <code>await</code>.
+	 *
+	 * @param  latch  The latch to count down
+	 * @see    #await
+	 */
+	public void countDown(CountDownLatch latch) {
+		latch.countDown();
+	}
+}
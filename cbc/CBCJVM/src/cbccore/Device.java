@@ -227,6 +227,22 @@ public class Device {
 		return lowSensors;
 	}
 	
+	/**
+	 * Ends the program, like <code>System.exit</code>. Use this instead, so
+	 * that a simulator can end just the simulated program rather than the
+	 * whole JVM.
+	 *
+	 * @param  status  The exit status
+	 * @see    cbccore.low.Simulator#exit
+	 */
+	public static void exit(int status) {
+		if(simulator != null) {
+			simulator.exit(status);
+		} else {
+			System.exit(status);
+		}
+	}
+	
 	/**
 	 * Getter for the onCBC variable.
 	 *
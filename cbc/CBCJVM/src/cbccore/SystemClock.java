@@ -0,0 +1,38 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore;
+
+/**
+ * The wall clock: <code>System.nanoTime()</code> and
+ * <code>Thread.sleep()</code>. This is the default <code>Clock</code>, and
+ * the only one that makes sense on the CBC itself.
+ *
+ * @author Benjamin Woodruff
+ * @see    Clock
+ */
+
+public class SystemClock extends Clock {
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+	
+	public void sleepNanos(long nanos) throws InterruptedException {
+		if(nanos > 0) {
+			Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+/**
+ * The state of the Create's battery (sensor packets 21 through 26). Reusable:
+ * pass one to <code>Create.getBattery</code> as often as you like, it is just
+ * refilled.
+ *
+ * @author Benjamin Woodruff
+ * @see    Create#getBattery(BatteryState)
+ */
+
+public class BatteryState {
+	private int chargingState = 0;
+	private int voltage = 0;
+	private int current = 0;
+	private int temperature = 0;
+	private int charge = 0;
+	private int capacity = 0;
+	
+	void set(int chargingState, int voltage, int current, int temperature,
+	         int charge, int capacity) {
+		this.chargingState = chargingState;
+		this.voltage = voltage;
+		this.current = current;
+		this.temperature = temperature;
+		this.charge = charge;
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * @return  0 not charging, 1 reconditioning, 2 full, 3 trickle,
+	 *              4 waiting, 5 fault
+	 */
+	public int getChargingState() {
+		return chargingState;
+	}
+	
+	/**
+	 * @return  Battery voltage in mV
+	 */
+	public int getVoltage() {
+		return voltage;
+	}
+	
+	/**
+	 * @return  Current in mA, negative when discharging
+	 */
+	public int getCurrent() {
+		return current;
+	}
+	
+	/**
+	 * @return  Battery temperature in degrees Celsius
+	 */
+	public int getTemperature() {
+		return temperature;
+	}
+	
+	/**
+	 * @return  Charge left in mAh
+	 */
+	public int getCharge() {
+		return charge;
+	}
+	
+	/**
+	 * @return  Estimated charge capacity in mAh
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return  Charge left as a fraction of capacity, 0 if unknown
+	 */
+	public double getChargeFraction() {
+		return capacity <= 0 ? 0. : (double)charge / capacity;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+/**
+ * The Create's bumpers and wheel drops (sensor packet 7). Reusable: pass one
+ * to <code>Create.getBumps</code> as often as you like, it is just refilled.
+ *
+ * @author Benjamin Woodruff
+ * @see    Create#getBumps(BumpState)
+ */
+
+public class BumpState {
+	private int bits = 0;
+	
+	void set(int bits) {
+		this.bits = bits;
+	}
+	
+	/**
+	 * @return  The raw packet, see the <code>BUMP_*</code> and
+	 *              <code>DROP_*</code> masks in <code>CreateSensorFrame</code>
+	 */
+	public int getBits() {
+		return bits;
+	}
+	
+	public boolean isLeftBump() {
+		return (bits & CreateSensorFrame.BUMP_LEFT) != 0;
+	}
+	
+	public boolean isRightBump() {
+		return (bits & CreateSensorFrame.BUMP_RIGHT) != 0;
+	}
+	
+	/**
+	 * @return  <code>true</code> if either bumper is pressed
+	 */
+	public boolean isBump() {
+		return (bits & (CreateSensorFrame.BUMP_LEFT
+		                | CreateSensorFrame.BUMP_RIGHT)) != 0;
+	}
+	
+	public boolean isLeftWheelDrop() {
+		return (bits & CreateSensorFrame.DROP_LEFT) != 0;
+	}
+	
+	public boolean isRightWheelDrop() {
+		return (bits & CreateSensorFrame.DROP_RIGHT) != 0;
+	}
+	
+	public boolean isCasterDrop() {
+		return (bits & CreateSensorFrame.DROP_CASTER) != 0;
+	}
+	
+	/**
+	 * @return  <code>true</code> if any wheel, or the caster, has dropped
+	 */
+	public boolean isDrop() {
+		return (bits & (CreateSensorFrame.DROP_LEFT
+		                | CreateSensorFrame.DROP_RIGHT
+		                | CreateSensorFrame.DROP_CASTER)) != 0;
+	}
+}
@@ -11,12 +11,27 @@ public class CliffState {
 	int leftCliffAmount;
 	int leftFrontCliffAmount;
 	
+	/**
+	 * An empty CliffState, to be filled by <code>Create.getCliffs</code>.
+	 */
+	public CliffState() {
+	}
+	
 	public CliffState(int rightCliff, int rightFrontCliff, int leftCliff,
 			int leftFrontCliff, int rightCliffAmount,
 			int rightFrontCliffAmount, int leftCliffAmount,
 			int leftFrontCliffAmount) {
 		super();
 		
+		set(rightCliff, rightFrontCliff, leftCliff, leftFrontCliff,
+			rightCliffAmount, rightFrontCliffAmount, leftCliffAmount,
+			leftFrontCliffAmount);
+	}
+	
+	void set(int rightCliff, int rightFrontCliff, int leftCliff,
+			int leftFrontCliff, int rightCliffAmount,
+			int rightFrontCliffAmount, int leftCliffAmount,
+			int leftFrontCliffAmount) {
 		this.rightCliff = rightCliff;
 		this.rightFrontCliff = rightFrontCliff;
 		this.leftCliff = leftCliff;
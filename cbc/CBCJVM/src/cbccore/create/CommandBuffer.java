@@ -0,0 +1,151 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.create.commands.Command;
+
+/**
+ * A reusable buffer that Open Interface commands are serialized into, so that
+ * any number of them can be sent to the Create with one
+ * <code>create_write_block</code> call. The buffer grows as needed and is
+ * never shrunk, so reusing one doesn't allocate once it is big enough.
+ *
+ * @author Benjamin Woodruff
+ * @see    Command#encode
+ * @see    Create#send
+ */
+
+public class CommandBuffer {
+	private byte[] data;
+	private int size = 0;
+	private int leds = 0;
+	
+	public CommandBuffer() {
+		this(32);
+	}
+	
+	public CommandBuffer(int capacity) {
+		data = new byte[Math.max(capacity, 1)];
+	}
+	
+	/**
+	 * Appends one byte, only the low 8 bits are kept.
+	 */
+	public CommandBuffer put(int b) {
+		if(size == data.length) {
+			grow(size + 1);
+		}
+		data[size++] = (byte) b;
+		return this;
+	}
+	
+	/**
+	 * Appends a 16 bit value, high byte first, as the Open Interface wants.
+	 */
+	public CommandBuffer putShort(int value) {
+		if(size + 2 > data.length) {
+			grow(size + 2);
+		}
+		data[size++] = (byte) (value >> 8);
+		data[size++] = (byte) value;
+		return this;
+	}
+	
+	/**
+	 * Appends the encoding of a command.
+	 */
+	public CommandBuffer add(Command command) {
+		command.encode(this);
+		return this;
+	}
+	
+	private void grow(int needed) {
+		byte[] next = new byte[Math.max(needed, data.length * 2)];
+		System.arraycopy(data, 0, next, 0, size);
+		data = next;
+	}
+	
+	/**
+	 * @return  The number of bytes in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the byte at a position.
+	 */
+	public int get(int index) {
+		if(index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return data[index] & 0xFF;
+	}
+	
+	/**
+	 * Gets the underlying array, of which the first <code>size()</code>
+	 * bytes are valid.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	/**
+	 * Copies out the contents of the buffer.
+	 */
+	public byte[] toByteArray() {
+		byte[] copy = new byte[size];
+		System.arraycopy(data, 0, copy, 0, size);
+		return copy;
+	}
+	
+	/**
+	 * Sets the play and advance LED bits (2 and 8) that a power LED command
+	 * writes along with its color, so it leaves those LEDs as they are.
+	 */
+	public void setLeds(int leds) {
+		this.leds = leds & 10;
+	}
+	
+	/**
+	 * @return  The play and advance LED bits, 0 unless set
+	 * @see     #setLeds
+	 */
+	public int getLeds() {
+		return leds;
+	}
+	
+	/**
+	 * Empties the buffer, keeping its capacity.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Writes the whole buffer in one native call, then empties it.
+	 *
+	 * @param  lowCreate  Where to write it
+	 * @return            The number of bytes written, or -1 on error
+	 */
+	public int writeTo(cbccore.low.Create lowCreate) {
+		int written = size == 0 ? 0
+		                        : lowCreate.create_write_block(data, 0, size);
+		size = 0;
+		return written;
+	}
+}
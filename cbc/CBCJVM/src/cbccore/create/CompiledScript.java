@@ -0,0 +1,73 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+/**
+ * A <code>Script</code> encoded into the Open Interface script format. This is
+ * only the body, the bytes the Create stores and plays back; it is uploaded
+ * with opcode 152 and started with opcode 153. Once compiled, uploading a
+ * script is a single write of bytes that are never encoded again.
+ * <p>
+ * Compiled scripts are immutable. Get one from <code>Script.compile</code>.
+ *
+ * @author Benjamin Woodruff
+ * @see    ScriptCompiler
+ * @see    Create#uploadScript
+ */
+
+public final class CompiledScript {
+	private byte[] body;
+	private int commandCount;
+	
+	CompiledScript(byte[] body, int commandCount) {
+		this.body = body;
+		this.commandCount = commandCount;
+	}
+	
+	/**
+	 * @return  The length of the body in bytes, at most
+	 *              <code>ScriptCompiler.MAX_LENGTH</code>
+	 */
+	public int getLength() {
+		return body.length;
+	}
+	
+	/**
+	 * @return  The number of commands the script was compiled from
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+	
+	/**
+	 * @return  A copy of the body
+	 */
+	public byte[] getBytes() {
+		return body.clone();
+	}
+	
+	/**
+	 * Appends the upload command for this script (152, length, body) to a
+	 * buffer. Follow it with a <code>PlayScript</code> to run it.
+	 */
+	public void encodeUpload(CommandBuffer buffer) {
+		buffer.put(ScriptCompiler.OP_SCRIPT).put(body.length);
+		for(byte b : body) {
+			buffer.put(b);
+		}
+	}
+}
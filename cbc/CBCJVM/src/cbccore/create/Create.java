@@ -18,6 +18,7 @@ package cbccore.create;
 
 import java.io.IOException;
 
+import cbccore.Clock;
 import cbccore.Device;
 import cbccore.create.commands.*;
 
@@ -35,16 +36,18 @@ public class Create {
 	}
 	
 	private float lag;
+	private CreateStream stream = null;
+	private CommandBuffer commandBuffer = new CommandBuffer();
+	private int distanceOffset = 0;
+	private int angleOffset = 0;
 	
-	private static cbccore.low.Create lowCreate =
-		Device.getLowCreateController();
-	private static LowSideDrivers lowSideDrivers =
-		new LowSideDrivers(lowCreate);
+	private cbccore.low.Create lowCreate;
+	private LowSideDrivers lowSideDrivers;
+	private byte[] query = new byte[12]; // responses to sensor queries
 	
 	public Create() throws CreateConnectException {
-		lag=0;		//TODO:Find good 'lag' value. I don't have any cbc/create 
+		this(0);	//TODO:Find good 'lag' value. I don't have any cbc/create 
 				//	to test it on at time of writing
-		connect();
 	}
 	
 	/**
@@ -53,6 +56,20 @@ public class Create {
 	* @param lag How many seconds between sensor updates
 	*/
 	public Create(float lag) throws CreateConnectException{
+		this(Device.getLowCreateController(), lag);
+	}
+	
+	/**
+	* Initalizes a new Create object that talks through the given low level
+	* controller, such as a simulated one.
+	* 
+	* @param lowCreate The low level controller to use
+	* @param lag How many seconds between sensor updates
+	*/
+	public Create(cbccore.low.Create lowCreate, float lag)
+			throws CreateConnectException {
+		this.lowCreate = lowCreate;
+		this.lowSideDrivers = new LowSideDrivers(lowCreate);
 		this.lag=lag;
 		connect();
 	}
@@ -60,6 +77,7 @@ public class Create {
 	
 	@Override
 	public void finalize() {
+		stopStreaming();
 		disconnect();
 	}
 	
@@ -76,11 +94,93 @@ public class Create {
 		return lag;	
 	}
 	
-	public void sendScript(Script script) {
-		Script s = (Script) script.clone();
-		for (Command c : s) {
-			c.add(this);
+	/**
+	 * Sends every command of a script in one native call.
+	 * 
+	 * @param script The commands to send
+	 */
+	public synchronized void sendScript(Script script) {
+		for (Command c : script) {
+			commandBuffer.add(c);
 		}
+		commandBuffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Stores a script on the Create, to be run later with
+	 * <code>playScript</code>. Unlike <code>sendScript</code>, the script runs
+	 * on the Create's own controller, so waits and timing aren't affected by
+	 * anything the CBC is doing.
+	 *
+	 * @param script The commands to store
+	 * @throws ScriptException if the Create can't run this script
+	 * @see Script#compile
+	 */
+	public void uploadScript(Script script) {
+		uploadScript(script.compile());
+	}
+	
+	/**
+	 * Stores an already compiled script on the Create.
+	 *
+	 * @param script The script to store
+	 */
+	public synchronized void uploadScript(CompiledScript script) {
+		script.encodeUpload(commandBuffer);
+		commandBuffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Runs the script stored on the Create. Other commands are ignored
+	 * until it finishes.
+	 */
+	public void playScript() {
+		send(new PlayScript());
+	}
+	
+	/**
+	 * Stores a script on the Create and starts it, in one write.
+	 *
+	 * @param script The commands to run
+	 * @throws ScriptException if the Create can't run this script
+	 */
+	public synchronized void runScript(Script script) {
+		CompiledScript compiled = script.compile();
+		compiled.encodeUpload(commandBuffer);
+		commandBuffer.put(ScriptCompiler.OP_PLAY_SCRIPT);
+		commandBuffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Sends a command in one native call.
+	 * 
+	 * @param command The command to send
+	 */
+	public synchronized void send(Command command) {
+		commandBuffer.add(command);
+		commandBuffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Sends several commands together in one native call, such as a whole
+	 * drive update.
+	 * 
+	 * @param commands The commands to send, in order
+	 */
+	public synchronized void send(Command... commands) {
+		for (Command c : commands) {
+			commandBuffer.add(c);
+		}
+		commandBuffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Sends whatever has been put in a buffer, and empties it.
+	 * 
+	 * @param buffer Encoded commands
+	 */
+	public void send(CommandBuffer buffer) {
+		buffer.writeTo(lowCreate);
 	}
 	
 	/**
@@ -184,6 +284,70 @@ public class Create {
 		lowCreate.create_cover_dock();
 	}
 	
+	/**
+	 * Has the Create stream all of its sensors every 15ms, decoded on a
+	 * background thread. From then on, the getters of this class read from
+	 * the latest streamed frame instead of asking the Create over serial.
+	 * 
+	 * @return The stream, to get at the decoded frames directly
+	 * @see #stopStreaming
+	 * @see CreateStream
+	 */
+	public CreateStream startStreaming() {
+		return startStreaming(CreateStream.DEFAULT_GROUP);
+	}
+	
+	/**
+	 * Like <code>startStreaming()</code>, but only streams one packet group.
+	 * The getters of this class may then be reading stale values, so this is
+	 * for code that uses the frames directly.
+	 * 
+	 * @param group The packet group to stream, 0 through 6
+	 * @return The stream
+	 */
+	public synchronized CreateStream startStreaming(int group) {
+		if(stream != null) {
+			if(stream.getGroup() == group) return stream;
+			stopStreaming();
+		}
+		// carry on from where the request-and-response getters left off
+		distanceOffset = getDistance();
+		angleOffset = gc_angle;
+		stream = new CreateStream(lowCreate, group);
+		stream.start();
+		return stream;
+	}
+	
+	/**
+	 * Stops streaming, the getters go back to asking the Create.
+	 * 
+	 * @see #startStreaming
+	 */
+	public synchronized void stopStreaming() {
+		if(stream == null) return;
+		stream.stop();
+		CreateSensorFrame frame = stream.getFrame();
+		stream = null;
+		clearSerialBuffer();
+		lowCreate.set_create_distance(distanceOffset
+		                              + (int)frame.getDistance());
+		gc_angle = normalize(angleOffset + frame.getAngle());
+	}
+	
+	public boolean isStreaming() {
+		return stream != null;
+	}
+	
+	/**
+	 * @return The latest streamed sensor frame, or <code>null</code> if not
+	 *         streaming
+	 * @see #startStreaming
+	 */
+	public CreateSensorFrame getSensorFrame() {
+		CreateStream s = stream;
+		return s == null ? null : s.getFrame();
+	}
+	
 	/**
 	 * Returns the Create's mode.
 	 * 
@@ -192,7 +356,9 @@ public class Create {
 	 * @see #setMode
 	 */
 	public Mode getMode() {
-		int m = lowCreate.get_create_mode(lag);
+		CreateSensorFrame frame = getSensorFrame();
+		int m = frame != null ? frame.getMode()
+		                      : lowCreate.get_create_mode(lag);
 		if (m == 0)
 			return Mode.Off;
 		if (m == 1)
@@ -309,8 +475,11 @@ public class Create {
 	 * @see #playLed
 	 * @see #powerLed
 	 */
-	public void advanceLed(boolean on) {
+	public synchronized void advanceLed(boolean on) {
 		lowCreate.create_advance_led(on ? 1 : 0);
+		// so a PowerLED sent through the buffer keeps it
+		int leds = commandBuffer.getLeds();
+		commandBuffer.setLeds(on ? leds | 8 : leds & ~8);
 	}
 	
 	/**
@@ -321,8 +490,10 @@ public class Create {
 	 * @see #advanceLed
 	 * @see #powerLed
 	 */
-	public void playLed(boolean on) {
+	public synchronized void playLed(boolean on) {
 		lowCreate.create_play_led(on ? 1 : 0);
+		int leds = commandBuffer.getLeds();
+		commandBuffer.setLeds(on ? leds | 2 : leds & ~2);
 	}
 	
 	/**
@@ -394,6 +565,10 @@ public class Create {
 	// public int read_block(char* data, int count);
 	
 	public int getDistance() {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			return distanceOffset + (int)frame.getDistance();
+		}
 		return lowCreate.get_create_distance(lag);
 	}
 	
@@ -409,6 +584,18 @@ public class Create {
 		lowCreate.create_write_byte(c);
 	}
 	
+	/**
+	 * Writes several bytes with a single native call.
+	 * 
+	 * @param data the bytes to write
+	 * @param off where in data to start
+	 * @param len how many bytes to write
+	 * @see #writeByte
+	 */
+	public void writeBlock(byte[] data, int off, int len) {
+		lowCreate.create_write_block(data, off, len);
+	}
+	
 	public void clearSerialBuffer() {
 		lowCreate.create_clear_serial_buffer();
 	}
@@ -437,7 +624,7 @@ public class Create {
 		driveStraight(mmps);
 		try {
 			//Thread.sleep(130); // what is this?
-			Thread.sleep((int)(secs * 1000.));
+			Clock.get().sleep((int)(secs * 1000.));
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
@@ -470,44 +657,169 @@ public class Create {
 		// shouldn't you stop it here? or does the create handle that for you?
 	}
 	
+	// query list (149) of 8 packets: the four cliffs, then their signals
+	private static final byte[] CLIFF_QUERY = {
+		fromUnsigned(149), 8, 9, 10, 11, 12, 28, 29, 30, 31
+	};
+	
+	/**
+	 * Reads the cliff sensors and their signals.
+	 * 
+	 * @return A new CliffState
+	 * @see #getCliffs(CliffState)
+	 */
 	public CliffState getCliffs() {
-		byte buffer[] = new byte[12];
-		writeByte(149);
-		writeByte(8);
-		writeByte(9);
-		writeByte(10);
-		writeByte(11);
-		writeByte(12);
-		writeByte(28);
-		writeByte(29);
-		writeByte(30);
-		writeByte(31);
-		lowCreate.create_read_block(buffer, buffer.length);
-		int leftCliff = buffer[0];
-		int leftFrontCliff = buffer[1];
-		int rightFrontCliff = buffer[2];
-		int rightCliff = buffer[3];
-		int leftCliffAmount = fromSigned(buffer[4]) << 8;
-		leftCliffAmount |= fromSigned(buffer[5]) << 0;
-		int leftFrontCliffAmount = fromSigned(buffer[6]) << 8;
-		leftFrontCliffAmount |= fromSigned(buffer[7]);
-		int rightFrontCliffAmount = fromSigned(buffer[8]) << 8;
-		rightFrontCliffAmount |= fromSigned(buffer[9]);
-		int rightCliffAmount = fromSigned(buffer[10]) << 8;
-		rightCliffAmount |= fromSigned(buffer[11]);
-		
-		return new CliffState(rightCliff, rightFrontCliff, leftCliff, leftFrontCliff, 
-				rightCliffAmount, rightFrontCliffAmount, 
-				leftCliffAmount, leftFrontCliffAmount);
+		return getCliffs(new CliffState());
+	}
+	
+	/**
+	 * Reads the cliff sensors and their signals into an existing CliffState,
+	 * so that polling them in a loop doesn't allocate.
+	 * 
+	 * @param state Filled with the readings
+	 * @return state
+	 */
+	public synchronized CliffState getCliffs(CliffState state) {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			state.set(
+				frame.isRightCliff() ? 1 : 0, frame.isRightFrontCliff() ? 1 : 0,
+				frame.isLeftCliff() ? 1 : 0, frame.isLeftFrontCliff() ? 1 : 0,
+				frame.getRightCliffSignal(), frame.getRightFrontCliffSignal(),
+				frame.getLeftCliffSignal(), frame.getLeftFrontCliffSignal());
+			return state;
+		}
+		byte buffer[] = query;
+		writeBlock(CLIFF_QUERY, 0, CLIFF_QUERY.length);
+		lowCreate.create_read_block(buffer, 12);
+		state.set(buffer[3], buffer[2], buffer[0], buffer[1],
+			readUnsigned(buffer, 10), readUnsigned(buffer, 8),
+			readUnsigned(buffer, 4), readUnsigned(buffer, 6));
+		return state;
+	}
+	
+	private static int readUnsigned(byte[] buffer, int i) {
+		return (fromSigned(buffer[i]) << 8) | fromSigned(buffer[i + 1]);
+	}
+	
+	private static final byte[] BUMP_QUERY = {
+		fromUnsigned(142), CreateSensorFrame.PACKET_BUMPS_DROPS
+	};
+	
+	/**
+	 * Reads the bumpers and wheel drops.
+	 * 
+	 * @return A new BumpState
+	 * @see #getBumps(BumpState)
+	 */
+	public BumpState getBumps() {
+		return getBumps(new BumpState());
+	}
+	
+	/**
+	 * Reads the bumpers and wheel drops into an existing BumpState.
+	 * 
+	 * @param state Filled with the readings
+	 * @return state
+	 */
+	public synchronized BumpState getBumps(BumpState state) {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			state.set(frame.getPacket(CreateSensorFrame.PACKET_BUMPS_DROPS));
+			return state;
+		}
+		writeBlock(BUMP_QUERY, 0, BUMP_QUERY.length);
+		lowCreate.create_read_block(query, 1);
+		state.set(fromSigned(query[0]));
+		return state;
+	}
+	
+	// query list (149) of the six battery packets, 21 through 26
+	private static final byte[] BATTERY_QUERY = {
+		fromUnsigned(149), 6, 21, 22, 23, 24, 25, 26
+	};
+	
+	/**
+	 * Reads the battery's state.
+	 * 
+	 * @return A new BatteryState
+	 * @see #getBattery(BatteryState)
+	 */
+	public BatteryState getBattery() {
+		return getBattery(new BatteryState());
+	}
+	
+	/**
+	 * Reads the battery's state into an existing BatteryState.
+	 * 
+	 * @param state Filled with the readings
+	 * @return state
+	 */
+	public synchronized BatteryState getBattery(BatteryState state) {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			state.set(frame.getChargingState(), frame.getVoltage(),
+				frame.getCurrent(), frame.getBatteryTemperature(),
+				frame.getBatteryCharge(), frame.getBatteryCapacity());
+			return state;
+		}
+		byte buffer[] = query;
+		writeBlock(BATTERY_QUERY, 0, BATTERY_QUERY.length);
+		lowCreate.create_read_block(buffer, 10);
+		state.set(fromSigned(buffer[0]), readUnsigned(buffer, 1),
+			(short) readUnsigned(buffer, 3), buffer[5],
+			readUnsigned(buffer, 6), readUnsigned(buffer, 8));
+		return state;
+	}
+	
+	/**
+	 * Reads the distance travelled and the angle turned, as
+	 * <code>getDistance</code> and <code>getAngle</code> would.
+	 * 
+	 * @return A new OdometryState
+	 * @see #getOdometry(OdometryState)
+	 */
+	public OdometryState getOdometry() {
+		return getOdometry(new OdometryState());
+	}
+	
+	/**
+	 * Reads the distance travelled and the angle turned into an existing
+	 * OdometryState.
+	 * 
+	 * @param state Filled with the readings
+	 * @return state
+	 */
+	public synchronized OdometryState getOdometry(OdometryState state) {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			state.set(distanceOffset + (int)frame.getDistance(),
+				normalize(angleOffset + frame.getAngle()),
+				frame.getTimeNanos());
+			return state;
+		}
+		int distance = getDistance();
+		state.set(distance, getAngle(), Clock.get().nanoTime());
+		return state;
 	}
 	
 	private int gc_angle = 0;
 	
-	public int getAngle() {
-		byte buffer[] = new byte[2];
-			writeByte(142);
-			writeByte(20);
-			lowCreate.create_read_block(buffer, buffer.length);
+	private static int normalize(long angle) {
+		int a = (int)(angle % 360);
+		return a < 0 ? a + 360 : a;
+	}
+	
+	private static final byte[] ANGLE_QUERY = { fromUnsigned(142), 20 };
+	
+	public synchronized int getAngle() {
+		CreateSensorFrame frame = getSensorFrame();
+		if(frame != null) {
+			return normalize(angleOffset + frame.getAngle());
+		}
+		byte buffer[] = query;
+			writeBlock(ANGLE_QUERY, 0, ANGLE_QUERY.length);
+			lowCreate.create_read_block(buffer, 2);
 			int newangle = fromSigned(buffer[0]) << 8;
 			newangle |= fromSigned(buffer[1]);
 			if(newangle > 32767){ //if this was meant to be a negative 16 bit int
@@ -0,0 +1,208 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.events.Event;
+import cbccore.events.EventManager;
+import cbccore.events.EventPriority;
+import cbccore.events.EventType;
+
+import java.util.Arrays;
+
+/**
+ * Turns the Create's bump, wheel drop, cliff, wall and button sensors into
+ * events. Every frame of a <code>CreateStream</code> is compared with the last
+ * one, and each sensor that changed emits its event right there on the
+ * decoding thread, so a listener hears about a bump within one stream period
+ * (15ms) of the Create sensing it. Connect listeners to the EventTypes in this
+ * class, as with <code>ButtonEmitter</code>.
+ * <p>
+ * Nothing is allocated per frame: the events are made once, and only
+ * re-emitted. So, like the <code>ButtonEmitter</code> events, they carry no
+ * data; read the frame from the stream if you need more than the edge.
+ * <p>
+ * Bumps, wheel drops and cliffs are given <code>EventPriority.HIGH</code> and
+ * the buttons <code>EventPriority.LOW</code> on the
+ * <code>EventManager</code> the emitter is given, which matters once it is
+ * asynchronous.
+ *
+ * @author Benjamin Woodruff
+ * @see    CreateStream#addFrameListener
+ * @see    cbccore.sensors.buttons.ButtonEmitter
+ */
+
+@SuppressWarnings("unchecked")
+public class CreateSensorEmitter implements CreateStream.FrameListener {
+
+	// Bumpers
+	public static EventType LeftBumpPressed = new EventType();
+	public static EventType LeftBumpReleased = new EventType();
+	public static EventType RightBumpPressed = new EventType();
+	public static EventType RightBumpReleased = new EventType();
+	
+	// Wheel drops
+	public static EventType LeftWheelDropped = new EventType();
+	public static EventType LeftWheelRaised = new EventType();
+	public static EventType RightWheelDropped = new EventType();
+	public static EventType RightWheelRaised = new EventType();
+	public static EventType CasterDropped = new EventType();
+	public static EventType CasterRaised = new EventType();
+	
+	// Cliffs
+	public static EventType LeftCliffDetected = new EventType();
+	public static EventType LeftCliffCleared = new EventType();
+	public static EventType LeftFrontCliffDetected = new EventType();
+	public static EventType LeftFrontCliffCleared = new EventType();
+	public static EventType RightFrontCliffDetected = new EventType();
+	public static EventType RightFrontCliffCleared = new EventType();
+	public static EventType RightCliffDetected = new EventType();
+	public static EventType RightCliffCleared = new EventType();
+	
+	// Walls
+	public static EventType WallDetected = new EventType();
+	public static EventType WallCleared = new EventType();
+	public static EventType VirtualWallDetected = new EventType();
+	public static EventType VirtualWallCleared = new EventType();
+	
+	// Buttons
+	public static EventType PlayButtonPressed = new EventType();
+	public static EventType PlayButtonReleased = new EventType();
+	public static EventType AdvanceButtonPressed = new EventType();
+	public static EventType AdvanceButtonReleased = new EventType();
+	
+	// what each edge reads: a bit of a packet
+	private static final int[] PACKETS = {
+		CreateSensorFrame.PACKET_BUMPS_DROPS,
+		CreateSensorFrame.PACKET_BUMPS_DROPS,
+		CreateSensorFrame.PACKET_BUMPS_DROPS,
+		CreateSensorFrame.PACKET_BUMPS_DROPS,
+		CreateSensorFrame.PACKET_BUMPS_DROPS,
+		CreateSensorFrame.PACKET_CLIFF_LEFT,
+		CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT,
+		CreateSensorFrame.PACKET_CLIFF_FRONT_RIGHT,
+		CreateSensorFrame.PACKET_CLIFF_RIGHT,
+		CreateSensorFrame.PACKET_WALL,
+		CreateSensorFrame.PACKET_VIRTUAL_WALL,
+		CreateSensorFrame.PACKET_BUTTONS,
+		CreateSensorFrame.PACKET_BUTTONS
+	};
+	private static final int[] MASKS = {
+		CreateSensorFrame.BUMP_LEFT, CreateSensorFrame.BUMP_RIGHT,
+		CreateSensorFrame.DROP_LEFT, CreateSensorFrame.DROP_RIGHT,
+		CreateSensorFrame.DROP_CASTER,
+		1, 1, 1, 1,
+		1, 1,
+		CreateSensorFrame.BUTTON_PLAY, CreateSensorFrame.BUTTON_ADVANCE
+	};
+	private static final EventType[] ON_TYPES = {
+		LeftBumpPressed, RightBumpPressed,
+		LeftWheelDropped, RightWheelDropped, CasterDropped,
+		LeftCliffDetected, LeftFrontCliffDetected, RightFrontCliffDetected,
+		RightCliffDetected,
+		WallDetected, VirtualWallDetected,
+		PlayButtonPressed, AdvanceButtonPressed
+	};
+	private static final EventType[] OFF_TYPES = {
+		LeftBumpReleased, RightBumpReleased,
+		LeftWheelRaised, RightWheelRaised, CasterRaised,
+		LeftCliffCleared, LeftFrontCliffCleared, RightFrontCliffCleared,
+		RightCliffCleared,
+		WallCleared, VirtualWallCleared,
+		PlayButtonReleased, AdvanceButtonReleased
+	};
+	
+	// edges before SAFETY_EDGES are bumps, drops and cliffs; from
+	// BUTTON_EDGES on they are buttons
+	private static final int SAFETY_EDGES = 9;
+	private static final int BUTTON_EDGES = 11;
+	
+	private CreateStream stream;
+	private EventManager manager;
+	private Event[] onEvents = new Event[PACKETS.length];
+	private Event[] offEvents = new Event[PACKETS.length];
+	private boolean[] states = new boolean[PACKETS.length];
+	private boolean running = false;
+	
+	public CreateSensorEmitter(CreateStream stream) {
+		this(stream, EventManager.get());
+	}
+	
+	/**
+	 * @param  stream   The stream to watch, which doesn't have to be started
+	 *                      yet
+	 * @param  manager  The <code>EventManager</code> to emit through
+	 */
+	public CreateSensorEmitter(CreateStream stream, EventManager manager) {
+		this.stream = stream;
+		this.manager = manager;
+		for(int i = 0; i < PACKETS.length; ++i) {
+			onEvents[i] = new Event(ON_TYPES[i], this);
+			offEvents[i] = new Event(OFF_TYPES[i], this);
+			EventPriority priority = i < SAFETY_EDGES ? EventPriority.HIGH
+				: i >= BUTTON_EDGES ? EventPriority.LOW
+				: EventPriority.NORMAL;
+			manager.setPriority(ON_TYPES[i], priority);
+			manager.setPriority(OFF_TYPES[i], priority);
+		}
+	}
+	
+	/**
+	 * Begins emitting events. Every sensor is assumed to start out false, so
+	 * one that is already true emits its event on the first frame. Calling
+	 * this more than once does nothing.
+	 */
+	public synchronized void start() {
+		if(running) {
+			return;
+		}
+		running = true;
+		Arrays.fill(states, false);
+		stream.addFrameListener(this);
+	}
+	
+	/**
+	 * Stops emitting events. The emitter may be started again later.
+	 */
+	public synchronized void exit() {
+		if(!running) {
+			return;
+		}
+		running = false;
+		stream.removeFrameListener(this);
+	}
+	
+	public synchronized boolean isRunning() {
+		return running;
+	}
+	
+	public CreateStream getStream() {
+		return stream;
+	}
+	
+	/**
+	 * Don't call this function, the stream calls it with every frame.
+	 */
+	public void frameDecoded(CreateSensorFrame frame) {
+		for(int i = 0; i < PACKETS.length; ++i) {
+			boolean state = (frame.getPacket(PACKETS[i]) & MASKS[i]) != 0;
+			if(state != states[i]) {
+				states[i] = state;
+				(state ? onEvents[i] : offEvents[i]).emit(manager);
+			}
+		}
+	}
+}
@@ -0,0 +1,407 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.Clock;
+
+/**
+ * One decoded set of Create sensor packets, as pushed by the Open Interface
+ * stream. Every value is kept as a primitive indexed by its packet ID, so
+ * decoding a frame never allocates. Packets outside the streamed group keep
+ * the value they had in the previous frame.<p>
+ * 
+ * Distance and angle are reported by the Create as the change since the last
+ * report; <code>getDistance</code> and <code>getAngle</code> are running
+ * totals of those, while <code>getDistanceDelta</code> and
+ * <code>getAngleDelta</code> are just this frame's share.
+ *
+ * @author Benjamin Woodruff
+ * @see    CreateStream
+ */
+
+public class CreateSensorFrame {
+	public static final int PACKET_BUMPS_DROPS = 7;
+	public static final int PACKET_WALL = 8;
+	public static final int PACKET_CLIFF_LEFT = 9;
+	public static final int PACKET_CLIFF_FRONT_LEFT = 10;
+	public static final int PACKET_CLIFF_FRONT_RIGHT = 11;
+	public static final int PACKET_CLIFF_RIGHT = 12;
+	public static final int PACKET_VIRTUAL_WALL = 13;
+	public static final int PACKET_OVERCURRENTS = 14;
+	public static final int PACKET_INFRARED = 17;
+	public static final int PACKET_BUTTONS = 18;
+	public static final int PACKET_DISTANCE = 19;
+	public static final int PACKET_ANGLE = 20;
+	public static final int PACKET_CHARGING_STATE = 21;
+	public static final int PACKET_VOLTAGE = 22;
+	public static final int PACKET_CURRENT = 23;
+	public static final int PACKET_BATTERY_TEMPERATURE = 24;
+	public static final int PACKET_BATTERY_CHARGE = 25;
+	public static final int PACKET_BATTERY_CAPACITY = 26;
+	public static final int PACKET_WALL_SIGNAL = 27;
+	public static final int PACKET_CLIFF_LEFT_SIGNAL = 28;
+	public static final int PACKET_CLIFF_FRONT_LEFT_SIGNAL = 29;
+	public static final int PACKET_CLIFF_FRONT_RIGHT_SIGNAL = 30;
+	public static final int PACKET_CLIFF_RIGHT_SIGNAL = 31;
+	public static final int PACKET_CARGO_BAY_DIGITAL = 32;
+	public static final int PACKET_CARGO_BAY_ANALOG = 33;
+	public static final int PACKET_CHARGING_SOURCES = 34;
+	public static final int PACKET_MODE = 35;
+	public static final int PACKET_SONG_NUMBER = 36;
+	public static final int PACKET_SONG_PLAYING = 37;
+	public static final int PACKET_STREAM_PACKETS = 38;
+	public static final int PACKET_REQUESTED_VELOCITY = 39;
+	public static final int PACKET_REQUESTED_RADIUS = 40;
+	public static final int PACKET_REQUESTED_RIGHT_VELOCITY = 41;
+	public static final int PACKET_REQUESTED_LEFT_VELOCITY = 42;
+	
+	/** Bits of <code>PACKET_BUMPS_DROPS</code> */
+	public static final int BUMP_RIGHT = 1;
+	public static final int BUMP_LEFT = 2;
+	public static final int DROP_RIGHT = 4;
+	public static final int DROP_LEFT = 8;
+	public static final int DROP_CASTER = 16;
+	
+	/** Bits of <code>PACKET_BUTTONS</code> */
+	public static final int BUTTON_PLAY = 1;
+	public static final int BUTTON_ADVANCE = 4;
+	
+	/** The first and last packet ID of each packet group, 0 through 6 */
+	static final int[][] GROUPS = {
+		{7, 26}, {7, 16}, {17, 20}, {21, 26}, {27, 34}, {35, 42}, {7, 42}
+	};
+	
+	/** Size in bytes of each packet, by ID */
+	static final int[] SIZES = new int[PACKET_REQUESTED_LEFT_VELOCITY + 1];
+	/** Whether each two byte packet is signed, by ID */
+	private static final boolean[] SIGNED = new boolean[SIZES.length];
+	
+	static {
+		for(int id = PACKET_BUMPS_DROPS; id < SIZES.length; ++id) {
+			SIZES[id] = 1;
+		}
+		int[] words = {19, 20, 22, 23, 25, 26, 27, 28, 29, 30, 31, 33, 39, 40,
+		               41, 42};
+		for(int id : words) {
+			SIZES[id] = 2;
+		}
+		int[] signed = {19, 20, 23, 24, 39, 40, 41, 42};
+		for(int id : signed) {
+			SIGNED[id] = true;
+		}
+	}
+	
+	private int[] packets = new int[SIZES.length];
+	private long distance = 0;
+	private long angle = 0;
+	private long sequence = 0;
+	private long timeNanos = 0;
+	
+	/**
+	 * @param  group  A packet group, 0 through 6
+	 * @return        The number of data bytes the group takes up
+	 */
+	public static int getGroupSize(int group) {
+		if(group < 0 || group >= GROUPS.length) {
+			throw new IllegalArgumentException("no such packet group: " + group);
+		}
+		int size = 0;
+		for(int id = GROUPS[group][0]; id <= GROUPS[group][1]; ++id) {
+			size += SIZES[id];
+		}
+		return size;
+	}
+	
+	/**
+	 * @param  group  A packet group, 0 through 6
+	 * @return        The ID of the first packet in the group
+	 */
+	public static int getFirstPacket(int group) {
+		getGroupSize(group); // checks the group
+		return GROUPS[group][0];
+	}
+	
+	/**
+	 * @param  group  A packet group, 0 through 6
+	 * @return        The ID of the last packet in the group
+	 */
+	public static int getLastPacket(int group) {
+		getGroupSize(group);
+		return GROUPS[group][1];
+	}
+	
+	/**
+	 * @param  id  A packet ID
+	 * @return     The number of data bytes the packet takes up, 1 or 2, or 0
+	 *                 if there is no packet with that ID
+	 */
+	public static int getPacketSize(int id) {
+		return id < 0 || id >= SIZES.length ? 0 : SIZES[id];
+	}
+	
+	/**
+	 * Decodes the data of a packet group, on top of the previous frame.
+	 *
+	 * @param  previous  The frame before this one, its values are carried over
+	 * @param  data      The raw packet data
+	 * @param  off       Where the group starts in <code>data</code>
+	 * @param  group     Which group it is
+	 */
+	void decode(CreateSensorFrame previous, byte[] data, int off, int group) {
+		System.arraycopy(previous.packets, 0, packets, 0, packets.length);
+		packets[PACKET_DISTANCE] = 0;
+		packets[PACKET_ANGLE] = 0;
+		for(int id = GROUPS[group][0]; id <= GROUPS[group][1]; ++id) {
+			int value;
+			if(SIZES[id] == 2) {
+				value = (data[off] & 0xFF) << 8 | (data[off + 1] & 0xFF);
+				if(SIGNED[id]) value = (short) value;
+			} else {
+				value = SIGNED[id] ? data[off] : data[off] & 0xFF;
+			}
+			packets[id] = value;
+			off += SIZES[id];
+		}
+		distance = previous.distance + packets[PACKET_DISTANCE];
+		angle = previous.angle + packets[PACKET_ANGLE];
+		sequence = previous.sequence + 1;
+		timeNanos = Clock.get().nanoTime();
+	}
+	
+	/**
+	 * Makes this frame a copy of another one.
+	 */
+	public void copyFrom(CreateSensorFrame other) {
+		System.arraycopy(other.packets, 0, packets, 0, packets.length);
+		distance = other.distance;
+		angle = other.angle;
+		sequence = other.sequence;
+		timeNanos = other.timeNanos;
+	}
+	
+	/**
+	 * Gets the raw value of any packet, 7 through 42. Two byte packets are
+	 * already combined, and sign extended where the Create sends them signed.
+	 */
+	public int getPacket(int id) {
+		return packets[id];
+	}
+	
+	/**
+	 * @return  How many frames came before this one, starting at 1
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * @return  <code>Clock.get().nanoTime()</code> when this frame was decoded
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+	
+	public boolean isLeftBump() {
+		return (packets[PACKET_BUMPS_DROPS] & BUMP_LEFT) != 0;
+	}
+	
+	public boolean isRightBump() {
+		return (packets[PACKET_BUMPS_DROPS] & BUMP_RIGHT) != 0;
+	}
+	
+	public boolean isLeftWheelDrop() {
+		return (packets[PACKET_BUMPS_DROPS] & DROP_LEFT) != 0;
+	}
+	
+	public boolean isRightWheelDrop() {
+		return (packets[PACKET_BUMPS_DROPS] & DROP_RIGHT) != 0;
+	}
+	
+	public boolean isCasterDrop() {
+		return (packets[PACKET_BUMPS_DROPS] & DROP_CASTER) != 0;
+	}
+	
+	public boolean isWall() {
+		return packets[PACKET_WALL] != 0;
+	}
+	
+	public boolean isLeftCliff() {
+		return packets[PACKET_CLIFF_LEFT] != 0;
+	}
+	
+	public boolean isLeftFrontCliff() {
+		return packets[PACKET_CLIFF_FRONT_LEFT] != 0;
+	}
+	
+	public boolean isRightFrontCliff() {
+		return packets[PACKET_CLIFF_FRONT_RIGHT] != 0;
+	}
+	
+	public boolean isRightCliff() {
+		return packets[PACKET_CLIFF_RIGHT] != 0;
+	}
+	
+	public boolean isVirtualWall() {
+		return packets[PACKET_VIRTUAL_WALL] != 0;
+	}
+	
+	public int getOvercurrents() {
+		return packets[PACKET_OVERCURRENTS];
+	}
+	
+	public int getInfrared() {
+		return packets[PACKET_INFRARED];
+	}
+	
+	public boolean isPlayButton() {
+		return (packets[PACKET_BUTTONS] & BUTTON_PLAY) != 0;
+	}
+	
+	public boolean isAdvanceButton() {
+		return (packets[PACKET_BUTTONS] & BUTTON_ADVANCE) != 0;
+	}
+	
+	/**
+	 * @return  Millimeters traveled since streaming started
+	 */
+	public long getDistance() {
+		return distance;
+	}
+	
+	/**
+	 * @return  Degrees turned counter-clockwise since streaming started
+	 */
+	public long getAngle() {
+		return angle;
+	}
+	
+	/**
+	 * @return  Millimeters traveled since the previous frame
+	 */
+	public int getDistanceDelta() {
+		return packets[PACKET_DISTANCE];
+	}
+	
+	/**
+	 * @return  Degrees turned since the previous frame
+	 */
+	public int getAngleDelta() {
+		return packets[PACKET_ANGLE];
+	}
+	
+	public int getChargingState() {
+		return packets[PACKET_CHARGING_STATE];
+	}
+	
+	/**
+	 * @return  Battery voltage in mV
+	 */
+	public int getVoltage() {
+		return packets[PACKET_VOLTAGE];
+	}
+	
+	/**
+	 * @return  Battery current in mA, negative when discharging
+	 */
+	public int getCurrent() {
+		return packets[PACKET_CURRENT];
+	}
+	
+	/**
+	 * @return  Battery temperature in degrees Celsius
+	 */
+	public int getBatteryTemperature() {
+		return packets[PACKET_BATTERY_TEMPERATURE];
+	}
+	
+	/**
+	 * @return  Battery charge in mAh
+	 */
+	public int getBatteryCharge() {
+		return packets[PACKET_BATTERY_CHARGE];
+	}
+	
+	/**
+	 * @return  Estimated battery capacity in mAh
+	 */
+	public int getBatteryCapacity() {
+		return packets[PACKET_BATTERY_CAPACITY];
+	}
+	
+	public int getWallSignal() {
+		return packets[PACKET_WALL_SIGNAL];
+	}
+	
+	public int getLeftCliffSignal() {
+		return packets[PACKET_CLIFF_LEFT_SIGNAL];
+	}
+	
+	public int getLeftFrontCliffSignal() {
+		return packets[PACKET_CLIFF_FRONT_LEFT_SIGNAL];
+	}
+	
+	public int getRightFrontCliffSignal() {
+		return packets[PACKET_CLIFF_FRONT_RIGHT_SIGNAL];
+	}
+	
+	public int getRightCliffSignal() {
+		return packets[PACKET_CLIFF_RIGHT_SIGNAL];
+	}
+	
+	public int getCargoBayDigital() {
+		return packets[PACKET_CARGO_BAY_DIGITAL];
+	}
+	
+	public int getCargoBayAnalog() {
+		return packets[PACKET_CARGO_BAY_ANALOG];
+	}
+	
+	public int getChargingSources() {
+		return packets[PACKET_CHARGING_SOURCES];
+	}
+	
+	/**
+	 * @return  The OI mode, 0 off, 1 passive, 2 safe, 3 full
+	 */
+	public int getMode() {
+		return packets[PACKET_MODE];
+	}
+	
+	public int getSongNumber() {
+		return packets[PACKET_SONG_NUMBER];
+	}
+	
+	public boolean isSongPlaying() {
+		return packets[PACKET_SONG_PLAYING] != 0;
+	}
+	
+	public int getRequestedVelocity() {
+		return packets[PACKET_REQUESTED_VELOCITY];
+	}
+	
+	public int getRequestedRadius() {
+		return packets[PACKET_REQUESTED_RADIUS];
+	}
+	
+	public int getRequestedRightVelocity() {
+		return packets[PACKET_REQUESTED_RIGHT_VELOCITY];
+	}
+	
+	public int getRequestedLeftVelocity() {
+		return packets[PACKET_REQUESTED_LEFT_VELOCITY];
+	}
+}
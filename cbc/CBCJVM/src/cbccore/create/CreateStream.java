@@ -0,0 +1,295 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.Clock;
+
+/**
+ * Has the Create push a packet group every 15ms (Open Interface opcode 148),
+ * and decodes the stream on a background thread. Reading a sensor is then just
+ * a field access on the latest <code>CreateSensorFrame</code>, instead of a
+ * request and a blocking response over serial for every value.<p>
+ * 
+ * Frames are double buffered: each one is decoded into a back frame, which is
+ * then swapped in, so a frame is never seen half written and decoding never
+ * allocates. A reader that needs several values from exactly the same frame,
+ * and takes longer than a stream period to read them, should
+ * <code>copyTo</code> its own frame first.<p>
+ * 
+ * While streaming, nothing else may read from the Create's serial port, which
+ * includes the <code>get_create_*</code> natives of
+ * <code>cbccore.low.Create</code>. The getters of <code>Create</code> switch
+ * over to the stream by themselves.
+ *
+ * @author Benjamin Woodruff
+ * @see    Create#startStreaming
+ */
+
+public class CreateStream implements Runnable {
+	/** All sensor packets, 7 through 42: 52 bytes, fits in 15ms at 57600 */
+	public static final int DEFAULT_GROUP = 6;
+	
+	private static final int OP_STREAM = 148;
+	private static final int OP_PAUSE_RESUME_STREAM = 150;
+	private static final int HEADER = 19;
+	
+	private static final int WAIT_HEADER = 0;
+	private static final int WAIT_LENGTH = 1;
+	private static final int WAIT_BODY = 2;
+	private static final int WAIT_CHECKSUM = 3;
+	
+	private cbccore.low.Create lowCreate;
+	private int group;
+	private volatile CreateSensorFrame front = new CreateSensorFrame();
+	private CreateSensorFrame back = new CreateSensorFrame();
+	
+	// decoder state, only touched while holding decoding
+	private final Object decoding = new Object();
+	private byte[] body; // packet ID, then the group's data
+	private int state = WAIT_HEADER;
+	private int position = 0;
+	private int sum = 0;
+	
+	private volatile Thread thread = null;
+	private volatile long frames = 0;
+	private volatile long errors = 0;
+	private volatile FrameListener[] listeners = new FrameListener[0];
+	
+	/**
+	 * Called on the decoding thread with every new frame, right after it
+	 * becomes the latest one. Keep it quick: the next packet isn't decoded
+	 * until every listener has returned.
+	 *
+	 * @see CreateStream#addFrameListener
+	 */
+	public interface FrameListener {
+		/**
+		 * @param  frame  The new frame. Only valid until this returns, copy
+		 *                    anything needed for later.
+		 */
+		public void frameDecoded(CreateSensorFrame frame);
+	}
+	
+	/**
+	 * @param  lowCreate  Where to send commands and read the stream from
+	 * @param  group      The packet group to stream, 0 through 6
+	 */
+	public CreateStream(cbccore.low.Create lowCreate, int group) {
+		this.lowCreate = lowCreate;
+		this.group = group;
+		body = new byte[CreateSensorFrame.getGroupSize(group) + 1];
+	}
+	
+	/**
+	 * Asks the Create to start streaming, and starts the decoding thread. Does
+	 * nothing if already started.
+	 */
+	public synchronized void start() {
+		if(thread != null) {
+			return;
+		}
+		write(OP_STREAM, 1, group);
+		thread = new Thread(this, "CreateStream");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Asks the Create to stop streaming, and stops the decoding thread once
+	 * its current read returns.
+	 */
+	public synchronized void stop() {
+		if(thread == null) {
+			return;
+		}
+		write(OP_PAUSE_RESUME_STREAM, 0);
+		thread = null;
+	}
+	
+	public boolean isRunning() {
+		return thread != null;
+	}
+	
+	public int getGroup() {
+		return group;
+	}
+	
+	/**
+	 * Has a listener called with every frame from now on.
+	 */
+	public synchronized void addFrameListener(FrameListener listener) {
+		FrameListener[] next = new FrameListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, next, 0, listeners.length);
+		next[listeners.length] = listener;
+		listeners = next;
+	}
+	
+	public synchronized void removeFrameListener(FrameListener listener) {
+		for(int i = 0; i < listeners.length; ++i) {
+			if(listeners[i] == listener) {
+				FrameListener[] next = new FrameListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, next, 0, i);
+				System.arraycopy(listeners, i + 1, next, i, next.length - i);
+				listeners = next;
+				return;
+			}
+		}
+	}
+	
+	private void write(int... bytes) {
+		CommandBuffer buffer = new CommandBuffer(bytes.length);
+		for(int b : bytes) {
+			buffer.put(b);
+		}
+		buffer.writeTo(lowCreate);
+	}
+	
+	/**
+	 * Don't call this function, it is the body of the decoding thread.
+	 */
+	public void run() {
+		Thread self = Thread.currentThread();
+		// a buffer of its own, since a stopped thread may still be reading
+		byte[] chunk = new byte[body.length + 3]; // one whole packet per read
+		while(thread == self) {
+			int read = lowCreate.create_read_block(chunk, chunk.length);
+			if(read > 0) {
+				synchronized(decoding) {
+					if(thread != self) {
+						return; // restarted while this one was reading
+					}
+					feed(chunk, 0, Math.min(read, chunk.length));
+				}
+			} else {
+				// timed out, or not connected; don't spin
+				try {
+					Clock.get().sleepNanos(1000000L);
+				} catch(InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decodes raw bytes from the stream. Called by the decoding thread, but
+	 * anything else producing the stream (like a simulator) may call it
+	 * instead of starting the thread.
+	 */
+	void feed(byte[] data, int off, int len) {
+		for(int i = off; i < off + len; ++i) {
+			int b = data[i] & 0xFF;
+			switch(state) {
+				case WAIT_HEADER:
+					if(b == HEADER) {
+						sum = b;
+						state = WAIT_LENGTH;
+					}
+					break;
+				case WAIT_LENGTH:
+					if(b == body.length) {
+						sum += b;
+						position = 0;
+						state = WAIT_BODY;
+					} else {
+						// lost sync, this might be the real header though
+						++errors;
+						state = b == HEADER ? WAIT_LENGTH : WAIT_HEADER;
+						sum = HEADER;
+					}
+					break;
+				case WAIT_BODY:
+					body[position++] = (byte) b;
+					sum += b;
+					if(position == body.length) {
+						state = WAIT_CHECKSUM;
+					}
+					break;
+				case WAIT_CHECKSUM:
+					state = WAIT_HEADER;
+					if(((sum + b) & 0xFF) == 0 && body[0] == group) {
+						publish();
+					} else {
+						++errors;
+					}
+					break;
+			}
+		}
+	}
+	
+	private void publish() {
+		back.decode(front, body, 1, group);
+		CreateSensorFrame old = front;
+		front = back;
+		back = old;
+		++frames;
+		FrameListener[] current = listeners;
+		for(int i = 0; i < current.length; ++i) {
+			current[i].frameDecoded(front);
+		}
+	}
+	
+	/**
+	 * @return  The latest complete frame. Don't modify it.
+	 */
+	public CreateSensorFrame getFrame() {
+		return front;
+	}
+	
+	/**
+	 * Copies the latest frame, for a consistent view of it.
+	 */
+	public void copyTo(CreateSensorFrame frame) {
+		frame.copyFrom(front);
+	}
+	
+	/**
+	 * Blocks until a frame newer than the given one has been decoded. Waits
+	 * on the <code>Clock</code>, checking every millisecond, so a simulated
+	 * clock counts the caller as asleep and the timeout is in its time.
+	 *
+	 * @param  sequence       <code>getSequence()</code> of the last frame seen
+	 * @param  timeoutMillis  How long to wait at most
+	 * @return                The latest frame, which may still be the old one
+	 *                            if the wait timed out
+	 */
+	public CreateSensorFrame awaitFrame(long sequence, long timeoutMillis)
+		throws InterruptedException {
+		Clock clock = Clock.get();
+		long deadline = clock.millis() + timeoutMillis;
+		long left = timeoutMillis;
+		while(front.getSequence() <= sequence && left > 0) {
+			clock.sleep(Math.min(left, 1));
+			left = deadline - clock.millis();
+		}
+		return front;
+	}
+	
+	/**
+	 * @return  The number of frames decoded so far
+	 */
+	public long getFrameCount() {
+		return frames;
+	}
+	
+	/**
+	 * @return  The number of frames thrown away for a bad length or checksum
+	 */
+	public long getErrorCount() {
+		return errors;
+	}
+}
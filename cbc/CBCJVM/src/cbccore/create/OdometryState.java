@@ -0,0 +1,59 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+/**
+ * How far the Create has driven and turned. Reusable: pass one to
+ * <code>Create.getOdometry</code> as often as you like, it is just refilled.
+ *
+ * @author Benjamin Woodruff
+ * @see    Create#getOdometry(OdometryState)
+ */
+
+public class OdometryState {
+	private int distance = 0;
+	private int angle = 0;
+	private long timeNanos = 0;
+	
+	void set(int distance, int angle, long timeNanos) {
+		this.distance = distance;
+		this.angle = angle;
+		this.timeNanos = timeNanos;
+	}
+	
+	/**
+	 * @return  Distance driven in mm, as from <code>Create.getDistance</code>
+	 */
+	public int getDistance() {
+		return distance;
+	}
+	
+	/**
+	 * @return  Heading in degrees, 0 to 359, as from
+	 *              <code>Create.getAngle</code>
+	 */
+	public int getAngle() {
+		return angle;
+	}
+	
+	/**
+	 * @return  <code>Clock.get().nanoTime()</code> of the reading
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+}
@@ -1,11 +1,99 @@
 package cbccore.create;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 import cbccore.create.commands.Command;
 
 public class Script extends ArrayList<Command> {
 	private static final long serialVersionUID = 6974010113183225899L;
+	
+	private transient CompiledScript compiled = null;
+	// modCount alone misses set(), and can come back around after a clone
+	private transient boolean dirty = true;
+	private transient int compiledModCount = -1;
+	
 	public Script() {
 	}
+	
+	/**
+	 * Compiles this script so it can be stored on the Create. The result is
+	 * cached, and only compiled again if the script has changed since.
+	 * Changing a command in place, rather than through the list, isn't
+	 * noticed.
+	 * 
+	 * @return the encoded script
+	 * @throws ScriptException if the Create can't run this script
+	 * @see ScriptCompiler
+	 */
+	public synchronized CompiledScript compile() {
+		if(compiled == null || dirty || compiledModCount != modCount) {
+			compiled = ScriptCompiler.compile(this);
+			compiledModCount = modCount;
+			dirty = false;
+		}
+		return compiled;
+	}
+	
+	public Command set(int index, Command command) {
+		dirty = true;
+		return super.set(index, command);
+	}
+	
+	public boolean add(Command command) {
+		dirty = true;
+		return super.add(command);
+	}
+	
+	public void add(int index, Command command) {
+		dirty = true;
+		super.add(index, command);
+	}
+	
+	public boolean addAll(Collection<? extends Command> commands) {
+		dirty = true;
+		return super.addAll(commands);
+	}
+	
+	public boolean addAll(int index, Collection<? extends Command> commands) {
+		dirty = true;
+		return super.addAll(index, commands);
+	}
+	
+	public Command remove(int index) {
+		dirty = true;
+		return super.remove(index);
+	}
+	
+	public boolean remove(Object command) {
+		dirty = true;
+		return super.remove(command);
+	}
+	
+	public boolean removeAll(Collection<?> commands) {
+		dirty = true;
+		return super.removeAll(commands);
+	}
+	
+	public boolean retainAll(Collection<?> commands) {
+		dirty = true;
+		return super.retainAll(commands);
+	}
+	
+	protected void removeRange(int from, int to) {
+		dirty = true;
+		super.removeRange(from, to);
+	}
+	
+	public void clear() {
+		dirty = true;
+		super.clear();
+	}
+	
+	public Object clone() {
+		Script copy = (Script) super.clone();
+		copy.compiled = null;
+		copy.dirty = true;
+		return copy;
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.create.commands.Command;
+import cbccore.create.commands.WaitAngle;
+import cbccore.create.commands.WaitCCWAngle;
+import cbccore.create.commands.WaitCWAngle;
+import cbccore.create.commands.WaitDistance;
+import cbccore.create.commands.WaitEvent;
+import cbccore.create.commands.WaitTime;
+
+/**
+ * Checks that a <code>Script</code> is something the Create can store and
+ * play back on its own, and encodes it. The Create runs a stored script on its
+ * own controller, so the timing between commands (and of the waits) doesn't
+ * depend on the CBC or its JVM at all.
+ * <p>
+ * A script is rejected if:
+ * <ul>
+ * <li>it encodes to more than <code>MAX_LENGTH</code> bytes,</li>
+ * <li>a <code>WaitEvent</code> isn't one of events 1-22 or their inverses,</li>
+ * <li>a <code>WaitDistance</code> or <code>WaitAngle</code> doesn't fit in
+ *     16 signed bits, or a <code>WaitTime</code> in 8 unsigned bits,</li>
+ * <li>or it contains a command that can't be used inside a script: a reboot,
+ *     or one of the script commands themselves.</li>
+ * </ul>
+ *
+ * @author Benjamin Woodruff
+ * @see    Script#compile
+ */
+
+public final class ScriptCompiler {
+	/** Most bytes a script body can hold */
+	public static final int MAX_LENGTH = 100;
+	/** Number of events a <code>WaitEvent</code> can wait on */
+	public static final int EVENT_COUNT = 22;
+	
+	static final int OP_RESET = 7;
+	static final int OP_SCRIPT = 152;
+	static final int OP_PLAY_SCRIPT = 153;
+	static final int OP_SHOW_SCRIPT = 154;
+	
+	private ScriptCompiler() {}
+	
+	/**
+	 * Validates and encodes a script. Consider <code>Script.compile</code>
+	 * instead, which caches the result.
+	 *
+	 * @param  script           The commands to compile
+	 * @return                  The encoded script
+	 * @throws ScriptException  If the script is invalid
+	 */
+	public static CompiledScript compile(Script script) {
+		CommandBuffer buffer = new CommandBuffer(MAX_LENGTH);
+		int count = script.size();
+		for(int i = 0; i < count; ++i) {
+			Command c = script.get(i);
+			if(c == null) {
+				throw new ScriptException("null command", i);
+			}
+			validate(c, i);
+			int start = buffer.size();
+			buffer.add(c);
+			if(buffer.size() == start) {
+				continue;
+			}
+			int op = buffer.get(start);
+			if(op == OP_RESET || op == OP_SCRIPT || op == OP_PLAY_SCRIPT
+			   || op == OP_SHOW_SCRIPT) {
+				throw new ScriptException(
+					"opcode " + op + " can't be used in a script", i);
+			}
+		}
+		if(buffer.size() > MAX_LENGTH) {
+			throw new ScriptException("script is " + buffer.size()
+				+ " bytes, the Create only holds " + MAX_LENGTH, -1);
+		}
+		return new CompiledScript(buffer.toByteArray(), count);
+	}
+	
+	private static void validate(Command c, int i) {
+		if(c instanceof WaitEvent) {
+			int e = ((WaitEvent) c).getEvent();
+			if(!(e >= 1 && e <= EVENT_COUNT)
+			   && !(e >= 256 - EVENT_COUNT && e <= 255)) {
+				throw new ScriptException("no such event " + e, i);
+			}
+		} else if(c instanceof WaitDistance) {
+			checkShort(((WaitDistance) c).getDistance(), "distance", i);
+		} else if(c instanceof WaitAngle) {
+			checkShort(((WaitAngle) c).getAngle(), "angle", i);
+		} else if(c instanceof WaitCCWAngle) {
+			checkShort(((WaitCCWAngle) c).getAngle(), "angle", i);
+		} else if(c instanceof WaitCWAngle) {
+			checkShort(((WaitCWAngle) c).getAngle(), "angle", i);
+		} else if(c instanceof WaitTime) {
+			int ds = ((WaitTime) c).getTime();
+			if(ds < 0 || ds > 255) {
+				throw new ScriptException("time " + ds
+					+ " is out of range, 0-255 tenths of a second", i);
+			}
+		}
+	}
+	
+	private static void checkShort(int value, String what, int i) {
+		if(value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+			throw new ScriptException(what + " " + value
+				+ " doesn't fit in 16 bits", i);
+		}
+	}
+}
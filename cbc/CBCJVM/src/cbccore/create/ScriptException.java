@@ -0,0 +1,50 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+/**
+ * Thrown when a <code>Script</code> can't be compiled into something the
+ * Create would accept, such as when it's too long or waits on an event that
+ * doesn't exist.
+ *
+ * @author Benjamin Woodruff
+ * @see    ScriptCompiler
+ */
+
+public class ScriptException extends RuntimeException {
+	private static final long serialVersionUID = -2810493560726142917L;
+	
+	private int index;
+	
+	/**
+	 * @param  message  What is wrong
+	 * @param  index    The offending command's index in the script, or -1 if
+	 *                      it's the script as a whole
+	 */
+	public ScriptException(String message, int index) {
+		super(index < 0 ? message : "command " + index + ": " + message);
+		this.index = index;
+	}
+	
+	/**
+	 * @return  The offending command's index in the script, or -1 if it's the
+	 *              script as a whole
+	 */
+	public int getIndex() {
+		return index;
+	}
+}
@@ -1,7 +1,19 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
+/**
+ * A single Open Interface command, such as one step of a <code>Script</code>.
+ */
 public interface Command {
+	/**
+	 * Sends this command to the Create.
+	 */
 	public void add(Create create);
+	
+	/**
+	 * Serializes this command, opcode first, onto the end of a buffer.
+	 */
+	public void encode(CommandBuffer buffer);
 }
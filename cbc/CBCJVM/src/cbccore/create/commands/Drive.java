@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class Drive implements Command {
@@ -10,7 +11,9 @@ public class Drive implements Command {
 		this.radius = radius;
 	}
 	public void add(Create create) {
-		create.drive(speed, radius);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(137).putShort(speed).putShort(radius);
 	}
 }
-
@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class DriveStraight implements Command {
@@ -8,6 +9,9 @@ public class DriveStraight implements Command {
 		this.speed = speed;
 	}
 	public void add(Create create) {
-		create.driveStraight(speed);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(137).putShort(speed).putShort(32767); // straight
 	}
 }
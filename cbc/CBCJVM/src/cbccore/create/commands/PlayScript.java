@@ -0,0 +1,21 @@
+package cbccore.create.commands;
+
+import cbccore.create.CommandBuffer;
+import cbccore.create.Create;
+
+/**
+ * Runs the script stored on the Create (opcode 153).
+ */
+public class PlayScript implements Command {
+
+	@Override
+	public void add(Create create) {
+		create.send(this);
+	}
+	
+	@Override
+	public void encode(CommandBuffer buffer) {
+		buffer.put(153);
+	}
+
+}
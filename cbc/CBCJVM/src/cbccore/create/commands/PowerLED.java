@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class PowerLED implements Command {
@@ -11,7 +12,14 @@ public class PowerLED implements Command {
 	}
 	@Override
 	public void add(Create create) {
+		// the native keeps the play and advance LEDs the way they were
 		create.powerLed(color, brightness);
 	}
+	
+	@Override
+	public void encode(CommandBuffer buffer) {
+		// 139 sets all the LEDs at once, so play and advance are kept too
+		buffer.put(139).put(buffer.getLeds()).put(color).put(brightness);
+	}
 
 }
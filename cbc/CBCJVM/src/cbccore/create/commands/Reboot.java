@@ -1,12 +1,18 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class Reboot implements Command {
 
 	@Override
 	public void add(Create create) {
-		create.writeByte(7);
+		create.send(this);
+	}
+	
+	@Override
+	public void encode(CommandBuffer buffer) {
+		buffer.put(7);
 	}
 
 }
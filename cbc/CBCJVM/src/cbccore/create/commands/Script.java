@@ -1,13 +1,43 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
+import cbccore.create.CompiledScript;
 import cbccore.create.Create;
 
+/**
+ * Stores a script on the Create (opcode 152), replacing any stored before.
+ * Use <code>PlayScript</code> to run it.
+ */
 public class Script implements Command {
-
+	private CompiledScript script;
+	
+	/**
+	 * Clears the stored script.
+	 */
+	public Script() {
+		this((CompiledScript) null);
+	}
+	
+	public Script(cbccore.create.Script script) {
+		this(script.compile());
+	}
+	
+	public Script(CompiledScript script) {
+		this.script = script;
+	}
+	
 	@Override
 	public void add(Create create) {
-		create.writeByte(152);
-	    create.writeByte(5);
+		create.send(this);
+	}
+	
+	@Override
+	public void encode(CommandBuffer buffer) {
+		if(script == null) {
+			buffer.put(152).put(0);
+		} else {
+			script.encodeUpload(buffer);
+		}
 	}
 
 }
@@ -1,9 +1,13 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class Stop implements Command {
 	public void add(Create create) {
-		create.stop();
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(137).putShort(0).putShort(0);
 	}
 }
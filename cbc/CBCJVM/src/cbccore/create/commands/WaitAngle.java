@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class WaitAngle implements Command {
@@ -7,9 +8,14 @@ public class WaitAngle implements Command {
 	public WaitAngle(int deg) {
 		this.deg = deg;
 	}
+	/** @return the angle sent, in degrees, counter-clockwise positive */
+	public int getAngle() {
+		return deg;
+	}
 	public void add(Create create) {
-		create.writeByte(157);
-		create.writeByte((deg & 0x0000FF00) >> 8);
-		create.writeByte((deg & 0x000000FF) >> 0);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(157).putShort(deg);
 	}
 }
@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class WaitDistance implements Command {
@@ -7,9 +8,13 @@ public class WaitDistance implements Command {
 	public WaitDistance(int mm) {
 		this.mm = mm;
 	}
+	public int getDistance() {
+		return mm;
+	}
 	public void add(Create create) {
-		create.writeByte(156);
-		create.writeByte((mm & 0x0000FF00) >> 8);
-		create.writeByte((mm & 0x000000FF) >> 0);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(156).putShort(mm);
 	}
 }
@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class WaitEvent implements Command {
@@ -8,8 +9,14 @@ public class WaitEvent implements Command {
 		if(event < 0) event += 256;
 		this.event = event;
 	}
+	/** @return the event id, 1-22, or 234-255 for the inverse events */
+	public int getEvent() {
+		return event;
+	}
 	public void add(Create create) {
-		create.writeByte(158);
-		create.writeByte(event);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(158).put(event);
 	}
 }
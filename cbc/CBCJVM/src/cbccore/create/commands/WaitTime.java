@@ -1,5 +1,6 @@
 package cbccore.create.commands;
 
+import cbccore.create.CommandBuffer;
 import cbccore.create.Create;
 
 public class WaitTime implements Command {
@@ -7,8 +8,13 @@ public class WaitTime implements Command {
 	public WaitTime(int ds) {
 		this.ds = ds;
 	}
+	public int getTime() {
+		return ds;
+	}
 	public void add(Create create) {
-		create.writeByte((char)155);
-		create.writeByte((char)ds);
+		create.send(this);
+	}
+	public void encode(CommandBuffer buffer) {
+		buffer.put(155).put(ds);
 	}
 }
@@ -1,23 +1,63 @@
 package cbccore.display;
 
+import java.nio.ByteBuffer;
+
+/**
+ * A pixmap that remembers a clean copy of itself, such as a background, and
+ * can go back to it. Only what was drawn on since the last
+ * <code>clean</code> is restored.
+ */
 public class Autobuffer extends Pixmap {
 	private byte[] cleanBytes = null;
+	private DirtyRegion touched = null;
 	
 	public Autobuffer(int width, int height) {
 		super(width, height);
-		cleanBytes = new byte[getBufferSize() * 2];
+		init();
 	}
 	
 	public Autobuffer(int width, int height, Pixel p) {
 		super(width, height, p);
+		init();
+	}
+	
+	/**
+	 * Creates an autobuffer that draws into an existing buffer, such as a
+	 * memory mapped one. The buffer is not cleared.
+	 */
+	protected Autobuffer(int width, int height, ByteBuffer pixels) {
+		super(width, height, pixels);
+		init();
+	}
+	
+	private void init() {
 		cleanBytes = new byte[getBufferSize() * 2];
+		touched = new DirtyRegion(getWidth(), getHeight());
+		touched.markAll(); // until setClean, clean() restores everything
+		addDirtyRegion(touched);
 	}
 	
 	public void setClean() {
-		System.arraycopy(bytes, 0, cleanBytes, 0, getBufferSize() * 2);
+		if(bytes != null) {
+			System.arraycopy(bytes, 0, cleanBytes, 0, getBufferSize() * 2);
+		} else {
+			pixels.position(0);
+			pixels.get(cleanBytes);
+			pixels.clear();
+		}
+		touched.clear();
 	}
 	
 	public void clean() {
-		System.arraycopy(cleanBytes, 0, bytes, 0, getBufferSize() * 2);
+		int width = getWidth();
+		for(int y = touched.getTop(); y < touched.getBottom(); ++y) {
+			int start = touched.getStart(y);
+			int end = touched.getEnd(y);
+			if(start < end) {
+				fastCopy(cleanBytes, y * width + start, y * width + start,
+				         end - start);
+			}
+		}
+		touched.clear();
 	}
 }
@@ -0,0 +1,154 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.display;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which part of each scanline of a <code>Pixmap</code> has been
+ * drawn on, as one span per row. <code>Framebuffer.sync</code> uses this to
+ * write only what changed, and <code>Autobuffer.clean</code> to restore only
+ * what was touched. Marking is just a couple of compares per row, so it's cheap
+ * enough to do on every write.<p>
+ * 
+ * If you write into <code>Pixmap.getBuffer()</code> yourself, call
+ * <code>Pixmap.markDirty</code> afterwards or the change may never reach the
+ * screen.
+ *
+ * @author Benjamin Woodruff
+ * @see    Pixmap#getDirtyRegion
+ */
+
+public class DirtyRegion {
+	private int width;
+	private int height;
+	private int[] start; // first dirty x of each row, width if clean
+	private int[] end;   // one past the last dirty x of each row, 0 if clean
+	private int top;     // first row that may be dirty
+	private int bottom;  // one past the last row that may be dirty
+	
+	public DirtyRegion(int width, int height) {
+		this.width = width;
+		this.height = height;
+		start = new int[height];
+		end = new int[height];
+		clear();
+	}
+	
+	/**
+	 * Marks a rectangle as dirty. Must already be clipped to the pixmap.
+	 *
+	 * @param  x   Left edge
+	 * @param  y   Top edge
+	 * @param  x1  Right edge, exclusive
+	 * @param  y1  Bottom edge, exclusive
+	 */
+	public void mark(int x, int y, int x1, int y1) {
+		if(x >= x1 || y >= y1) {
+			return;
+		}
+		for(int iy = y; iy < y1; ++iy) {
+			if(x < start[iy]) start[iy] = x;
+			if(x1 > end[iy]) end[iy] = x1;
+		}
+		if(y < top) top = y;
+		if(y1 > bottom) bottom = y1;
+	}
+	
+	/**
+	 * Marks a single pixel as dirty.
+	 *
+	 * @param  i  Pixel index, y * width + x
+	 */
+	public void mark(int i) {
+		int y = i / width;
+		int x = i - y * width;
+		if(x < start[y]) start[y] = x;
+		if(x >= end[y]) end[y] = x + 1;
+		if(y < top) top = y;
+		if(y >= bottom) bottom = y + 1;
+	}
+	
+	/**
+	 * Marks a run of consecutive pixels, which may wrap onto following rows.
+	 *
+	 * @param  i       Index of the first pixel
+	 * @param  length  Number of pixels
+	 */
+	public void markRun(int i, int length) {
+		if(length <= 0) {
+			return;
+		}
+		int y = i / width;
+		int x = i - y * width;
+		int last = i + length - 1;
+		int y1 = last / width;
+		if(y == y1) {
+			mark(x, y, last - y1 * width + 1, y + 1);
+		} else {
+			mark(x, y, width, y + 1);
+			mark(0, y + 1, width, y1);
+			mark(0, y1, last - y1 * width + 1, y1 + 1);
+		}
+	}
+	
+	public void markAll() {
+		mark(0, 0, width, height);
+	}
+	
+	public void clear() {
+		Arrays.fill(start, width);
+		Arrays.fill(end, 0);
+		top = height;
+		bottom = 0;
+	}
+	
+	public boolean isEmpty() {
+		return top >= bottom;
+	}
+	
+	/**
+	 * @return  The first row that may be dirty
+	 */
+	public int getTop() {
+		return top;
+	}
+	
+	/**
+	 * @return  One past the last row that may be dirty
+	 */
+	public int getBottom() {
+		return bottom;
+	}
+	
+	/**
+	 * @param  y  A row
+	 * @return    The first dirty x in that row; not less than
+	 *                <code>getEnd(y)</code> if the row is clean
+	 */
+	public int getStart(int y) {
+		return start[y];
+	}
+	
+	/**
+	 * @param  y  A row
+	 * @return    One past the last dirty x in that row
+	 */
+	public int getEnd(int y) {
+		return end[y];
+	}
+}
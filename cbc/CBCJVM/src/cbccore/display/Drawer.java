@@ -24,13 +24,8 @@ public class Drawer {
 			x = x1;
 			x1 = t;
 		}
-		if(x1 >= pmap.getWidth()) x1 = pmap.getWidth() - 1;
-		if(x < 0) x = 0;
-		int start = (y * pmap.getWidth()) + x;
-		int end = (y * pmap.getWidth()) + x1;
-		for(int i = start; i < end; ++i) {
-			pmap.setPixel(i, p);
-		}
+		// fillRectangle clips, and writes whole rows at once
+		pmap.fillRectangle(x, y, x1, y + 1, p);
 	}
 	
 	public void drawVLine(int y, int y1, int x, Pixel p) {
@@ -41,11 +36,7 @@ public class Drawer {
 			y = y1;
 			y1 = t;
 		}
-		if(y1 >= pmap.getHeight()) y1 = pmap.getWidth() - 1;
-		if(y < 0) y = 0;
-		for(int i = y; i < y1; ++i) {
-			pmap.setPixel(i * pmap.getWidth() + x, p);
-		}
+		pmap.fillRectangle(x, y, x + 1, y1, p);
 	}
 	
 	public void drawLine(int x0, int y0, int x1, int y1, Pixel p) {
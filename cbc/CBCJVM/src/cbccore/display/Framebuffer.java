@@ -3,28 +3,147 @@ package cbccore.display;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The CBC's screen. The framebuffer device is memory mapped when possible,
+ * so updating the screen is a plain memory copy instead of a seek and a
+ * write system call. If mapping fails, it falls back to writing through a
+ * <code>RandomAccessFile</code>.<p>
+ * 
+ * By default drawing happens in a back buffer, and <code>sync</code> copies
+ * the parts that changed to the mapped screen in one go, like a page flip, so
+ * half drawn frames are never seen. When single buffered, drawing lands
+ * directly in mapped memory and shows up right away, and <code>sync</code>
+ * has nothing left to do.
+ */
 public class Framebuffer extends Autobuffer {
+	public static final int WIDTH = 320;
+	public static final int HEIGHT = 240;
+	
+	/**
+	 * Dirty spans closer together than this many bytes are written out in one
+	 * go, since rewriting a few unchanged bytes is cheaper than another seek
+	 * and write.
+	 */
+	public static final int MERGE_GAP = 64;
+	
 	private RandomAccessFile out = null;
+	private MappedByteBuffer front = null;
+	private boolean doubleBuffered = true;
 	
 	@SuppressWarnings("unused")
 	private File pipe = null;
 	
+	// Everything that has to be opened before the superclass is constructed
+	private static class Target {
+		RandomAccessFile out = null;
+		MappedByteBuffer front = null;
+		ByteBuffer back = null;
+		
+		Target(File pipe, boolean doubleBuffered) {
+			int size = WIDTH * HEIGHT * 2;
+			try {
+				out = new RandomAccessFile(pipe, "rw");
+				try {
+					front = out.getChannel().map(
+						FileChannel.MapMode.READ_WRITE, 0, size);
+				} catch (IOException e) {
+					System.err.println("Could not map " + pipe
+					                   + ", writing to it instead: " + e);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			back = (front != null && !doubleBuffered) ? front
+			                                          : ByteBuffer.allocate(size);
+		}
+	}
+	
 	public Framebuffer() {
-		super(320, 240);
+		super(WIDTH, HEIGHT);
 	}
 	
 	public Framebuffer(File pipe) {
-		super(320, 240);
-		try {
-			out = new RandomAccessFile(pipe, "rw");
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		this.pipe = pipe; 
+		this(pipe, true);
+	}
+	
+	/**
+	 * @param pipe The framebuffer device, /dev/fb0 on the CBC
+	 * @param doubleBuffered Whether to draw in a back buffer, as opposed to
+	 *                       straight to the screen
+	 */
+	public Framebuffer(File pipe, boolean doubleBuffered) {
+		this(new Target(pipe, doubleBuffered), doubleBuffered);
+		this.pipe = pipe;
+	}
+	
+	private Framebuffer(Target target, boolean doubleBuffered) {
+		super(WIDTH, HEIGHT, target.back);
+		out = target.out;
+		front = target.front;
+		this.doubleBuffered = doubleBuffered || front == null;
+		// start out black, like a freshly allocated pixmap
+		fillRectangle(0, 0, WIDTH, HEIGHT, 0);
 	}
 	
+	/**
+	 * @return Whether the device is memory mapped
+	 */
+	public boolean isMapped() {
+		return front != null;
+	}
+	
+	/**
+	 * @return Whether drawing happens in a back buffer until sync
+	 */
+	public boolean isDoubleBuffered() {
+		return doubleBuffered;
+	}
+	
+	/**
+	 * Puts whatever changed since the last sync on the screen, one scanline
+	 * span at a time.
+	 */
 	public void sync() throws IOException {
-		out.seek(0);
-		out.write(getBytes());
+		DirtyRegion dirty = getDirtyRegion();
+		if(out == null || !doubleBuffered) {
+			// nowhere to write to, or already on the screen
+			dirty.clear();
+			return;
+		}
+		int width = getWidth();
+		int runStart = -1; // byte offsets of the pending write
+		int runEnd = -1;
+		for(int y = dirty.getTop(); y < dirty.getBottom(); ++y) {
+			if(dirty.getStart(y) >= dirty.getEnd(y)) continue;
+			int start = (y * width + dirty.getStart(y)) * 2;
+			int end = (y * width + dirty.getEnd(y)) * 2;
+			if(runStart >= 0 && start - runEnd <= MERGE_GAP) {
+				runEnd = end;
+				continue;
+			}
+			if(runStart >= 0) {
+				write(runStart, runEnd);
+			}
+			runStart = start;
+			runEnd = end;
+		}
+		if(runStart >= 0) {
+			write(runStart, runEnd);
+		}
+		dirty.clear();
+	}
+	
+	private void write(int start, int end) throws IOException {
+		if(front != null) {
+			front.position(start);
+			front.put(bytes, start, end - start);
+		} else {
+			out.seek(start);
+			out.write(bytes, start, end - start);
+		}
 	}
 }
@@ -1,33 +1,161 @@
 package cbccore.display;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
 
+/**
+ * An image loaded from a file made by <code>cbctools.image.ConvertImage</code>.
+ * The pixels are kept as premultiplied RGB565, with an optional alpha plane,
+ * so that <code>ImagePixmap</code> can copy them in bulk.
+ * @see ImageFormat
+ */
 public class Image {
 	private int width;
-	private int[] bytes;
+	private int height;
+	private byte[] pixels;
+	private byte[] alpha = null;
+	
 	public Image(File image) throws IOException {
-		InputStream in = new FileInputStream(image);
-		DataInputStream dIn = new DataInputStream(in);
-		width = dIn.readInt();
-		bytes = new int[dIn.available()];
-		int i = 0;
-		while(dIn.available() > 0) {
-			bytes[i] = dIn.readInt();
-			++i;
+		FileInputStream in = new FileInputStream(image);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(ImageFormat.HEADER_SIZE);
+			// old files of a pixel or two can be shorter than the header
+			while(header.hasRemaining() && channel.read(header) >= 0) {}
+			if(header.position() < 4) {
+				throw new EOFException("image file is truncated");
+			}
+			if(header.position() == ImageFormat.HEADER_SIZE
+			   && header.getInt(0) == ImageFormat.MAGIC) {
+				readCompact(channel, header);
+			} else {
+				readLegacy(channel, header);
+			}
+		} finally {
+			in.close();
 		}
 	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer)
+		throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("image file is truncated");
+			}
+		}
+	}
+	
+	private void readCompact(FileChannel channel, ByteBuffer header)
+		throws IOException {
+		header.position(4);
+		int version = header.get() & 0xFF;
+		int flags = header.get() & 0xFF;
+		if(version != ImageFormat.VERSION) {
+			throw new IOException("unsupported image version " + version);
+		}
+		width = header.getShort() & 0xFFFF;
+		height = header.getShort() & 0xFFFF;
+		pixels = new byte[width * height * 2];
+		if((flags & ImageFormat.FLAG_ALPHA) != 0) {
+			alpha = new byte[width * height];
+		}
+		
+		InputStream rest;
+		if((flags & ImageFormat.FLAG_DEFLATE) != 0) {
+			rest = new InflaterInputStream(Channels.newInputStream(channel));
+			new DataInputStream(rest).readFully(pixels);
+			rest = new BufferedInputStream(rest);
+		} else {
+			// the whole body in one read, straight into the pixel array
+			readFully(channel, ByteBuffer.wrap(pixels));
+			if(alpha == null) {
+				return;
+			}
+			ByteBuffer runs = ByteBuffer.allocate(
+				(int) (channel.size() - channel.position()));
+			readFully(channel, runs);
+			rest = new ByteArrayInputStream(runs.array());
+		}
+		if(alpha != null) {
+			ImageFormat.readRuns(rest, alpha);
+		}
+	}
+	
+	// width as an int, then one ARGB int per pixel
+	private void readLegacy(FileChannel channel, ByteBuffer header)
+		throws IOException {
+		width = header.getInt(0);
+		long size = channel.size() - 4;
+		if(width <= 0 || size % 4 != 0 || (size / 4) % width != 0) {
+			throw new IOException("not an image file");
+		}
+		int count = (int) (size / 4);
+		height = count / width;
+		ByteBuffer body = ByteBuffer.allocate(count * 4);
+		channel.position(4);
+		readFully(channel, body);
+		body.flip();
+		pixels = new byte[count * 2];
+		for(int i = 0; i < count; ++i) {
+			int argb = body.getInt();
+			int c = ImageFormat.toRGB565(argb);
+			pixels[i * 2] = (byte) c;
+			pixels[i * 2 + 1] = (byte) (c >> 8);
+			if(argb >>> 24 != Pixmap.OPAQUE) {
+				if(alpha == null) {
+					alpha = new byte[count];
+					Arrays.fill(alpha, (byte) Pixmap.OPAQUE);
+				}
+				alpha[i] = (byte) (argb >>> 24);
+			}
+		}
+	}
+	
 	public int getWidth() {
 		return width;
 	}
+	
 	public int getHeight() {
-		return bytes.length / width;
+		return height;
 	}
+	
+	/**
+	 * @return width * height premultiplied RGB565 pixels, little endian
+	 */
+	public byte[] getRGB565() {
+		return pixels;
+	}
+	
+	/**
+	 * @return The alpha plane, or <code>null</code> if the image is opaque
+	 */
+	public byte[] getAlpha() {
+		return alpha;
+	}
+	
+	/**
+	 * Decodes the image into ARGB ints. Allocates a new array every time.
+	 * @return width * height ARGB pixels
+	 */
 	public int[] getBytes() {
-		return bytes;
+		int[] argb = new int[width * height];
+		for(int i = 0; i < argb.length; ++i) {
+			int c = (pixels[i * 2] & 0xFF) | (pixels[i * 2 + 1] & 0xFF) << 8;
+			int a = alpha == null ? Pixmap.OPAQUE : alpha[i] & 0xFF;
+			argb[i] = a << 24 | Pixel.getRed565(c) << 16
+			          | Pixel.getGreen565(c) << 8 | Pixel.getBlue565(c);
+		}
+		return argb;
 	}
 }
- 
\ No newline at end of file
@@ -0,0 +1,171 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.display;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The compact image format written by <code>cbctools.image.ConvertImage</code>
+ * and read by <code>Image</code>. Pixels are stored exactly the way
+ * <code>Pixmap</code> keeps them, so loading is a bulk copy:
+ * <pre>
+ * offset  size
+ *      0     4  magic, "CBCI"
+ *      4     1  version, currently 1
+ *      5     1  flags, FLAG_ALPHA | FLAG_DEFLATE
+ *      6     2  width, big endian
+ *      8     2  height, big endian
+ *     10        body, zlib compressed if FLAG_DEFLATE is set:
+ *               width * height RGB565 pixels, little endian, premultiplied
+ *               by alpha
+ *               if FLAG_ALPHA is set, the alpha plane as run length pairs of
+ *               (count 1-255, alpha)
+ * </pre>
+ * Files from older converters, which start with the width as an int and are
+ * followed by one ARGB int per pixel, don't start with the magic number and
+ * are still accepted by <code>Image</code>.
+ *
+ * @author Benjamin Woodruff
+ * @see    Image
+ */
+
+public final class ImageFormat {
+	/** "CBCI" */
+	public static final int MAGIC = 0x43424349;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 10;
+	/** An alpha plane follows the pixels */
+	public static final int FLAG_ALPHA = 1;
+	/** Everything after the header is zlib compressed */
+	public static final int FLAG_DEFLATE = 2;
+	
+	private ImageFormat() {}
+	
+	/**
+	 * Converts an ARGB pixel, as returned by <code>BufferedImage.getRGB</code>,
+	 * to a premultiplied RGB565 color.
+	 */
+	public static int toRGB565(int argb) {
+		int a = argb >>> 24;
+		int r = (argb >> 16) & 0xFF;
+		int g = (argb >> 8) & 0xFF;
+		int b = argb & 0xFF;
+		if(a < Pixmap.OPAQUE) {
+			r = r * a / 255;
+			g = g * a / 255;
+			b = b * a / 255;
+		}
+		return Pixel.toRGB565(r, g, b);
+	}
+	
+	/**
+	 * Writes an image.
+	 *
+	 * @param  out      Where to write it
+	 * @param  width    Width in pixels, at most 65535
+	 * @param  height   Height in pixels, at most 65535
+	 * @param  argb     width * height ARGB pixels, row after row
+	 * @param  deflate  Whether to compress the body
+	 */
+	public static void write(OutputStream out, int width, int height,
+	                         int[] argb, boolean deflate) throws IOException {
+		if(width > 0xFFFF || height > 0xFFFF || argb.length != width * height) {
+			throw new IllegalArgumentException("bad image dimensions");
+		}
+		boolean hasAlpha = false;
+		for(int i = 0; i < argb.length; ++i) {
+			if(argb[i] >>> 24 != Pixmap.OPAQUE) {
+				hasAlpha = true;
+				break;
+			}
+		}
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeByte(VERSION);
+		header.writeByte((hasAlpha ? FLAG_ALPHA : 0)
+		                 | (deflate ? FLAG_DEFLATE : 0));
+		header.writeShort(width);
+		header.writeShort(height);
+		header.flush();
+		
+		DeflaterOutputStream zip = null;
+		if(deflate) {
+			zip = new DeflaterOutputStream(out);
+			out = zip;
+		}
+		byte[] pixels = new byte[argb.length * 2];
+		for(int i = 0; i < argb.length; ++i) {
+			int c = toRGB565(argb[i]);
+			pixels[i * 2] = (byte) c;
+			pixels[i * 2 + 1] = (byte) (c >> 8);
+		}
+		out.write(pixels);
+		if(hasAlpha) {
+			writeRuns(out, argb);
+		}
+		if(zip != null) {
+			zip.finish();
+		}
+		out.flush();
+	}
+	
+	private static void writeRuns(OutputStream out, int[] argb)
+		throws IOException {
+		byte[] runs = new byte[argb.length * 2]; // worst case
+		int n = 0;
+		int i = 0;
+		while(i < argb.length) {
+			int a = argb[i] >>> 24;
+			int count = 1;
+			while(count < 255 && i + count < argb.length
+			      && argb[i + count] >>> 24 == a) {
+				++count;
+			}
+			runs[n++] = (byte) count;
+			runs[n++] = (byte) a;
+			i += count;
+		}
+		out.write(runs, 0, n);
+	}
+	
+	/**
+	 * Expands run length pairs into an alpha plane.
+	 *
+	 * @param  in     Stream positioned at the first pair
+	 * @param  alpha  Filled completely
+	 */
+	static void readRuns(InputStream in, byte[] alpha) throws IOException {
+		int i = 0;
+		while(i < alpha.length) {
+			int count = in.read();
+			int a = in.read();
+			if(count < 0 || a < 0) {
+				throw new IOException("alpha plane is truncated");
+			}
+			if(count == 0 || i + count > alpha.length) {
+				throw new IOException("alpha plane is corrupt");
+			}
+			for(int end = i + count; i < end; ++i) {
+				alpha[i] = (byte) a;
+			}
+		}
+	}
+}
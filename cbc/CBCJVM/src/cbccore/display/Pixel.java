@@ -116,19 +116,54 @@ public class Pixel {
 	}
 
 	public static Pixel fromRGB565(byte[] bytes) {
-		int b1 = (int) bytes[0];
-		int b2 = (int) bytes[1];
-		int b = b1 & 0xF8 >> 3;
-		int gh = b1 & 0x07 << 3;
-		int gl = b2 & 0xE0 >> 5;
-		int g = gh | gl;
-		int r = b2 & 0x1F;
-		r = lookup5[r];
-		g = lookup6[g];
-		b = lookup5[b];
-		SuperPixel.pixel.setRed(r);
-		SuperPixel.pixel.setGreen(g);
-		SuperPixel.pixel.setBlue(b);
+		int c = (bytes[0] & 0xFF) | ((bytes[1] & 0xFF) << 8);
+		SuperPixel.pixel.setRed(getRed565(c));
+		SuperPixel.pixel.setGreen(getGreen565(c));
+		SuperPixel.pixel.setBlue(getBlue565(c));
 		return SuperPixel.pixel;
 	}
+	
+	/**
+	 * Packs a color into a single RGB565 value, as used by the primitive
+	 * methods of <code>Pixmap</code>. Doesn't allocate anything.
+	 * @param r Red, 0-255
+	 * @param g Green, 0-255
+	 * @param b Blue, 0-255
+	 * @return The RGB565 color, 0-65535
+	 */
+	public static int toRGB565(int r, int g, int b) {
+		return ((r >> 3) & 0x1F) << 11 | ((g >> 2) & 0x3F) << 5
+		       | ((b >> 3) & 0x1F);
+	}
+	
+	/**
+	 * @param rgb565 A color from <code>toRGB565</code>
+	 * @return Its red channel, scaled back up to 0-255
+	 */
+	public static int getRed565(int rgb565) {
+		return lookup5[(rgb565 >> 11) & 0x1F];
+	}
+	
+	/**
+	 * @param rgb565 A color from <code>toRGB565</code>
+	 * @return Its green channel, scaled back up to 0-255
+	 */
+	public static int getGreen565(int rgb565) {
+		return lookup6[(rgb565 >> 5) & 0x3F];
+	}
+	
+	/**
+	 * @param rgb565 A color from <code>toRGB565</code>
+	 * @return Its blue channel, scaled back up to 0-255
+	 */
+	public static int getBlue565(int rgb565) {
+		return lookup5[rgb565 & 0x1F];
+	}
+	
+	/**
+	 * @return This pixel as a single RGB565 value, ignoring alpha
+	 */
+	public int toRGB565() {
+		return toRGB565(r, g, b);
+	}
 }
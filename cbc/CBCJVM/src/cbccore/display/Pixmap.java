@@ -1,13 +1,35 @@
 package cbccore.display;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
+/**
+ * A block of RGB565 pixels, laid out the way /dev/fb0 wants them: two bytes
+ * per pixel, little endian, row after row. Pixels are stored as primitives in
+ * a <code>ByteBuffer</code>, with an optional alpha plane that is only
+ * allocated once something non-opaque is drawn, so none of the drawing methods
+ * here create objects. <code>Pixel</code> is just a convenient view; the
+ * <code>int</code> overloads take colors made with
+ * <code>Pixel.toRGB565</code> and are the fast path.<p>
+ *
+ * Colors are stored premultiplied by their alpha, so <code>blit</code> and
+ * <code>blendPixel</code> only need one multiply per channel.
+ */
 public class Pixmap {
-	private Pixel[] buffer = null;
+	/** Alpha value of a fully opaque pixel */
+	public static final int OPAQUE = 255;
+	
+	protected ByteBuffer pixels = null;
+	/** Backing array of <code>pixels</code>, or <code>null</code> if direct */
 	protected byte[] bytes = null;
+	/** One byte per pixel, <code>null</code> until something isn't opaque */
 	protected byte[] alpha = null;
 	private int width = 0;
 	private int height = 0;
+	// regions[0] is what sync still has to write out, any others belong to
+	// subclasses
+	private DirtyRegion[] regions = null;
 	private static Pixel blank = new Pixel(0, 0, 0);
 	
 	public Pixmap(int width, int height) {
@@ -15,63 +37,294 @@ public class Pixmap {
 	}
 	
 	public Pixmap(int width, int height, Pixel fill) {
+		this(width, height, ByteBuffer.allocate(width * height * 2));
+		fill(fill);
+	}
+	
+	/**
+	 * Creates a pixmap that draws into an existing buffer, such as a direct or
+	 * memory mapped one. The buffer is not cleared.
+	 * @param width Width in pixels
+	 * @param height Height in pixels
+	 * @param pixels At least width * height * 2 bytes
+	 */
+	protected Pixmap(int width, int height, ByteBuffer pixels) {
+		if(pixels.capacity() < width * height * 2) {
+			throw new IllegalArgumentException("buffer is too small");
+		}
 		this.width = width;
 		this.height = height;
-		buffer = new Pixel[width * height];
-		bytes = new byte[width * height * 2];
-		alpha = new byte[width * height];
-		// Create initial buffer s
-		fill(fill);
+		this.pixels = pixels;
+		pixels.order(ByteOrder.LITTLE_ENDIAN);
+		if(pixels.hasArray() && pixels.arrayOffset() == 0) {
+			bytes = pixels.array();
+		}
+		regions = new DirtyRegion[] { new DirtyRegion(width, height) };
 	}
 	
-	private void __setPixel(int i, Pixel p) {
-		
-		Pixel n = new Pixel(p.getRed(), p.getGreen(), p.getBlue());
-		n.setRed((int) (((float)n.getRed() / 255) * p.getAlpha()));
-		n.setGreen((int) (((float)n.getGreen() / 255) * p.getAlpha()));
-		n.setBlue((int) (((float)n.getBlue() / 255) * p.getAlpha()));
-
-		__setBytes(i, n);
-		buffer[i] = n;
+	private void put(int i, int c) {
+		if(bytes != null) {
+			bytes[i << 1] = (byte) c;
+			bytes[(i << 1) + 1] = (byte) (c >> 8);
+		} else {
+			pixels.putShort(i << 1, (short) c);
+		}
 	}
 	
-	private void __setBytes(int i, Pixel p) {
-		byte[] pixel = p.getRGB565();
-		bytes[i * 2] = pixel[0];
-		bytes[i * 2 + 1] = pixel[1];
-		
-		alpha[i] = p.getAlphaByte();
+	private int get(int i) {
+		if(bytes != null) {
+			return (bytes[i << 1] & 0xFF)
+			       | ((bytes[(i << 1) + 1] & 0xFF) << 8);
+		}
+		return pixels.getShort(i << 1) & 0xFFFF;
+	}
+	
+	// Writes a pixel without marking it dirty
+	private void write(int i, int c, int a) {
+		if(a < OPAQUE) {
+			ensureAlpha();
+		}
+		put(i, c);
+		if(alpha != null) {
+			alpha[i] = (byte) a;
+		}
+	}
+	
+	// Blends over a pixel without marking it dirty
+	private void blendWrite(int i, int c, int a) {
+		if(a >= OPAQUE) {
+			write(i, c, OPAQUE);
+		} else if(a > 0) {
+			put(i, blend(c, get(i), a));
+			if(alpha != null) {
+				int da = alpha[i] & 0xFF;
+				alpha[i] = (byte) (a + da * (OPAQUE - a) / 255);
+			}
+		}
+	}
+	
+	private void markPixel(int i) {
+		for(int r = 0; r < regions.length; ++r) {
+			regions[r].mark(i);
+		}
+	}
+	
+	private void markRun(int i, int length) {
+		for(int r = 0; r < regions.length; ++r) {
+			regions[r].markRun(i, length);
+		}
+	}
+	
+	private void markRect(int x, int y, int x1, int y1) {
+		for(int r = 0; r < regions.length; ++r) {
+			regions[r].mark(x, y, x1, y1);
+		}
+	}
+	
+	/**
+	 * Marks a rectangle as changed, for when you have written into
+	 * getBuffer() directly. Everything else here marks what it draws on by
+	 * itself.
+	 * @param x Starting x
+	 * @param y Starting y
+	 * @param x1 Ending x, exclusive
+	 * @param y1 Ending y, exclusive
+	 */
+	public void markDirty(int x, int y, int x1, int y1) {
+		if(x < 0) x = 0;
+		if(y < 0) y = 0;
+		if(x1 > width) x1 = width;
+		if(y1 > height) y1 = height;
+		markRect(x, y, x1, y1);
+	}
+	
+	/**
+	 * Get the region changed since the last Framebuffer.sync()
+	 * @return dirty region
+	 */
+	public DirtyRegion getDirtyRegion() {
+		return regions[0];
+	}
+	
+	/**
+	 * Has every later write mark another region as well, so a subclass can
+	 * keep track of changes on its own schedule.
+	 * @param region Region the same size as this pixmap
+	 */
+	protected void addDirtyRegion(DirtyRegion region) {
+		DirtyRegion[] next = new DirtyRegion[regions.length + 1];
+		System.arraycopy(regions, 0, next, 0, regions.length);
+		next[regions.length] = region;
+		regions = next;
+	}
+	
+	private void ensureAlpha() {
+		if(alpha == null) {
+			alpha = new byte[getBufferSize()];
+			Arrays.fill(alpha, (byte) OPAQUE);
+		}
 	}
 	
+	/**
+	 * Converts a pixel to a premultiplied RGB565 color.
+	 */
+	private static int premultiply(Pixel p) {
+		int a = p.getAlpha();
+		if(a >= OPAQUE) {
+			return Pixel.toRGB565(p.getRed(), p.getGreen(), p.getBlue());
+		}
+		return Pixel.toRGB565(p.getRed() * a / 255, p.getGreen() * a / 255,
+		                      p.getBlue() * a / 255);
+	}
+	
+	/**
+	 * Composites a premultiplied color over another one.
+	 * @param src Premultiplied RGB565 color on top
+	 * @param dst RGB565 color underneath
+	 * @param a Alpha of src, 0-255
+	 * @return The RGB565 result
+	 */
+	public static int blend(int src, int dst, int a) {
+		int inv = OPAQUE - a;
+		inv += inv >> 7; // 0-256, so that 255 scales by exactly 1
+		int r = (src >> 11) + ((((dst >> 11) & 0x1F) * inv) >> 8);
+		int g = ((src >> 5) & 0x3F) + ((((dst >> 5) & 0x3F) * inv) >> 8);
+		int b = (src & 0x1F) + (((dst & 0x1F) * inv) >> 8);
+		if(r > 0x1F) r = 0x1F;
+		if(g > 0x3F) g = 0x3F;
+		if(b > 0x1F) b = 0x1F;
+		return (r << 11) | (g << 5) | b;
+	}
+	
+	/**
+	 * Replaces a pixel, including its alpha.
+	 * @param i Pixel index, y * getWidth() + x
+	 * @param p Pixel to copy
+	 */
 	public void setPixel(int i, Pixel p) {
-		__setPixel(i, p);
+		putPixel(i, premultiply(p), p.getAlpha());
+	}
+	
+	/**
+	 * Replaces a pixel with an opaque color.
+	 * @param i Pixel index, y * getWidth() + x
+	 * @param rgb565 Color from Pixel.toRGB565
+	 */
+	public void putPixel(int i, int rgb565) {
+		write(i, rgb565, OPAQUE);
+		markPixel(i);
+	}
+	
+	/**
+	 * Replaces a pixel, including its alpha.
+	 * @param i Pixel index, y * getWidth() + x
+	 * @param rgb565 Color from Pixel.toRGB565, already premultiplied by alpha
+	 * @param a Alpha, 0-255
+	 */
+	public void putPixel(int i, int rgb565, int a) {
+		write(i, rgb565, a);
+		markPixel(i);
+	}
+	
+	/**
+	 * Draws a translucent color over a pixel.
+	 * @param i Pixel index, y * getWidth() + x
+	 * @param rgb565 Color from Pixel.toRGB565, already premultiplied by alpha
+	 * @param a Alpha, 0-255
+	 */
+	public void blendPixel(int i, int rgb565, int a) {
+		if(a > 0) {
+			blendWrite(i, rgb565, a);
+			markPixel(i);
+		}
+	}
+	
+	/**
+	 * @param i Pixel index, y * getWidth() + x
+	 * @return The premultiplied RGB565 color of a pixel
+	 */
+	public int getRGB565(int i) {
+		return get(i);
+	}
+	
+	/**
+	 * @param i Pixel index, y * getWidth() + x
+	 * @return The alpha of a pixel, 0-255
+	 */
+	public int getAlpha(int i) {
+		return alpha == null ? OPAQUE : alpha[i] & 0xFF;
+	}
+	
+	/**
+	 * @return Whether any pixel has ever been drawn with less than full alpha
+	 */
+	public boolean hasAlpha() {
+		return alpha != null;
+	}
+	
+	/**
+	 * Decodes a pixel into a new <code>Pixel</code>. This allocates, so don't
+	 * use it to walk the whole pixmap.
+	 * @param i Pixel index, y * getWidth() + x
+	 * @return A copy of the pixel
+	 */
+	public Pixel getPixel(int i) {
+		int c = get(i);
+		Pixel p = new Pixel(Pixel.getRed565(c), Pixel.getGreen565(c),
+		                    Pixel.getBlue565(c));
+		p.setAlpha(getAlpha(i));
+		return p;
 	}
 	
 	public void fill(Pixel p) {
 		fillBlock(0, getBufferSize() * 2, p);
 	}
 	
+	/**
+	 * Fills a range of the byte buffer.
+	 * @param i1 Starting byte offset
+	 * @param i2 Ending byte offset
+	 * @param p Pixel to fill
+	 */
 	public void fillBlock(int i1, int i2, Pixel p) {
-		Arrays.fill(buffer, p);
-		byte[] pixel = p.getRGB565();
-		for(int i = i1; i < i2; i += 2) {
-			bytes[i] = pixel[0];
-			bytes[i + 1] = pixel[1];
+		int c = premultiply(p);
+		int a = p.getAlpha();
+		for(int i = i1 >> 1; i < i2 >> 1; ++i) {
+			write(i, c, a);
 		}
+		markRun(i1 >> 1, (i2 >> 1) - (i1 >> 1));
 	}
 	
 	public void fastFill(Pixel p) {
-		fastFillBlock(0, getBufferSize() * 2, p);
+		fill(p);
 	}
 	
 	public void fastFillBlock(int i1, int i2, Pixel p) {
-		for(int i = i1; i < i2; i += 2) {
-			__setBytes(i, p);
-		}
+		fillBlock(i1, i2, p);
 	}
 	
+	/**
+	 * Copies raw RGB565 bytes into the pixmap.
+	 * @param bytes Source bytes
+	 * @param foff Source offset, in pixels
+	 * @param offset Destination offset, in pixels
+	 * @param length Number of pixels
+	 */
 	public void fastCopy(byte[] bytes, int foff, int offset, int length) {
-		System.arraycopy(bytes, foff * 2, this.bytes, offset * 2, length * 2);
+		copyBytes(bytes, foff, offset, length);
+		markRun(offset, length);
+	}
+	
+	// fastCopy without marking
+	private void copyBytes(byte[] bytes, int foff, int offset, int length) {
+		if(this.bytes != null) {
+			System.arraycopy(bytes, foff * 2, this.bytes, offset * 2,
+			                 length * 2);
+		} else {
+			pixels.position(offset * 2);
+			pixels.put(bytes, foff * 2, length * 2);
+			pixels.clear();
+		}
 	}
 	
 	/**
@@ -83,46 +336,118 @@ public class Pixmap {
 	 * @param p Pixel to fill
 	 */
 	public void fillRectangle(int x, int y, int x1, int y1, Pixel p) {
-		for(int iy = y; iy < y1; ++iy) {
-			for(int ix = x; ix < x1; ++ix) {
-				__setPixel(width * iy + ix, p);
+		fillRectangle(x, y, x1, y1, premultiply(p), p.getAlpha());
+	}
+	
+	/**
+	 * Fills a rectangle with an opaque color. Clipped to the pixmap.
+	 * @param x Starting x
+	 * @param y Starting y
+	 * @param x1 Ending x, exclusive
+	 * @param y1 Ending y, exclusive
+	 * @param rgb565 Color from Pixel.toRGB565
+	 */
+	public void fillRectangle(int x, int y, int x1, int y1, int rgb565) {
+		fillRectangle(x, y, x1, y1, rgb565, OPAQUE);
+	}
+	
+	/**
+	 * Fills a rectangle, replacing what was there. Clipped to the pixmap.
+	 * @param x Starting x
+	 * @param y Starting y
+	 * @param x1 Ending x, exclusive
+	 * @param y1 Ending y, exclusive
+	 * @param rgb565 Color from Pixel.toRGB565, already premultiplied by alpha
+	 * @param a Alpha, 0-255
+	 */
+	public void fillRectangle(int x, int y, int x1, int y1, int rgb565, int a) {
+		if(x < 0) x = 0;
+		if(y < 0) y = 0;
+		if(x1 > width) x1 = width;
+		if(y1 > height) y1 = height;
+		if(x >= x1 || y >= y1) return;
+		
+		int first = width * y + x;
+		for(int i = first; i < first + x1 - x; ++i) {
+			write(i, rgb565, a);
+		}
+		// every other row is a copy of the first one
+		for(int iy = y + 1; iy < y1; ++iy) {
+			int row = width * iy + x;
+			if(bytes != null) {
+				System.arraycopy(bytes, first * 2, bytes, row * 2,
+				                 (x1 - x) * 2);
+			} else {
+				for(int i = 0; i < x1 - x; ++i) {
+					put(row + i, rgb565);
+				}
+			}
+			if(alpha != null) {
+				System.arraycopy(alpha, first, alpha, row, x1 - x);
 			}
 		}
+		markRect(x, y, x1, y1);
 	}
 	
+	/**
+	 * Draws another pixmap on top of this one. If it has an alpha plane, it
+	 * is blended over what is already here, otherwise it simply replaces it.
+	 * Clipped to this pixmap.
+	 * @param x Where the left edge of p goes
+	 * @param y Where the top edge of p goes
+	 * @param p Pixmap to draw
+	 */
 	public void blit(int x, int y, Pixmap p) {
-		Pixel[] pp = p.getPixels();
-		for(int iy = 0; iy < p.getHeight(); ++iy) {
-			for(int ix = 0; ix < p.getWidth(); ++ix) {
-				if(iy + y >= height) break;
-				if(ix + x >= width) break;
-				__setPixel((width * (iy + y)) + (ix + x), pp[p.getWidth() * iy + ix]);
+		if(p.alpha == null) {
+			copyRows(x, y, p);
+			return;
+		}
+		int sx = Math.max(0, -x);
+		int sy = Math.max(0, -y);
+		int ex = Math.min(p.getWidth(), width - x);
+		int ey = Math.min(p.getHeight(), height - y);
+		for(int iy = sy; iy < ey; ++iy) {
+			int s = p.getWidth() * iy;
+			int d = width * (iy + y) + x;
+			for(int ix = sx; ix < ex; ++ix) {
+				blendWrite(d + ix, p.get(s + ix), p.alpha[s + ix] & 0xFF);
 			}
 		}
+		markRect(x + sx, y + sy, x + ex, y + ey);
 	}
 	
 	/**
-	 * Does not update pixel array, only byte array.
-	 * @param x
-	 * @param y
-	 * @param p
+	 * Copies another pixmap's colors on top of this one, ignoring alpha.
+	 * Clipped to this pixmap.
+	 * @param x Where the left edge of p goes
+	 * @param y Where the top edge of p goes
+	 * @param p Pixmap to copy
 	 */
 	public void fastBlit(int x, int y, Pixmap p) {
-		int iy = 0;
-		if(y < 0) {
-			iy = -y;
-			y = 0;
-		}
-		if(x < 0) {
-			x = 0;
-		}
-		byte[] pp = p.getBytes();
-		for(; iy < p.getHeight(); ++iy) {
-				if(iy + y >= height) break;
-				int len = p.getWidth();
-				if(len > width) len = width;
-				fastCopy(pp, iy * p.getWidth(), width * (y + iy) + x, len);
+		copyRows(x, y, p);
+	}
+	
+	private void copyRows(int x, int y, Pixmap p) {
+		int sx = Math.max(0, -x);
+		int sy = Math.max(0, -y);
+		int len = Math.min(p.getWidth(), width - x) - sx;
+		int ey = Math.min(p.getHeight(), height - y);
+		if(len <= 0) return;
+		for(int iy = sy; iy < ey; ++iy) {
+			int s = p.getWidth() * iy + sx;
+			int d = width * (iy + y) + x + sx;
+			if(p.bytes != null) {
+				copyBytes(p.bytes, s, d, len);
+			} else {
+				for(int i = 0; i < len; ++i) {
+					put(d + i, p.get(s + i));
+				}
+			}
+			if(alpha != null) {
+				Arrays.fill(alpha, d, d + len, (byte) OPAQUE);
+			}
 		}
+		markRect(x + sx, y + sy, x + sx + len, y + ey);
 	}
 	
 	/**
@@ -150,18 +475,43 @@ public class Pixmap {
 	}
 	
 	/**
-	 * Get the byte buffer associated with this pixmap
-	 * @return Byte Array that is getBufferSize() * 2
+	 * Get the buffer holding this pixmap's RGB565 pixels
+	 * @return ByteBuffer of getBufferSize() * 2 bytes
+	 */
+	public ByteBuffer getBuffer() {
+		return pixels;
+	}
+	
+	/**
+	 * Get the pixels as a byte array. Only a pixmap backed by an array hands
+	 * out that array itself; one backed by a direct buffer, like the
+	 * framebuffer, hands out a copy, so write through getBuffer() instead.
+	 * @return Byte Array that is getBufferSize() * 2, to be treated as
+	 *         read-only
 	 */
 	public byte[] getBytes() {
+		if(bytes == null) {
+			// not backed by an array, hand out a copy
+			byte[] copy = new byte[getBufferSize() * 2];
+			for(int i = 0; i < copy.length; ++i) {
+				copy[i] = pixels.get(i);
+			}
+			return copy;
+		}
 		return bytes;
 	}
 	
 	/**
-	 * Get the pixel buffer associated with this pixmap
+	 * Decodes every pixel into a new array of <code>Pixel</code>s. Pixmaps
+	 * no longer keep one around, so this allocates a lot; prefer
+	 * <code>getRGB565</code>.
 	 * @return Pixel Array that is getBufferSize()
 	 */
 	public Pixel[] getPixels() {
+		Pixel[] buffer = new Pixel[getBufferSize()];
+		for(int i = 0; i < buffer.length; ++i) {
+			buffer[i] = getPixel(i);
+		}
 		return buffer;
 	}
 
@@ -1,35 +1,111 @@
 package cbccore.display;
 
-import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Graphics2D;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 import javax.swing.JPanel;
 
+/**
+ * Shows the framebuffer in the simulator window. Each sync converts the dirty
+ * spans of the RGB565 buffer to RGB888 with a lookup table, straight into the
+ * raster of a <code>BufferedImage</code>, which is then painted with a single
+ * <code>drawImage</code>.
+ */
 public class SimulatedFramebuffer extends Framebuffer {
-	private JPanel window = new JPanel();
-	private Graphics2D g = null;
+	/** RGB565 to RGB888, one entry for every possible pixel */
+	private static final int[] toRGB = new int[65536];
+	
+	static {
+		for(int c = 0; c < toRGB.length; ++c) {
+			toRGB[c] = Pixel.getRed565(c) << 16 | Pixel.getGreen565(c) << 8
+			           | Pixel.getBlue565(c);
+		}
+	}
+	
+	private BufferedImage image = null;
+	private int[] raster = null;
+	private JPanel window = new JPanel() {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			synchronized(image) {
+				g.drawImage(image, 0, 0, null);
+			}
+		}
+	};
+	
+	// frame rate, measured over windows of about a second
+	private long windowStart = System.nanoTime();
+	private int windowFrames = 0;
+	private volatile double fps = 0.;
 	
 	public SimulatedFramebuffer(String name) {
+		image = new BufferedImage(getWidth(), getHeight(),
+		                          BufferedImage.TYPE_INT_RGB);
+		raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 		window.setMinimumSize(new Dimension(320, 240));
 		window.setPreferredSize(new Dimension(320, 240));
 		window.setMaximumSize(new Dimension(320, 240));
 		window.setVisible(true);
 	}
 	
+	/**
+	 * @param rgb565 An RGB565 color
+	 * @return The same color as RGB888, as used by BufferedImage
+	 */
+	public static int toRGB(int rgb565) {
+		return toRGB[rgb565 & 0xFFFF];
+	}
+	
 	@Override
 	public void sync() {
-		if(!window.isVisible()) return;
-		g = (Graphics2D)window.getGraphics();
-		for(int iy = 0; iy < getHeight(); ++iy) {
-			for(int ix = 0; ix < getWidth(); ++ix) {
-				int i = iy * getWidth() + ix;
-				byte[] working = { bytes[i * 2], bytes[i * 2 + 1] };
-				Pixel p = Pixel.fromRGB565(working);
-				g.setColor(new Color(p.getRed(), p.getGreen(), p.getBlue()));
-				g.drawLine(ix, iy, ix, iy);
+		DirtyRegion dirty = getDirtyRegion();
+		int width = getWidth();
+		synchronized(image) {
+			for(int y = dirty.getTop(); y < dirty.getBottom(); ++y) {
+				int end = y * width + dirty.getEnd(y);
+				for(int i = y * width + dirty.getStart(y); i < end; ++i) {
+					raster[i] = toRGB[(bytes[i << 1] & 0xFF)
+					                  | (bytes[(i << 1) + 1] & 0xFF) << 8];
+				}
 			}
 		}
+		dirty.clear();
+		window.repaint();
+		countFrame();
+	}
+	
+	private synchronized void countFrame() {
+		++windowFrames;
+		long now = System.nanoTime();
+		if(now - windowStart >= 1000000000L) {
+			fps = windowFrames * 1e9 / (now - windowStart);
+			windowStart = now;
+			windowFrames = 0;
+		}
+	}
+	
+	/**
+	 * @return Syncs per second, averaged over the last second or so
+	 */
+	public synchronized double getFramesPerSecond() {
+		long elapsed = System.nanoTime() - windowStart;
+		if(elapsed >= 2000000000L) {
+			// nothing has been synced in a while
+			return windowFrames * 1e9 / elapsed;
+		}
+		return fps;
+	}
+	
+	/**
+	 * @return The image the screen is drawn from
+	 */
+	public BufferedImage getImage() {
+		return image;
 	}
 	
 	public JPanel getPanel() {
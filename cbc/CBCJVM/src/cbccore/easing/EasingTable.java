@@ -0,0 +1,141 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.easing;
+
+import java.util.HashMap;
+
+/**
+ * An <code>EasingEquation</code> sampled once up front, so that following it
+ * costs one array read rather than a call through the equation (and its
+ * <code>Math.pow</code>, for some equations). Meant for motion that is
+ * stepped every tick, like <code>Servo.setPositionTime</code>.
+ * <p>
+ * Besides the eased position, a table keeps the slope of the curve, which is
+ * the speed to move at relative to moving at a constant rate. A drive train
+ * following a curve sets its speed from the slope.
+ * <p>
+ * Tables are immutable, so one can be shared by any number of motions; use
+ * <code>get</code> to share one per equation and type.
+ *
+ * @author Benjamin Woodruff
+ * @see    EasingEquation
+ */
+
+public class EasingTable {
+	/** Samples in a table made by <code>get</code> */
+	public static final int DEFAULT_SIZE = 1024;
+	
+	private static HashMap<EasingEquation, EasingTable[]> shared =
+		new HashMap<EasingEquation, EasingTable[]>();
+	
+	private double[] positions;
+	private double[] slopes;
+	private double scale;
+	private double maxSlope = 0.;
+	
+	/**
+	 * @param  equation  The curve to sample
+	 * @param  type      <code>EasingEquation.EASE_IN</code>,
+	 *                       <code>EASE_OUT</code> or <code>EASE_IN_OUT</code>
+	 * @param  size      Number of samples, at least 2
+	 */
+	public EasingTable(EasingEquation equation, int type, int size) {
+		if(size < 2) {
+			throw new IllegalArgumentException("need at least 2 samples");
+		}
+		positions = new double[size];
+		slopes = new double[size];
+		scale = size - 1;
+		double h = .5 / scale;
+		for(int i = 0; i < size; ++i) {
+			double p = i / scale;
+			positions[i] = equation.ease(type, p);
+			// central differences, one sided at the ends
+			double lo = Math.max(0., p - h), hi = Math.min(1., p + h);
+			slopes[i] = (equation.ease(type, hi) - equation.ease(type, lo))
+			            / (hi - lo);
+			maxSlope = Math.max(maxSlope, Math.abs(slopes[i]));
+		}
+		// the ends are exact, so a finished motion lands on its target
+		positions[0] = 0.;
+		positions[size - 1] = 1.;
+	}
+	
+	/**
+	 * Gets a shared table, with <code>DEFAULT_SIZE</code> samples.
+	 *
+	 * @param  equation  The curve to sample
+	 * @param  type      <code>EasingEquation.EASE_IN</code>,
+	 *                       <code>EASE_OUT</code> or <code>EASE_IN_OUT</code>
+	 */
+	public static synchronized EasingTable get(EasingEquation equation,
+	                                           int type) {
+		if(type < EasingEquation.EASE_IN || type > EasingEquation.EASE_IN_OUT) {
+			throw new IllegalArgumentException("unknown easing type " + type);
+		}
+		EasingTable[] tables = shared.get(equation);
+		if(tables == null) {
+			tables = new EasingTable[EasingEquation.EASE_IN_OUT + 1];
+			shared.put(equation, tables);
+		}
+		if(tables[type] == null) {
+			tables[type] = new EasingTable(equation, type, DEFAULT_SIZE);
+		}
+		return tables[type];
+	}
+	
+	private int index(double percent) {
+		if(percent <= 0.) {
+			return 0;
+		}
+		if(percent >= 1.) {
+			return positions.length - 1;
+		}
+		return (int) (percent * scale + .5);
+	}
+	
+	/**
+	 * @param  percent  How far through the motion, in time, from 0 to 1
+	 * @return          How far through the motion, in position, from 0 to 1
+	 */
+	public double get(double percent) {
+		return positions[index(percent)];
+	}
+	
+	/**
+	 * @param  percent  How far through the motion, in time, from 0 to 1
+	 * @return          Speed relative to the average speed of the motion
+	 */
+	public double getSlope(double percent) {
+		return slopes[index(percent)];
+	}
+	
+	/**
+	 * @return  The highest slope anywhere on the curve; a motion peaks at
+	 *              this many times its average speed
+	 */
+	public double getMaxSlope() {
+		return maxSlope;
+	}
+	
+	/**
+	 * @return  The number of samples
+	 */
+	public int getSize() {
+		return positions.length;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+Copyright (c) 2001, 2010, Robert Penner (original version) and Benjamin Woodruff
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * Neither the name of the <organization> nor the
+      names of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL BENJAMIN WOODRUFF OR ROBERT PENNER BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package cbccore.easing;
+
+/**
+ * No easing at all: moves at a constant rate from start to end.
+ */
+public class LinearEasingEquation extends EasingEquation {
+	
+	private static LinearEasingEquation instance = new LinearEasingEquation();
+	
+	public LinearEasingEquation() {
+		
+	}
+	
+	public double easeIn(double percent) {
+		return percent;
+	}
+	public double easeOut(double percent) {
+		return percent;
+	}
+	public double easeInOut(double percent) {
+		return percent;
+	}
+	
+	public double easeInArea(double percent) {
+		return percent*percent*.5;
+	}
+	
+	public double easeOutArea(double percent) {
+		return percent*percent*.5;
+	}
+	
+	public static LinearEasingEquation getInstance() {
+		return instance;
+	}
+}
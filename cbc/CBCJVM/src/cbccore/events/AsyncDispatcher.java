@@ -0,0 +1,255 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers events on a small pool of worker threads instead of on the thread
+ * that emitted them. Each <code>EventType</code> gets its own bounded
+ * <code>EventQueue</code>; a queue with pending events is put on the ready list
+ * once, and whichever worker takes it delivers a batch of its events in order.
+ * This way one slow listener only holds up its own type (and one worker), and
+ * emitting is just a ring buffer insert.<p>
+ * The ready list has one lane per <code>EventPriority</code>. Workers take
+ * from the highest non-empty lane, and a batch from a lower lane is cut short
+ * as soon as something of higher priority is waiting.
+ *
+ * @author Benjamin Woodruff
+ * @see    EventManager#startAsync
+ */
+
+@SuppressWarnings("unchecked")
+final class AsyncDispatcher {
+	static final int DEFAULT_CAPACITY = 16;
+
+	private EventManager manager;
+	private ConcurrentHashMap<EventType, EventQueue> queues =
+		new ConcurrentHashMap<EventType, EventQueue>();
+	private Object lock = new Object(); // guards lanes
+	private ArrayDeque<EventQueue>[] lanes =
+		new ArrayDeque[EventPriority.values().length];
+	private Worker[] workers = null;
+	private volatile boolean running = false;
+	private volatile int defaultCapacity = DEFAULT_CAPACITY;
+	private volatile OverflowPolicy defaultPolicy = OverflowPolicy.DROP_OLDEST;
+
+	AsyncDispatcher(EventManager manager) {
+		this.manager = manager;
+		for(int i = 0; i < lanes.length; ++i) {
+			lanes[i] = new ArrayDeque<EventQueue>();
+		}
+	}
+
+	boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Starts the worker threads. Does nothing if they are already running.
+	 */
+	synchronized void start(int workerCount) {
+		if(workerCount < 1) {
+			throw new IllegalArgumentException(
+				"need at least one worker thread");
+		}
+		if(running) {
+			return;
+		}
+		workers = new Worker[workerCount];
+		for(int i = 0; i < workerCount; ++i) {
+			workers[i] = new Worker(i);
+		}
+		running = true;
+		for(Worker w : workers) {
+			w.start();
+		}
+	}
+
+	/**
+	 * Stops the worker threads once they have emptied the ready list, then
+	 * delivers anything emitted in the meantime on the calling thread.
+	 */
+	synchronized void stop() throws InterruptedException {
+		if(!running) {
+			return;
+		}
+		running = false;
+		synchronized(lock) {
+			lock.notifyAll();
+		}
+		for(Worker w : workers) {
+			if(w != Thread.currentThread()) {
+				w.join();
+			}
+		}
+		workers = null;
+		drainAll();
+	}
+
+	void setDefaults(int capacity, OverflowPolicy policy) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		defaultCapacity = capacity;
+		defaultPolicy = policy;
+	}
+
+	void configure(EventType type, int capacity, OverflowPolicy policy) {
+		getQueue(type).configure(capacity, policy);
+	}
+
+	void setPriority(EventType type, EventPriority priority) {
+		getQueue(type).setPriority(priority);
+	}
+
+	void setCoalescing(EventType type, boolean coalescing) {
+		getQueue(type).setCoalescing(coalescing);
+	}
+
+	long getCoalescedCount(EventType type) {
+		EventQueue q = queues.get(type);
+		return q == null ? 0 : q.getCoalescedCount();
+	}
+
+	long getDroppedCount(EventType type) {
+		EventQueue q = queues.get(type);
+		return q == null ? 0 : q.getDroppedCount();
+	}
+
+	/**
+	 * Queues an event for the workers. Only blocks if the type uses
+	 * <code>OverflowPolicy.BLOCK</code> and its queue is full.
+	 */
+	void post(Event e) {
+		EventQueue q = getQueue(e.getType());
+		boolean fromWorker = Thread.currentThread() instanceof Worker;
+		if(q.offer(e, !fromWorker)) {
+			makeReady(q);
+		}
+		if(!running) {
+			// raced with stop(), make sure this doesn't get stranded
+			drainAll();
+		}
+	}
+
+	void forget(EventType type) {
+		queues.remove(type);
+	}
+
+	private EventQueue getQueue(EventType type) {
+		EventQueue q = queues.get(type);
+		if(q == null) {
+			q = new EventQueue(defaultCapacity, defaultPolicy);
+			EventQueue old = queues.putIfAbsent(type, q);
+			if(old != null) {
+				q = old;
+			}
+		}
+		return q;
+	}
+
+	private void makeReady(EventQueue q) {
+		synchronized(lock) {
+			lanes[q.getPriority().ordinal()].addLast(q);
+			lock.notify();
+		}
+	}
+
+	// Must hold lock. Returns null if every lane is empty.
+	private EventQueue nextReady() {
+		for(int i = 0; i < lanes.length; ++i) {
+			if(!lanes[i].isEmpty()) {
+				return lanes[i].pollFirst();
+			}
+		}
+		return null;
+	}
+
+	private boolean isReadyAbove(int lane) {
+		synchronized(lock) {
+			for(int i = 0; i < lane; ++i) {
+				if(!lanes[i].isEmpty()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	// Delivers up to one queue-full of events, then gives the queue back
+	private void deliver(EventQueue q) {
+		int lane = q.getPriority().ordinal();
+		int batch = q.size();
+		Event e;
+		while(batch-- > 0 && (e = q.poll()) != null) {
+			try {
+				manager.dispatch(e);
+			} catch(RuntimeException ex) {
+				// there's no emitter left to throw to
+				ex.printStackTrace();
+			}
+			if(lane > 0 && isReadyAbove(lane)) {
+				break;
+			}
+		}
+		if(q.finishBatch()) {
+			makeReady(q);
+		}
+	}
+
+	private void drainAll() {
+		while(true) {
+			EventQueue q;
+			synchronized(lock) {
+				q = nextReady();
+			}
+			if(q == null) {
+				return;
+			}
+			deliver(q);
+		}
+	}
+
+	private class Worker extends Thread {
+		public Worker(int index) {
+			super("EventManager-worker-" + index);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				EventQueue q;
+				synchronized(lock) {
+					while((q = nextReady()) == null) {
+						if(!running) {
+							return;
+						}
+						try {
+							lock.wait();
+						} catch(InterruptedException ex) {
+							return;
+						}
+					}
+				}
+				deliver(q);
+			}
+		}
+	}
+}
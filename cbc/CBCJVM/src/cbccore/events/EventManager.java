@@ -14,31 +14,8 @@
  * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-/*
- * Current development status:
- *      Preparing to manage EventListeners that are added during the processing
- *        of events to a separate queue. This queue will be managed after the
- *        current list of listeners by copying it to a local variable, and
- *        clearing the queue. This is done in a loop until nothing is added to
- *        the queue. Before we can do this though, we must ensure the class is
- *        fully thread-safe for this type of operations. Each thread will have
- *        its own queue via java.lang.ThreadLocal . This may seem complicated,
- *        but it is a neccicary step. In the meantime, we must attempt to keep
- *        from breaking builds, as the Event system is a central part of our
- *        libraries
- */
-
 package cbccore.events;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.ArrayList;
-//import java.util.WeakHashMap
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Collections;
-//ThreadLocal could be useful too.
-
 /**
  * An event system based roughly on ActionScript's (Adobe Flash) and awt's event
  * dispatching system. (yes, you may now toss insults at me based on your hate
@@ -46,20 +23,23 @@ import java.util.Collections;
  * dispatches an event should subclass this. Generally maintains O(1) time
  * thanks to HashMaps! Yay HashMaps<p>
  * <a href="http://www.adobe.com/livedocs/flash/9.0/ActionScriptLangRefV3/flash/events/EventDispatcher.html">http://www.adobe.com/livedocs/flash/9.0/ActionScriptLangRefV3/flash/events/EventDispatcher.html</a>
- * <p>I'm hoping this class is thread safe, I syncronized a few things,
- * but no guarentees. Shouldn't matter on the CBC, as there is only one
- * core.
+ * <p>Listeners are kept in copy-on-write arrays (see
+ * <code>ListenerRegistry</code>), so emitting takes no locks and allocates
+ * nothing, and listeners may be connected or disconnected from any thread,
+ * even from inside an <code>IEventListener</code>, without disturbing an emit
+ * that is already in progress.
+ * <p>By default listeners run on the emitting thread. Call
+ * <code>startAsync</code> to have them run on a pool of worker threads
+ * instead, so that emitters (like <code>ButtonEmitter</code>) never wait on a
+ * slow listener.
  * @author Braden McDorman, Benjamin Woodruff
  */
 
 @SuppressWarnings("unused")
 public class EventManager {
-	private HashMap<EventType, Set<IEventListener>> events = new HashMap<EventType, Set<IEventListener>>();
+	private ListenerRegistry events = new ListenerRegistry();
 	private static EventManager instance = null;
-	private ThreadLocal<EventType> currentEventType;
-	private ConcurrentHashMap<EventType, Set<IEventListener>> queue; //can't be thread local- some threads may be using the same type
-	private ConcurrentHashMap<EventType, Integer> refcount; //keep references of num of objects
-	private ConcurrentHashMap<EventType, Integer> mergecount; //must wait for reaching 0 before continueing
+	private AsyncDispatcher dispatcher = new AsyncDispatcher(this);
 	private static long it = Long.MIN_VALUE; // making this static lets us have
 	                                         // universal identifiers, for any
 	                                         // EventManager
@@ -91,10 +71,8 @@ public class EventManager {
 	 * @see    #disconnect
 	 * @see    cbccore.events.Event#emit
 	 */
-	public synchronized void connect(EventType type, IEventListener listener) {
-		Set<IEventListener> listeners = getListeners(type);
-		listeners.add(listener);
-		events.put(type, listeners);
+	public void connect(EventType type, IEventListener listener) {
+		events.add(type, listener);
 	}
 	
 	/**
@@ -109,10 +87,125 @@ public class EventManager {
 	 * @see    #connect
 	 * @see    cbccore.events.Event#emit
 	 */
-	public synchronized void disconnect(EventType type,
-	                                    IEventListener listener) {
-		Set<IEventListener> listeners = getListeners(type);
-		listeners.remove(listener);
+	public void disconnect(EventType type, IEventListener listener) {
+		events.remove(type, listener);
+	}
+	
+	/**
+	 * Switches this EventManager to asynchronous dispatch: from now on
+	 * <code>Event.emit</code> only queues the event, and
+	 * <code>workers</code> background threads call the listeners. Events of
+	 * the same <code>EventType</code> are still delivered in order, one at a
+	 * time, but different types may be delivered concurrently.<p>
+	 * Each type gets a bounded queue of <code>capacity</code> events, and
+	 * <code>policy</code> decides what happens when it is full. These can be
+	 * changed per type with <code>setQueuePolicy</code>.
+	 * 
+	 * @param  workers   Number of worker threads, 1 or 2 is plenty on the CBC
+	 * @param  capacity  Default number of pending events per type
+	 * @param  policy    Default overflow policy
+	 * @see    #stopAsync
+	 * @see    #setQueuePolicy
+	 */
+	public void startAsync(int workers, int capacity, OverflowPolicy policy) {
+		dispatcher.setDefaults(capacity, policy);
+		dispatcher.start(workers);
+	}
+	
+	/**
+	 * Same as <code>startAsync(workers, 16, OverflowPolicy.DROP_OLDEST)</code>
+	 * 
+	 * @see    #startAsync(int, int, OverflowPolicy)
+	 */
+	public void startAsync(int workers) {
+		startAsync(workers, AsyncDispatcher.DEFAULT_CAPACITY,
+		           OverflowPolicy.DROP_OLDEST);
+	}
+	
+	/**
+	 * Goes back to calling listeners on the emitting thread. Waits for the
+	 * worker threads to deliver what is already queued.
+	 * 
+	 * @see    #startAsync(int, int, OverflowPolicy)
+	 */
+	public void stopAsync() throws InterruptedException {
+		dispatcher.stop();
+	}
+	
+	/**
+	 * @return  <code>true</code> if listeners are called from worker threads
+	 * @see     #startAsync(int, int, OverflowPolicy)
+	 */
+	public boolean isAsync() {
+		return dispatcher.isRunning();
+	}
+	
+	/**
+	 * Sets the queue size and overflow policy for one <code>EventType</code>,
+	 * overriding the defaults given to <code>startAsync</code>. Has no effect
+	 * until asynchronous dispatch is started.
+	 * 
+	 * @param  type      The <code>EventType</code> to configure
+	 * @param  capacity  Maximum number of pending events of this type
+	 * @param  policy    What to do when the queue is full
+	 * @see    #startAsync(int, int, OverflowPolicy)
+	 */
+	public void setQueuePolicy(EventType type, int capacity,
+	                           OverflowPolicy policy) {
+		dispatcher.configure(type, capacity, policy);
+	}
+	
+	/**
+	 * Sets the lane an <code>EventType</code> is dispatched in. When running
+	 * asynchronously, pending events of a higher priority are always
+	 * delivered before those of a lower one. Everything starts out as
+	 * <code>EventPriority.NORMAL</code>.
+	 * 
+	 * @param  type      The <code>EventType</code> to configure
+	 * @param  priority  The lane to put it in
+	 * @see    EventPriority
+	 */
+	public void setPriority(EventType type, EventPriority priority) {
+		dispatcher.setPriority(type, priority);
+	}
+	
+	/**
+	 * Turns coalescing on or off for an <code>EventType</code>. While an event
+	 * of a coalescing type is still waiting to be delivered, emitting another
+	 * one replaces it rather than queueing behind it, so listeners only ever
+	 * see the latest <code>Event.data</code>. Useful for sensor readings that
+	 * are emitted faster than they can be handled. Only affects asynchronous
+	 * dispatch.
+	 * 
+	 * @param  type        The <code>EventType</code> to configure
+	 * @param  coalescing  <code>true</code> to collapse pending events
+	 * @see    #getCoalescedCount
+	 */
+	public void setCoalescing(EventType type, boolean coalescing) {
+		dispatcher.setCoalescing(type, coalescing);
+	}
+	
+	/**
+	 * Gets how many events of a type were merged into a newer pending one,
+	 * either by <code>setCoalescing</code> or by
+	 * <code>OverflowPolicy.COALESCE</code>.
+	 * 
+	 * @param  type  The <code>EventType</code> to look up
+	 * @return       The number of coalesced events since the type was created
+	 */
+	public long getCoalescedCount(EventType type) {
+		return dispatcher.getCoalescedCount(type);
+	}
+	
+	/**
+	 * Gets how many events of a type were thrown away because their queue was
+	 * full.
+	 * 
+	 * @param  type  The <code>EventType</code> to look up
+	 * @return       The number of dropped events since the type was created
+	 */
+	public long getDroppedCount(EventType type) {
+		return dispatcher.getDroppedCount(type);
 	}
 	
 	/**
@@ -120,22 +213,21 @@ public class EventManager {
 	 */
 	@SuppressWarnings("unchecked")
 	public void __emit(Event e) { // This CANNOT be an EventType
-		Set<IEventListener> listeners = getListeners(e.getType());
-		for (IEventListener i : listeners) {
-			i.event(e);
+		if (dispatcher.isRunning()) {
+			dispatcher.post(e);
+		} else {
+			dispatch(e);
 		}
 	}
 	
-	// Gets all the listeners for a specific event type
-	private Set<IEventListener> getListeners(EventType type) {
-		Set<IEventListener> listeners = events.get(type);
-		if (listeners == null) {
-			listeners = Collections.synchronizedSet(
-				new HashSet<IEventListener>()
-			);
-			events.put(type, listeners);
+	// Calls the listeners for an event on the current thread
+	@SuppressWarnings("unchecked")
+	void dispatch(Event e) {
+		// a snapshot: listeners (dis)connected from here on see the next emit
+		IEventListener[] listeners = events.get(e.getType());
+		for (int i = 0; i < listeners.length; ++i) {
+			listeners[i].event(e);
 		}
-		return listeners;
 	}
 	
 	/**
@@ -170,6 +262,7 @@ public class EventManager {
 	 * Do not call this directly
 	 */
 	public void __dispose(EventType e) {
-		events.remove(e);
+		events.clear(e);
+		dispatcher.forget(e);
 	}
 }
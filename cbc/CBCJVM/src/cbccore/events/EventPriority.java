@@ -0,0 +1,38 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+/**
+ * The lane an <code>EventType</code> is dispatched in when an
+ * <code>EventManager</code> runs asynchronously. Worker threads always take
+ * pending events from the highest lane that has any, so a bump or cliff
+ * event does not wait behind a backlog of button presses.
+ *
+ * @author Benjamin Woodruff
+ * @see    EventManager#setPriority
+ */
+
+public enum EventPriority {
+	/** Safety events: bumps, cliffs, wheel drops */
+	HIGH,
+
+	/** The default for every <code>EventType</code> */
+	NORMAL,
+
+	/** User interface events, like the CBC's buttons */
+	LOW
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+/**
+ * A bounded ring buffer of pending events for a single <code>EventType</code>,
+ * used by <code>AsyncDispatcher</code>. Also tracks whether the queue is
+ * currently handed to a worker, so that events of one type are always
+ * delivered in order by one thread at a time, and counts the events lost to
+ * coalescing and overflow.
+ *
+ * @author Benjamin Woodruff
+ * @see    AsyncDispatcher
+ * @see    OverflowPolicy
+ */
+
+@SuppressWarnings("unchecked")
+final class EventQueue {
+	private Event[] ring;
+	private int head = 0; // index of the oldest pending event
+	private int size = 0;
+	private OverflowPolicy policy;
+	private boolean scheduled = false;
+	private int waiters = 0;
+	private volatile EventPriority priority = EventPriority.NORMAL;
+	private boolean coalescing = false;
+	private long coalesced = 0;
+	private long dropped = 0;
+
+	EventQueue(int capacity, OverflowPolicy policy) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		ring = new Event[capacity];
+		this.policy = policy;
+	}
+
+	/**
+	 * Changes the capacity and overflow policy. If the queue shrinks, the
+	 * oldest pending events are the ones thrown away.
+	 */
+	synchronized void configure(int capacity, OverflowPolicy policy) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		if(capacity != ring.length) {
+			Event[] next = new Event[capacity];
+			int keep = Math.min(size, capacity);
+			for(int i = 0; i < keep; ++i) {
+				next[i] = ring[(head + size - keep + i) % ring.length];
+			}
+			ring = next;
+			head = 0;
+			size = keep;
+		}
+		this.policy = policy;
+		notifyAll(); // blocked emitters may have room now
+	}
+
+	EventPriority getPriority() {
+		return priority;
+	}
+
+	void setPriority(EventPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * When coalescing, an event offered while another is pending replaces it
+	 * instead of queueing behind it, so at most one event is ever pending.
+	 */
+	synchronized void setCoalescing(boolean coalescing) {
+		this.coalescing = coalescing;
+	}
+
+	synchronized long getCoalescedCount() {
+		return coalesced;
+	}
+
+	synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Queues an event, applying the overflow policy if the queue is full.
+	 *
+	 * @param  e          The event to queue
+	 * @param  mayBlock   <code>false</code> turns <code>BLOCK</code> into
+	 *                        <code>DROP_OLDEST</code>
+	 * @return            <code>true</code> if the queue was idle and now has
+	 *                        to be handed to a worker by the caller
+	 */
+	synchronized boolean offer(Event e, boolean mayBlock) {
+		if(coalescing && size > 0) {
+			ring[(head + size - 1) % ring.length] = e;
+			++coalesced;
+			return false; // already scheduled, since something was pending
+		}
+		if(size == ring.length) {
+			if(policy == OverflowPolicy.BLOCK && mayBlock) {
+				++waiters;
+				try {
+					while(size == ring.length) {
+						wait();
+					}
+				} catch(InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					++dropped;
+					return false; // give up on this event, keep the flag
+				} finally {
+					--waiters;
+				}
+			} else if(policy == OverflowPolicy.COALESCE) {
+				ring[(head + size - 1) % ring.length] = e;
+				++coalesced;
+				return schedule();
+			} else {
+				ring[head] = null;
+				head = (head + 1) % ring.length;
+				--size;
+				++dropped;
+			}
+		}
+		ring[(head + size) % ring.length] = e;
+		++size;
+		return schedule();
+	}
+
+	// marks the queue as handed to a worker, if it isn't already
+	private boolean schedule() {
+		if(scheduled) {
+			return false;
+		}
+		scheduled = true;
+		return true;
+	}
+
+	/**
+	 * Removes the oldest pending event.
+	 *
+	 * @return  The event, or <code>null</code> if nothing is pending
+	 */
+	synchronized Event poll() {
+		if(size == 0) {
+			return null;
+		}
+		Event e = ring[head];
+		ring[head] = null;
+		head = (head + 1) % ring.length;
+		--size;
+		if(waiters > 0) {
+			notifyAll();
+		}
+		return e;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Called by a worker when it is done with a batch.
+	 *
+	 * @return  <code>true</code> if events are still pending and the worker
+	 *              must hand the queue back to the dispatcher
+	 */
+	synchronized boolean finishBatch() {
+		if(size > 0) {
+			return true;
+		}
+		scheduled = false;
+		return false;
+	}
+}
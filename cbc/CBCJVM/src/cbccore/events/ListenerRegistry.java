@@ -0,0 +1,129 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps each <code>EventType</code> to an immutable array of listeners. Writers
+ * (<code>add</code>/<code>remove</code>) build a new array and swap it in with
+ * a compare-and-set, so readers never lock and never see a half-modified list.
+ * This makes <code>get</code> safe to call from any emitter thread, while
+ * listeners are being connected or disconnected from another one.
+ * <p>
+ * Connecting and disconnecting is O(n) in the number of listeners on that
+ * type, which is fine since it happens far less often than emitting.
+ *
+ * @author Benjamin Woodruff
+ * @see    EventManager
+ */
+
+final class ListenerRegistry {
+	/** Shared by every type with no listeners, so lookups never allocate */
+	static final IEventListener[] EMPTY = new IEventListener[0];
+
+	private ConcurrentHashMap<EventType, IEventListener[]> listeners =
+		new ConcurrentHashMap<EventType, IEventListener[]>();
+
+	/**
+	 * Gets the current listener snapshot for a type. The returned array must
+	 * not be modified.
+	 *
+	 * @param  type  The <code>EventType</code> to look up
+	 * @return       The listeners, or an empty array if there are none
+	 */
+	IEventListener[] get(EventType type) {
+		IEventListener[] current = listeners.get(type);
+		return current == null ? EMPTY : current;
+	}
+
+	/**
+	 * Adds a listener to a type, unless it is already connected to it.
+	 *
+	 * @return  <code>true</code> if the listener was added
+	 */
+	boolean add(EventType type, IEventListener listener) {
+		while(true) {
+			IEventListener[] current = listeners.get(type);
+			if(current == null) {
+				if(listeners.putIfAbsent(type,
+				                         new IEventListener[] {listener})
+				   == null) {
+					return true;
+				}
+				continue;
+			}
+			if(indexOf(current, listener) >= 0) {
+				return false;
+			}
+			IEventListener[] next = new IEventListener[current.length + 1];
+			System.arraycopy(current, 0, next, 0, current.length);
+			next[current.length] = listener;
+			if(listeners.replace(type, current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Removes a listener from a type.
+	 *
+	 * @return  <code>true</code> if the listener was connected to the type
+	 */
+	boolean remove(EventType type, IEventListener listener) {
+		while(true) {
+			IEventListener[] current = listeners.get(type);
+			if(current == null) {
+				return false;
+			}
+			int index = indexOf(current, listener);
+			if(index < 0) {
+				return false;
+			}
+			if(current.length == 1) {
+				if(listeners.remove(type, current)) {
+					return true;
+				}
+				continue;
+			}
+			IEventListener[] next = new IEventListener[current.length - 1];
+			System.arraycopy(current, 0, next, 0, index);
+			System.arraycopy(current, index + 1, next, index,
+			                 next.length - index);
+			if(listeners.replace(type, current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Drops every listener connected to a type.
+	 */
+	void clear(EventType type) {
+		listeners.remove(type);
+	}
+
+	private static int indexOf(IEventListener[] array,
+	                           IEventListener listener) {
+		for(int i = 0; i < array.length; ++i) {
+			if(array[i].equals(listener)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
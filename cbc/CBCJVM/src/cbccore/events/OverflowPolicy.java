@@ -0,0 +1,48 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+/**
+ * What an asynchronous <code>EventManager</code> does when an event is emitted
+ * while the queue for its <code>EventType</code> is already full.
+ *
+ * @author Benjamin Woodruff
+ * @see    EventManager#startAsync
+ * @see    EventManager#setQueuePolicy
+ */
+
+public enum OverflowPolicy {
+	/**
+	 * Throw away the oldest pending event to make room. Good for streams of
+	 * readings where only recent ones matter.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Replace the newest pending event with the one being emitted, so a burst
+	 * collapses into its latest value while older, distinct events survive.
+	 */
+	COALESCE,
+
+	/**
+	 * Make the emitting thread wait until a worker frees a slot. Nothing is
+	 * lost, but a slow listener can stall the emitter again. If the emitter
+	 * is itself a worker thread this behaves like <code>DROP_OLDEST</code>,
+	 * since waiting there could deadlock the dispatcher.
+	 */
+	BLOCK
+}
@@ -394,6 +394,19 @@ public class Create {
 	 */
 	public native void create_write_byte(char write_byte);
 	
+	/**
+	 * Writes several bytes to the Create with a single native call, instead
+	 * of one <code>create_write_byte</code> call per byte. Only the low 8 bits
+	 * of each byte are sent.
+	 * 
+	 * @param  data  the bytes to write
+	 * @param  off   where in <code>data</code> to start
+	 * @param  len   how many bytes to write
+	 * @return       the number of bytes written, or -1 on error
+	 * @see          cbccore.create.CommandBuffer
+	 */
+	public native int create_write_block(byte[] data, int off, int len);
+	
 	
 	
 	
@@ -55,4 +55,6 @@ public class Motor {
 	public native void bk(int motor); /* motor (0 to 3) at full reverse */
 	public native void off(int motor); /* turns motor (0 to 3) off */
 	public native void ao(); /* turns all motors off */
+	public native void mav_group(int mask, int[] velocities); /* PID control of each motor (0 to 3) set in mask at velocities[motor], in one call */
+	public native void get_motor_position_counters(int[] counters); /* fills counters[0..4) with the position of every motor, in one call */
 }
@@ -23,6 +23,15 @@ package cbccore.low;
  */
 
 public class Sensor {
+	/** Index of digital port 8 in a snapshot frame, ports 8-15 follow */
+	public static final int SNAPSHOT_DIGITAL = 0;
+	/** Index of analog port 0 in a snapshot frame, ports 0-7 follow */
+	public static final int SNAPSHOT_ANALOG10 = 8;
+	/** Index of accel_x in a snapshot frame, followed by accel_y, accel_z */
+	public static final int SNAPSHOT_ACCEL = 16;
+	/** Number of ints sensor_snapshot fills */
+	public static final int SNAPSHOT_SIZE = 19;
+	
 	public native int digital(int port); /* returns a 1 or 0 reflecting the state of port (0 to 7) */     
 	public native int set_digital_output_value(int port, int value); /*sets port (0 to 7)to value (0 or 1) */
 	public native void set_analog_floats(int mask);
@@ -34,4 +43,5 @@ public class Sensor {
 	public native int accel_z(); /* returns z acceleration (-2047 to 2047, +/- 1.5 gee) */                  
 	public native int sonar(int port); /* returns range in mm for sonar plugged into port (13-15)*/          
 	public native int sonar_inches(int port); /* returns range in whole inches for sonar plugged into port (13-15)*/
+	public native void sensor_snapshot(int[] frame); /* fills frame[0..SNAPSHOT_SIZE) with digital 8-15, analog10 0-7 and accel x/y/z in one call */
 }
@@ -134,6 +134,18 @@ public class Simulator {
 		return create;
 	}
 	
+	/**
+	 * Ends the simulated program. By default this is just
+	 * <code>System.exit</code>, but a simulator running more than one
+	 * program in the same JVM should override it to end only its own.
+	 *
+	 * @param  status  The exit status
+	 * @see    cbccore.Device#exit
+	 */
+	public void exit(int status) {
+		System.exit(status);
+	}
+	
 	// TODO: this method should be overhauled to make things more simpler
 	public void addFramebuffers() {
 		// overrideable stub
@@ -0,0 +1,239 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.util.ArrayList;
+
+/**
+ * The world a <code>SimulatedCreate</code> drives around in: a rectangle with
+ * a wall all the way around, plus any walls, tape and drop-offs you add.
+ * Coordinates are in millimeters, with (0, 0) in one corner of the board, x
+ * along its width and y along its height.
+ * <p>
+ * Walls are line segments the Create bumps into. Floor regions are rectangles
+ * that the cliff sensors read a different signal from, like black tape on the
+ * white board. A cliff is a floor region the Create's cliff sensors see as a
+ * drop-off. Regions added later are on top of earlier ones.
+ *
+ * @author Benjamin Woodruff
+ * @see    CreateFirmware
+ */
+
+public class Arena {
+	/** Width of a Botball board, 8 feet, in mm */
+	public static final double BOTBALL_WIDTH = 2438.4;
+	/** Height of a Botball board, 4 feet, in mm */
+	public static final double BOTBALL_HEIGHT = 1219.2;
+	
+	/** Cliff signal of the white board */
+	public static final int WHITE_SIGNAL = 1200;
+	/** Cliff signal of black electrical tape */
+	public static final int TAPE_SIGNAL = 200;
+	
+	private double width;
+	private double height;
+	private ArrayList<double[]> walls = new ArrayList<double[]>();
+	private ArrayList<double[]> regions = new ArrayList<double[]>();
+	private int floorSignal = WHITE_SIGNAL;
+	
+	/**
+	 * An empty Botball board.
+	 */
+	public Arena() {
+		this(BOTBALL_WIDTH, BOTBALL_HEIGHT);
+	}
+	
+	/**
+	 * An empty, walled in, rectangle.
+	 *
+	 * @param  width   Size along x, in mm
+	 * @param  height  Size along y, in mm
+	 */
+	public Arena(double width, double height) {
+		this.width = width;
+		this.height = height;
+		addBox(0, 0, width, height);
+	}
+	
+	/**
+	 * Adds a wall between two points.
+	 *
+	 * @return  this, so calls can be chained
+	 */
+	public synchronized Arena addWall(double x0, double y0, double x1,
+	                                  double y1) {
+		walls.add(new double[] {x0, y0, x1, y1});
+		return this;
+	}
+	
+	/**
+	 * Adds a rectangle of four walls, like a block on the board.
+	 *
+	 * @return  this, so calls can be chained
+	 */
+	public Arena addBox(double x, double y, double w, double h) {
+		addWall(x, y, x + w, y);
+		addWall(x + w, y, x + w, y + h);
+		addWall(x + w, y + h, x, y + h);
+		return addWall(x, y + h, x, y);
+	}
+	
+	/**
+	 * Adds a rectangle of floor with a different cliff signal.
+	 *
+	 * @param  signal  What the cliff sensors read over it, see
+	 *                     <code>TAPE_SIGNAL</code>
+	 * @return         this, so calls can be chained
+	 */
+	public synchronized Arena addFloor(double x, double y, double w, double h,
+	                                   int signal) {
+		regions.add(new double[] {x, y, x + w, y + h, signal, 0});
+		return this;
+	}
+	
+	/**
+	 * Adds a line of black tape, <code>thickness</code> wide, centered on
+	 * the line between two points. The line has to be horizontal or vertical.
+	 *
+	 * @return  this, so calls can be chained
+	 */
+	public Arena addTape(double x0, double y0, double x1, double y1,
+	                     double thickness) {
+		double t = thickness / 2;
+		return addFloor(Math.min(x0, x1) - t, Math.min(y0, y1) - t,
+		                Math.abs(x1 - x0) + thickness,
+		                Math.abs(y1 - y0) + thickness, TAPE_SIGNAL);
+	}
+	
+	/**
+	 * Adds a rectangular drop-off, which sets off the cliff sensors.
+	 *
+	 * @return  this, so calls can be chained
+	 */
+	public synchronized Arena addCliff(double x, double y, double w,
+	                                   double h) {
+		regions.add(new double[] {x, y, x + w, y + h, 0, 1});
+		return this;
+	}
+	
+	/**
+	 * Sets the cliff signal of the floor outside of any region.
+	 */
+	public synchronized void setFloorSignal(int signal) {
+		floorSignal = signal;
+	}
+	
+	public double getWidth() {
+		return width;
+	}
+	
+	public double getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return  What a cliff sensor over the given point reads
+	 */
+	public synchronized int getCliffSignal(double x, double y) {
+		double[] r = regionAt(x, y);
+		return r == null ? floorSignal : (int) r[4];
+	}
+	
+	/**
+	 * @return  <code>true</code> if a cliff sensor over the given point sees
+	 *              a drop-off, which includes being off the board
+	 */
+	public synchronized boolean isCliff(double x, double y) {
+		if(x < 0 || y < 0 || x > width || y > height) {
+			return true;
+		}
+		double[] r = regionAt(x, y);
+		return r != null && r[5] != 0;
+	}
+	
+	// the topmost region containing a point
+	private double[] regionAt(double x, double y) {
+		for(int i = regions.size() - 1; i >= 0; --i) {
+			double[] r = regions.get(i);
+			if(x >= r[0] && x <= r[2] && y >= r[1] && y <= r[3]) {
+				return r;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds the point on any wall closest to a given point.
+	 *
+	 * @param  x        Where to measure from
+	 * @param  y        Where to measure from
+	 * @param  closest  If not <code>null</code>, gets the closest point's x
+	 *                      and y
+	 * @return          The distance to it, or infinity if there are no walls
+	 */
+	public synchronized double getWallDistance(double x, double y,
+	                                           double[] closest) {
+		double best = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < walls.size(); ++i) {
+			double[] w = walls.get(i);
+			double dx = w[2] - w[0], dy = w[3] - w[1];
+			double lengthSq = dx * dx + dy * dy;
+			double t = lengthSq == 0 ? 0
+				: ((x - w[0]) * dx + (y - w[1]) * dy) / lengthSq;
+			t = Math.max(0, Math.min(1, t));
+			double px = w[0] + t * dx, py = w[1] + t * dy;
+			double d = StrictMath.hypot(x - px, y - py);
+			if(d < best) {
+				best = d;
+				if(closest != null) {
+					closest[0] = px;
+					closest[1] = py;
+				}
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * @return  The number of walls, including the four around the edge
+	 */
+	public synchronized int getWallCount() {
+		return walls.size();
+	}
+	
+	/**
+	 * @return  x0, y0, x1 and y1 of a wall
+	 */
+	public synchronized double[] getWall(int i) {
+		return walls.get(i).clone();
+	}
+	
+	/**
+	 * @return  The number of floor regions and cliffs
+	 */
+	public synchronized int getRegionCount() {
+		return regions.size();
+	}
+	
+	/**
+	 * @return  x0, y0, x1, y1 and the cliff signal of a floor region, then 1
+	 *              if it is a cliff and 0 if not
+	 */
+	public synchronized double[] getRegion(int i) {
+		return regions.get(i).clone();
+	}
+}
@@ -16,7 +16,8 @@
 
 package cbccore.low.simulator;
 
-import cbc.display.SimulatedFramebuffer;
+import cbccore.display.Display;
+import cbccore.display.SimulatedFramebuffer;
 import cbccore.low.*;
 
 import javax.swing.JFrame;
@@ -50,7 +51,9 @@ public class CBCSimulator extends Simulator {
 	Container sidebar = new Container();
 	Container sidebarMotors = new Container();
 	JLabel[] motorSpeedLabels = new JLabel[8];
+	JLabel framebufferLabel = new JLabel();
 	private boolean framebuffersAdded = false;
+	private volatile SimulatedFramebuffer framebuffer = null;
 	
 	//Main text area stuff
 	public static PrintStream stdOut;
@@ -142,9 +145,13 @@ public class CBCSimulator extends Simulator {
 	 */
 	public void addFramebuffers() {
 		if(framebuffersAdded) return;
-		framebuffersAdded = true;
-		sidebar.add(((SimulatedFramebuffer)
-			cbc.display.Display.getFramebuffer()).getPanel(), 0);
+		framebuffersAdded = true; // getFramebuffer() calls back in here
+		framebuffer = (SimulatedFramebuffer)Display.getFramebuffer();
+		Container container = new Container();
+		container.setLayout(new BorderLayout());
+		container.add(framebuffer.getPanel(), BorderLayout.CENTER);
+		container.add(framebufferLabel, BorderLayout.SOUTH);
+		sidebar.add(container, 0);
 	}
 	
 	private class MotorSpeedUpdater extends Thread {
@@ -174,6 +181,11 @@ public class CBCSimulator extends Simulator {
 							"Pos: " + Integer.toString(cbob.getMotorPosition(i))
 						);
 					}
+					SimulatedFramebuffer fb = root.framebuffer;
+					if(fb != null) {
+						root.framebufferLabel.setText(String.format(
+							"Display: %.1f fps", fb.getFramesPerSecond()));
+					}
 					Thread.sleep(refreshRate);
 				} catch(InterruptedException ex) {
 					return;
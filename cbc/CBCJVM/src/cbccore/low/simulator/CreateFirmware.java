@@ -1,105 +1,995 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
 package cbccore.low.simulator;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import cbccore.create.CreateSensorFrame;
 
-public class CreateFirmware extends Thread {
-	private static CreateFirmware instance = null;
-	private boolean exit = false;
-	private Queue<Integer> buffer = new LinkedList<Integer>();
-	private static final double WHEEL_DIAMETER = 255;
-	private double rightVel = 0.0;
-	private double leftVel = 0.0;
-	private double vel = 0.0;
-	private double distance = 0.0;
-	private double angle = 0.0;
-	private double dpa = 0.0;
-	private double x = 0.0;
-	private double y = 0.0;
-	private long lastUpdate = 0;
+/**
+ * A model of the iRobot Create, as seen through its serial port. Bytes sent
+ * to it are decoded as Open Interface commands, and anything it would answer
+ * (sensor packets, the stream, a stored script) is queued up to be read back.
+ * <p>
+ * The world only moves when <code>step</code> (or <code>advance</code>) is
+ * called, one fixed timestep of <code>STEP_NANOS</code> at a time, so a run
+ * is entirely deterministic: the same bytes sent at the same simulated times
+ * always give the same results, however fast the simulation is run. Each step
+ * drives the wheels (a differential drive, <code>WHEEL_BASE</code> apart),
+ * stops the body at the walls of its <code>Arena</code>, and then reads the
+ * bumpers, cliff and wall sensors off of the new pose.
+ * <p>
+ * Like the real thing, the Create ignores everything but Start (128) until
+ * started, only drives in safe or full mode, drops back to passive mode in
+ * safe mode when a wheel drops or it is about to drive off a cliff, and stops
+ * reading commands while a wait (155 through 158) is pending or a script is
+ * playing.
+ *
+ * @author Benjamin Woodruff
+ * @see    SimulatedCreate
+ * @see    Arena
+ */
 
-	public static CreateFirmware get() {
-		if (instance == null) {
-			instance = new CreateFirmware();
-			instance.start();
+public class CreateFirmware {
+	/** Length of one simulation step, 5ms */
+	public static final long STEP_NANOS = 5000000L;
+	/** Time between two frames of a sensor stream, 15ms */
+	public static final long STREAM_PERIOD_NANOS = 15000000L;
+	/** Distance between the wheels, in mm */
+	public static final double WHEEL_BASE = 258.;
+	/** Radius of the body, in mm */
+	public static final double RADIUS = 165.;
+	/** Fastest a wheel can go, in mm/s */
+	public static final int MAX_SPEED = 500;
+	
+	public static final int MODE_OFF = 0;
+	public static final int MODE_PASSIVE = 1;
+	public static final int MODE_SAFE = 2;
+	public static final int MODE_FULL = 3;
+	
+	// where the sensors are: bearing off of the heading, and distance from
+	// the center. Cliffs are left, front left, front right, right
+	private static final double[] CLIFF_BEARINGS = {
+		Math.toRadians(60), Math.toRadians(15),
+		Math.toRadians(-15), Math.toRadians(-60)
+	};
+	private static final double CLIFF_DISTANCE = 140.;
+	private static final double WALL_BEARING = Math.toRadians(-70);
+	private static final double WALL_RANGE = 100.; // mm the wall signal sees
+	private static final double WALL_DETECT = 25.; // mm the wall bit sees
+	// contacts this close to straight ahead press both bumpers
+	private static final double BUMP_CENTER = Math.toRadians(15);
+	// how close counts as touching a wall; more than a wheel can travel in
+	// one step, since the body stops a step short of going through it
+	private static final double TOUCH = 3.;
+	
+	private static final int DROPS = CreateSensorFrame.DROP_LEFT
+		| CreateSensorFrame.DROP_RIGHT | CreateSensorFrame.DROP_CASTER;
+	private static final int HEADER = 19;
+	private static final int MAX_OUTPUT = 4096; // bytes, like a serial buffer
+	
+	// number of argument bytes of each opcode
+	private static final int UNKNOWN = -1;
+	private static final int COUNTED = -2; // a count, then that many bytes
+	private static final int SONG = -3; // song number, count, 2 bytes each
+	private static final int[] ARGS = new int[256];
+	
+	static {
+		java.util.Arrays.fill(ARGS, UNKNOWN);
+		int[][] known = {
+			{7, 0}, {128, 0}, {129, 1}, {130, 0}, {131, 0}, {132, 0},
+			{134, 0}, {135, 0}, {136, 1}, {137, 4}, {138, 1}, {139, 3},
+			{140, SONG}, {141, 1}, {142, 1}, {143, 0}, {144, 3}, {145, 4},
+			{147, 1}, {148, COUNTED}, {149, COUNTED}, {150, 1}, {151, 1},
+			{152, COUNTED}, {153, 0}, {154, 0}, {155, 1}, {156, 2},
+			{157, 2}, {158, 1}
+		};
+		for(int[] k : known) {
+			ARGS[k[0]] = k[1];
 		}
-		return instance;
 	}
-
-	private CreateFirmware() {
-		clear();
+	
+	private Arena arena;
+	private long time = 0;
+	private long pending = 0; // advanced, but not yet stepped through
+	
+	// pose and drive
+	private double x;
+	private double y;
+	private double heading = 0; // radians, counter-clockwise from +x
+	private int mode = MODE_OFF;
+	private int leftSpeed = 0;
+	private int rightSpeed = 0;
+	private int requestedVelocity = 0;
+	private int requestedRadius = 0;
+	
+	// sensors
+	private int bumps = 0; // packet 7, bumps and drops
+	private int drops = 0;
+	private int buttons = 0;
+	private int digitalInputs = 0;
+	private boolean[] cliffs = new boolean[4];
+	private int[] cliffSignals = new int[4];
+	private boolean wall = false;
+	private int wallSignal = 0;
+	private double[] contact = new double[2];
+	private SensorNoise noise = null;
+	
+	// how well each wheel does what it's told, 1 being perfectly
+	private double leftEfficiency = 1;
+	private double rightEfficiency = 1;
+	
+	// event counts
+	private int bumpCount = 0;
+	private int cliffCount = 0;
+	private int safetyStopCount = 0;
+	
+	// odometry, in mm and degrees
+	private double distanceReport = 0; // since last reported
+	private double angleReport = 0;
+	private double totalDistance = 0;
+	private double totalAngle = 0;
+	
+	// battery
+	private double charge = 2700.; // mAh
+	private int capacity = 3000;
+	private int current = 0; // mA
+	
+	// actuators
+	private int leds = 0;
+	private int powerColor = 0;
+	private int powerIntensity = 0;
+	private int digitalOutputs = 0;
+	private int lowSideDrivers = 0;
+	private int[][] songs = new int[16][];
+	private int songNumber = 0;
+	private long songEnd = -1;
+	
+	// serial, both ways, as ring buffers
+	private byte[] input = new byte[64];
+	private int inHead = 0;
+	private int inSize = 0;
+	private byte[] output = new byte[MAX_OUTPUT];
+	private int outHead = 0;
+	private int outSize = 0;
+	private int outSum = 0;
+	// the command being executed, big enough for a song of 255 notes
+	private byte[] command = new byte[3 + 2 * 255];
+	
+	// script and waits
+	private byte[] script = new byte[0];
+	private int scriptPosition = -1; // -1 when not playing
+	private boolean looped = false; // the script restarted itself this step
+	private int waiting = 0; // opcode of the pending wait, 0 for none
+	private long waitUntil = 0;
+	private double waitTarget = 0;
+	private double waitProgress = 0;
+	
+	// streaming
+	private int[] streamPackets = new int[0];
+	private boolean streaming = false;
+	private long nextFrame = 0;
+	
+	/**
+	 * A Create on an empty Botball board.
+	 */
+	public CreateFirmware() {
+		this(new Arena());
 	}
-
-	public void sendByte(int i) {
-		synchronized (buffer) {
-			buffer.add(i);
+	
+	/**
+	 * A Create in the middle of an arena, facing along x.
+	 */
+	public CreateFirmware(Arena arena) {
+		this.arena = arena;
+		x = arena.getWidth() / 2;
+		y = arena.getHeight() / 2;
+		sense();
+	}
+	
+	public Arena getArena() {
+		return arena;
+	}
+	
+	// -- time --
+	
+	/**
+	 * Runs the world forward one fixed timestep.
+	 */
+	public synchronized void step() {
+		time += STEP_NANOS;
+		double dt = STEP_NANOS / 1000000000.;
+		move(dt);
+		sense();
+		if(mode == MODE_SAFE && isUnsafe()) {
+			stopWheels();
+			mode = MODE_PASSIVE;
+			++safetyStopCount;
+		}
+		drain(dt);
+		if(songEnd >= 0 && time >= songEnd) {
+			songEnd = -1;
+		}
+		if(waiting != 0 && isWaitOver()) {
+			waiting = 0;
+		}
+		looped = false;
+		process();
+		if(streaming && time >= nextFrame) {
+			writeFrame();
+			nextFrame = Math.max(nextFrame + STREAM_PERIOD_NANOS, time);
 		}
+		notifyAll();
 	}
-
-	private int poll() {
-		Integer i = null;
-		while ((i = buffer.poll()) == null)
-			Thread.yield();
-		return i;
+	
+	/**
+	 * Runs the world forward by however many whole steps fit in a span of
+	 * time. Whatever is left over is carried over to the next call, so many
+	 * short advances add up to the same steps as one long one.
+	 *
+	 * @param  nanos  How much simulated time to add
+	 */
+	public synchronized void advance(long nanos) {
+		pending += nanos;
+		while(pending >= STEP_NANOS) {
+			pending -= STEP_NANOS;
+			step();
+		}
 	}
 	
-	private int eat8() {
-		Integer i = poll();
-		buffer.remove();
-		return i;
+	/**
+	 * Blocks until another thread has run a step.
+	 */
+	public synchronized void awaitStep() throws InterruptedException {
+		long start = time;
+		while(time == start) {
+			wait();
+		}
 	}
-
-	public int eat16() {
-		int h = eat8();
-		int l = eat8();
-		return (h << 8) | l;
+	
+	/**
+	 * @return  Simulated time, in nanoseconds since this was made
+	 */
+	public synchronized long getTimeNanos() {
+		return time;
 	}
 	
-	private void clear() {
-		update();
-		distance = 0;
-		angle = 0;
+	// -- serial --
+	
+	/**
+	 * Receives one byte from the CBC.
+	 */
+	public synchronized void receive(int b) {
+		if(inSize == input.length) {
+			byte[] next = new byte[input.length * 2];
+			for(int i = 0; i < inSize; ++i) {
+				next[i] = input[(inHead + i) % input.length];
+			}
+			input = next;
+			inHead = 0;
+		}
+		input[(inHead + inSize++) % input.length] = (byte) b;
+		process();
 	}
 	
-	private void update() {
-		if(lastUpdate == 0) {
-			lastUpdate = System.currentTimeMillis();
-			return;
+	/**
+	 * Receives several bytes from the CBC.
+	 */
+	public synchronized void receive(byte[] data, int off, int len) {
+		for(int i = off; i < off + len; ++i) {
+			receive(data[i]);
+		}
+	}
+	
+	/**
+	 * Reads bytes the Create has sent back, without waiting for any.
+	 *
+	 * @return  The number of bytes read, possibly 0
+	 */
+	public synchronized int read(byte[] buffer, int count) {
+		int n = Math.min(Math.min(count, buffer.length), outSize);
+		for(int i = 0; i < n; ++i) {
+			buffer[i] = output[outHead];
+			outHead = (outHead + 1) % output.length;
+		}
+		outSize -= n;
+		return n;
+	}
+	
+	/**
+	 * @return  The number of bytes waiting to be read
+	 */
+	public synchronized int available() {
+		return outSize;
+	}
+	
+	/**
+	 * Throws away anything waiting to be read.
+	 */
+	public synchronized void clearOutput() {
+		outSize = 0;
+	}
+	
+	private void write(int b) {
+		if(outSize == output.length) {
+			// overrun, the oldest byte is lost
+			outHead = (outHead + 1) % output.length;
+			--outSize;
 		}
-			
-		long delta = System.currentTimeMillis() - lastUpdate;
-		double oldDistance = distance;
-		distance += vel * ((double)delta / 1000.0);
-		lastUpdate = System.currentTimeMillis();
-		angle += dpa * (distance - oldDistance);
-	}
-	
-	@Override
-	public void run() {
-		while (!exit) {
-			update();
-			int op = poll();
-			switch(op) {
-			case 137: // Drive
-				eat8();
-				int v = eat16();
-				int r = eat16();
-				double half = (WHEEL_DIAMETER / 2);
-				leftVel = ((r - half) * v) / r;
-				rightVel = ((r + half) * v) / r;
-				vel = v;
-				dpa = (Math.PI * r * 2) / 360; 
+		output[(outHead + outSize++) % output.length] = (byte) b;
+		outSum += b;
+	}
+	
+	private int peekInput(int i) {
+		return i < inSize ? input[(inHead + i) % input.length] & 0xFF : -1;
+	}
+	
+	// length of a whole command, or 0 if more bytes are needed to tell
+	private static int getCommandLength(int op, int b1, int b2) {
+		int args = ARGS[op];
+		if(args >= 0) {
+			return 1 + args;
+		} else if(args == COUNTED) {
+			return b1 < 0 ? 0 : 2 + b1;
+		} else if(args == SONG) {
+			return b2 < 0 ? 0 : 3 + 2 * b2;
+		}
+		return 1; // unknown, skipped
+	}
+	
+	// executes whole commands, from the script if one is playing
+	private void process() {
+		// a script that plays itself again waits for the next step, so a
+		// loop without a wait in it can't hold the firmware forever
+		while(waiting == 0 && !looped) {
+			int length;
+			if(scriptPosition >= 0) {
+				int left = script.length - scriptPosition;
+				if(left <= 0) {
+					scriptPosition = -1;
+					continue;
+				}
+				int p = scriptPosition;
+				length = getCommandLength(script[p] & 0xFF,
+					left > 1 ? script[p + 1] & 0xFF : -1,
+					left > 2 ? script[p + 2] & 0xFF : -1);
+				if(length == 0 || length > left) {
+					scriptPosition = -1; // cut off
+					continue;
+				}
+				System.arraycopy(script, p, command, 0, length);
+				scriptPosition += length;
+				looped = command[0] == (byte) 153;
+			} else {
+				if(inSize == 0) {
+					return;
+				}
+				length = getCommandLength(peekInput(0), peekInput(1),
+				                          peekInput(2));
+				if(length == 0 || length > inSize) {
+					return; // the rest hasn't arrived yet
+				}
+				for(int i = 0; i < length; ++i) {
+					command[i] = input[inHead];
+					inHead = (inHead + 1) % input.length;
+				}
+				inSize -= length;
+			}
+			execute(length);
+		}
+	}
+	
+	private int arg(int i) {
+		return command[i] & 0xFF;
+	}
+	
+	private int arg16(int i) {
+		return (short) (arg(i) << 8 | arg(i + 1));
+	}
+	
+	private void execute(int length) {
+		int op = arg(0);
+		if(mode == MODE_OFF && op != 128 && op != 7) {
+			return; // the OI isn't started
+		}
+		boolean driving = mode == MODE_SAFE || mode == MODE_FULL;
+		switch(op) {
+			case 7: // reset
+				stopWheels();
+				mode = MODE_OFF;
+				streaming = false;
+				scriptPosition = -1;
+				break;
+			case 128: // start
+				stopWheels();
+				mode = MODE_PASSIVE;
+				break;
+			case 130: // control
+			case 131:
+				mode = MODE_SAFE;
+				break;
+			case 132:
+				mode = MODE_FULL;
+				break;
+			case 134: // spot, cover, demo and cover and dock aren't
+			case 135: // simulated, but they do leave the OI passive
+			case 136:
+			case 143:
+				stopWheels();
+				mode = MODE_PASSIVE;
+				break;
+			case 137:
+				if(driving) {
+					drive(arg16(1), arg16(3));
+				}
+				break;
+			case 138:
+				if(driving) {
+					lowSideDrivers = arg(1);
+				}
+				break;
+			case 139:
+				if(driving) {
+					leds = arg(1);
+					powerColor = arg(2);
+					powerIntensity = arg(3);
+				}
+				break;
+			case 140: {
+				int[] song = new int[2 * arg(2)];
+				for(int i = 0; i < song.length; ++i) {
+					song[i] = arg(3 + i);
+				}
+				songs[arg(1) & 15] = song;
+				break;
+			}
+			case 141:
+				if(driving && songs[arg(1) & 15] != null) {
+					songNumber = arg(1) & 15;
+					int[] song = songs[songNumber];
+					long sixtyfourths = 0;
+					for(int i = 1; i < song.length; i += 2) {
+						sixtyfourths += song[i];
+					}
+					songEnd = time + sixtyfourths * 1000000000L / 64;
+				}
 				break;
+			case 142:
+				writePacket(arg(1));
+				break;
+			case 145:
+				if(driving) {
+					driveDirect(arg16(1), arg16(3));
+				}
+				break;
+			case 147:
+				if(driving) {
+					digitalOutputs = arg(1) & 7;
+				}
+				break;
+			case 148:
+				streamPackets = new int[arg(1)];
+				for(int i = 0; i < streamPackets.length; ++i) {
+					streamPackets[i] = arg(2 + i);
+				}
+				streaming = streamPackets.length > 0;
+				nextFrame = time;
+				break;
+			case 149:
+				for(int i = 0; i < arg(1); ++i) {
+					writePacket(arg(2 + i));
+				}
+				break;
+			case 150:
+				streaming = arg(1) != 0 && streamPackets.length > 0;
+				nextFrame = time;
+				break;
+			case 152:
+				script = new byte[arg(1)];
+				System.arraycopy(command, 2, script, 0, script.length);
+				break;
+			case 153:
+				scriptPosition = 0;
+				break;
+			case 154:
+				write(script.length);
+				for(byte b : script) {
+					write(b & 0xFF);
+				}
+				break;
+			case 155:
+				waiting = op;
+				waitUntil = time + arg(1) * 100000000L;
+				break;
+			case 156:
 			case 157:
-				dpa = 0.0;
+				waiting = op;
+				waitTarget = arg16(1);
+				waitProgress = 0;
+				break;
+			case 158:
+				waitTarget = (byte) arg(1);
+				if(!isWaitOver(158)) {
+					waiting = op;
+				}
+				break;
+			default:
+				// baud (129), PWM low side drivers (144) and send IR (151)
+				// don't do anything here
 				break;
-			
+		}
+	}
+	
+	// -- driving --
+	
+	private void drive(int velocity, int radius) {
+		requestedVelocity = velocity;
+		requestedRadius = radius;
+		int v = clamp(velocity, MAX_SPEED);
+		if(radius == 32767 || radius == -32768 || radius == 0) {
+			setWheels(v, v);
+		} else if(radius == 1) {
+			setWheels(-v, v);
+		} else if(radius == -1) {
+			setWheels(v, -v);
+		} else {
+			double r = Math.max(-2000, Math.min(2000, radius));
+			setWheels((int) (v * (r - WHEEL_BASE / 2) / r),
+			          (int) (v * (r + WHEEL_BASE / 2) / r));
+		}
+	}
+	
+	private void driveDirect(int right, int left) {
+		requestedVelocity = (right + left) / 2;
+		requestedRadius = right == left ? 32767 : 0;
+		setWheels(clamp(left, MAX_SPEED), clamp(right, MAX_SPEED));
+	}
+	
+	private void setWheels(int left, int right) {
+		leftSpeed = left;
+		rightSpeed = right;
+	}
+	
+	private void stopWheels() {
+		setWheels(0, 0);
+		requestedVelocity = 0;
+		requestedRadius = 0;
+	}
+	
+	private static int clamp(int value, int limit) {
+		return Math.max(-limit, Math.min(limit, value));
+	}
+	
+	private void move(double dt) {
+		double left = leftSpeed * leftEfficiency;
+		double right = rightSpeed * rightEfficiency;
+		double v = (left + right) / 2.;
+		double w = (right - left) / WHEEL_BASE;
+		double middle = heading + w * dt / 2;
+		double nx = x + v * StrictMath.cos(middle) * dt;
+		double ny = y + v * StrictMath.sin(middle) * dt;
+		double travelled = v * dt;
+		double after = arena.getWallDistance(nx, ny, null);
+		if(after < RADIUS && after < arena.getWallDistance(x, y, null)) {
+			// pushing into a wall: the wheels stall instead
+			travelled = 0;
+		} else {
+			x = nx;
+			y = ny;
+		}
+		heading = normalize(heading + w * dt);
+		double turned = Math.toDegrees(w * dt);
+		distanceReport += travelled;
+		angleReport += turned;
+		totalDistance += travelled;
+		totalAngle += turned;
+		if(waiting == 156) {
+			waitProgress += travelled;
+		} else if(waiting == 157) {
+			waitProgress += turned;
+		}
+	}
+	
+	// an angle in radians, as -pi to pi
+	private static double normalize(double angle) {
+		while(angle > Math.PI) {
+			angle -= 2 * Math.PI;
+		}
+		while(angle <= -Math.PI) {
+			angle += 2 * Math.PI;
+		}
+		return angle;
+	}
+	
+	private void sense() {
+		int oldBumps = bumps & ~DROPS;
+		boolean oldCliff = isAnyCliff();
+		int b = drops;
+		double d = arena.getWallDistance(x, y, contact);
+		if(d <= RADIUS + TOUCH) {
+			double bearing = normalize(StrictMath.atan2(contact[1] - y,
+				contact[0] - x) - heading);
+			if(Math.abs(bearing) <= Math.PI / 2) {
+				if(bearing > -BUMP_CENTER) {
+					b |= CreateSensorFrame.BUMP_LEFT;
+				}
+				if(bearing < BUMP_CENTER) {
+					b |= CreateSensorFrame.BUMP_RIGHT;
+				}
 			}
-			Thread.yield();
 		}
+		bumps = b;
+		if((b & ~DROPS) != 0 && oldBumps == 0) {
+			++bumpCount;
+		}
+		for(int i = 0; i < cliffs.length; ++i) {
+			double a = heading + CLIFF_BEARINGS[i];
+			double px = x + CLIFF_DISTANCE * StrictMath.cos(a);
+			double py = y + CLIFF_DISTANCE * StrictMath.sin(a);
+			cliffs[i] = arena.isCliff(px, py);
+			cliffSignals[i] = cliffs[i] ? 0
+				: addNoise(arena.getCliffSignal(px, py));
+		}
+		if(isAnyCliff() && !oldCliff) {
+			++cliffCount;
+		}
+		double a = heading + WALL_BEARING;
+		double w = arena.getWallDistance(x + RADIUS * StrictMath.cos(a),
+		                                 y + RADIUS * StrictMath.sin(a), null);
+		wall = w < WALL_DETECT;
+		wallSignal = w < WALL_RANGE ? (int) (4095 * (1 - w / WALL_RANGE)) : 0;
+		wallSignal = addNoise(wallSignal);
 	}
-
-	public void exit() {
-		exit = true;
+	
+	private int addNoise(int signal) {
+		if(noise == null) {
+			return signal;
+		}
+		return noise.read(signal, 0, 4095, signal);
+	}
+	
+	private boolean isAnyCliff() {
+		return cliffs[0] || cliffs[1] || cliffs[2] || cliffs[3];
+	}
+	
+	// what makes safe mode give up
+	private boolean isUnsafe() {
+		return (bumps & DROPS) != 0
+			|| (isAnyCliff() && leftSpeed + rightSpeed > 0);
+	}
+	
+	private void drain(double dt) {
+		current = -(150 + (Math.abs(leftSpeed) + Math.abs(rightSpeed)) / 2);
+		charge = Math.max(0, charge + current * dt / 3600.);
+	}
+	
+	// -- waits --
+	
+	private boolean isWaitOver() {
+		switch(waiting) {
+			case 155:
+				return time >= waitUntil;
+			case 156:
+			case 157:
+				return waitTarget >= 0 ? waitProgress >= waitTarget
+				                       : waitProgress <= waitTarget;
+			case 158:
+				return isWaitOver(158);
+		}
+		return true;
+	}
+	
+	// for wait event: has the event in waitTarget happened
+	private boolean isWaitOver(int op) {
+		int event = (int) waitTarget;
+		boolean inverse = event < 0;
+		return isEvent(Math.abs(event)) != inverse;
+	}
+	
+	private boolean isEvent(int event) {
+		switch(event) {
+			case 1: return (bumps & DROPS) != 0;
+			case 2: return (bumps & CreateSensorFrame.DROP_CASTER) != 0;
+			case 3: return (bumps & CreateSensorFrame.DROP_LEFT) != 0;
+			case 4: return (bumps & CreateSensorFrame.DROP_RIGHT) != 0;
+			case 5: return (bumps & (CreateSensorFrame.BUMP_LEFT
+			                         | CreateSensorFrame.BUMP_RIGHT)) != 0;
+			case 6: return (bumps & CreateSensorFrame.BUMP_LEFT) != 0;
+			case 7: return (bumps & CreateSensorFrame.BUMP_RIGHT) != 0;
+			case 9: return wall;
+			case 10: return isAnyCliff();
+			case 11: return cliffs[0];
+			case 12: return cliffs[1];
+			case 13: return cliffs[2];
+			case 14: return cliffs[3];
+			case 16: return (buttons & CreateSensorFrame.BUTTON_ADVANCE) != 0;
+			case 17: return (buttons & CreateSensorFrame.BUTTON_PLAY) != 0;
+			case 18:
+			case 19:
+			case 20:
+			case 21: return (digitalInputs & (1 << (event - 18))) != 0;
+			case 22: return mode == MODE_PASSIVE;
+		}
+		return false; // virtual wall (8) and home base (15) never happen
+	}
+	
+	// -- sensor packets --
+	
+	private void writePacket(int id) {
+		if(id <= 6) {
+			for(int p = CreateSensorFrame.getFirstPacket(id);
+			    p <= CreateSensorFrame.getLastPacket(id); ++p) {
+				writePacket(p);
+			}
+			return;
+		}
+		int size = CreateSensorFrame.getPacketSize(id);
+		int value = readPacket(id, true);
+		if(size == 2) {
+			write((value >> 8) & 0xFF);
+		}
+		if(size > 0) {
+			write(value & 0xFF);
+		}
+	}
+	
+	private int getPacketLength(int id) {
+		return id <= 6 ? CreateSensorFrame.getGroupSize(id)
+		               : CreateSensorFrame.getPacketSize(id);
+	}
+	
+	// one stream frame: header, length, each packet's ID and data, checksum
+	private void writeFrame() {
+		int length = 0;
+		for(int id : streamPackets) {
+			length += 1 + getPacketLength(id);
+		}
+		outSum = 0;
+		write(HEADER);
+		write(length);
+		for(int id : streamPackets) {
+			write(id);
+			writePacket(id);
+		}
+		write(-outSum & 0xFF);
+	}
+	
+	/**
+	 * Gets the current value of a sensor packet, 7 through 42, the way
+	 * <code>CreateSensorFrame.getPacket</code> would decode it. Doesn't
+	 * count as reporting distance and angle, so those are still the change
+	 * since the last time they were sent over serial.
+	 */
+	public synchronized int getPacket(int id) {
+		return readPacket(id, false);
+	}
+	
+	private int readPacket(int id, boolean report) {
+		switch(id) {
+			case 7: return bumps;
+			case 8: return wall ? 1 : 0;
+			case 9:
+			case 10:
+			case 11:
+			case 12: return cliffs[id - 9] ? 1 : 0;
+			case 17: return 255; // no IR byte
+			case 18: return buttons;
+			case 19: {
+				int d = (int) Math.max(-32768, Math.min(32767,
+					distanceReport));
+				if(report) {
+					distanceReport -= d;
+				}
+				return d;
+			}
+			case 20: {
+				int a = (int) Math.max(-32768, Math.min(32767, angleReport));
+				if(report) {
+					angleReport -= a;
+				}
+				return a;
+			}
+			case 22: return 13000 + (int) (3000 * charge / capacity);
+			case 23: return current;
+			case 24: return 25;
+			case 25: return (int) charge;
+			case 26: return capacity;
+			case 27: return wallSignal;
+			case 28:
+			case 29:
+			case 30:
+			case 31: return cliffSignals[id - 28];
+			case 32: return digitalInputs;
+			case 35: return mode;
+			case 36: return songNumber;
+			case 37: return songEnd >= 0 ? 1 : 0;
+			case 38: return streamPackets.length;
+			case 39: return requestedVelocity;
+			case 40: return requestedRadius;
+			case 41: return rightSpeed;
+			case 42: return leftSpeed;
+		}
+		return 0;
+	}
+	
+	// -- state, for simulators and tests --
+	
+	/**
+	 * Puts the Create somewhere, without it noticing any movement.
+	 *
+	 * @param  x        In mm
+	 * @param  y        In mm
+	 * @param  heading  In degrees, counter-clockwise from the x axis
+	 */
+	public synchronized void setPose(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = normalize(Math.toRadians(heading));
+		sense();
+	}
+	
+	public synchronized double getX() {
+		return x;
+	}
+	
+	public synchronized double getY() {
+		return y;
+	}
+	
+	/**
+	 * @return  In degrees, counter-clockwise from the x axis, -180 to 180
+	 */
+	public synchronized double getHeading() {
+		return Math.toDegrees(heading);
+	}
+	
+	/**
+	 * @return  One of the <code>MODE_*</code> constants
+	 */
+	public synchronized int getMode() {
+		return mode;
+	}
+	
+	/**
+	 * @return  Distance driven since this was made, in mm
+	 */
+	public synchronized double getTotalDistance() {
+		return totalDistance;
+	}
+	
+	/**
+	 * @return  Angle turned since this was made, counter-clockwise, in degrees
+	 */
+	public synchronized double getTotalAngle() {
+		return totalAngle;
+	}
+	
+	public synchronized int getLeftSpeed() {
+		return leftSpeed;
+	}
+	
+	public synchronized int getRightSpeed() {
+		return rightSpeed;
+	}
+	
+	/**
+	 * @return  <code>true</code> while a wait command is holding up the OI
+	 */
+	public synchronized boolean isWaiting() {
+		return waiting != 0;
+	}
+	
+	/**
+	 * @return  <code>true</code> while a script is playing
+	 */
+	public synchronized boolean isScriptPlaying() {
+		return scriptPosition >= 0;
+	}
+	
+	/**
+	 * @return  The LED bits, power LED color and power LED intensity, as last
+	 *              set by opcode 139
+	 */
+	public synchronized int[] getLeds() {
+		return new int[] {leds, powerColor, powerIntensity};
+	}
+	
+	/**
+	 * @return  The digital outputs (147) and low side drivers (138)
+	 */
+	public synchronized int[] getOutputs() {
+		return new int[] {digitalOutputs, lowSideDrivers};
+	}
+	
+	/**
+	 * Lifts wheels off the ground, or puts them back.
+	 *
+	 * @param  bits  The <code>DROP_*</code> bits of
+	 *                   <code>CreateSensorFrame</code>
+	 */
+	public synchronized void setWheelDrops(int bits) {
+		drops = bits & DROPS;
+		sense();
+	}
+	
+	/**
+	 * Holds buttons down, or lets them go.
+	 *
+	 * @param  bits  The <code>BUTTON_*</code> bits of
+	 *                   <code>CreateSensorFrame</code>
+	 */
+	public synchronized void setButtons(int bits) {
+		buttons = bits;
+	}
+	
+	/**
+	 * Makes the wheels slip, or run fast. Each wheel actually turns at its
+	 * requested speed times its efficiency, and the odometry reports what
+	 * the wheels really did.
+	 *
+	 * @param  left   Efficiency of the left wheel, 1 for perfect
+	 * @param  right  Efficiency of the right wheel, 1 for perfect
+	 */
+	public synchronized void setWheelEfficiency(double left, double right) {
+		leftEfficiency = left;
+		rightEfficiency = right;
+	}
+	
+	/**
+	 * Adds gaussian noise to the cliff and wall signals. The noise comes from
+	 * its own seeded generator, so runs stay repeatable.
+	 *
+	 * @param  sigma  Standard deviation of the noise, 0 for none
+	 * @param  seed   Seed for the noise
+	 */
+	public synchronized void setSignalNoise(double sigma, long seed) {
+		if(sigma > 0) {
+			noise = new SensorNoise(seed);
+			noise.setSigma(sigma);
+		} else {
+			noise = null;
+		}
+		sense();
+	}
+	
+	/**
+	 * @return  How many times a bumper was pressed, with neither already
+	 *              pressed
+	 */
+	public synchronized int getBumpCount() {
+		return bumpCount;
+	}
+	
+	/**
+	 * @return  How many times a cliff was seen, with none seen before
+	 */
+	public synchronized int getCliffCount() {
+		return cliffCount;
+	}
+	
+	/**
+	 * @return  How many times safe mode stopped the Create
+	 */
+	public synchronized int getSafetyStopCount() {
+		return safetyStopCount;
+	}
+	
+	/**
+	 * Sets the cargo bay digital inputs, 4 bits.
+	 */
+	public synchronized void setDigitalInputs(int bits) {
+		digitalInputs = bits & 15;
 	}
 }
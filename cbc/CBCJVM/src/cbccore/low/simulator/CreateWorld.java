@@ -1,32 +1,108 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
 package cbccore.low.simulator;
 
+import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.AffineTransform;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/**
+ * Draws a <code>SimulatedCreate</code> and its arena: floor regions shaded
+ * by their cliff signal, cliffs in black, walls in red, and the Create as a
+ * circle with a line pointing the way it faces. Repaints itself on a Swing
+ * timer while it is showing.
+ *
+ * @author Braden McDorman / Benjamin Woodruff
+ */
 
-public class CreateWorld extends JPanel implements Runnable {
+public class CreateWorld extends JPanel implements ActionListener {
 	private static final long serialVersionUID = -7591540311617637479L;
+	private static final double SCALE = .3; // pixels per mm
+	private static final int REPAINT_MILLIS = 40;
+	
 	private SimulatedCreate create = null;
-	private boolean exit = false;
+	private Timer timer = new Timer(REPAINT_MILLIS, this);
 	
 	public CreateWorld(SimulatedCreate create) {
 		this.create = create;
+		Arena arena = create.getFirmware().getArena();
+		setPreferredSize(new Dimension((int) (arena.getWidth() * SCALE),
+		                               (int) (arena.getHeight() * SCALE)));
+		setBackground(Color.WHITE);
 	}
 	
-	public void paint(Graphics g) {
-		g.drawOval(create.getX() - 50, create.getY() - 50, 100, 100);
-		g.drawLine(create.getX() - 50, create.getY() - 50, create.getX(), create.getY());
+	public void addNotify() {
+		super.addNotify();
+		timer.start();
 	}
-
-	@Override
-	public void run() {
-		while(!exit) {
-			repaint();
-			Thread.yield();
-		}
+	
+	public void removeNotify() {
+		timer.stop();
+		super.removeNotify();
+	}
+	
+	public void actionPerformed(ActionEvent e) {
+		repaint();
 	}
 	
-	public void exit() {
-		exit = true;
+	protected void paintComponent(Graphics graphics) {
+		super.paintComponent(graphics);
+		Graphics2D g = (Graphics2D) graphics;
+		CreateFirmware firmware = create.getFirmware();
+		Arena arena = firmware.getArena();
+		AffineTransform old = g.getTransform();
+		// y up, like the arena
+		g.translate(0, getHeight());
+		g.scale(SCALE, -SCALE);
+		
+		for(int i = 0; i < arena.getRegionCount(); ++i) {
+			double[] r = arena.getRegion(i);
+			if(r[5] != 0) {
+				g.setColor(Color.BLACK);
+			} else {
+				int shade = (int) Math.max(0, Math.min(255,
+					r[4] * 255 / Arena.WHITE_SIGNAL));
+				g.setColor(new Color(shade, shade, shade));
+			}
+			g.fillRect((int) r[0], (int) r[1], (int) (r[2] - r[0]),
+			           (int) (r[3] - r[1]));
+		}
+		
+		g.setColor(Color.RED);
+		for(int i = 0; i < arena.getWallCount(); ++i) {
+			double[] w = arena.getWall(i);
+			g.drawLine((int) w[0], (int) w[1], (int) w[2], (int) w[3]);
+		}
+		
+		int x = (int) firmware.getX();
+		int y = (int) firmware.getY();
+		int r = (int) CreateFirmware.RADIUS;
+		double heading = Math.toRadians(firmware.getHeading());
+		g.setColor(Color.BLUE);
+		g.drawOval(x - r, y - r, 2 * r, 2 * r);
+		g.drawLine(x, y, x + (int) (r * Math.cos(heading)),
+		           y + (int) (r * Math.sin(heading)));
+		g.setTransform(old);
 	}
 }
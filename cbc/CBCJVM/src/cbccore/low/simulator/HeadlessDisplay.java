@@ -0,0 +1,58 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.low.Display;
+
+import java.io.PrintStream;
+
+/**
+ * The display of a <code>HeadlessSimulator</code>. There is no window to
+ * clear, so clearing just scrolls a stream, <code>System.out</code> unless
+ * told otherwise. Unlike <code>SimulatedDisplay</code>, nothing here touches
+ * AWT or Swing.
+ *
+ * @author Benjamin Woodruff
+ * @see    HeadlessSimulator
+ */
+
+public class HeadlessDisplay extends Display {
+	private PrintStream out;
+	
+	public HeadlessDisplay() {
+		this(System.out);
+	}
+	
+	/**
+	 * @param  out  Where the display is shown
+	 */
+	public HeadlessDisplay(PrintStream out) {
+		this.out = out;
+	}
+	
+	public void display_clear() { // scrolls the old output away
+		for(int i = 0; i < 50; ++i) out.println();
+	}
+	
+	public void cbc_display_clear() {
+		display_clear();
+	}
+	
+	public PrintStream getPrintStream() {
+		return out;
+	}
+}
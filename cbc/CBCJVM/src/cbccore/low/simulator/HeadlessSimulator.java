@@ -0,0 +1,113 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.Clock;
+import cbccore.low.Simulator;
+
+/**
+ * A simulator with no windows at all, running on a <code>VirtualClock</code>
+ * instead of the wall clock. Motors, servos and the Create all move in
+ * simulated time, which only passes while the program sleeps (or when the
+ * clock is advanced by hand), so a whole match can be run in a fraction of
+ * the time it would take for real, on a machine without a display.
+ * <p>
+ * Becomes the <code>Clock</code> for all of cbccore as soon as it is made.
+ * Use <code>HeadlessSimulatorFactory</code> to have <code>Device</code> make
+ * one.
+ *
+ * @author Benjamin Woodruff
+ * @see    HeadlessSimulatorFactory
+ * @see    VirtualClock
+ */
+
+public class HeadlessSimulator extends Simulator {
+	private VirtualClock clock;
+	private SimulatedCBOB cbob;
+	private volatile Integer exitStatus = null;
+	
+	/**
+	 * A headless simulator with an empty Botball board.
+	 */
+	public HeadlessSimulator() {
+		this(new Arena());
+	}
+	
+	/**
+	 * A headless simulator with the Create in a given arena.
+	 */
+	public HeadlessSimulator(Arena arena) {
+		this(arena, new VirtualClock());
+	}
+	
+	/**
+	 * @param  arena  Where the Create drives
+	 * @param  clock  The clock everything runs on
+	 */
+	public HeadlessSimulator(Arena arena, VirtualClock clock) {
+		this.clock = clock;
+		Clock.set(clock);
+		cbob = new SimulatedCBOB();
+		SimulatedMotor motor = new SimulatedMotor();
+		motor.setCbob(cbob);
+		init(new SimulatedSound(), new SimulatedSensor(),
+		     new SimulatedDevice(), new HeadlessDisplay(),
+		     new SimulatedInput(false), new SimulatedServo(), motor,
+		     new SimulatedCamera(), new SimulatedCreate(arena, clock));
+	}
+	
+	public VirtualClock getClock() {
+		return clock;
+	}
+	
+	public SimulatedCBOB getCbob() {
+		return cbob;
+	}
+	
+	/**
+	 * @return  The simulated sensors, for setting readings and noise
+	 */
+	public SimulatedSensor getSimulatedSensor() {
+		return (SimulatedSensor) getSensor();
+	}
+	
+	/**
+	 * @return  The simulated create's firmware, for checking up on it
+	 */
+	public CreateFirmware getCreateFirmware() {
+		return ((SimulatedCreate) getCreate()).getFirmware();
+	}
+	
+	/**
+	 * Ends the simulated program without ending the JVM: halts the clock,
+	 * which ends every thread sleeping on it, and ends the calling thread
+	 * with a <code>ThreadDeath</code>.
+	 */
+	public void exit(int status) {
+		exitStatus = status;
+		clock.halt();
+		throw new ThreadDeath();
+	}
+	
+	/**
+	 * @return  What the program passed to <code>Device.exit</code>, or
+	 *              <code>null</code> if it hasn't exited
+	 */
+	public Integer getExitStatus() {
+		return exitStatus;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.low.Simulator;
+import cbccore.low.SimulatorFactory;
+
+/**
+ * Pass this to <code>cbccore.Device.init</code> before anything else touches
+ * the hardware to run a program headless, in simulated time.
+ *
+ * @author Benjamin Woodruff
+ * @see    HeadlessSimulator
+ * @see    cbccore.low.SimulatorFactory
+ */
+
+public class HeadlessSimulatorFactory extends SimulatorFactory {
+	private Arena arena;
+	
+	public HeadlessSimulatorFactory() {
+		this(new Arena());
+	}
+	
+	/**
+	 * @param  arena  Where the simulated Create drives
+	 */
+	public HeadlessSimulatorFactory(Arena arena) {
+		this.arena = arena;
+	}
+	
+	public Simulator getNewSimulator() {
+		return new HeadlessSimulator(arena);
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import cbccore.Device;
+
+/**
+ * Runs one simulated match, from inside the class loader
+ * <code>MatchRunner</code> made for it. Everything going in and out is an
+ * array or a string, since the runner's own copies of these classes are not
+ * the same classes as the ones in here. You shouldn't need to use this
+ * directly.
+ *
+ * @author Benjamin Woodruff
+ * @see    MatchRunner
+ */
+
+public class MatchHarness {
+	// setup, what the runner decided on for this match
+	static final int START_X = 0; // NaN for the middle of the arena
+	static final int START_Y = 1;
+	static final int START_HEADING = 2;
+	static final int LEFT_EFFICIENCY = 3;
+	static final int RIGHT_EFFICIENCY = 4;
+	static final int SIGNAL_NOISE = 5;
+	static final int NOISE_SEED = 6;
+	static final int MATCH_SECONDS = 7;
+	static final int TIMEOUT_SECONDS = 8;
+	static final int SETUP_SIZE = 9;
+	
+	// summary, what happened
+	static final int X = 0;
+	static final int Y = 1;
+	static final int HEADING = 2;
+	static final int DISTANCE = 3;
+	static final int END_SECONDS = 4;
+	static final int MAIN_SECONDS = 5; // NaN if main never finished
+	static final int REAL_SECONDS = 6;
+	static final int BUMPS = 7;
+	static final int CLIFFS = 8;
+	static final int SAFETY_STOPS = 9;
+	static final int EXIT_STATUS = 10; // NaN if it never exited
+	static final int TIMED_OUT = 11;
+	static final int SUMMARY_SIZE = 12;
+	
+	private static final double GRACE_MILLIS = 100;
+	
+	/**
+	 * Runs a match.
+	 *
+	 * @param  mainClass   The class whose <code>main</code> is the robot
+	 * @param  args        Arguments for <code>main</code>
+	 * @param  arenaClass  An <code>Arena</code> subclass with a no argument
+	 *                         constructor, or <code>null</code> for an empty
+	 *                         board
+	 * @param  setup       The match setup
+	 * @return             The summary, and the error main failed with or
+	 *                         <code>null</code>
+	 */
+	public static Object[] run(String mainClass, final String[] args,
+	                           String arenaClass, double[] setup)
+	                           throws Exception {
+		ClassLoader loader = MatchHarness.class.getClassLoader();
+		Arena arena = arenaClass == null ? new Arena()
+			: (Arena) Class.forName(arenaClass, true, loader)
+				.getDeclaredConstructor().newInstance();
+		Device.init(new HeadlessSimulatorFactory(arena));
+		final HeadlessSimulator sim =
+			(HeadlessSimulator) Device.getSimulatorController();
+		final VirtualClock clock = sim.getClock();
+		CreateFirmware firmware = sim.getCreateFirmware();
+		double x = setup[START_X], y = setup[START_Y];
+		firmware.setPose(Double.isNaN(x) ? arena.getWidth() / 2 : x,
+		                 Double.isNaN(y) ? arena.getHeight() / 2 : y,
+		                 setup[START_HEADING]);
+		firmware.setWheelEfficiency(setup[LEFT_EFFICIENCY],
+		                            setup[RIGHT_EFFICIENCY]);
+		firmware.setSignalNoise(setup[SIGNAL_NOISE], (long) setup[NOISE_SEED]);
+		long matchNanos = (long) (setup[MATCH_SECONDS] * 1e9);
+		clock.haltAt(matchNanos);
+		// threads start slowly in a fresh class loader, and several matches
+		// share the CPU, so be patient with threads that are still awake
+		clock.setGraceMillis(GRACE_MILLIS);
+		
+		final Method main = Class.forName(mainClass, true, loader)
+			.getMethod("main", String[].class);
+		final long[] mainEnd = {-1};
+		final String[] error = new String[1];
+		// anything the program starts joins this group, so the clock waits
+		// for it too
+		ThreadGroup group = new ThreadGroup("MatchHarness");
+		clock.setThreadGroup(group);
+		Thread robot = new Thread(group, new Runnable() {
+			public void run() {
+				Throwable thrown = null;
+				try {
+					main.invoke(null, (Object) args);
+				} catch(InvocationTargetException e) {
+					thrown = e.getCause();
+				} catch(Throwable t) {
+					thrown = t;
+				}
+				if(thrown == null || sim.getExitStatus() != null) {
+					mainEnd[0] = clock.nanoTime();
+				} else if(!(thrown instanceof ThreadDeath)) {
+					error[0] = thrown.toString();
+				}
+			}
+		}, "MatchHarness main");
+		robot.setDaemon(true);
+		robot.setContextClassLoader(loader);
+		
+		long realStart = System.nanoTime();
+		robot.start();
+		robot.join((long) (setup[TIMEOUT_SECONDS] * 1000));
+		boolean timedOut = robot.isAlive();
+		if(timedOut) {
+			// busy forever without sleeping, there's no stopping it
+			clock.halt();
+			robot.interrupt();
+		} else {
+			// main is done, but the match isn't: sleeping on the clock lets
+			// any threads the program left running carry on in simulated
+			// time, and once they're all gone the clock skips to the end
+			try {
+				clock.sleepNanos(matchNanos - clock.nanoTime());
+			} catch(ThreadDeath e) {
+				// halted by something else
+			}
+			clock.halt();
+		}
+		
+		double[] summary = new double[SUMMARY_SIZE];
+		summary[X] = firmware.getX();
+		summary[Y] = firmware.getY();
+		summary[HEADING] = firmware.getHeading();
+		summary[DISTANCE] = firmware.getTotalDistance();
+		summary[END_SECONDS] = clock.nanoTime() / 1e9;
+		summary[MAIN_SECONDS] = mainEnd[0] < 0 ? Double.NaN
+		                                       : mainEnd[0] / 1e9;
+		summary[REAL_SECONDS] = (System.nanoTime() - realStart) / 1e9;
+		summary[BUMPS] = firmware.getBumpCount();
+		summary[CLIFFS] = firmware.getCliffCount();
+		summary[SAFETY_STOPS] = firmware.getSafetyStopCount();
+		Integer status = sim.getExitStatus();
+		summary[EXIT_STATUS] = status == null ? Double.NaN : status;
+		summary[TIMED_OUT] = timedOut ? 1 : 0;
+		return new Object[] {summary, error[0]};
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import static cbccore.low.simulator.MatchHarness.*;
+
+/**
+ * What happened in one match run by <code>MatchRunner</code>: how it was set
+ * up, where the Create ended up, and how the match went.
+ *
+ * @author Benjamin Woodruff
+ * @see    MatchRunner
+ */
+
+public final class MatchResult {
+	private int index;
+	private double[] setup;
+	private double[] summary;
+	private String error;
+	
+	MatchResult(int index, double[] setup, double[] summary, String error) {
+		this.index = index;
+		this.setup = setup;
+		this.summary = summary;
+		this.error = error;
+	}
+	
+	/**
+	 * @return  Which run this was, counting from 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return  Where the Create started, in mm, or NaN if in the middle
+	 */
+	public double getStartX() {
+		return setup[START_X];
+	}
+	
+	/**
+	 * @return  Where the Create started, in mm, or NaN if in the middle
+	 */
+	public double getStartY() {
+		return setup[START_Y];
+	}
+	
+	/**
+	 * @return  The way the Create started out facing, in degrees
+	 */
+	public double getStartHeading() {
+		return setup[START_HEADING];
+	}
+	
+	public double getLeftEfficiency() {
+		return setup[LEFT_EFFICIENCY];
+	}
+	
+	public double getRightEfficiency() {
+		return setup[RIGHT_EFFICIENCY];
+	}
+	
+	/**
+	 * @return  Standard deviation of the cliff and wall signal noise
+	 */
+	public double getSignalNoise() {
+		return setup[SIGNAL_NOISE];
+	}
+	
+	/**
+	 * @return  Where the Create ended up, in mm
+	 */
+	public double getX() {
+		return summary == null ? Double.NaN : summary[X];
+	}
+	
+	/**
+	 * @return  Where the Create ended up, in mm
+	 */
+	public double getY() {
+		return summary == null ? Double.NaN : summary[Y];
+	}
+	
+	/**
+	 * @return  The way the Create ended up facing, in degrees,
+	 *              counter-clockwise from the x axis
+	 */
+	public double getHeading() {
+		return summary == null ? Double.NaN : summary[HEADING];
+	}
+	
+	/**
+	 * @return  How far the Create drove, in mm
+	 */
+	public double getDistance() {
+		return summary == null ? Double.NaN : summary[DISTANCE];
+	}
+	
+	/**
+	 * @return  Simulated time when the match ended, in seconds
+	 */
+	public double getEndSeconds() {
+		return summary == null ? Double.NaN : summary[END_SECONDS];
+	}
+	
+	/**
+	 * @return  Simulated time when <code>main</code> returned or the program
+	 *              exited, in seconds, or NaN if it was still running when
+	 *              the match ended
+	 */
+	public double getMainSeconds() {
+		return summary == null ? Double.NaN : summary[MAIN_SECONDS];
+	}
+	
+	/**
+	 * @return  Real time it took to simulate the match, in seconds
+	 */
+	public double getRealSeconds() {
+		return summary == null ? Double.NaN : summary[REAL_SECONDS];
+	}
+	
+	/**
+	 * @return  How many times the Create bumped into something
+	 */
+	public int getBumpCount() {
+		return summary == null ? 0 : (int) summary[BUMPS];
+	}
+	
+	/**
+	 * @return  How many times the Create's cliff sensors found a cliff
+	 */
+	public int getCliffCount() {
+		return summary == null ? 0 : (int) summary[CLIFFS];
+	}
+	
+	/**
+	 * @return  How many times safe mode stopped the Create
+	 */
+	public int getSafetyStopCount() {
+		return summary == null ? 0 : (int) summary[SAFETY_STOPS];
+	}
+	
+	/**
+	 * @return  What the program passed to <code>Device.exit</code>, or
+	 *              <code>null</code> if it didn't
+	 */
+	public Integer getExitStatus() {
+		return summary == null || Double.isNaN(summary[EXIT_STATUS]) ? null
+			: Integer.valueOf((int) summary[EXIT_STATUS]);
+	}
+	
+	/**
+	 * @return  <code>true</code> if the program never slept, and had to be
+	 *              abandoned after the runner's real time limit
+	 */
+	public boolean isTimedOut() {
+		return summary != null && summary[TIMED_OUT] != 0;
+	}
+	
+	/**
+	 * @return  What the program (or the match setup) failed with, or
+	 *              <code>null</code> if nothing went wrong
+	 */
+	public String getError() {
+		return error;
+	}
+	
+	public String toString() {
+		return String.format("#%d: (%.0f, %.0f) %.1fdeg, %.0fmm, ended %.2fs"
+			+ " (%.3fs real), %d bumps, %d cliffs, %d stops%s", index,
+			getX(), getY(), getHeading(), getDistance(), getEndSeconds(),
+			getRealSeconds(), getBumpCount(), getCliffCount(),
+			getSafetyStopCount(), error == null ? "" : ", " + error);
+	}
+}
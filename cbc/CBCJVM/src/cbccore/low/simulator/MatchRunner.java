@@ -0,0 +1,366 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a robot program through many simulated matches at once, each with a
+ * slightly different Create: its start pose is jittered, each wheel gets a
+ * random efficiency, and its cliff and wall signals get noise. Good for
+ * seeing how a strategy holds up without wearing out the one real robot.
+ * <p>
+ * Every match gets its own class loader, so it has its own copy of
+ * <code>cbccore.Device</code> and the rest of cbccore's static state, along
+ * with its own <code>HeadlessSimulator</code> and <code>VirtualClock</code>.
+ * Matches run in parallel on a fixed pool of threads, one per processor by
+ * default. All the random draws come from one seed and are made up front, so
+ * the same seed always sets up the same matches, however many threads there
+ * are; a program that only uses one thread then plays out exactly the same
+ * too.
+ * <p>
+ * The program should call <code>Device.exit</code> rather than
+ * <code>System.exit</code> (<code>Botball.shutDownIn</code> already does),
+ * and should sleep through <code>Clock.get()</code>, or something that does,
+ * while waiting. A program that spins without ever sleeping never lets
+ * simulated time move, and is abandoned after <code>getTimeoutSeconds</code>
+ * of real time.
+ * <pre>
+ * MatchRunner runner = new MatchRunner("my.Robot");
+ * runner.setStartPose(300, 300, 0);
+ * for(MatchResult result : runner.run(1000)) {
+ *     System.out.println(result);
+ * }
+ * </pre>
+ *
+ * @author Benjamin Woodruff
+ * @see    MatchResult
+ * @see    HeadlessSimulator
+ */
+
+public class MatchRunner {
+	private static final String HARNESS = "cbccore.low.simulator.MatchHarness";
+	
+	private String mainClass;
+	private String[] args = new String[0];
+	private URL[] classPath;
+	private String arenaClass = null;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 0;
+	private double matchSeconds = 120;
+	private double timeoutSeconds = 60;
+	private double startX = Double.NaN;
+	private double startY = Double.NaN;
+	private double startHeading = 0;
+	private double positionJitter = 0;
+	private double headingJitter = 0;
+	private double efficiencySpread = 0;
+	private double signalNoise = 0;
+	
+	/**
+	 * A runner for a robot program found on this JVM's class path.
+	 *
+	 * @param  mainClass  The name of the class with the program's
+	 *                        <code>main</code>
+	 */
+	public MatchRunner(String mainClass) {
+		this(mainClass, getDefaultClassPath());
+	}
+	
+	/**
+	 * @param  mainClass  The name of the class with the program's
+	 *                        <code>main</code>
+	 * @param  classPath  Where to load the program and cbccore from
+	 */
+	public MatchRunner(String mainClass, URL[] classPath) {
+		this.mainClass = mainClass;
+		this.classPath = classPath.clone();
+	}
+	
+	private static URL[] getDefaultClassPath() {
+		String[] entries = System.getProperty("java.class.path")
+			.split(File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		try {
+			for(int i = 0; i < entries.length; ++i) {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			}
+		} catch(MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+		return urls;
+	}
+	
+	/**
+	 * @param  args  What to pass to the program's <code>main</code>
+	 */
+	public void setArgs(String... args) {
+		this.args = args.clone();
+	}
+	
+	/**
+	 * Sets the arena for every match. It is made fresh in each match's class
+	 * loader, so it is given by name.
+	 *
+	 * @param  arenaClass  The name of an <code>Arena</code> subclass with a
+	 *                         no argument constructor, or <code>null</code>
+	 *                         for an empty Botball board
+	 */
+	public void setArenaClass(String arenaClass) {
+		this.arenaClass = arenaClass;
+	}
+	
+	/**
+	 * @param  threads  How many matches to run at once
+	 */
+	public void setThreads(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("need at least one thread");
+		}
+		this.threads = threads;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * @param  seed  Seed for every random choice made in setting up matches
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * @param  seconds  Length of a match in simulated time, 120 by default
+	 */
+	public void setMatchSeconds(double seconds) {
+		matchSeconds = seconds;
+	}
+	
+	public double getMatchSeconds() {
+		return matchSeconds;
+	}
+	
+	/**
+	 * @param  seconds  Real time to wait for a program that never sleeps
+	 *                      before giving up on it, 60 by default
+	 */
+	public void setTimeoutSeconds(double seconds) {
+		timeoutSeconds = seconds;
+	}
+	
+	public double getTimeoutSeconds() {
+		return timeoutSeconds;
+	}
+	
+	/**
+	 * Sets where the Create starts out, before any jitter. By default it
+	 * starts in the middle of the arena, facing along x.
+	 *
+	 * @param  x        In mm
+	 * @param  y        In mm
+	 * @param  heading  In degrees, counter-clockwise from the x axis
+	 */
+	public void setStartPose(double x, double y, double heading) {
+		startX = x;
+		startY = y;
+		startHeading = heading;
+	}
+	
+	/**
+	 * Sets how far off the start pose each match may be.
+	 *
+	 * @param  mm       Standard deviation of the start position, along each
+	 *                      axis
+	 * @param  degrees  Standard deviation of the start heading
+	 */
+	public void setStartJitter(double mm, double degrees) {
+		positionJitter = mm;
+		headingJitter = degrees;
+	}
+	
+	/**
+	 * @param  spread  Standard deviation of each wheel's efficiency around 1,
+	 *                     say .05 for wheels within about 5% of each other
+	 */
+	public void setEfficiencySpread(double spread) {
+		efficiencySpread = spread;
+	}
+	
+	/**
+	 * @param  sigma  Standard deviation of the noise on the cliff and wall
+	 *                    signals
+	 */
+	public void setSignalNoise(double sigma) {
+		signalNoise = sigma;
+	}
+	
+	/**
+	 * Runs matches, and waits for all of them to finish.
+	 *
+	 * @param  runs  How many matches to run
+	 * @return       One result per match, in order
+	 */
+	public List<MatchResult> run(int runs) throws InterruptedException {
+		Random random = new Random(seed);
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "MatchRunner");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		List<Future<MatchResult>> futures =
+			new ArrayList<Future<MatchResult>>(runs);
+		try {
+			for(int i = 0; i < runs; ++i) {
+				final int index = i;
+				final double[] setup = makeSetup(random);
+				futures.add(pool.submit(new Callable<MatchResult>() {
+					public MatchResult call() {
+						return runMatch(index, setup);
+					}
+				}));
+			}
+			List<MatchResult> results = new ArrayList<MatchResult>(runs);
+			for(Future<MatchResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch(ExecutionException e) {
+					// runMatch catches everything it expects to happen
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private double[] makeSetup(Random random) {
+		double[] setup = new double[MatchHarness.SETUP_SIZE];
+		double dx = random.nextGaussian() * positionJitter;
+		double dy = random.nextGaussian() * positionJitter;
+		setup[MatchHarness.START_X] = startX + dx; // NaN stays NaN
+		setup[MatchHarness.START_Y] = startY + dy;
+		setup[MatchHarness.START_HEADING] =
+			startHeading + random.nextGaussian() * headingJitter;
+		setup[MatchHarness.LEFT_EFFICIENCY] =
+			1 + random.nextGaussian() * efficiencySpread;
+		setup[MatchHarness.RIGHT_EFFICIENCY] =
+			1 + random.nextGaussian() * efficiencySpread;
+		setup[MatchHarness.SIGNAL_NOISE] = signalNoise;
+		setup[MatchHarness.NOISE_SEED] = random.nextInt();
+		setup[MatchHarness.MATCH_SECONDS] = matchSeconds;
+		setup[MatchHarness.TIMEOUT_SECONDS] = timeoutSeconds;
+		return setup;
+	}
+	
+	private MatchResult runMatch(int index, double[] setup) {
+		ClassLoader loader = new IsolatedClassLoader(classPath);
+		try {
+			Method run = loader.loadClass(HARNESS).getMethod("run",
+				String.class, String[].class, String.class, double[].class);
+			Object[] out = (Object[]) run.invoke(null, mainClass,
+				args.clone(), arenaClass, setup);
+			return new MatchResult(index, setup, (double[]) out[0],
+			                       (String) out[1]);
+		} catch(InvocationTargetException e) {
+			return new MatchResult(index, setup, null,
+			                       e.getCause().toString());
+		} catch(Exception e) {
+			return new MatchResult(index, setup, null, e.toString());
+		}
+	}
+	
+	/**
+	 * Loads classes itself before asking its parent, so that each match gets
+	 * fresh copies of everything but the JDK.
+	 */
+	private static class IsolatedClassLoader extends URLClassLoader {
+		public IsolatedClassLoader(URL[] urls) {
+			super(urls, MatchRunner.class.getClassLoader());
+		}
+		
+		protected synchronized Class<?> loadClass(String name, boolean resolve)
+			throws ClassNotFoundException {
+			Class<?> c = findLoadedClass(name);
+			if(c == null && !isShared(name)) {
+				try {
+					c = findClass(name);
+				} catch(ClassNotFoundException e) {
+					// the parent might have it
+				}
+			}
+			if(c == null) {
+				return super.loadClass(name, resolve);
+			}
+			if(resolve) {
+				resolveClass(c);
+			}
+			return c;
+		}
+		
+		private static boolean isShared(String name) {
+			return name.startsWith("java.") || name.startsWith("javax.")
+				|| name.startsWith("sun.") || name.startsWith("com.sun.");
+		}
+	}
+	
+	/**
+	 * Runs matches from the command line, printing each result:
+	 * <code>MatchRunner mainClass [runs [threads [seed]]]</code>
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if(args.length < 1) {
+			System.err.println(
+				"usage: MatchRunner mainClass [runs [threads [seed]]]");
+			return;
+		}
+		MatchRunner runner = new MatchRunner(args[0]);
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		if(args.length > 2) {
+			runner.setThreads(Integer.parseInt(args[2]));
+		}
+		if(args.length > 3) {
+			runner.setSeed(Long.parseLong(args[3]));
+		}
+		long start = System.nanoTime();
+		for(MatchResult result : runner.run(runs)) {
+			System.out.println(result);
+		}
+		System.out.printf("%d matches in %.2fs on %d threads%n", runs,
+		                  (System.nanoTime() - start) / 1e9,
+		                  runner.getThreads());
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.util.Random;
+
+import cbccore.Clock;
+
+/**
+ * Makes simulated readings look like real ones. A real sensor is never read
+ * exactly or for free: the value wobbles, it only comes in whole steps of
+ * the converter, the odd read comes back stale, and every read crosses JNI
+ * and waits on the CBOB. Code tuned against perfect readings tends to poll
+ * too fast and trust single samples, and then times out on the robot.
+ * <p>
+ * A <code>SensorNoise</code> models all of that, each part off by default:
+ * <ul>
+ * <li>gaussian noise, added before rounding</li>
+ * <li>quantization, by rounding to whole counts and clamping to the
+ *     converter's range (0 to 1023 for the 10-bit analog ports)</li>
+ * <li>dropout, where a read returns the previous reading again</li>
+ * <li>latency, slept on <code>Clock.get()</code> once per call, so under a
+ *     <code>VirtualClock</code> it costs simulated time, not real time</li>
+ * </ul>
+ * The noise comes from its own seeded generator, so runs are repeatable.
+ * There are no measured defaults for latency; time the calls you care about
+ * on your own CBC and use those.
+ *
+ * @author Benjamin Woodruff
+ * @see    SimulatedSensor#setAnalogNoise
+ * @see    SimulatedCBOB#setPositionNoise
+ */
+
+public class SensorNoise {
+	private Random random;
+	private double sigma = 0;
+	private double dropout = 0;
+	private long latencyNanos = 0;
+	private long dropouts = 0;
+	
+	/**
+	 * @param  seed  Seed for the noise
+	 */
+	public SensorNoise(long seed) {
+		random = new Random(seed);
+	}
+	
+	/**
+	 * @param  sigma  Standard deviation of the gaussian noise, in counts, 0
+	 *                    for none
+	 */
+	public synchronized void setSigma(double sigma) {
+		if(sigma < 0) {
+			throw new IllegalArgumentException("negative sigma");
+		}
+		this.sigma = sigma;
+	}
+	
+	public synchronized double getSigma() {
+		return sigma;
+	}
+	
+	/**
+	 * @param  probability  Chance of any one read returning the previous
+	 *                          reading, 0 to 1
+	 */
+	public synchronized void setDropout(double probability) {
+		if(probability < 0 || probability > 1) {
+			throw new IllegalArgumentException("need 0 <= probability <= 1");
+		}
+		dropout = probability;
+	}
+	
+	public synchronized double getDropout() {
+		return dropout;
+	}
+	
+	/**
+	 * @param  micros  How long each call takes, in microseconds
+	 */
+	public synchronized void setLatencyMicros(double micros) {
+		if(micros < 0) {
+			throw new IllegalArgumentException("negative latency");
+		}
+		latencyNanos = (long) (micros * 1000.);
+	}
+	
+	public synchronized double getLatencyMicros() {
+		return latencyNanos / 1000.;
+	}
+	
+	/**
+	 * @return  The number of reads that dropped out so far
+	 */
+	public synchronized long getDropoutCount() {
+		return dropouts;
+	}
+	
+	/**
+	 * Turns a true value into a reading. Doesn't wait out the latency, as a
+	 * single call may take several readings; see <code>delay</code>.
+	 *
+	 * @param  value     The true value, in counts
+	 * @param  min       The lowest reading the converter gives
+	 * @param  max       The highest reading the converter gives
+	 * @param  previous  The previous reading, returned on a dropout
+	 * @return           The reading
+	 */
+	public synchronized int read(double value, int min, int max,
+	                             int previous) {
+		if(isDropout()) {
+			return previous;
+		}
+		if(sigma > 0) {
+			value += random.nextGaussian() * sigma;
+		}
+		return (int) Math.max(min, Math.min(max, Math.round(value)));
+	}
+	
+	/**
+	 * Turns a true digital value into a reading. Digital ports only drop out.
+	 *
+	 * @param  value     The true value
+	 * @param  previous  The previous reading, returned on a dropout
+	 * @return           The reading
+	 */
+	public synchronized boolean read(boolean value, boolean previous) {
+		return isDropout() ? previous : value;
+	}
+	
+	private boolean isDropout() {
+		if(dropout > 0 && random.nextDouble() < dropout) {
+			++dropouts;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Waits out the latency of one call. An interrupt cuts the wait short,
+	 * and is left set for the caller to see.
+	 */
+	public void delay() {
+		long nanos;
+		synchronized(this) {
+			nanos = latencyNanos;
+		}
+		if(nanos <= 0) {
+			return;
+		}
+		try {
+			Clock.get().sleepNanos(nanos);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
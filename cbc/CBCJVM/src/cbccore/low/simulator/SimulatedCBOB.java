@@ -16,10 +16,16 @@
 
 package cbccore.low.simulator;
 
+import cbccore.Clock;
+
 /**
  * Simulates the actions of the CBOB, called on by the simulated CBC for stuff
  * like motor info. Helps to divide up the tasks, might even be able to speed
  * things up with multithreading at some point.
+ * <p>
+ * Positions read through <code>readMotorPosition</code> can be given back-EMF
+ * jitter with <code>setPositionNoise</code>; the CBOB's own idea of where a
+ * motor is, used for reaching targets, stays exact.
  * 
  * @author Benjamin Woodruff
  */
@@ -29,8 +35,13 @@ public class SimulatedCBOB {
 	private MotorSpeed[] motorSpeeds = new MotorSpeed[4];
 	private int[] motorPositions = new int[4]; //straight zeros are fine
 	private long[] startTimes = new long[4]; //straight zeros are fine
+	// thousandths of a tick left over when a speed was last changed, so that
+	// a speed changed often still adds up to the right distance
+	private long[] remainders = new long[4];
 	private boolean[] hasTarget = new boolean[4];
 	private int[] motorTargets = new int[4];
+	private int[] lastReadings = new int[4];
+	private volatile SensorNoise positionNoise = null;
 	
 	public SimulatedCBOB() {
 		for(int i = 0; i < motorSpeeds.length; ++i) {
@@ -46,8 +57,12 @@ public class SimulatedCBOB {
 	}
 	
 	public void setMotorSpeed(int port, MotorSpeed speed) {
-		motorPositions[port] = getMotorPosition(port);
-		startTimes[port] = System.currentTimeMillis();
+		int position = getMotorPosition(port);
+		long moved = getMoved(port);
+		remainders[port] = position == motorPositions[port] + moved / 1000
+			? moved % 1000 : 0;
+		motorPositions[port] = position;
+		startTimes[port] = Clock.get().millis();
 		motorSpeeds[port] = speed;
 		hasTarget[port] = false;
 	}
@@ -61,10 +76,15 @@ public class SimulatedCBOB {
 				0 - Math.abs(motorSpeeds[port].speed);
 	}
 	
+	// thousandths of a tick moved since the speed was set
+	private long getMoved(int port) {
+		return remainders[port] + (long) motorSpeeds[port].getTpsSpeed() *
+		       (Clock.get().millis() - startTimes[port]);
+	}
+	
 	public int getMotorPosition(int port) {
 		int standardPosition =
-		    motorPositions[port] + motorSpeeds[port].getTpsSpeed() *
-		    ((int)(System.currentTimeMillis() - startTimes[port])) / 1000;
+		    motorPositions[port] + (int) (getMoved(port) / 1000);
 		return
 			hasTarget[port]?
 				((motorSpeeds[port].speed > 0)?
@@ -73,9 +93,49 @@ public class SimulatedCBOB {
 				standardPosition;
 	}
 	
+	/**
+	 * Reads a motor's position the way a program sees it, with jitter and
+	 * latency if there is a <code>SensorNoise</code> for positions.
+	 */
+	public int readMotorPosition(int port) {
+		SensorNoise noise = positionNoise;
+		if(noise == null) {
+			return getMotorPosition(port);
+		}
+		noise.delay();
+		return lastReadings[port] = noise.read(getMotorPosition(port),
+			Integer.MIN_VALUE, Integer.MAX_VALUE, lastReadings[port]);
+	}
+	
+	/**
+	 * Reads every motor's position at once, paying the latency only once.
+	 * 
+	 * @param  positions  Filled with the positions of motors 0-3
+	 */
+	public void readMotorPositions(int[] positions) {
+		SensorNoise noise = positionNoise;
+		if(noise != null) {
+			noise.delay();
+		}
+		for(int i = 0; i < motorPositions.length; ++i) {
+			positions[i] = noise == null ? getMotorPosition(i)
+				: (lastReadings[i] = noise.read(getMotorPosition(i),
+					Integer.MIN_VALUE, Integer.MAX_VALUE, lastReadings[i]));
+		}
+	}
+	
+	/**
+	 * @param  noise  Jitter, dropout and latency for position reads, in
+	 *                    ticks, or <code>null</code> for exact positions
+	 */
+	public void setPositionNoise(SensorNoise noise) {
+		positionNoise = noise;
+	}
+	
 	public void setMotorPosition(int port, int pos) {
 		motorPositions[port] = pos;
-		startTimes[port] = System.currentTimeMillis();
+		remainders[port] = 0;
+		startTimes[port] = Clock.get().millis();
 	}
 	
 	public boolean isDone(int port) {
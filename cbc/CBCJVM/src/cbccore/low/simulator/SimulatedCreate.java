@@ -16,265 +16,524 @@
 
 package cbccore.low.simulator;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.awt.GraphicsEnvironment;
 
 import javax.swing.JFrame;
 
 import cbc.NotImplemented;
+import cbccore.create.CreateSensorFrame;
 import cbccore.low.Create;
 
 /**
+ * A Create for the simulator. Every call is turned into the same Open
+ * Interface bytes the CBC would send over serial, and those are fed to a
+ * <code>CreateFirmware</code>, which does the actual simulating; the sensor
+ * getters read straight back from it.
+ * <p>
+ * In real time, a thread steps the firmware along with the wall clock and a
+ * window shows the arena. Given a <code>VirtualClock</code>, the firmware
+ * steps along with that instead. Otherwise nothing moves until
+ * <code>advance</code> is called (<code>create_spin_block</code> steps the
+ * simulation itself). Either of the last two is headless, deterministic, and
+ * as fast as the CPU allows.
  * 
  * @author Braden McDorman / Benjamin Woodruff
- * 
+ * @see    CreateFirmware
  */
 
 public class SimulatedCreate extends Create {
-	
+
 	protected boolean connected;
 	
-	public double radiansPerSecond;
-	public double forwardSpeed;
-	public double width;
-	
-	private JFrame simFrame = new JFrame("Create World");
-	
-	private int x = 0;
-	private int y = 0;
+	private CreateFirmware firmware;
+	private boolean realTime;
+	private VirtualClock clock = null;
+	private volatile Thread runner = null;
+	private JFrame simFrame = null;
+	
+	// what the set_create_* calls have put on the odometry
+	private int distanceOffset = 0;
+	private int angleOffset = 0;
+	private int normalizedOffset = 0;
+	
+	private int leds = 0; // advance and play LEDs, bits 3 and 1
+	private int powerColor = 0;
+	private int powerIntensity = 0;
+	private byte[] command = new byte[5];
+	
+	/**
+	 * A Create on an empty Botball board, in real time unless there is no
+	 * display to show it on.
+	 */
+	public SimulatedCreate() {
+		this(new Arena(), !GraphicsEnvironment.isHeadless());
+	}
+	
+	/**
+	 * A headless Create in a given arena, only moved by <code>advance</code>.
+	 */
+	public SimulatedCreate(Arena arena) {
+		this(arena, false);
+	}
+	
+	/**
+	 * @param  arena     The world to drive around in
+	 * @param  realTime  Whether to keep up with the wall clock and show a
+	 *                       window once connected
+	 */
+	public SimulatedCreate(Arena arena, boolean realTime) {
+		firmware = new CreateFirmware(arena);
+		this.realTime = realTime;
+	}
+	
+	/**
+	 * A headless Create that moves along with a <code>VirtualClock</code>:
+	 * whenever the clock advances, so does the simulation.
+	 *
+	 * @param  arena  The world to drive around in
+	 * @param  clock  The clock to follow
+	 */
+	public SimulatedCreate(Arena arena, VirtualClock clock) {
+		this(arena, false);
+		this.clock = clock;
+		clock.addListener(new VirtualClock.Listener() {
+			public void clockAdvanced(long nanos) {
+				firmware.advance(nanos);
+			}
+		});
+	}
+	
+	public CreateFirmware getFirmware() {
+		return firmware;
+	}
+	
+	/**
+	 * Runs the simulation forward. Meant for headless use; in real time, or
+	 * with a <code>VirtualClock</code>, the simulation also keeps running by
+	 * itself.
+	 *
+	 * @param  seconds  Simulated time to add
+	 */
+	public void advance(double seconds) {
+		firmware.advance((long) (seconds * 1000000000.));
+	}
+	
+	public synchronized int create_connect() {
+		connected = true;
+		if(realTime && runner == null) {
+			runner = new Thread(new Runner(), "SimulatedCreate");
+			runner.setDaemon(true);
+			runner.start();
+			if(!GraphicsEnvironment.isHeadless()) {
+				simFrame = new JFrame("Create World");
+				simFrame.add(new CreateWorld(this));
+				simFrame.pack();
+				simFrame.setVisible(true);
+			}
+		}
+		return 0;
+	}
 	
-	private Queue<Integer> buffer = new LinkedList<Integer>();
+	public synchronized void create_disconnect() {
+		connected = false;
+		runner = null;
+		if(simFrame != null) {
+			simFrame.dispose();
+			simFrame = null;
+		}
+	}
 	
-	public SimulatedCreate() {
+	// steps the firmware along with the wall clock while connected
+	private class Runner implements Runnable {
+		public void run() {
+			long last = System.nanoTime();
+			while(runner == Thread.currentThread()) {
+				try {
+					Thread.sleep(CreateFirmware.STEP_NANOS / 1000000L);
+				} catch(InterruptedException e) {
+					return;
+				}
+				long now = System.nanoTime();
+				firmware.advance(now - last);
+				last = now;
+			}
+		}
 	}
 	
-	public int create_connect() {
-		simFrame.setVisible(true);
-		return 0;
+	private synchronized void send(int... bytes) {
+		for(int i = 0; i < bytes.length; ++i) {
+			command[i] = (byte) bytes[i];
+		}
+		firmware.receive(command, 0, bytes.length);
 	}
 	
-	public void create_disconnect() {
-		connected = false;
+	private void send16(int op, int a, int b) {
+		send(op, (a >> 8) & 0xFF, a & 0xFF, (b >> 8) & 0xFF, b & 0xFF);
 	}
 	
-	@NotImplemented
 	public void create_start() {
-		// stub
+		send(128);
 	}
 	
-	@NotImplemented
 	public void create_passive() {
-		// stub
+		send(128);
 	}
 	
-	@NotImplemented
 	public void create_safe() {
-		// stub
+		send(131);
 	}
 	
-	@NotImplemented
 	public void create_full() {
-		// stub
+		send(132);
 	}
 	
-	@NotImplemented
 	public void create_spot() {
-		// stub
+		send(134);
 	}
 	
-	@NotImplemented
 	public void create_cover() {
-		// stub
+		send(135);
 	}
 	
-	@NotImplemented
 	public void create_demo(int d) {
-		// stub
+		send(136, d);
 	}
 	
-	@NotImplemented
 	public void create_cover_dock() {
-		// stub
+		send(143);
 	}
 	
 	public int create_mode() {
-		return 3;
+		return firmware.getMode();
 	}
 	
-	// Don't use these, they update inaccessable variables
-	public int create_sensor_update() {
-		return 0;
+	private int bit(int packet, int mask) {
+		return (firmware.getPacket(packet) & mask) != 0 ? 1 : 0;
 	}
 	
-	public int create_wall() {
-		return 0;
+	public int get_create_mode(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_MODE);
 	}
 	
-	public int create_buttons() {
-		return 0;
+	public int get_create_lbump(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUMPS_DROPS,
+		           CreateSensorFrame.BUMP_LEFT);
 	}
 	
-	public int create_bumpdrop() {
-		return 0;
+	public int get_create_rbump(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUMPS_DROPS,
+		           CreateSensorFrame.BUMP_RIGHT);
 	}
 	
-	public int create_cliffs() {
-		return 0;
+	public int get_create_lwdrop(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUMPS_DROPS,
+		           CreateSensorFrame.DROP_LEFT);
 	}
 	
-	public int create_angle() {
-		return 0;
+	public int get_create_cwdrop(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUMPS_DROPS,
+		           CreateSensorFrame.DROP_CASTER);
 	}
 	
-	public int create_distance() {
-		return 0;
+	public int get_create_rwdrop(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUMPS_DROPS,
+		           CreateSensorFrame.DROP_RIGHT);
 	}
 	
-	public int create_velocity() {
-		return 0;
+	public int get_create_wall(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_WALL);
+	}
+	
+	public int get_create_lcliff(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CLIFF_LEFT);
+	}
+	
+	public int get_create_lfcliff(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT);
+	}
+	
+	public int get_create_rfcliff(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CLIFF_FRONT_RIGHT);
 	}
 	
-	public int create_read_IR() {
+	public int get_create_rcliff(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CLIFF_RIGHT);
+	}
+	
+	public int get_create_vwall(float lag) {
 		return 0;
 	}
 	
-	public int create_overcurrents() {
+	public int get_create_overcurrents(float lag) {
 		return 0;
 	}
 	
-	public int create_battery_charge() {
+	public int get_create_infrared(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_INFRARED);
+	}
+	
+	public int get_create_advance_button(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUTTONS,
+		           CreateSensorFrame.BUTTON_ADVANCE);
+	}
+	
+	public int get_create_play_button(float lag) {
+		return bit(CreateSensorFrame.PACKET_BUTTONS,
+		           CreateSensorFrame.BUTTON_PLAY);
+	}
+	
+	private int getTotalAngle() {
+		return (int) Math.round(firmware.getTotalAngle());
+	}
+	
+	public int get_create_normalized_angle(float lag) {
+		int angle = (getTotalAngle() + normalizedOffset) % 360;
+		return angle < 0 ? angle + 360 : angle;
+	}
+	
+	public void set_create_normalized_angle(int angle) {
+		normalizedOffset = angle - getTotalAngle();
+	}
+	
+	public int get_create_total_angle(float lag) {
+		return getTotalAngle() + angleOffset;
+	}
+	
+	public void set_create_total_angle(int angle) {
+		angleOffset = angle - getTotalAngle();
+	}
+	
+	public int get_create_distance(float lag) {
+		return (int) Math.round(firmware.getTotalDistance()) + distanceOffset;
+	}
+	
+	public void set_create_distance(int dist) {
+		distanceOffset = dist - (int) Math.round(firmware.getTotalDistance());
+	}
+	
+	public int get_create_battery_charging_state(float lag) {
 		return 0;
 	}
 	
-	public int create_cargo_bay_inputs() {
+	public int get_create_battery_voltage(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_VOLTAGE);
+	}
+	
+	public int get_create_battery_current(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CURRENT);
+	}
+	
+	public int get_create_battery_temp(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_BATTERY_TEMPERATURE);
+	}
+	
+	public int get_create_battery_charge(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_BATTERY_CHARGE);
+	}
+	
+	public int get_create_battery_capacity(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_BATTERY_CAPACITY);
+	}
+	
+	public int get_create_wall_amt(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_WALL_SIGNAL);
+	}
+	
+	public int get_create_lcliff_amt(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CLIFF_LEFT_SIGNAL);
+	}
+	
+	public int get_create_lfcliff_amt(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT_SIGNAL);
+	}
+	
+	public int get_create_rfcliff_amt(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_FRONT_RIGHT_SIGNAL);
+	}
+	
+	public int get_create_rcliff_amt(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_RIGHT_SIGNAL);
+	}
+	
+	public int get_create_bay_DI(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_CARGO_BAY_DIGITAL);
+	}
+	
+	public int get_create_bay_AI(float lag) {
 		return 0;
 	}
 	
-	public void create_stop() {
-		create_drive_straight(0);
+	public int get_create_song_number(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_SONG_NUMBER);
 	}
 	
-	@NotImplemented
-	public void create_drive(int speed, int radius) {
-		
+	public int get_create_song_playing(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_SONG_PLAYING);
 	}
 	
-	public void create_drive_straight(int speed) {
-		radiansPerSecond = 0;
-		forwardSpeed = speed / 10.;
+	public int get_create_number_of_stream_packets(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_STREAM_PACKETS);
+	}
+	
+	public int get_create_requested_velocity(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_REQUESTED_VELOCITY);
+	}
+	
+	public int get_create_requested_radius(float lag) {
+		return firmware.getPacket(CreateSensorFrame.PACKET_REQUESTED_RADIUS);
 	}
 	
-	public char HIGH_BYTE(int b) {
-		return (char) ((b & 0x0000FF00) >> 8);
+	public int get_create_requested_right_velocity(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_REQUESTED_RIGHT_VELOCITY);
 	}
 	
-	public char LOW_BYTE(int b) {
-		return (char) ((b & 0x000000FF) >> 0);
+	public int get_create_requested_left_velocity(float lag) {
+		return firmware.getPacket(
+			CreateSensorFrame.PACKET_REQUESTED_LEFT_VELOCITY);
+	}
+	
+	public void create_stop() {
+		create_drive_direct(0, 0);
+	}
+	
+	public void create_drive(int speed, int radius) {
+		send16(137, speed, radius);
+	}
+	
+	public void create_drive_straight(int speed) {
+		send16(137, speed, 32767);
 	}
 	
 	public void create_spin_CW(int speed) {
-		create_write_byte(137);
-		create_write_byte(HIGH_BYTE(speed));
-		create_write_byte(LOW_BYTE(speed));
-		create_write_byte(HIGH_BYTE(-1));
-		create_write_byte(LOW_BYTE(-1));
+		send16(137, speed, -1);
 	}
 	
 	public void create_spin_CCW(int speed) {
-		create_write_byte(137);
-		create_write_byte(HIGH_BYTE(speed));
-		create_write_byte(LOW_BYTE(speed));
-		create_write_byte(HIGH_BYTE(1));
-		create_write_byte(LOW_BYTE(1));
+		send16(137, speed, 1);
 	}
 	
-	@NotImplemented
 	public void create_drive_direct(int r_speed, int l_speed) {
-		// stub
+		send16(145, r_speed, l_speed);
 	}
 	
-	@NotImplemented
 	public int create_spin_block(int speed, int angle) {
-		return 0; // stub
+		if(speed <= 0 || firmware.getMode() < CreateFirmware.MODE_SAFE) {
+			return -1;
+		}
+		double target = firmware.getTotalAngle() + angle;
+		if(angle > 0) {
+			create_spin_CCW(speed);
+		} else {
+			create_spin_CW(speed);
+		}
+		try {
+			while(angle > 0 ? firmware.getTotalAngle() < target
+			                : firmware.getTotalAngle() > target) {
+				if(firmware.getLeftSpeed() == 0
+				   && firmware.getRightSpeed() == 0) {
+					return -1; // safe mode stopped us
+				}
+				if(runner != null) {
+					firmware.awaitStep();
+				} else if(clock != null) {
+					clock.sleepNanos(CreateFirmware.STEP_NANOS);
+				} else {
+					firmware.step();
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} finally {
+			create_stop();
+		}
+		return 0;
+	}
+	
+	private void sendLeds() {
+		send(139, leds, powerColor, powerIntensity);
 	}
 	
-	// public int _create_get_raw_encoders(long* lenc, long* renc) {
-	@NotImplemented
 	public void create_advance_led(int on) {
-		// stub
+		leds = on != 0 ? leds | 8 : leds & ~8;
+		sendLeds();
 	}
 	
-	@NotImplemented
 	public void create_play_led(int on) {
-		// stub
+		leds = on != 0 ? leds | 2 : leds & ~2;
+		sendLeds();
 	}
 	
-	@NotImplemented
 	public void create_power_led(int color, int brightness) {
-		// stub
+		powerColor = color & 0xFF;
+		powerIntensity = brightness & 0xFF;
+		sendLeds();
 	}
 	
-	@NotImplemented
 	public void create_digital_output(int bits) {
-		// stub
+		send(147, bits);
 	}
 	
-	@NotImplemented
 	public void create_pwm_low_side_drivers(int pwm2, int pwm1, int pwm0) {
-		// stub
+		send(144, pwm2, pwm1, pwm0);
 	}
 	
-	@NotImplemented
 	public void create_low_side_drivers(int pwm2, int pwm1, int pwm0) {
-		// stub
+		send(138, (pwm2 != 0 ? 4 : 0) | (pwm1 != 0 ? 2 : 0)
+		          | (pwm0 != 0 ? 1 : 0));
 	}
 	
 	@NotImplemented
 	public void create_load_song(int num) {
-		// stub
+		// the song array lives in native code; there is nothing to load
 	}
 	
-	@NotImplemented
 	public void create_play_song(int num) {
-		// stub
+		send(141, num);
 	}
 	
-	// public int create_read_block(char* data, int count) {
+	/**
+	 * Reads whatever the Create has sent back so far. Never blocks; query
+	 * responses are ready as soon as the query is written.
+	 */
+	public int create_read_block(byte[] buffer, int count) {
+		return firmware.read(buffer, count);
+	}
 	
 	public void create_write_byte(int write_byte) {
 		create_write_byte((char)write_byte);
 	}
 	
-	
 	public void create_write_byte(char write_byte) {
-		System.out.println((int)write_byte);
+		firmware.receive(write_byte & 0xFF);
+	}
+	
+	public int create_write_block(byte[] data, int off, int len) {
+		firmware.receive(data, off, len);
+		return len;
 	}
 	
-	@NotImplemented
 	public void create_clear_serial_buffer() {
-		// stub
+		firmware.clearOutput();
 	}
 	
+	/**
+	 * @return  Where the Create is, in mm
+	 */
 	public int getX() {
-		return x;
+		return (int) firmware.getX();
 	}
 	
+	/**
+	 * @return  Where the Create is, in mm
+	 */
 	public int getY() {
-		return y;
-	}
-	
-	private String getBits(char value) {
-		int displayMask = 1 << 7;
-		StringBuffer buf = new StringBuffer(35);
-		
-		for (int c = 1; c <= 8; c++) {
-			buf.append((value & displayMask) == 0 ? '0' : '1');
-			value <<= 1;
-			
-			if (c % 8 == 0)
-				buf.append(' ');
-		}
-		
-		return buf.toString();
+		return (int) firmware.getY();
 	}
 }
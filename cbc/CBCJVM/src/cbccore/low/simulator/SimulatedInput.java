@@ -47,6 +47,17 @@ public class SimulatedInput extends Input {
 	public Button blb;
 	
 	public SimulatedInput() {
+		this(true);
+	}
+	
+	/**
+	 * @param  buttons  Whether to make the AWT buttons. Without them, set
+	 *                      the public fields to press buttons.
+	 */
+	public SimulatedInput(boolean buttons) {
+		if(!buttons) {
+			return;
+		}
 		SimulatedInputButtonListener sibl =
 			new SimulatedInputButtonListener(this);
 		ub = new Button("u");
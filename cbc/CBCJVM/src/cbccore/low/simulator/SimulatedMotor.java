@@ -17,6 +17,7 @@
 package cbccore.low.simulator;
 
 import cbc.NotImplemented;
+import cbccore.Clock;
 import cbccore.low.Motor;
 
 /**
@@ -73,7 +74,7 @@ public class SimulatedMotor extends Motor {
 	// move motor (0 to 3) at speed by delta_pos
 	public int move_relative_position(int motor, int speed, int delta_pos) {
 		return move_to_position(motor, speed,
-			delta_pos+get_motor_position_counter(motor));
+			delta_pos+cbob.getMotorPosition(motor));
 	}
 	
 	// move motor (0 to 3) at speed by delta_pos
@@ -99,17 +100,18 @@ public class SimulatedMotor extends Motor {
 	
 	// returns int of motor (0 to 3) position +/-2147483647
 	public int get_motor_position_counter(int motor) {
-		return cbob.getMotorPosition(motor);
+		return cbob.readMotorPosition(motor);
 	}
 	
-	// this is a poor implementation, but you shouldn't be using it anyways.
-	// returns when motor (0 to 3) has reached goal
+	// returns when motor (0 to 3) has reached goal, checking every
+	// millisecond of simulated time
 	public void block_motor_done(int motor) {
 		while(!cbob.isDone(motor)) {
 			try {
-				Thread.yield();
-				Thread.sleep(0);
-			} catch(Exception e) {}
+				Clock.get().sleep(1);
+			} catch(InterruptedException e) {
+				return;
+			}
 		}
 	}
 	
@@ -150,4 +152,18 @@ public class SimulatedMotor extends Motor {
 			cbob.setMotorSpeed(i, new MotorSpeed(0, false));
 		}
 	}
+	
+	// PID control of each motor (0 to 3) in mask at velocities[motor]
+	public void mav_group(int mask, int[] velocities) {
+		for(int i = 0; i < 4; ++i) {
+			if((mask & (1 << i)) != 0) {
+				move_at_velocity(i, velocities[i]);
+			}
+		}
+	}
+	
+	// fills counters[0..4) with the position of every motor
+	public void get_motor_position_counters(int[] counters) {
+		cbob.readMotorPositions(counters);
+	}
 }
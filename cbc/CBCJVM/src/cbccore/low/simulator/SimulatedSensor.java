@@ -20,18 +20,116 @@ import cbc.NotImplemented;
 import cbccore.low.Sensor;
 
 /**
+ * Sensors for the simulator. Every port reads whatever was last set with
+ * <code>setDigital</code>, <code>setAnalog</code> or <code>setAccel</code>,
+ * exactly and instantly, unless given a <code>SensorNoise</code>.
+ * <p>
+ * Latency is charged once per call, so <code>sensor_snapshot</code> costs one
+ * call's worth for every reading at once, same as on the CBC.
  * 
  * @author Braden McDorman / Benjamin Woodruff
- *
+ * @see    SensorNoise
  */
 
 public class SimulatedSensor extends Sensor {
 	
-	@NotImplemented public SimulatedSensor() {
+	private boolean[] digitals = new boolean[8]; // ports 8 to 15
+	private double[] analogs = new double[8]; // 10-bit counts
+	private double[] accels = {0., -(int)(2047./1.5*1.), 0.};
+	
+	// previous readings, for dropouts
+	private boolean[] lastDigitals = new boolean[8];
+	private int[] lastAnalogs = new int[8];
+	private int[] lastAccels = new int[3];
+	
+	private SensorNoise digitalNoise = null;
+	private SensorNoise analogNoise = null;
+	
+	public SimulatedSensor() {
 	}
 	
-	@NotImplemented public int digital(int port) {
-		return 0;
+	/**
+	 * @param  port   A digital port, 8-15
+	 * @param  value  What it should read
+	 */
+	public synchronized void setDigital(int port, boolean value) {
+		digitals[port - 8] = value;
+	}
+	
+	/**
+	 * @param  port   An analog port, 0-7
+	 * @param  value  What it should read, in 10-bit counts; fractions are
+	 *                    rounded off when read
+	 */
+	public synchronized void setAnalog(int port, double value) {
+		analogs[port] = value;
+	}
+	
+	/**
+	 * Sets the acceleration, each -2047 to 2047 for +/- 1.5 gee. Starts out
+	 * at 1 gee down the y axis.
+	 */
+	public synchronized void setAccel(double x, double y, double z) {
+		accels[0] = x;
+		accels[1] = y;
+		accels[2] = z;
+	}
+	
+	/**
+	 * @param  noise  Dropout and latency for the digital ports, or
+	 *                    <code>null</code> for perfect readings
+	 */
+	public synchronized void setDigitalNoise(SensorNoise noise) {
+		digitalNoise = noise;
+	}
+	
+	/**
+	 * @param  noise  Noise, dropout and latency for the analog ports and the
+	 *                    accelerometer, or <code>null</code> for perfect
+	 *                    readings
+	 */
+	public synchronized void setAnalogNoise(SensorNoise noise) {
+		analogNoise = noise;
+	}
+	
+	private void delay(SensorNoise noise) {
+		if(noise != null) {
+			noise.delay();
+		}
+	}
+	
+	private synchronized boolean readDigital(int port) {
+		if(port < 8 || port > 15) {
+			return false;
+		}
+		int i = port - 8;
+		boolean value = digitals[i];
+		if(digitalNoise != null) {
+			value = digitalNoise.read(value, lastDigitals[i]);
+		}
+		return lastDigitals[i] = value;
+	}
+	
+	private synchronized int readAnalog(int port) {
+		if(port < 0 || port > 7) {
+			return 0;
+		}
+		int value = analogNoise == null
+			? (int) Math.max(0, Math.min(1023, Math.round(analogs[port])))
+			: analogNoise.read(analogs[port], 0, 1023, lastAnalogs[port]);
+		return lastAnalogs[port] = value;
+	}
+	
+	private synchronized int readAccel(int axis) {
+		int value = analogNoise == null
+			? (int) Math.round(accels[axis])
+			: analogNoise.read(accels[axis], -2047, 2047, lastAccels[axis]);
+		return lastAccels[axis] = value;
+	}
+	
+	public int digital(int port) {
+		delay(digitalNoise);
+		return readDigital(port) ? 1 : 0;
 	}
 	
 	// sets port (0 to 7)to value (0 or 1)
@@ -39,29 +137,33 @@ public class SimulatedSensor extends Sensor {
 		return 0;
 	}
 	
-	// returns 10-bit value from analog port (ports 8 to 15)
-	@NotImplemented public int analog10(int port) {
-		return 0;
+	// returns 10-bit value from analog port (ports 0 to 7)
+	public int analog10(int port) {
+		delay(analogNoise);
+		return readAnalog(port);
 	}
 	
-	// returns 8-bit value from analog port (ports 8 to 15)
-	@NotImplemented public int analog(int port) {
-		return 0;
+	// returns 8-bit value from analog port (ports 0 to 7)
+	public int analog(int port) {
+		return analog10(port) >> 2;
 	}
 	
 	// returns x acceleration (-2047 to 2047, +/- 1.5 gee)
-	@NotImplemented public int accel_x() {    
-		return 0;
+	public int accel_x() {
+		delay(analogNoise);
+		return readAccel(0);
 	}
 	
 	// returns y acceleration (-2047 to 2047, +/- 1.5 gee)
-	@NotImplemented public int accel_y() {
-		return -(int)(2047./1.5*1.);
+	public int accel_y() {
+		delay(analogNoise);
+		return readAccel(1);
 	}
 	
 	// returns z acceleration (-2047 to 2047, +/- 1.5 gee)
-	@NotImplemented public int accel_z() {
-		return 0;
+	public int accel_z() {
+		delay(analogNoise);
+		return readAccel(2);
 	}
 	
 	// returns range in mm for sonar plugged into port (13-15)
@@ -74,6 +176,19 @@ public class SimulatedSensor extends Sensor {
 		return 0;
 	}
 	
+	// fills frame with every reading at once, same layout as the native call,
+	// for the latency of a single call
+	public void sensor_snapshot(int[] frame) {
+		delay(analogNoise != null ? analogNoise : digitalNoise);
+		for(int i = 0; i < 8; ++i) {
+			frame[SNAPSHOT_DIGITAL + i] = readDigital(i + 8) ? 1 : 0;
+			frame[SNAPSHOT_ANALOG10 + i] = readAnalog(i);
+		}
+		frame[SNAPSHOT_ACCEL] = readAccel(0);
+		frame[SNAPSHOT_ACCEL + 1] = readAccel(1);
+		frame[SNAPSHOT_ACCEL + 2] = readAccel(2);
+	}
+	
 	@NotImplemented public void set_analog_floats(int mask) {
 		set_each_analog_state((mask >> 0) & 1, (mask >> 1) & 1, (mask >> 2) & 1,
 		                      (mask >> 3) & 1, (mask >> 4) & 1, (mask >> 5) & 1,
@@ -0,0 +1,349 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+
+/**
+ * A clock that only moves when told to, or when every thread is asleep on it.
+ * Nothing happens between sleeps in simulated time, so rather than waiting
+ * out a sleep in real time, the clock jumps straight to the earliest wakeup:
+ * a two minute match that spends most of its time sleeping is over in a
+ * moment.
+ * <p>
+ * Each thread that has slept on the clock (or been registered, or is in its
+ * thread group) is tracked.
+ * Once all of them are asleep, the clock jumps to the earliest deadline. If
+ * some of them are still busy, the earliest sleeper gives them up to
+ * <code>getGraceMillis</code> of real time to go back to sleep first, so that
+ * a thread that was just woken up doesn't have time skip past it; after that,
+ * the clock moves anyway, as the thread might be blocked on something else
+ * entirely. A program that only ever uses one thread never waits at all, and
+ * runs exactly the same every time.
+ * <p>
+ * A clock can be halted, ending simulated time for good: every thread
+ * sleeping on it, or that tries to, gets a <code>ThreadDeath</code>, which
+ * quietly ends the thread unless something catches it. This is how a
+ * simulated match is stopped when time runs out.
+ * <p>
+ * Anything that should move along with simulated time, like a
+ * <code>CreateFirmware</code>, can listen for the clock advancing. Listeners
+ * are called while the clock is locked, so they shouldn't sleep on it.
+ *
+ * @author Benjamin Woodruff
+ * @see    HeadlessSimulator
+ */
+
+public class VirtualClock extends Clock {
+	/** Default grace period for busy threads, 10ms of real time */
+	public static final long DEFAULT_GRACE_NANOS = 10000000L;
+	
+	/**
+	 * Is told whenever a <code>VirtualClock</code> moves forward.
+	 */
+	public static interface Listener {
+		/**
+		 * @param  nanos  How far the clock just moved
+		 */
+		public void clockAdvanced(long nanos);
+	}
+	
+	private long now = 0;
+	private long graceNanos = DEFAULT_GRACE_NANOS;
+	private long haltNanos = Long.MAX_VALUE;
+	private boolean halted = false;
+	private ArrayList<Long> deadlines = new ArrayList<Long>(); // of sleepers
+	private ArrayList<Thread> sleepers = new ArrayList<Thread>();
+	private ArrayList<Thread> threads = new ArrayList<Thread>();
+	private ThreadGroup group = null;
+	// threads in await, by latch; they are also in sleepers
+	private IdentityHashMap<CountDownLatch, ArrayList<Thread>> latches =
+		new IdentityHashMap<CountDownLatch, ArrayList<Thread>>();
+	private Listener[] listeners = new Listener[0];
+	
+	public synchronized long nanoTime() {
+		return now;
+	}
+	
+	/**
+	 * Moves the clock forward, waking anything whose sleep is now over.
+	 *
+	 * @param  nanos  How far to move it
+	 */
+	public synchronized void advance(long nanos) {
+		if(nanos > 0) {
+			advanceTo(now + nanos);
+		}
+	}
+	
+	private void advanceTo(long time) {
+		if(halted) {
+			return;
+		}
+		time = Math.min(time, haltNanos);
+		long delta = time - now;
+		now = time;
+		for(Listener l : listeners) {
+			l.clockAdvanced(delta);
+		}
+		if(now >= haltNanos) {
+			halted = true;
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Halts the clock as soon as it reaches a given time. It never goes past
+	 * that time.
+	 *
+	 * @param  nanos  When to halt, in this clock's time
+	 */
+	public synchronized void haltAt(long nanos) {
+		haltNanos = nanos;
+		if(now >= haltNanos) {
+			halt();
+		}
+	}
+	
+	/**
+	 * Stops time right now. Every thread sleeping on this clock gets a
+	 * <code>ThreadDeath</code>, as does any thread that sleeps on it later.
+	 */
+	public synchronized void halt() {
+		halted = true;
+		notifyAll();
+	}
+	
+	public synchronized boolean isHalted() {
+		return halted;
+	}
+	
+	public void sleepNanos(long nanos) throws InterruptedException {
+		Thread self = Thread.currentThread();
+		synchronized(this) {
+			if(halted) {
+				throw new ThreadDeath();
+			}
+			long deadline = now + Math.max(0L, nanos);
+			Long entry = Long.valueOf(deadline);
+			register(self);
+			deadlines.add(entry);
+			sleepers.add(self);
+			notifyAll(); // this might be the last thread to fall asleep
+			try {
+				long graceEnd = 0; // in real time, 0 until started
+				while(now < deadline) {
+					if(halted) {
+						throw new ThreadDeath();
+					}
+					if(deadline > getEarliest()) {
+						// the earliest sleeper will wake us as it goes by
+						graceEnd = 0;
+						wait();
+					} else if(isEveryoneAsleep()) {
+						advanceTo(deadline);
+					} else {
+						long real = System.nanoTime();
+						if(graceEnd == 0) {
+							graceEnd = real + graceNanos;
+						}
+						long left = graceEnd - real;
+						if(left <= 0) {
+							advanceTo(deadline);
+						} else {
+							wait(left / 1000000L, (int) (left % 1000000L));
+						}
+					}
+				}
+			} finally {
+				deadlines.remove(entry);
+				sleepers.remove(self);
+				notifyAll(); // we might have been the earliest
+			}
+		}
+	}
+	
+	/**
+	 * Waits for a latch, counting as asleep meanwhile. The latch should be
+	 * opened through <code>countDown</code>, which wakes the waiters before
+	 * the clock can move again; opened any other way, it is still noticed, but
+	 * not before the clock may have moved on.
+	 */
+	public void await(CountDownLatch latch) throws InterruptedException {
+		Thread self = Thread.currentThread();
+		synchronized(this) {
+			if(halted) {
+				throw new ThreadDeath();
+			}
+			if(latch.getCount() == 0) {
+				return;
+			}
+			register(self);
+			ArrayList<Thread> waiters = latches.get(latch);
+			if(waiters == null) {
+				waiters = new ArrayList<Thread>();
+				latches.put(latch, waiters);
+			}
+			waiters.add(self);
+			sleepers.add(self);
+			notifyAll(); // this might be the last thread to fall asleep
+			try {
+				while(latch.getCount() > 0) {
+					if(halted) {
+						throw new ThreadDeath();
+					}
+					wait(1); // in case it was opened behind our back
+				}
+			} finally {
+				// unless countDown already took us off
+				if(waiters.remove(self)) {
+					sleepers.remove(self);
+					if(waiters.isEmpty()) {
+						latches.remove(latch);
+					}
+				}
+				notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Counts down a latch, waking anything waiting on it through
+	 * <code>await</code> at this simulated time.
+	 */
+	public synchronized void countDown(CountDownLatch latch) {
+		latch.countDown();
+		if(latch.getCount() == 0) {
+			ArrayList<Thread> waiters = latches.remove(latch);
+			if(waiters != null) {
+				for(Thread t : waiters) {
+					sleepers.remove(t);
+				}
+				waiters.clear();
+			}
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Just sleeps, as busy waiting would never see simulated time move.
+	 */
+	public void spinNanos(long nanos, boolean yield)
+	                      throws InterruptedException {
+		sleepNanos(nanos);
+	}
+	
+	/**
+	 * Counts a thread as one of the clock's from now on, as if it had already
+	 * slept. Until a thread first sleeps the clock doesn't know to wait for
+	 * it, so a thread that is about to be started should be registered
+	 * first; otherwise the clock might run ahead while it starts up.
+	 *
+	 * @param  thread  A thread that will sleep on this clock
+	 */
+	public synchronized void register(Thread thread) {
+		if(!threads.contains(thread)) {
+			threads.add(thread);
+		}
+	}
+	
+	private long getEarliest() {
+		long earliest = Long.MAX_VALUE;
+		for(int i = 0; i < deadlines.size(); ++i) {
+			earliest = Math.min(earliest, deadlines.get(i));
+		}
+		return earliest;
+	}
+	
+	private boolean isEveryoneAsleep() {
+		for(Iterator<Thread> i = threads.iterator(); i.hasNext();) {
+			Thread t = i.next();
+			if(t.getState() == Thread.State.TERMINATED) {
+				i.remove();
+			} else if(!sleepers.contains(t)) {
+				return false;
+			}
+		}
+		if(group != null) {
+			Thread[] active = new Thread[group.activeCount() + 4];
+			int count = group.enumerate(active);
+			for(int i = 0; i < count; ++i) {
+				if(!sleepers.contains(active[i])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Counts every thread in a group as one of the clock's, including ones
+	 * that are started later. Unlike <code>register</code>, this also covers
+	 * threads a program starts for itself, which otherwise aren't known until
+	 * they first sleep.
+	 *
+	 * @param  group  The threads to wait for, or <code>null</code> for none
+	 */
+	public synchronized void setThreadGroup(ThreadGroup group) {
+		this.group = group;
+	}
+	
+	/**
+	 * @return  How long, in real time, the clock waits for busy threads to go
+	 *              back to sleep before moving on without them
+	 */
+	public synchronized double getGraceMillis() {
+		return graceNanos / 1000000.;
+	}
+	
+	/**
+	 * Sets how long, in real time, the clock waits for busy threads. Longer
+	 * is safer for programs with a lot of threads, and 0 is fastest.
+	 *
+	 * @param  millis  The grace period
+	 */
+	public synchronized void setGraceMillis(double millis) {
+		if(millis < 0) {
+			throw new IllegalArgumentException("negative grace period");
+		}
+		graceNanos = (long) (millis * 1000000.);
+	}
+	
+	public synchronized void addListener(Listener listener) {
+		Listener[] next = new Listener[listeners.length + 1];
+		System.arraycopy(listeners, 0, next, 0, listeners.length);
+		next[listeners.length] = listener;
+		listeners = next;
+	}
+	
+	public synchronized void removeListener(Listener listener) {
+		for(int i = 0; i < listeners.length; ++i) {
+			if(listeners[i] == listener) {
+				Listener[] next = new Listener[listeners.length - 1];
+				System.arraycopy(listeners, 0, next, 0, i);
+				System.arraycopy(listeners, i + 1, next, i, next.length - i);
+				listeners = next;
+				return;
+			}
+		}
+	}
+}
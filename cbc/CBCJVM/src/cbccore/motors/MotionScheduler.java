@@ -0,0 +1,234 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.motors;
+
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+
+/**
+ * Runs every timed motion, like <code>Servo.setPositionTime</code>, from a
+ * single thread on a fixed tick (50Hz by default, the rate a servo's PWM
+ * signal is refreshed at anyway). Each tick steps all of them in one pass,
+ * then sleeps until the next one, where every moving servo used to cost a
+ * thread spinning flat out.
+ * <p>
+ * Every scheduled motion gets a <code>CountDownLatch</code> that opens when it
+ * finishes or is cancelled, so anything that has to block on a motion can
+ * wait with <code>Clock.get().await(latch)</code> instead of spinning.
+ * <p>
+ * Ticks follow <code>Clock.get()</code> rather than the wall clock, so that
+ * motions run in simulated time under a simulator. The thread is started by
+ * the first motion scheduled and exits once nothing is moving.
+ *
+ * @author Benjamin Woodruff
+ * @see    Servo#setPositionTime
+ */
+
+public class MotionScheduler implements Runnable {
+	/** Default time between ticks (20ms, or 50Hz) */
+	public static final double DEFAULT_PERIOD_MILLIS = 20.;
+	
+	private static MotionScheduler instance = null;
+	
+	private volatile Entry[] entries = new Entry[0];
+	private Thread thread = null;
+	private volatile long periodNanos = (long) (DEFAULT_PERIOD_MILLIS * 1e6);
+	private volatile long ticks = 0;
+	
+	/**
+	 * Something that moves a little every tick.
+	 */
+	public interface Motion {
+		/**
+		 * Moves to wherever this motion should be at the given time. Only
+		 * ever called from the scheduler's thread.
+		 *
+		 * @param  nanos  <code>Clock.get().nanoTime()</code> of this tick
+		 * @return        <code>false</code> once the motion is done
+		 */
+		public boolean tick(long nanos);
+	}
+	
+	private static final class Entry {
+		private Motion motion;
+		private CountDownLatch done = new CountDownLatch(1);
+		
+		private Entry(Motion motion) {
+			this.motion = motion;
+		}
+	}
+	
+	/**
+	 * Gets the shared scheduler.
+	 */
+	public static synchronized MotionScheduler get() {
+		if(instance == null) {
+			instance = new MotionScheduler();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Starts running a motion, from the next tick on. A motion that is already
+	 * scheduled is cancelled and started over.
+	 *
+	 * @param  motion  The motion to run
+	 * @return         A latch that opens once the motion is done or cancelled
+	 */
+	public synchronized CountDownLatch schedule(Motion motion) {
+		cancel(motion);
+		Entry entry = new Entry(motion);
+		Entry[] next = new Entry[entries.length + 1];
+		System.arraycopy(entries, 0, next, 0, entries.length);
+		next[entries.length] = entry;
+		entries = next;
+		if(thread == null) {
+			thread = new Thread(this, "MotionScheduler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return entry.done;
+	}
+	
+	/**
+	 * Stops running a motion, leaving it wherever its last tick put it.
+	 *
+	 * @param  motion  The motion to stop
+	 * @return         <code>true</code> if it was scheduled
+	 */
+	public synchronized boolean cancel(Motion motion) {
+		for(int i = 0; i < entries.length; ++i) {
+			if(entries[i].motion == motion) {
+				remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return  <code>true</code> if the motion is scheduled and not done
+	 */
+	public boolean isScheduled(Motion motion) {
+		Entry[] current = entries;
+		for(int i = 0; i < current.length; ++i) {
+			if(current[i].motion == motion) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// only with the lock held
+	private void remove(int i) {
+		Entry entry = entries[i];
+		Entry[] next = new Entry[entries.length - 1];
+		System.arraycopy(entries, 0, next, 0, i);
+		System.arraycopy(entries, i + 1, next, i, next.length - i);
+		entries = next;
+		Clock.get().countDown(entry.done);
+	}
+	
+	private synchronized void finish(Entry entry) {
+		for(int i = 0; i < entries.length; ++i) {
+			if(entries[i] == entry) {
+				remove(i);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @param  millis  Time between ticks
+	 */
+	public void setPeriodMillis(double millis) {
+		if(millis <= 0.) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		periodNanos = (long) (millis * 1e6);
+	}
+	
+	public double getPeriodMillis() {
+		return periodNanos / 1e6;
+	}
+	
+	/**
+	 * @return  The number of ticks run so far
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+	
+	/**
+	 * @return  The number of motions currently scheduled
+	 */
+	public int getMotionCount() {
+		return entries.length;
+	}
+	
+	/**
+	 * Don't call this function, it is the body of the scheduler's thread.
+	 */
+	public void run() {
+		Clock clock = Clock.get();
+		long next = clock.nanoTime();
+		while(true) {
+			Entry[] current = entries;
+			if(current.length == 0) {
+				synchronized(this) {
+					if(entries.length == 0) {
+						thread = null;
+						return;
+					}
+				}
+				continue;
+			}
+			
+			long now = clock.nanoTime();
+			for(int i = 0; i < current.length; ++i) {
+				Entry e = current[i];
+				boolean moving;
+				try {
+					moving = e.motion.tick(now);
+				} catch(RuntimeException ex) {
+					// one broken motion shouldn't stop the rest
+					ex.printStackTrace();
+					moving = false;
+				}
+				if(!moving) {
+					finish(e);
+				}
+			}
+			++ticks;
+			
+			// keep to the schedule, rather than drifting by the tick time
+			next += periodNanos;
+			long remaining = next - clock.nanoTime();
+			if(remaining > 0) {
+				try {
+					clock.sleepNanos(remaining);
+				} catch(InterruptedException ex) {
+					// keep ticking
+				}
+			} else {
+				next = clock.nanoTime();
+				Thread.yield();
+			}
+		}
+	}
+}
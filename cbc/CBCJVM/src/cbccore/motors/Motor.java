@@ -16,6 +16,7 @@
 
 package cbccore.motors;
 
+import cbccore.Clock;
 import cbccore.Device;
 import cbccore.InvalidPortException;
 import cbccore.motors.statemotors.AbstractBlockingAdvancedStateMotor;
@@ -23,6 +24,11 @@ import cbccore.motors.statemotors.AbstractBlockingAdvancedStateMotor;
 /**
  * Adds a clean API to replace cbccore.low.Motor, and even adds a few minor
  * features & workarounds for known motor controlling issues.
+ * <p>
+ * Position moves are normally left to the CBOB, and whether they are done is
+ * guessed from how long they should take. With <code>setClosedLoop</code>,
+ * they are run by a <code>MotorController</code> instead, which watches the
+ * position counter and finishes when the motor actually gets there.
  * 
  * @author Braden McDorman, Benjamin Woodruff
  * @see cbccore.movement.plugins.motor.Wheel
@@ -34,6 +40,8 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	private static cbccore.low.Motor lowMotor = Device.getLowMotorController();
 	private long destTime = -1;
 	private boolean simpleIsMoving = false;
+	private volatile boolean closedLoop = false;
+	private MotorController controller = null;
 	
 	/**
 	 * Constructs a Motor which is used to power the robot. Motors are
@@ -48,6 +56,13 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 		this.port = port;
 	}
 	
+	/**
+	 * @return  The port number that the motor is plugged in to
+	 */
+	public int getPort() {
+		return port;
+	}
+	
 	/**
 	 * Set motor speed. It's recommended you use a Back-EMF based function 
 	 *  instead. A Back-EMF function is one that reads the voltage return from
@@ -61,6 +76,7 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 * @see #moveAtVelocity
 	 */
 	public void motor(int percent) {
+		stopControl();
 		simpleIsMoving = percent != 0;
 		lowMotor.motor(port, percent);
 	}
@@ -82,10 +98,21 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 * 
 	 */
 	public int moveAtVelocity(int velocity) {
+		stopControl();
+		return driveVelocity(velocity);
+	}
+	
+	// for MotorController, which mustn't stop itself
+	int driveVelocity(int velocity) {
 		simpleIsMoving = velocity != 0;
 		return lowMotor.mav(port, velocity);
 	}
 	
+	int drivePwm(int pwm) {
+		simpleIsMoving = pwm != 0;
+		return lowMotor.setpwm(port, pwm);
+	}
+	
 	/**
 	 * Moves to an absolute position in ticks at full speed
 	 * 
@@ -128,6 +155,10 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 *
 	 */
 	public int moveToPosition(int speed, int goalPos) {
+		if(closedLoop) {
+			getController().moveTo(goalPos, speed);
+			return 0;
+		}
 		setDestTime(speed, goalPos-getPositionCounter());
 		return lowMotor.mtp(port, speed, goalPos);
 	}
@@ -140,17 +171,24 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 *
 	 */
 	public int moveRelativePosition(int speed, int deltaPos) {
+		if(closedLoop) {
+			getController().moveTo(getPositionCounter() + deltaPos, speed);
+			return 0;
+		}
 		setDestTime(speed, deltaPos);
 		return lowMotor.mrp(port, speed, deltaPos);
 	}
 	
 	//a helper method
 	private void setDestTime(int speed, int deltaPos) {
-		destTime = System.currentTimeMillis() + Math.abs(deltaPos*1000/speed);
+		destTime = Clock.get().millis() + Math.abs(deltaPos*1000/speed);
 	}
 	
 	public boolean isMoving() {
-		return destTime - System.currentTimeMillis() > 0l;
+		if(closedLoop) {
+			return isEasing() || getController().isMoving();
+		}
+		return isEasing() || destTime - Clock.get().millis() > 0l;
 	}
 	
 	/**
@@ -160,6 +198,9 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 * returned. Might return before the motor has actually stopped moving. If
 	 * you want to ensure if has stopped, you can call <code>off()</code> or
 	 * <code>freeze()</code>.
+	 * <p>
+	 * In closed loop, this instead waits for the motor to get there, or for
+	 * the controller to give up on it.
 	 * 
 	 * @see     #blockMotorDone
 	 * @see     #moveToPosition
@@ -168,17 +209,69 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 * @see     #freeze
 	 */
 	public void waitForDone() {
-		long time = destTime-System.currentTimeMillis();
+		if(closedLoop) {
+			try {
+				getController().waitForDone();
+			} catch(InterruptedException e) {}
+			return;
+		}
+		long time = destTime-Clock.get().millis();
 		if(time > 0l) {
 			try {
-				Thread.sleep(time);
+				Clock.get().sleep(time);
 			} catch (Exception e) { return; }
 		}
 	}
 	
+	/**
+	 * Sets the gains of the CBOB's own PID loops. These don't apply in closed
+	 * loop, which has its own.
+	 * 
+	 * @see MotorController#setGains
+	 */
 	public void setPidGains(int p, int i, int d, int pd, int id, int dd) {
 		lowMotor.set_pid_gains(port, p, i, d, pd, id, dd);
 	}
+	
+	/**
+	 * Has position moves run by a <code>MotorController</code> reading the
+	 * position counter, rather than by the CBOB. Anything else that sets
+	 * the motor's speed cancels the move in progress.
+	 * 
+	 * @param  closedLoop  <code>true</code> to use the controller
+	 * @see    #getController
+	 */
+	public void setClosedLoop(boolean closedLoop) {
+		if(!closedLoop) {
+			stopControl();
+		}
+		this.closedLoop = closedLoop;
+	}
+	
+	public boolean isClosedLoop() {
+		return closedLoop;
+	}
+	
+	/**
+	 * Gets the controller used in closed loop, for tuning it, or reading
+	 * the statistics of the last move.
+	 * 
+	 * @see #setClosedLoop
+	 */
+	public synchronized MotorController getController() {
+		if(controller == null) {
+			controller = new MotorController(this);
+		}
+		return controller;
+	}
+	
+	// also used by MotorGroup, before it takes over
+	void stopControl() {
+		cancelEasing();
+		if(closedLoop) {
+			getController().cancel();
+		}
+	}
 
 	/**
 	 * Actively attempts to keep the motor at the current position
@@ -190,6 +283,7 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 *
 	 */
 	public int freeze() {
+		stopControl();
 		return lowMotor.freeze(port);
 	}
 
@@ -235,8 +329,8 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
      * @see    #getPwm
      */
 	public int setPwm(int pwm) {
-		simpleIsMoving = pwm != 0;
-		return lowMotor.setpwm(port, pwm);
+		stopControl();
+		return drivePwm(pwm);
 	}
 
     /**
@@ -259,6 +353,7 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
      * @see #backward
      */
 	public void forward() {
+		stopControl();
 		simpleIsMoving = true;
 		lowMotor.fd(port);
 	}
@@ -273,6 +368,7 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
      * @see #forward
      */
 	public void backward() {
+		stopControl();
 		simpleIsMoving = true;
 		lowMotor.bk(port);
 	}
@@ -281,6 +377,7 @@ public class Motor extends AbstractBlockingAdvancedStateMotor {
 	 * Cut power to this motor
 	 */
 	public void off() {
+		stopControl();
 		simpleIsMoving = false;
 		lowMotor.off(port);
 	}
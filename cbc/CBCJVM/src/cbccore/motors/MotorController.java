@@ -0,0 +1,315 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package cbccore.motors;
+
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+
+/**
+ * Closed-loop position control for a <code>Motor</code>, run in Java rather
+ * than by the CBOB. Every tick of the <code>MotionScheduler</code> it reads
+ * the motor's position counter, compares it with where the move should be by
+ * now, and sets the motor's velocity (or PWM) to the planned speed plus a
+ * PID correction:
+ * <pre>
+ *     out = F * plannedSpeed + P * error + I * integral + D * derivative
+ * </pre>
+ * A move is only over once the counter is within the tolerance of the goal,
+ * so waiting on one returns when the motor actually gets there, rather than
+ * after the time the move should have taken. A motor that never gets there,
+ * say because it is stalled against a wall, is given up on after the settle
+ * time.
+ * <p>
+ * The error seen during each move is kept, and can be had from
+ * <code>getStatistics</code> once it is over, which makes tuning the gains
+ * less of a guessing game.
+ * <p>
+ * You don't normally make one of these; see
+ * <code>Motor.setClosedLoop</code>.
+ *
+ * @author Benjamin Woodruff
+ * @see    Motor#setClosedLoop
+ */
+
+public class MotorController implements MotionScheduler.Motion {
+	/** Default proportional gain, ticks per second per tick of error */
+	public static final double DEFAULT_P = 4.;
+	/** Default integral gain, ticks per second per tick-second of error */
+	public static final double DEFAULT_I = 1.;
+	/** Default derivative gain, ticks per second per tick per second */
+	public static final double DEFAULT_D = 0.;
+	/** Default feed-forward gain, for velocity output */
+	public static final double DEFAULT_F = 1.;
+	/** Default distance from the goal that counts as there, in ticks */
+	public static final int DEFAULT_TOLERANCE = 5;
+	/** Default time to get within the tolerance once a move should be over */
+	public static final double DEFAULT_SETTLE_MILLIS = 1000.;
+	
+	private Motor motor;
+	private double p = DEFAULT_P, i = DEFAULT_I, d = DEFAULT_D, f = DEFAULT_F;
+	private int tolerance = DEFAULT_TOLERANCE;
+	private long settleNanos = (long) (DEFAULT_SETTLE_MILLIS * 1e6);
+	private boolean pwm = false;
+	private volatile CountDownLatch done = new CountDownLatch(0);
+	private volatile Statistics statistics = null;
+	
+	// the move in progress, all guarded by this
+	private boolean active = false;
+	private int start, goal;
+	private double speed; // ticks per second, toward the goal
+	private long durationNanos;
+	private long begin, last;
+	private double integral, lastError;
+	private int samples;
+	private double maxError, sumSquares;
+	
+	/**
+	 * The error over one move. Error is how far the position counter was
+	 * from where the move planned it to be, in ticks.
+	 */
+	public static final class Statistics {
+		private boolean arrived;
+		private int samples;
+		private double maxError;
+		private double rmsError;
+		private int finalError;
+		private double millis;
+		
+		private Statistics(boolean arrived, int samples, double maxError,
+		                   double rmsError, int finalError, double millis) {
+			this.arrived = arrived;
+			this.samples = samples;
+			this.maxError = maxError;
+			this.rmsError = rmsError;
+			this.finalError = finalError;
+			this.millis = millis;
+		}
+		
+		/**
+		 * @return  <code>false</code> if the move was cancelled, or given up
+		 *              on after the settle time
+		 */
+		public boolean hasArrived() { return arrived; }
+		/** @return  The number of times the position was read */
+		public int getSamples() { return samples; }
+		/** @return  The largest error seen */
+		public double getMaxError() { return maxError; }
+		/** @return  The root mean square of the error */
+		public double getRmsError() { return rmsError; }
+		/** @return  Goal minus the position last read */
+		public int getFinalError() { return finalError; }
+		/** @return  How long the move took */
+		public double getMillis() { return millis; }
+	}
+	
+	public MotorController(Motor motor) {
+		this.motor = motor;
+	}
+	
+	/**
+	 * Starts moving toward a goal at a constant speed, from the next tick on.
+	 * A move in progress is cancelled.
+	 *
+	 * @param  goal   Position to move to, in ticks
+	 * @param  speed  Planned speed in ticks per second
+	 * @return        A latch that opens once the move is over
+	 */
+	public CountDownLatch moveTo(int goal, int speed) {
+		if(speed == 0) {
+			throw new IllegalArgumentException("speed must not be 0");
+		}
+		int position = motor.getPositionCounter();
+		synchronized(this) {
+			if(active) {
+				end(false, position);
+			}
+			this.start = position;
+			this.goal = goal;
+			this.speed = goal < position ? -Math.abs(speed) : Math.abs(speed);
+			durationNanos = (long) (Math.abs(goal - position) * 1e9
+			                        / Math.abs(speed));
+			begin = -1;
+			integral = lastError = 0.;
+			samples = 0;
+			maxError = sumSquares = 0.;
+			active = true;
+		}
+		return done = MotionScheduler.get().schedule(this);
+	}
+	
+	/**
+	 * Don't call this function, it is run by the <code>MotionScheduler</code>.
+	 */
+	public boolean tick(long nanos) {
+		// reading may take a while, so it's done without holding the lock
+		int position = motor.getPositionCounter();
+		synchronized(this) {
+			if(!active) {
+				return false;
+			}
+			if(begin < 0) {
+				begin = last = nanos;
+			}
+			long elapsed = nanos - begin;
+			double dt = (nanos - last) * 1e-9;
+			last = nanos;
+			boolean planned = elapsed < durationNanos;
+			double target = planned ? start + speed * elapsed * 1e-9 : goal;
+			double error = target - position;
+			++samples;
+			sumSquares += error * error;
+			maxError = Math.max(maxError, Math.abs(error));
+			if(!planned) {
+				if(Math.abs(goal - position) <= tolerance) {
+					end(true, position);
+					return false;
+				}
+				if(elapsed - durationNanos >= settleNanos) {
+					end(false, position);
+					return false;
+				}
+			}
+			
+			double derivative = dt > 0. ? (error - lastError) / dt : 0.;
+			lastError = error;
+			double out = f * (planned ? speed : 0.) + p * error
+			             + i * integral + d * derivative;
+			double limit = pwm ? 255. : 1000.;
+			if(Math.abs(out) < limit) {
+				// only while not saturated, so it doesn't wind up
+				integral += error * dt;
+			}
+			drive((int) Math.round(Math.max(-limit, Math.min(limit, out))));
+			return true;
+		}
+	}
+	
+	// only with the lock held
+	private void end(boolean arrived, int position) {
+		active = false;
+		drive(0);
+		double millis = begin < 0 ? 0. : (last - begin) / 1e6;
+		statistics = new Statistics(arrived, samples, maxError,
+			samples == 0 ? 0. : Math.sqrt(sumSquares / samples),
+			goal - position, millis);
+	}
+	
+	private void drive(int out) {
+		if(pwm) {
+			motor.drivePwm(out);
+		} else {
+			motor.driveVelocity(out);
+		}
+	}
+	
+	/**
+	 * Stops the move in progress, if any, leaving the motor stopped.
+	 */
+	public void cancel() {
+		synchronized(this) {
+			if(active) {
+				end(false, motor.getPositionCounter());
+			}
+		}
+		MotionScheduler.get().cancel(this);
+	}
+	
+	/**
+	 * @return  <code>true</code> while a move is in progress
+	 */
+	public synchronized boolean isMoving() {
+		return active;
+	}
+	
+	/**
+	 * Blocks until the move in progress is over, without polling.
+	 */
+	public void waitForDone() throws InterruptedException {
+		Clock.get().await(done);
+	}
+	
+	/**
+	 * @return  How the last move that is over went, or <code>null</code> if
+	 *              none is yet
+	 */
+	public Statistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Sets the gains, in units of the output per tick. For velocity output,
+	 * <code>f</code> should be about 1; for PWM, about 255 / 1000.
+	 *
+	 * @param  p  Proportional gain
+	 * @param  i  Integral gain
+	 * @param  d  Derivative gain
+	 * @param  f  Feed-forward gain, on the planned speed
+	 */
+	public synchronized void setGains(double p, double i, double d,
+	                                  double f) {
+		this.p = p;
+		this.i = i;
+		this.d = d;
+		this.f = f;
+	}
+	
+	/**
+	 * Chooses between driving the motor with <code>setPwm</code>, and with
+	 * <code>moveAtVelocity</code> (the default), which has the CBOB's own
+	 * back-EMF loop underneath. The gains likely need changing to match.
+	 *
+	 * @param  pwm  <code>true</code> for PWM output
+	 */
+	public synchronized void setPwmOutput(boolean pwm) {
+		this.pwm = pwm;
+	}
+	
+	public synchronized boolean isPwmOutput() {
+		return pwm;
+	}
+	
+	/**
+	 * @param  ticks  How close to the goal counts as there
+	 */
+	public synchronized void setTolerance(int ticks) {
+		if(ticks < 0) {
+			throw new IllegalArgumentException("tolerance must be >= 0");
+		}
+		tolerance = ticks;
+	}
+	
+	public synchronized int getTolerance() {
+		return tolerance;
+	}
+	
+	/**
+	 * @param  millis  How long past the planned end of a move to keep trying
+	 *                     to get within the tolerance, before giving up
+	 */
+	public synchronized void setSettleMillis(double millis) {
+		if(millis < 0.) {
+			throw new IllegalArgumentException("settle time must be >= 0");
+		}
+		settleNanos = (long) (millis * 1e6);
+	}
+	
+	public synchronized double getSettleMillis() {
+		return settleNanos / 1e6;
+	}
+}
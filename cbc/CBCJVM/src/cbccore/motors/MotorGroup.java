@@ -0,0 +1,479 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package cbccore.motors;
+
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.motors.statemotors.IStateMotor;
+
+/**
+ * Several motors that move as one, like the two motors of a lift. Commanding
+ * them one after another lets the first get a head start on the last, and a
+ * mechanism they both drive can bind. A group instead sets every motor's
+ * speed, and reads every motor's position, in a single native call.
+ * <p>
+ * Moves are run on the <code>MotionScheduler</code>. Each motor's speed is
+ * scaled to its own distance, so that they all arrive together, and every
+ * tick corrects each motor toward where it should be by now. The group's
+ * skew is watched the whole time: while <code>isSynced</code> fails, the
+ * move stops following the clock, and instead has every member catch up
+ * with the one furthest along, which waits for them. A move that stops
+ * getting any closer to being in sync, or to its goal, for the settle time
+ * is given up on.
+ * <p>
+ * Only plain <code>Motor</code>s can be grouped, one per port. Setting a
+ * member's speed directly during a group move is overridden on the next
+ * tick; cancel the group move first.
+ *
+ * @author Benjamin Woodruff
+ * @see    cbccore.motors.statemotors.composed.ComposedStateMotor
+ */
+
+public class MotorGroup implements MotionScheduler.Motion {
+	/** Default skew allowed before a move holds, in ticks */
+	public static final int DEFAULT_THRESHOLD = 20;
+	/** Default correction, ticks per second per tick behind */
+	public static final double DEFAULT_P = 4.;
+	/** Default distance from the goal that counts as there, in ticks */
+	public static final int DEFAULT_TOLERANCE = 5;
+	/** Default time to get within the tolerance once a move should be over */
+	public static final double DEFAULT_SETTLE_MILLIS = 1000.;
+	/** Speed of <code>setPosition</code>, like <code>Motor</code>'s */
+	public static final int FULL_SPEED = 1000;
+	
+	private static cbccore.low.Motor lowMotor =
+		Device.getLowMotorController();
+	
+	private Motor[] motors;
+	private int[] offsets;
+	private int mask = 0;
+	private volatile CountDownLatch done = new CountDownLatch(0);
+	// only used by tick
+	private int[] counters = new int[4];
+	private int[] velocities = new int[4];
+	private int[] positions;
+	
+	// all guarded by this
+	private int threshold = DEFAULT_THRESHOLD;
+	private double p = DEFAULT_P;
+	private int tolerance = DEFAULT_TOLERANCE;
+	private long settleNanos = (long) (DEFAULT_SETTLE_MILLIS * 1e6);
+	private boolean active = false;
+	private boolean arrived = false;
+	private int goal;
+	private int[] starts;
+	private double rate; // progress per second
+	private double progress; // from 0 at the start to 1 at the goal
+	private long last, settleBegin, heldSince;
+	private int maxSkew, holds, holdSkew, settleAway;
+	
+	public MotorGroup(Motor ... motors) {
+		this(motors, new int[motors.length]);
+	}
+	
+	/**
+	 * @param  motors   The motors, each on a different port
+	 * @param  offsets  Added to each motor's position counter, like an
+	 *                      <code>OffsetStateMotor</code>
+	 */
+	public MotorGroup(Motor[] motors, int[] offsets) {
+		if(motors.length == 0 || offsets.length != motors.length) {
+			throw new IllegalArgumentException("need an offset per motor");
+		}
+		for(int i = 0; i < motors.length; ++i) {
+			int bit = 1 << motors[i].getPort();
+			if(motors[i].getPort() > 3 || (mask & bit) != 0) {
+				throw new IllegalArgumentException(
+					"need one motor per port, 0-3");
+			}
+			mask |= bit;
+		}
+		this.motors = motors.clone();
+		this.offsets = offsets.clone();
+		positions = new int[motors.length];
+		starts = new int[motors.length];
+	}
+	
+	/**
+	 * Makes a group out of state motors, if they can be grouped.
+	 *
+	 * @param  motors   The would-be members
+	 * @param  offsets  An offset for each, or <code>null</code> for none
+	 * @return          A group, or <code>null</code> unless every motor is a
+	 *                      plain <code>Motor</code>, on a port of its own
+	 */
+	public static MotorGroup of(IStateMotor[] motors, int[] offsets) {
+		Motor[] members = new Motor[motors.length];
+		int seen = 0;
+		for(int i = 0; i < motors.length; ++i) {
+			if(motors[i] == null || motors[i].getClass() != Motor.class) {
+				return null;
+			}
+			members[i] = (Motor) motors[i];
+			int port = members[i].getPort();
+			if(port > 3 || (seen & (1 << port)) != 0) {
+				return null;
+			}
+			seen |= 1 << port;
+		}
+		if(members.length == 0) {
+			return null;
+		}
+		return new MotorGroup(members, offsets == null
+			? new int[members.length] : offsets);
+	}
+	
+	public Motor[] getMotors() {
+		return motors.clone();
+	}
+	
+	/**
+	 * Reads every member's position with one native call.
+	 *
+	 * @param  positions  Filled with each member's position, offset included
+	 */
+	public void readPositions(int[] positions) {
+		int[] all = new int[4];
+		lowMotor.get_motor_position_counters(all);
+		for(int i = 0; i < motors.length; ++i) {
+			positions[i] = all[motors[i].getPort()] + offsets[i];
+		}
+	}
+	
+	/**
+	 * @return  The average position of the members
+	 */
+	public int getPosition() {
+		int[] current = new int[motors.length];
+		readPositions(current);
+		long sum = 0;
+		for(int i = 0; i < current.length; ++i) {
+			sum += current[i];
+		}
+		return (int) Math.round((double) sum / current.length);
+	}
+	
+	/**
+	 * Checks that no member is more than <code>threshold</code> ahead of or
+	 * behind the others. During a move, that is measured from where each
+	 * should be by now, so members starting from different places can still
+	 * be in sync.
+	 *
+	 * @param  threshold  Largest skew allowed, in ticks
+	 */
+	public boolean isSynced(int threshold) {
+		int[] current = new int[motors.length];
+		readPositions(current);
+		synchronized(this) {
+			return getSkew(current) <= threshold;
+		}
+	}
+	
+	// largest distance of a member from the group's average, relative to
+	// the plan if moving; only with the lock held
+	private int getSkew(int[] current) {
+		double mean = 0.;
+		for(int i = 0; i < current.length; ++i) {
+			mean += current[i] - getTarget(i);
+		}
+		mean /= current.length;
+		double skew = 0.;
+		for(int i = 0; i < current.length; ++i) {
+			skew = Math.max(skew, Math.abs(current[i] - getTarget(i) - mean));
+		}
+		return (int) Math.ceil(skew - 1e-9);
+	}
+	
+	// how far along the member furthest along is, from 0 to 1; only with the
+	// lock held
+	private double getLeadProgress(int[] current) {
+		double lead = 0.;
+		for(int i = 0; i < current.length; ++i) {
+			if(goal != starts[i]) {
+				double f = (double) (current[i] - starts[i])
+				           / (goal - starts[i]);
+				lead = Math.max(lead, f);
+			}
+		}
+		return Math.min(1., lead);
+	}
+	
+	// only with the lock held
+	private double getTarget(int i) {
+		return active ? starts[i] + (goal - starts[i]) * progress : 0.;
+	}
+	
+	/**
+	 * Moves every member to the same position, the one furthest away at
+	 * <code>speed</code> and the rest slower, so they all get there together.
+	 * A move in progress is cancelled.
+	 *
+	 * @param  goal   Where to move to, in ticks
+	 * @param  speed  Speed of the member furthest away, in ticks per second
+	 * @return        A latch that opens once the move is over
+	 */
+	public CountDownLatch moveTo(int goal, int speed) {
+		if(speed == 0) {
+			throw new IllegalArgumentException("speed must not be 0");
+		}
+		return start(goal, Math.abs(speed), -1.);
+	}
+	
+	/**
+	 * Like <code>moveTo</code>, but taking a set time.
+	 *
+	 * @param  goal  Where to move to, in ticks
+	 * @param  ms    How long the move should take
+	 * @return       A latch that opens once the move is over
+	 */
+	public CountDownLatch moveToTime(int goal, int ms) {
+		return start(goal, 0, ms <= 0 ? 0. : ms * 1e-3);
+	}
+	
+	private CountDownLatch start(int goal, int speed, double seconds) {
+		for(int i = 0; i < motors.length; ++i) {
+			motors[i].stopControl();
+		}
+		int[] current = new int[motors.length];
+		readPositions(current);
+		synchronized(this) {
+			int lead = 0;
+			for(int i = 0; i < current.length; ++i) {
+				lead = Math.max(lead, Math.abs(goal - current[i]));
+			}
+			if(seconds < 0.) {
+				seconds = (double) lead / speed;
+			}
+			this.goal = goal;
+			System.arraycopy(current, 0, starts, 0, current.length);
+			rate = seconds > 0. ? 1. / seconds : Double.POSITIVE_INFINITY;
+			progress = lead == 0 ? 1. : 0.;
+			last = settleBegin = heldSince = -1;
+			maxSkew = holds = 0;
+			arrived = false;
+			active = true;
+		}
+		return done = MotionScheduler.get().schedule(this);
+	}
+	
+	/**
+	 * Don't call this function, it is run by the <code>MotionScheduler</code>.
+	 */
+	public boolean tick(long nanos) {
+		// reading may take a while, so it's done without holding the lock
+		lowMotor.get_motor_position_counters(counters);
+		synchronized(this) {
+			if(!active) {
+				return false;
+			}
+			for(int i = 0; i < motors.length; ++i) {
+				positions[i] = counters[motors[i].getPort()] + offsets[i];
+			}
+			double dt = last < 0 ? 0. : (nanos - last) * 1e-9;
+			last = nanos;
+			int skew = getSkew(positions);
+			maxSkew = Math.max(maxSkew, skew);
+			boolean synced = skew <= threshold;
+			if(!synced) {
+				++holds;
+				if(heldSince < 0 || skew < holdSkew) {
+					// still getting closer
+					heldSince = nanos;
+					holdSkew = skew;
+				} else if(nanos - heldSince >= settleNanos) {
+					// a member is stuck, and the rest would wait forever
+					end(false);
+					return false;
+				}
+				// catch up with the leader, rather than have it back up
+				progress = Math.max(progress, getLeadProgress(positions));
+			} else {
+				heldSince = -1;
+				if(progress < 1.) {
+					progress = Double.isInfinite(rate) ? 1.
+						: Math.min(1., progress + rate * dt);
+				}
+			}
+			
+			boolean moving = progress < 1.;
+			if(!moving) {
+				int away = 0;
+				for(int i = 0; i < positions.length; ++i) {
+					away = Math.max(away, Math.abs(goal - positions[i]));
+				}
+				boolean there = away <= tolerance;
+				if(settleBegin < 0 || away < settleAway) {
+					// still getting closer
+					settleBegin = nanos;
+					settleAway = away;
+				}
+				if(there || nanos - settleBegin >= settleNanos) {
+					end(there);
+					return false;
+				}
+			}
+			for(int i = 0; i < positions.length; ++i) {
+				double distance = goal - starts[i];
+				double v = p * (getTarget(i) - positions[i]);
+				if(moving) {
+					if(synced && !Double.isInfinite(rate)) {
+						v += distance * rate;
+					}
+					// while on the way, hold back rather than back up
+					v = distance < 0. ? Math.min(v, 0.) : Math.max(v, 0.);
+				}
+				v = Math.max(-FULL_SPEED, Math.min(FULL_SPEED, v));
+				velocities[motors[i].getPort()] = (int) Math.round(v);
+			}
+			lowMotor.mav_group(mask, velocities);
+			return true;
+		}
+	}
+	
+	// only with the lock held
+	private void end(boolean arrived) {
+		active = false;
+		this.arrived = arrived;
+		setAll(0);
+	}
+	
+	private void setAll(int velocity) {
+		int[] all = new int[4];
+		for(int i = 0; i < motors.length; ++i) {
+			all[motors[i].getPort()] = velocity;
+		}
+		lowMotor.mav_group(mask, all);
+	}
+	
+	/**
+	 * Cancels any move, and sets every member to the same speed at once.
+	 *
+	 * @param  velocity  Ticks per second (-1000 to 1000)
+	 */
+	public void moveAtVelocity(int velocity) {
+		cancel();
+		setAll(velocity);
+	}
+	
+	/**
+	 * Stops the move in progress, if any, leaving the motors stopped.
+	 */
+	public void cancel() {
+		synchronized(this) {
+			if(active) {
+				end(false);
+			}
+		}
+		MotionScheduler.get().cancel(this);
+	}
+	
+	/**
+	 * @return  <code>true</code> while a move is in progress
+	 */
+	public synchronized boolean isMoving() {
+		return active;
+	}
+	
+	/**
+	 * Blocks until the move in progress is over, without polling.
+	 */
+	public void waitForDone() throws InterruptedException {
+		Clock.get().await(done);
+	}
+	
+	/**
+	 * @return  <code>false</code> if the last move was cancelled, or given up
+	 *              on after the settle time
+	 */
+	public synchronized boolean hasArrived() {
+		return arrived;
+	}
+	
+	/**
+	 * @return  The largest skew seen during the last move, in ticks
+	 */
+	public synchronized int getMaxSkew() {
+		return maxSkew;
+	}
+	
+	/**
+	 * @return  The number of ticks the last move held for the members to get
+	 *              back in sync
+	 */
+	public synchronized int getHoldCount() {
+		return holds;
+	}
+	
+	/**
+	 * @param  ticks  Skew past which a move holds until the members are back
+	 *                    in sync
+	 */
+	public synchronized void setThreshold(int ticks) {
+		if(ticks < 0) {
+			throw new IllegalArgumentException("threshold must be >= 0");
+		}
+		threshold = ticks;
+	}
+	
+	public synchronized int getThreshold() {
+		return threshold;
+	}
+	
+	/**
+	 * @param  p  Correction, in ticks per second per tick a member is off
+	 */
+	public synchronized void setGain(double p) {
+		this.p = p;
+	}
+	
+	public synchronized double getGain() {
+		return p;
+	}
+	
+	/**
+	 * @param  ticks  How close to the goal counts as there
+	 */
+	public synchronized void setTolerance(int ticks) {
+		if(ticks < 0) {
+			throw new IllegalArgumentException("tolerance must be >= 0");
+		}
+		tolerance = ticks;
+	}
+	
+	public synchronized int getTolerance() {
+		return tolerance;
+	}
+	
+	/**
+	 * @param  millis  How long a move may go without getting any closer to
+	 *                     its goal, or to being in sync, before it is given
+	 *                     up on
+	 */
+	public synchronized void setSettleMillis(double millis) {
+		if(millis < 0.) {
+			throw new IllegalArgumentException("settle time must be >= 0");
+		}
+		settleNanos = (long) (millis * 1e6);
+	}
+	
+	public synchronized double getSettleMillis() {
+		return settleNanos / 1e6;
+	}
+}
@@ -16,10 +16,12 @@
 
 package cbccore.motors;
 
-import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 
+import cbccore.Clock;
 import cbccore.Device;
 import cbccore.InvalidPortException;
+import cbccore.easing.EasingTable;
 import cbccore.motors.statemotors.AbstractBlockingAdvancedStateMotor;
 
 /**
@@ -33,12 +35,20 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	private static cbccore.low.Servo lowServo = Device.getLowServoController();
 	
 	// variables for advanced motion
-	private long beginTime = 0;
-	private int ms = 0;
+	private long beginNanos = 0;
+	private long durationNanos = 0;
 	private int deltaPos = 0;
 	private int startPos = 0;
-	private boolean moving = false;
+	private int lastSent = -1;
+	private EasingTable easing = null;
+	private volatile boolean moving = false;
 	private int timingCoefficient = 500; // approx millisecs for full sweep
+	private final MotionScheduler.Motion motion =
+		new MotionScheduler.Motion() {
+			public boolean tick(long nanos) {
+				return step(nanos);
+			}
+		};
 	
 	/**
 	 * Create a new servo object in the desired port
@@ -122,8 +132,16 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	 * @param  pos  The position value from 0 to 2048 to move to
 	 */
 	public void setPosition(int pos) {
+		stopMotion();
 		rawSetPosition(pos);
-		moving = false;
+	}
+	
+	// stops any setPositionTime, waiting out a tick that is in progress
+	private void stopMotion() {
+		synchronized(this) {
+			moving = false;
+		}
+		MotionScheduler.get().cancel(motion);
 	}
 	
 	private void throwOutOfRange(int pos) throws IllegalArgumentException {
@@ -153,11 +171,12 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	 * @param  pos  The position value from 0 to 2048 to move to
 	 */
 	public void setPosition(int pos, boolean blocking) {
+		stopMotion();
 		rawSetPosition(pos);
 		moving = true;
 		try {
-			Thread.sleep(Math.abs(pos - getPosition()) * timingCoefficient
-			             / getMaxPosition());
+			Clock.get().sleep(Math.abs(pos - getPosition()) * timingCoefficient
+			                  / getMaxPosition());
 		} catch(InterruptedException ex) {
 			// do nothing
 		}
@@ -175,39 +194,63 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	
 	/**
 	 * Moves to a new servo position in a designated amount of time in
-	 * milliseconds. The speed of the movement is simulated by running quickly
-	 * changing the motor positions to intermediate places over time.
+	 * milliseconds. The speed of the movement is simulated by changing the
+	 * servo's position to intermediate places every tick of the
+	 * <code>MotionScheduler</code>. Blocking waits on the scheduler rather
+	 * than doing the work on the calling thread.
 	 * 
 	 * @param  ms      the allotted amount of time to move
 	 * @param  newPos  the new servo position
+	 * @see    MotionScheduler
 	 */
 	public void setPositionTime(int newPos, int ms, boolean blocking) {
+		setPositionTime(newPos, ms, null, blocking);
+	}
+	
+	/**
+	 * Like <code>setPositionTime(int, int, boolean)</code>, but follows an
+	 * easing curve, so that the servo speeds up and slows down gently instead
+	 * of snapping to full speed.
+	 * 
+	 * @param  newPos    the new servo position
+	 * @param  ms        the allotted amount of time to move
+	 * @param  easing    the curve to follow, or <code>null</code> to move at a
+	 *                       constant speed
+	 * @param  blocking  if true, doesn't return until done
+	 */
+	public void setPositionTime(int newPos, int ms, EasingTable easing,
+	                            boolean blocking) {
 		throwOutOfRange(newPos);
 		if(!isEnabled()) {
 			setPosition(newPos);
 			if(blocking) {
 				try {
-					Thread.sleep(ms);
+					Clock.get().sleep(ms);
 				} catch(InterruptedException ex) {
 					return;
 				}
 			}
 			return;
 		}
-		startPos = getPosition();
-		deltaPos = newPos - startPos;
-		if(deltaPos == 0) {
+		synchronized(this) {
+			startPos = getPosition();
+			lastSent = startPos;
+			deltaPos = newPos - startPos;
+			beginNanos = Clock.get().nanoTime();
+			durationNanos = ms * 1000000L;
+			this.easing = easing;
+			moving = deltaPos != 0;
+		}
+		if(!moving) {
+			MotionScheduler.get().cancel(motion);
 			return;
 		}
-		beginTime = System.currentTimeMillis();
-		moving = true;
-		this.ms = ms;
-		if(!blocking) {
-			ServoThread.get().addServo(this);
-		} else {
-			while(isMoving()) {
-				update();
-				Thread.yield();
+		CountDownLatch done = MotionScheduler.get().schedule(motion);
+		if(blocking) {
+			try {
+				Clock.get().await(done);
+			} catch(InterruptedException ex) {
+				return;
 			}
 		}
 	}
@@ -216,24 +259,31 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	 * Do not use.
 	 */
 	public void update() {
+		step(Clock.get().nanoTime());
+	}
+	
+	// one tick of setPositionTime; the servo is only told about positions
+	// that actually changed
+	private synchronized boolean step(long nanos) {
 		if(!moving) {
-			return;
+			return false;
 		}
-		int time = (int)(System.currentTimeMillis() - beginTime);
-		if(time > ms) {
-			rawSetPosition(startPos + deltaPos);
-			moving = false;
-			return;
-		}
-		
-		int y = (int)(deltaPos * time / ms + startPos);
-		
-		if((deltaPos > 0 && y > startPos + deltaPos) ||
-		   (deltaPos < 0 && y < startPos + deltaPos)) {
+		long time = nanos - beginNanos;
+		int y;
+		if(time >= durationNanos) {
 			y = startPos + deltaPos;
 			moving = false;
+		} else if(easing == null) {
+			y = startPos + (int)(deltaPos * time / durationNanos);
+		} else {
+			y = startPos + (int)Math.round(
+				deltaPos * easing.get((double)time / durationNanos));
+		}
+		if(y != lastSent) {
+			rawSetPosition(y);
+			lastSent = y;
 		}
-		rawSetPosition(y);
+		return moving;
 	}
 	
 	/**
@@ -271,51 +321,4 @@ public class Servo extends AbstractBlockingAdvancedStateMotor {
 	public int getPort() {
 		return port;
 	}
-	
-	private static class ServoThread extends Thread {
-		public static ServoThread get() {
-			if (instance == null) {
-				instance = new ServoThread();
-				instance.start();
-			}
-			return instance;
-		}
-		
-		private ArrayList<Servo> servos = new ArrayList<Servo>();
-		
-		private boolean exit = false;
-		
-		private static ServoThread instance = null;
-		
-		public ServoThread() {
-			setDaemon(true);
-		}
-		
-		public void addServo(Servo servo) {
-			synchronized(servos) {
-				servos.add(servo);
-			}
-		}
-		
-		public void exit() {
-			exit = true;
-		}
-		
-		@Override
-		public void run() {
-			ArrayList<Servo> removes = new ArrayList<Servo>();
-			while (!exit) {
-				removes.clear();
-				synchronized(servos) {
-					for(Servo s: servos) {
-						s.update();
-						if(!s.isMoving()) {
-							removes.add(s);
-						}
-					}
-					servos.removeAll(removes);
-				}
-			}
-		}
-	}
 }
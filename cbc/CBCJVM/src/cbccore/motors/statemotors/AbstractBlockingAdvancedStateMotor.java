@@ -16,6 +16,12 @@
 
 package cbccore.motors.statemotors;
 
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+import cbccore.easing.EasingTable;
+import cbccore.motors.MotionScheduler;
+
 /**
  * This class defines a few methods to help implement
  * IBlockingAdvancedStateMotor. For example, you can write
@@ -25,7 +31,12 @@ package cbccore.motors.statemotors;
  * <code>setPositionSpeed(int pos, int ticksPerSec, boolean blocking)</code>,
  * <code>setPositionSpeed(int pos, int ticksPerSec)</code>, and even
  * <code><code>setPosition(int pos)</code> (assuming you have a proper
- * implementation of <code>getDefaultSpeed()</code>)
+ * implementation of <code>getDefaultSpeed()</code>)<p/>
+ * 
+ * Eased moves are done by stepping <code>setPosition(int pos)</code> along
+ * the curve every tick of the <code>MotionScheduler</code>. Override
+ * <code>isMoving()</code> to include <code>isEasing()</code>, and call
+ * <code>cancelEasing()</code> from anything that takes the motor elsewhere.
  * 
  * @author Benjamin Woodruff
  */
@@ -34,6 +45,8 @@ public abstract class AbstractBlockingAdvancedStateMotor
                                         extends AbstractAdvancedStateMotor
                                         implements IBlockingAdvancedStateMotor {
 	
+	private EasedMotion eased = null;
+	
 	public void setPositionTime(int pos, int ms) {
 		setPositionTime(pos, ms, false);
 	}
@@ -62,4 +75,81 @@ public abstract class AbstractBlockingAdvancedStateMotor
 		int ms = Math.abs((pos - getPosition()) * 1000 / ticksPerSec);
 		setPositionTime(pos, ms, blocking);
 	}
+	
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking) {
+		EasedMotion motion;
+		synchronized(this) {
+			if(eased == null) {
+				eased = new EasedMotion();
+			}
+			motion = eased;
+		}
+		motion.set(getPosition(), pos, ms, easing);
+		CountDownLatch done = MotionScheduler.get().schedule(motion);
+		if(blocking) {
+			try {
+				Clock.get().await(done);
+			} catch(InterruptedException ex) {
+				// give up waiting, like the other blocking moves
+			}
+		}
+	}
+	
+	/**
+	 * Stops an eased move where it is, waiting out a tick that is in
+	 * progress, so the move can't set the position again afterwards.
+	 */
+	protected void cancelEasing() {
+		EasedMotion motion = eased;
+		if(motion != null) {
+			MotionScheduler.get().cancel(motion);
+			motion.stop();
+		}
+	}
+	
+	/**
+	 * @return  <code>true</code> while an eased move is under way
+	 */
+	protected boolean isEasing() {
+		EasedMotion motion = eased;
+		return motion != null && MotionScheduler.get().isScheduled(motion);
+	}
+	
+	private class EasedMotion implements MotionScheduler.Motion {
+		private int start, delta;
+		private int lastSent;
+		private long begin, duration;
+		private EasingTable easing;
+		private boolean stopped = false;
+		
+		synchronized void set(int from, int to, int ms, EasingTable easing) {
+			stopped = false;
+			start = from;
+			delta = to - from;
+			lastSent = from;
+			begin = Clock.get().nanoTime();
+			duration = ms * 1000000L;
+			this.easing = easing;
+		}
+		
+		synchronized void stop() {
+			stopped = true;
+		}
+		
+		public synchronized boolean tick(long nanos) {
+			if(stopped) {
+				return false;
+			}
+			double p = duration <= 0 ? 1. : (double) (nanos - begin) / duration;
+			double moved = easing == null ? Math.min(1., p) : easing.get(p);
+			int y = start + (int) Math.round(delta * moved);
+			// only bother the motor when the target actually changes
+			if(y != lastSent) {
+				setPosition(y);
+				lastSent = y;
+			}
+			return p < 1.;
+		}
+	}
 }
@@ -18,6 +18,7 @@ package cbccore.motors.statemotors;
 
 import cbccore.Device;
 import cbccore.InvalidPortException;
+import cbccore.easing.EasingTable;
 
 /**
  * A blocking function is one that doesn't return until its action is done. This
@@ -40,6 +41,22 @@ public interface IBlockingAdvancedStateMotor extends IAdvancedStateMotor {
 	public void setPositionSpeed(int pos, int speed, boolean blocking);
 	public void setPosition(int pos, boolean blocking);
 	
+	/**
+	 * Moves to a position in a set time, following an easing curve rather
+	 * than moving at a constant speed the whole way. Easing in and out
+	 * avoids the current spike and slip of starting and stopping at full
+	 * speed.
+	 * 
+	 * @param  pos       The position to move to
+	 * @param  ms        How long the move should take
+	 * @param  easing    The curve to follow, or <code>null</code> to move at
+	 *                   a constant speed
+	 * @param  blocking  If true, the function doesn't return until done
+	 * @see    cbccore.easing.EasingTable
+	 */
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking);
+	
 	/**
 	 * Determines if the motor is still moving or not. If it's moving, this
 	 * returns true, false otherwise. A motor is classified of moving regardless
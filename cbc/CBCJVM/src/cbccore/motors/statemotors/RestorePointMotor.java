@@ -19,6 +19,8 @@ package cbccore.motors.statemotors;
 import java.util.HashMap;
 import java.util.Map;
 
+import cbccore.easing.EasingTable;
+
 /**
  * A special motor controller that can remember certain set positions, and allow
  * you to move to them. (Like open and close positions for a simple claw)
@@ -180,6 +182,11 @@ public class RestorePointMotor<K> extends HashMap<K, Integer>
 		getBlockingMotor().setPositionTime(pos, ms, blocking);
 	}
 	
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking) {
+		getBlockingMotor().setPositionTime(pos, ms, easing, blocking);
+	}
+	
 	public int getPosition() {
 		return controlMotor.getPosition();
 	}
@@ -16,6 +16,7 @@
 
 package cbccore.motors.statemotors.coefficient;
 
+import cbccore.easing.EasingTable;
 import cbccore.motors.statemotors.IBlockingAdvancedStateMotor;
 
 /**
@@ -53,6 +54,13 @@ public class CoefficientBlockingAdvancedStateMotor
 		                               sec / getSpeedCoefficient(), blocking);
 	}
 	
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking) {
+		getBaseMotor().setPositionTime((int)(pos * getCoefficient()),
+		                               (int)(ms / getSpeedCoefficient()),
+		                               easing, blocking);
+	}
+	
 	public void setPositionSpeed(int pos, int speed, boolean blocking) {
 		getBaseMotor().setPositionSpeed((int)(pos * getCoefficient()),
 		                                (int)(speed * getSpeedCoefficient()),
@@ -41,18 +41,30 @@ public class ComposedAdvancedStateMotor<E extends IAdvancedStateMotor>
 	}
 	
 	public void setPositionTime(int pos, int ms) {
+		if(getGroup() != null) {
+			getGroup().moveToTime(pos, ms);
+			return;
+		}
 		for(E i:getMotors()) {
 			i.setPositionTime(pos, ms);
 		}
 	}
 	
 	public void setPositionTime(int pos, double sec) {
+		if(getGroup() != null) {
+			getGroup().moveToTime(pos, (int)(sec * 1000.));
+			return;
+		}
 		for(E i:getMotors()) {
 			i.setPositionTime(pos, sec);
 		}
 	}
 	
 	public void setPositionSpeed(int pos, int speed) {
+		if(getGroup() != null) {
+			getGroup().moveTo(pos, speed);
+			return;
+		}
 		for(E i:getMotors()) {
 			i.setPositionSpeed(pos, speed);
 		}
@@ -16,6 +16,8 @@
 
 package cbccore.motors.statemotors.composed;
 
+import cbccore.Clock;
+import cbccore.easing.EasingTable;
 import cbccore.motors.statemotors.IBlockingAdvancedStateMotor;
 import cbccore.motors.statemotors.offset.OffsetBlockingAdvancedStateMotor;
 
@@ -43,30 +45,34 @@ public class ComposedBlockingAdvancedStateMotor
 	}
 	
 	public void setPositionTime(int pos, int ms, boolean blocking) {
-		for(IBlockingAdvancedStateMotor m: getMotors()) {
-			m.setPositionTime(pos, ms);
-		}
+		setPositionTime(pos, ms);
 		waitForMotors(blocking);
 	}
 	
 	public void setPositionTime(int pos, double sec, boolean blocking) {
+		setPositionTime(pos, sec);
+		waitForMotors(blocking);
+	}
+	
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking) {
+		if(getGroup() != null) {
+			// eased moves are still made motor by motor
+			getGroup().cancel();
+		}
 		for(IBlockingAdvancedStateMotor m: getMotors()) {
-			m.setPositionTime(pos, sec);
+			m.setPositionTime(pos, ms, easing, false);
 		}
 		waitForMotors(blocking);
 	}
 	
 	public void setPositionSpeed(int pos, int speed, boolean blocking) {
-		for(IBlockingAdvancedStateMotor m: getMotors()) {
-			m.setPositionSpeed(pos, speed);
-		}
+		setPositionSpeed(pos, speed);
 		waitForMotors(blocking);
 	}
 	
 	public void setPosition(int pos, boolean blocking) {
-		for(IBlockingAdvancedStateMotor m: getMotors()) {
-			m.setPosition(pos);
-		}
+		setPosition(pos);
 		waitForMotors(blocking);
 	}
 	
@@ -83,11 +89,17 @@ public class ComposedBlockingAdvancedStateMotor
 		if(!blocking) {
 			return;
 		}
-		for(IBlockingAdvancedStateMotor m: getMotors()) {
-			while(m.isMoving()) {
-				Thread.yield();
+		try {
+			if(getGroup() != null) {
+				getGroup().waitForDone();
 			}
-		}
+			for(IBlockingAdvancedStateMotor m: getMotors()) {
+				// sleep rather than spin, so a simulated clock can move on
+				while(m.isMoving()) {
+					Clock.get().sleep(1);
+				}
+			}
+		} catch(InterruptedException e) {}
 	}
 	
 	/**
@@ -95,6 +107,9 @@ public class ComposedBlockingAdvancedStateMotor
 	 * <code>false</code> if none of them are moving.
 	 */
 	public boolean isMoving() {
+		if(getGroup() != null && getGroup().isMoving()) {
+			return true;
+		}
 		for(IBlockingAdvancedStateMotor m: getMotors()) {
 			if(m.isMoving()) {
 				return true;
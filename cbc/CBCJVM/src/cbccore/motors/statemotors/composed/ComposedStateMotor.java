@@ -16,18 +16,24 @@
 
 package cbccore.motors.statemotors.composed;
 
+import cbccore.motors.MotorGroup;
 import cbccore.motors.statemotors.IStateMotor;
 import cbccore.motors.statemotors.offset.OffsetStateMotor;
 
 /**
+ * When every child is a plain <code>cbccore.motors.Motor</code>, they are
+ * driven together as a <code>MotorGroup</code>, so that moves are commanded
+ * to all of them at once, finish together, and stay in sync on the way.
+ * Otherwise calls go to each child in turn.
  * 
  * @author Benjamin Woodruff
- *
+ * @see    MotorGroup
  */
 
 public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 	
 	private E[] motors;
+	private MotorGroup group;
 	
 	public ComposedStateMotor(E ... motors) {
 		this(motors, getEmptyOffsetArray(motors.length));
@@ -42,6 +48,7 @@ public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 	}
 	
 	public ComposedStateMotor(E[] motors, int ... offsets) {
+		group = MotorGroup.of(motors, offsets);
 		for(int i = 0; i < motors.length; ++i) {
 			if(offsets[i] != 0) {
 				motors[i] = offsetMotorFactory(motors[i], offsets[i]);
@@ -58,6 +65,14 @@ public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 		return motors;
 	}
 	
+	/**
+	 * @return  The group driving the children, or <code>null</code> if they
+	 *              can't be grouped
+	 */
+	public MotorGroup getGroup() {
+		return group;
+	}
+	
 	public void syncMotors() { sync(); }
 	public void syncPositions() { sync(); }
 	
@@ -66,6 +81,9 @@ public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 	}
 	
 	public boolean isSynced(int threshold) {
+		if(group != null) {
+			return group.isSynced(threshold);
+		}
 		int p = getPosition();
 		for(E i:getMotors()) {
 			if(Math.abs(i.getPosition() - p) > threshold) {
@@ -76,6 +94,9 @@ public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 	}
 	
 	public int getPosition() {
+		if(group != null) {
+			return group.getPosition();
+		}
 		int sum = 0;
 		for(E i:getMotors()) {
 			sum += i.getPosition();
@@ -84,6 +105,10 @@ public class ComposedStateMotor<E extends IStateMotor> implements IStateMotor {
 	}
 	
 	public void setPosition(int pos) {
+		if(group != null) {
+			group.moveTo(pos, MotorGroup.FULL_SPEED);
+			return;
+		}
 		for(E i:getMotors()) {
 			i.setPosition(pos);
 		}
@@ -16,6 +16,7 @@
 
 package cbccore.motors.statemotors.offset;
 
+import cbccore.easing.EasingTable;
 import cbccore.motors.statemotors.IBlockingAdvancedStateMotor;
 
 /**
@@ -43,6 +44,12 @@ public class OffsetBlockingAdvancedStateMotor
 		getBaseMotor().setPositionTime(pos - getOffset(), sec, blocking);
 	}
 	
+	public void setPositionTime(int pos, int ms, EasingTable easing,
+	                            boolean blocking) {
+		getBaseMotor().setPositionTime(pos - getOffset(), ms, easing,
+		                               blocking);
+	}
+	
 	public void setPositionSpeed(int pos, int speed, boolean blocking) {
 		getBaseMotor().setPositionSpeed(pos - getOffset(), speed, blocking);
 	}
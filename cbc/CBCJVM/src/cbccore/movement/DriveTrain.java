@@ -16,7 +16,12 @@
 
 package cbccore.movement;
 
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
 import cbccore.easing.EasingEquation;
+import cbccore.easing.EasingTable;
+import cbccore.motors.MotionScheduler;
 import cbccore.movement.plugins.MovementPlugin;
 
 /**
@@ -38,6 +43,14 @@ public class DriveTrain {
 	public static final int CONSTANT_DISTANCE = 3;
 	public static final int CONSTANT_TIME = 4;
 	
+	/** Default time between steps of a planned move, 20ms */
+	public static final double DEFAULT_STEP_MILLIS = 20.;
+	/** Default acceleration limit for planned moves, in cm/s^2 */
+	public static final double DEFAULT_ACCELERATION = 40.;
+	
+	// how much of a step MIN_SLEEP_AND_YIELD spends yielding, 2ms
+	private static final long SPIN_NANOS = 2000000L;
+	
 	private MovementPlugin plugin;
 	private double oldAngle;
 	private double oldX;
@@ -45,6 +58,10 @@ public class DriveTrain {
 	private double leftCmps;
 	private double rightCmps;
 	private long oldTime;
+	private volatile Odometry odometry = null;
+	private int stepMode = DriveTrainStepModes.DISABLED;
+	private double acceleration = DEFAULT_ACCELERATION;
+	private double jerk = Double.POSITIVE_INFINITY;
 	
 	public DriveTrain(MovementPlugin plugin) {
 		this.plugin = plugin;
@@ -168,6 +185,36 @@ public class DriveTrain {
 		moveWheelCm(cm, cm, cmps, cmps);
 	}
 	
+	/**
+	 * Moves robot forward a certain number of centimeters, speeding up and
+	 * slowing down along an easing curve rather than jumping straight to full
+	 * speed, which makes the wheels slip.
+	 * 
+	 * @param  cm      Desired distance in centimeters
+	 * @param  cmps    Top speed in centimeters-per-second
+	 * @param  easing  The curve to follow
+	 * @see    #moveCm(double, double)
+	 */
+	public void moveCm(double cm, double cmps, EasingTable easing) {
+		moveWheelCm(cm, cm, cmps, cmps, easing);
+	}
+	
+	/**
+	 * Rotates the device a specified number of radians Counter-Clockwise,
+	 * speeding up and slowing down along an easing curve.
+	 * 
+	 * @param  radians           The desired change in radians
+	 * @param  radiansPerSecond  Top speed in radians per second
+	 * @param  easing            The curve to follow
+	 * @see                      #rotateRadians(double, double)
+	 */
+	public void rotateRadians(double radians, double radiansPerSecond,
+	                          EasingTable easing) {
+		double dist = plugin.getTrainWidth() * radians * .5;
+		double speed = radiansPerSecond * plugin.getTrainWidth() * .5;
+		moveWheelCm(-dist, dist, -speed, speed, easing);
+	}
+	
 	/**
 	 * Utility to make cmps match the sign of cm.
 	 */
@@ -191,8 +238,8 @@ public class DriveTrain {
 		rightCmps = moveParser(rightCm, rightCmps);
 		// actually call the support functions
 		directDrive(leftCmps, rightCmps);
-		Thread.sleep(milliseconds); // let our parent handle an
-		                            // InterruptedException
+		Clock.get().sleep(milliseconds); // let our parent handle an
+		                                 // InterruptedException
 	}
 	
 	//leftCm/leftCmps must be equal to rightCm/rightCmps
@@ -201,6 +248,10 @@ public class DriveTrain {
 		
 		leftCmps = moveParser(leftCm, leftCmps);
 		rightCmps = moveParser(rightCm, rightCmps);
+		if(stepMode != DriveTrainStepModes.DISABLED) {
+			moveWheelCmPlanned(leftCm, rightCm, leftCmps, rightCmps);
+			return;
+		}
 		long milliseconds = ((long)((leftCm/leftCmps)*1.0e3));
 		try {
 			moveWheelCmConstant(leftCm, rightCm, leftCmps, rightCmps,
@@ -209,6 +260,240 @@ public class DriveTrain {
 		stop();
 	}
 	
+	/**
+	 * Plans a move for the wheel going further, which the other wheel follows
+	 * in proportion, and steps through it.
+	 */
+	private void moveWheelCmPlanned(double leftCm, double rightCm,
+	                                double leftCmps, double rightCmps) {
+		double lead = Math.max(Math.abs(leftCm), Math.abs(rightCm));
+		if(!(lead > 0.)) {
+			stop();
+			return;
+		}
+		double leftShare = leftCm / lead;
+		double rightShare = rightCm / lead;
+		// fastest the lead wheel may go with neither wheel past its limit
+		double limit = Math.min(leadLimit(leftShare, Double.MAX_VALUE),
+		                        leadLimit(rightShare, Double.MAX_VALUE));
+		double top = Math.min(leadLimit(leftShare, leftCmps),
+		                      leadLimit(rightShare, rightCmps));
+		followProfile(new MotionProfile(lead, top, acceleration, jerk),
+		              leftShare, rightShare, limit);
+	}
+	
+	// the lead wheel's speed limit due to one wheel, moving share cm for each
+	// cm the lead wheel does
+	private double leadLimit(double share, double cmps) {
+		if(share == 0.) {
+			return Double.MAX_VALUE;
+		}
+		double max = share > 0. ? getMaxCmps() : -getMinCmps();
+		return Math.min(Math.abs(cmps), max) / Math.abs(share);
+	}
+	
+	/**
+	 * Drives the wheels through a planned move, one step at a time, at the
+	 * rate and in the manner set by the step mode. Each step sets the speed
+	 * that gets the lead wheel to where the plan has it at the next step, so
+	 * a step that starts late is made up for rather than adding up.
+	 * 
+	 * @param  profile     The plan for the wheel going further
+	 * @param  leftShare   cm the left wheel moves per cm of the plan
+	 * @param  rightShare  cm the right wheel moves per cm of the plan
+	 * @param  limit       Fastest the plan may be driven, in cm per second
+	 * @see    #setStepMode
+	 */
+	protected void followProfile(MotionProfile profile, double leftShare,
+	                             double rightShare, double limit) {
+		Clock clock = Clock.get();
+		long period = getStepNanos();
+		long begin = clock.nanoTime();
+		long end = begin + (long) Math.ceil(profile.getDuration() * 1e9);
+		long last = begin;
+		long next = begin;
+		double done = 0.; // cm covered according to the speeds we set
+		double speed = 0.;
+		try {
+			while(true) {
+				long now = clock.nanoTime();
+				done += speed * (now - last) * 1e-9;
+				last = now;
+				if(now - end >= 0) {
+					break;
+				}
+				while(next - now <= 0) {
+					next += period;
+				}
+				if(next - end > 0) {
+					next = end;
+				}
+				double target = profile.getPosition((next - begin) * 1e-9);
+				speed = (target - done) / ((next - now) * 1e-9);
+				speed = Math.max(0., Math.min(limit, speed));
+				directDrive(speed * leftShare, speed * rightShare);
+				waitUntil(clock, next);
+			}
+		} catch(InterruptedException ex) {}
+		stop();
+	}
+	
+	private void waitUntil(Clock clock, long deadline)
+	                       throws InterruptedException {
+		long left = deadline - clock.nanoTime();
+		switch(stepMode) {
+			case DriveTrainStepModes.HIGH_PRECISION:
+				clock.spinNanos(left, false);
+				break;
+			case DriveTrainStepModes.YIELD:
+				clock.spinNanos(left, true);
+				break;
+			case DriveTrainStepModes.MIN_SLEEP_AND_YIELD:
+				clock.sleepNanos(left - SPIN_NANOS);
+				clock.spinNanos(deadline - clock.nanoTime(), true);
+				break;
+			default:
+				clock.sleepNanos(left);
+		}
+	}
+	
+	private long getStepNanos() {
+		double millis = stepMode > 0 ? stepMode : DEFAULT_STEP_MILLIS;
+		return (long) (millis * 1e6);
+	}
+	
+	/**
+	 * Sets how moves of a set distance are carried out. With
+	 * <code>DriveTrainStepModes.DISABLED</code>, the default, the wheels are
+	 * set to full speed and stopped once the move should be done. Any other
+	 * mode plans a <code>MotionProfile</code> under the acceleration and
+	 * jerk limits, and steps the wheels through it, waiting between steps
+	 * as the mode says. A positive mode is the time between steps in
+	 * milliseconds, sleeping in between.
+	 * 
+	 * @param  stepMode  One of <code>DriveTrainStepModes</code>, or a step
+	 *                       time in milliseconds
+	 * @see    DriveTrainStepModes
+	 * @see    #setAcceleration
+	 * @see    #setJerk
+	 */
+	public void setStepMode(int stepMode) {
+		if(stepMode < DriveTrainStepModes.MIN_SLEEP_AND_YIELD) {
+			throw new IllegalArgumentException("no such step mode");
+		}
+		this.stepMode = stepMode;
+	}
+	
+	public int getStepMode() {
+		return stepMode;
+	}
+	
+	/**
+	 * Sets how quickly a planned move may change speed. Lower it if the
+	 * wheels slip when starting or stopping.
+	 * 
+	 * @param  cmpss  Largest acceleration in cm per second squared
+	 * @see    #setStepMode
+	 */
+	public void setAcceleration(double cmpss) {
+		if(!(cmpss > 0.)) {
+			throw new IllegalArgumentException("acceleration must be > 0");
+		}
+		acceleration = cmpss;
+	}
+	
+	public double getAcceleration() {
+		return acceleration;
+	}
+	
+	/**
+	 * Sets how quickly a planned move may change acceleration. Left infinite,
+	 * the default, speed follows a trapezoid; otherwise an S-curve.
+	 * 
+	 * @param  cmpsss  Largest jerk in cm per second cubed
+	 * @see    #setStepMode
+	 */
+	public void setJerk(double cmpsss) {
+		if(!(cmpsss > 0.)) {
+			throw new IllegalArgumentException("jerk must be > 0");
+		}
+		jerk = cmpsss;
+	}
+	
+	public double getJerk() {
+		return jerk;
+	}
+	
+	/**
+	 * Like <code>moveWheelCm</code>, but the wheel speeds follow the slope of
+	 * an easing curve, peaking at <code>leftCmps</code> and
+	 * <code>rightCmps</code>. The speeds are set every tick of the
+	 * <code>MotionScheduler</code>, at the cost of a table read each.
+	 */
+	protected void moveWheelCm(double leftCm, double rightCm,
+	                           double leftCmps, double rightCmps,
+	                           EasingTable easing) {
+		if(easing == null) {
+			moveWheelCm(leftCm, rightCm, leftCmps, rightCmps);
+			return;
+		}
+		MotionScheduler scheduler = MotionScheduler.get();
+		// a whole number of ticks, as each one drives for a full tick
+		double tick = scheduler.getPeriodMillis() * 1e-3;
+		double seconds = Math.max(secondsFor(leftCm, leftCmps),
+		                          secondsFor(rightCm, rightCmps));
+		seconds = Math.ceil(seconds * easing.getMaxSlope() / tick) * tick;
+		if(!(seconds > 0.)) {
+			stop();
+			return;
+		}
+		EasedDrive drive = new EasedDrive(leftCm / seconds, rightCm / seconds,
+		                                  seconds, tick, easing);
+		CountDownLatch done = scheduler.schedule(drive);
+		try {
+			Clock.get().await(done);
+		} catch(InterruptedException ex) {
+			scheduler.cancel(drive);
+		}
+		stop();
+	}
+	
+	private static double secondsFor(double cm, double cmps) {
+		return cm == 0. ? 0. : Math.abs(cm / cmps);
+	}
+	
+	// sets the wheel speeds for each tick of an eased move
+	private class EasedDrive implements MotionScheduler.Motion {
+		private double leftCmps, rightCmps; // averages over the whole move
+		private long durationNanos, tickNanos;
+		private long begin = -1;
+		private EasingTable easing;
+		
+		EasedDrive(double leftCmps, double rightCmps, double seconds,
+		           double tick, EasingTable easing) {
+			this.leftCmps = leftCmps;
+			this.rightCmps = rightCmps;
+			this.durationNanos = (long) (seconds * 1e9 + .5);
+			this.tickNanos = (long) (tick * 1e9 + .5);
+			this.easing = easing;
+		}
+		
+		public boolean tick(long nanos) {
+			if(begin < 0) {
+				begin = nanos;
+			}
+			long elapsed = nanos - begin;
+			if(elapsed + tickNanos / 2 >= durationNanos) {
+				return false;
+			}
+			// the speed at the middle of the coming tick
+			double p = (elapsed + tickNanos * .5) / durationNanos;
+			double slope = easing.getSlope(p);
+			directDrive(leftCmps * slope, rightCmps * slope);
+			return true;
+		}
+	}
+	
 	/**
 	 * Can be used to manually control the speed of each drive wheel. Every
 	 * movement call eventually gets run through here, so if one wanted to make
@@ -238,10 +523,20 @@ public class DriveTrain {
 	 * Adapted from
 	 * <a href="http://rossum.sourceforge.net/papers/DiffSteer/DiffSteer.html">
 	 * here</a>.
+	 * <p>
+	 * Once odometry is started, this is the latest pose it measured. Until
+	 * then, it is dead-reckoned from the speeds the wheels were set to,
+	 * which drifts as soon as a wheel slips or lags.
+	 * 
+	 * @see #startOdometry
 	 */
 	public DriveTrainPosition getPosition() {
+		Odometry current = odometry;
+		if(current != null && current.isRunning()) {
+			return current.getPosition();
+		}
 		double newX, newY, newAngle;
-		double seconds = (double)(System.currentTimeMillis()-oldTime)*1e-3;
+		double seconds = (double)(Clock.get().millis()-oldTime)*1e-3;
 		newAngle = seconds*(rightCmps-leftCmps)/plugin.getTrainWidth();
 		double centerDist = seconds*(rightCmps+leftCmps)*.5;
 		// minimizes duplicate calculations
@@ -252,6 +547,38 @@ public class DriveTrain {
 		return new DriveTrainPosition(newX, newY, newAngle);
 	}
 	
+	/**
+	 * Gets the odometry service for this drive train, making it if needed.
+	 * It isn't sampling until started.
+	 * 
+	 * @see #startOdometry
+	 */
+	public synchronized Odometry getOdometry() {
+		if(odometry == null) {
+			odometry = new Odometry(plugin);
+		}
+		return odometry;
+	}
+	
+	/**
+	 * Starts tracking the robot's position from its wheel feedback, from the
+	 * dead-reckoned position at this moment.
+	 * 
+	 * @param  periodMillis  Time between samples
+	 * @throws UnsupportedOperationException  If the plugin has no odometry
+	 * @see    Odometry
+	 */
+	public Odometry startOdometry(double periodMillis) {
+		Odometry o = getOdometry();
+		if(!o.isRunning()) {
+			DriveTrainPosition pos = getPosition();
+			o.reset(pos.getX(), pos.getY(), pos.getRawAngleRadians());
+			o.setPeriodMillis(periodMillis);
+			o.start();
+		}
+		return o;
+	}
+	
 	/**
 	 * Read <a href="https://github.com/CBCJVM/CBCJVM/wiki/Position-Tracking">
 	 * this</a>.
@@ -261,7 +588,7 @@ public class DriveTrain {
 		oldX = pos.getX();
 		oldY = pos.getY();
 		oldAngle = pos.getRawAngleRadians();
-		oldTime = System.currentTimeMillis();
+		oldTime = Clock.get().millis();
 	}
 	
 	
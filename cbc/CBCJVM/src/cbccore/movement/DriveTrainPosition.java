@@ -36,7 +36,7 @@ public class DriveTrainPosition {
 	}
 	
 	public double getX() { return x; }
-	public double getY() { return x; }
+	public double getY() { return y; }
 	public double getRawAngleRadians() { return rawAngle; }
 	public double getRawAngleDegrees() { return Math.toDegrees(getRawAngleRadians()); }
 	public double getAngleRadians() { return getRawAngleRadians()%(Math.PI*2.); }
@@ -16,10 +16,27 @@
 
 package cbccore.movement;
 
+/**
+ * How a <code>DriveTrain</code> steps through a planned move, passed to
+ * <code>DriveTrain.setStepMode</code>. Other than <code>DISABLED</code>,
+ * these step every <code>DriveTrain.DEFAULT_STEP_MILLIS</code>, and differ
+ * in how they wait between steps. A positive number may be given instead,
+ * stepping that many milliseconds apart and sleeping in between.
+ * 
+ * @author Benjamin Woodruff
+ * @see    DriveTrain#setStepMode
+ * @see    MotionProfile
+ */
+
 public class DriveTrainStepModes {
+	/** No planning: jump to full speed, sleep, then stop */
 	public static final int DISABLED = 0;
+	/** Busy wait between steps, for the most even steps, using a full core */
 	public static final int HIGH_PRECISION = -1;
+	/** Busy wait between steps, but let other threads run meanwhile */
 	public static final int YIELD = -2;
+	/** Sleep between steps, which costs the least */
 	public static final int MIN_SLEEP = -3;
+	/** Sleep through most of the wait, and yield through the end of it */
 	public static final int MIN_SLEEP_AND_YIELD = -4;
 }
@@ -0,0 +1,187 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package cbccore.movement;
+
+/**
+ * A plan for covering a distance from rest to rest without asking more of
+ * the wheels than they can give. The speed ramps up at no more than a set
+ * acceleration, cruises, and ramps back down, so the wheels don't slip the
+ * way they do when a move jumps straight to full speed. If the distance is
+ * too short to reach the top speed, the cruise is dropped and the peak
+ * lowered to fit.
+ * <p>
+ * With an infinite jerk limit the speed graph is a trapezoid. With a finite
+ * one the acceleration ramps up and down as well, giving an S-curve, which
+ * is gentler still on the drive train at the cost of a slightly longer move.
+ * <p>
+ * Profiles are immutable, and only describe the motion; see
+ * <code>DriveTrain.setStepMode</code> for having one driven.
+ *
+ * @author Benjamin Woodruff
+ * @see    DriveTrain#setStepMode
+ */
+
+public class MotionProfile {
+	private static final int SEGMENTS = 7;
+	
+	private double distance;
+	private double peakSpeed;
+	private double duration;
+	// each segment has a constant jerk, and starts at a time with a given
+	// position, speed and acceleration
+	private double[] starts = new double[SEGMENTS];
+	private double[] positions = new double[SEGMENTS];
+	private double[] speeds = new double[SEGMENTS];
+	private double[] accelerations = new double[SEGMENTS];
+	private double[] jerks = new double[SEGMENTS];
+	
+	/**
+	 * Plans a move.
+	 *
+	 * @param  distance      How far to go, in cm (<code>&gt;= 0</code>)
+	 * @param  maxSpeed      Top speed in cm per second
+	 * @param  acceleration  Largest acceleration in cm per second squared
+	 * @param  jerk          Largest change in acceleration, in cm per second
+	 *                           cubed, or <code>Double.POSITIVE_INFINITY</code>
+	 *                           for a trapezoid
+	 */
+	public MotionProfile(double distance, double maxSpeed,
+	                     double acceleration, double jerk) {
+		if(!(distance >= 0.) || !(maxSpeed > 0.) || !(acceleration > 0.)
+		   || !(jerk > 0.)) {
+			throw new IllegalArgumentException(
+				"need distance >= 0 and positive limits");
+		}
+		this.distance = distance;
+		double a = acceleration;
+		double v = Math.min(maxSpeed, peakFor(distance, a, jerk));
+		double ramp = 0.; // time for the acceleration to build up
+		if(!Double.isInfinite(jerk)) {
+			ramp = a / jerk;
+			if(v < a * ramp) {
+				// too slow for the acceleration to ever reach its limit
+				ramp = Math.sqrt(v / jerk);
+				a = jerk * ramp;
+			}
+		}
+		double accel = 0., cruise = 0.;
+		if(v > 0.) {
+			accel = v / a - ramp;
+			cruise = Math.max(0., distance / v - accel - ramp * 2.);
+		}
+		peakSpeed = v;
+		
+		double j = ramp > 0. ? jerk : 0.;
+		double[] times = {ramp, accel, ramp, cruise, ramp, accel, ramp};
+		double[] startAccelerations = {0., a, a, 0., 0., -a, -a};
+		double[] segmentJerks = {j, 0., -j, 0., -j, 0., j};
+		double t = 0., p = 0., s = 0.;
+		for(int i = 0; i < SEGMENTS; ++i) {
+			starts[i] = t;
+			positions[i] = p;
+			speeds[i] = s;
+			accelerations[i] = startAccelerations[i];
+			jerks[i] = segmentJerks[i];
+			p = positionIn(i, times[i]);
+			s = speedIn(i, times[i]);
+			t += times[i];
+		}
+		duration = t;
+	}
+	
+	// the highest peak speed that still leaves room to stop in time
+	private static double peakFor(double distance, double a, double jerk) {
+		if(Double.isInfinite(jerk)) {
+			return Math.sqrt(distance * a);
+		}
+		// reaching the acceleration limit: v^2 / a + v * a / jerk = distance
+		double b = a * a / jerk;
+		double v = (Math.sqrt(b * b + 4. * distance * a) - b) * .5;
+		if(v >= b) {
+			return v;
+		}
+		// never reaching it: 2 * v * sqrt(v / jerk) = distance
+		return Math.pow(distance * distance * jerk * .25, 1. / 3.);
+	}
+	
+	private double positionIn(int i, double dt) {
+		return positions[i] + dt * (speeds[i]
+		       + dt * (accelerations[i] * .5 + dt * jerks[i] / 6.));
+	}
+	
+	private double speedIn(int i, double dt) {
+		return speeds[i] + dt * (accelerations[i] + dt * jerks[i] * .5);
+	}
+	
+	private int segmentAt(double seconds) {
+		int i = SEGMENTS - 1;
+		while(i > 0 && starts[i] > seconds) {
+			--i;
+		}
+		return i;
+	}
+	
+	/**
+	 * @param  seconds  Time since the start of the move
+	 * @return          How far along the move should be, in cm
+	 */
+	public double getPosition(double seconds) {
+		if(seconds <= 0.) {
+			return 0.;
+		}
+		if(seconds >= duration) {
+			return distance;
+		}
+		int i = segmentAt(seconds);
+		return positionIn(i, seconds - starts[i]);
+	}
+	
+	/**
+	 * @param  seconds  Time since the start of the move
+	 * @return          The speed at that time, in cm per second
+	 */
+	public double getSpeed(double seconds) {
+		if(seconds <= 0. || seconds >= duration) {
+			return 0.;
+		}
+		int i = segmentAt(seconds);
+		return speedIn(i, seconds - starts[i]);
+	}
+	
+	/**
+	 * @return  How far the move goes, in cm
+	 */
+	public double getDistance() {
+		return distance;
+	}
+	
+	/**
+	 * @return  How long the move takes, in seconds
+	 */
+	public double getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * @return  The top speed actually reached, in cm per second, which is
+	 *              less than the limit on short moves
+	 */
+	public double getPeakSpeed() {
+		return peakSpeed;
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package cbccore.movement;
+
+import cbccore.Clock;
+import cbccore.movement.plugins.MovementPlugin;
+
+/**
+ * Tracks where the robot really is, from its own wheel feedback rather than
+ * from what it was told to do. A single thread samples the plugin's odometry
+ * (wheel encoders on a motor drive train, or the Create's own distance and
+ * angle) at a fixed rate, and integrates each step with the same
+ * differential-steer model <code>DriveTrain.getPosition</code> uses.
+ * <p>
+ * The latest pose is an immutable <code>DriveTrainPosition</code> published
+ * through a volatile field, so <code>getPosition</code> takes no lock and
+ * allocates nothing; read it as often as you like from a control loop.
+ * <p>
+ * You normally get one from <code>DriveTrain.getOdometry</code>.
+ *
+ * @author Benjamin Woodruff
+ * @see    cbccore.movement.plugins.MovementPlugin#readOdometry
+ * @see    DriveTrain#getPosition
+ */
+
+public class Odometry implements Runnable {
+	/** Default time between samples (20ms, or 50Hz) */
+	public static final double DEFAULT_PERIOD_MILLIS = 20.;
+	
+	private MovementPlugin plugin;
+	private volatile DriveTrainPosition position =
+		new DriveTrainPosition(0., 0., 0.);
+	private volatile long periodNanos = (long) (DEFAULT_PERIOD_MILLIS * 1e6);
+	private volatile long samples = 0;
+	private Thread thread = null;
+	
+	// only touched while holding the lock, by sample and reset
+	private double[] reading = new double[2];
+	private double lastDistance;
+	private double lastAngle;
+	private boolean primed = false;
+	
+	public Odometry(MovementPlugin plugin) {
+		this.plugin = plugin;
+	}
+	
+	/**
+	 * Gets the latest pose. Lock free, and doesn't allocate.
+	 *
+	 * @return  The pose as of the latest sample
+	 */
+	public DriveTrainPosition getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Moves the tracked pose, say to where the robot was placed at the start
+	 * of a match. Distance already travelled is not counted again.
+	 */
+	public synchronized void reset(double x, double y, double rawAngleRadians) {
+		primed = false;
+		position = new DriveTrainPosition(x, y, rawAngleRadians);
+	}
+	
+	/**
+	 * @param  millis  Time between samples
+	 */
+	public void setPeriodMillis(double millis) {
+		if(millis <= 0.) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		periodNanos = (long) (millis * 1e6);
+	}
+	
+	public double getPeriodMillis() {
+		return periodNanos / 1e6;
+	}
+	
+	/**
+	 * @return  The number of samples integrated so far
+	 */
+	public long getSampleCount() {
+		return samples;
+	}
+	
+	/**
+	 * Reads the plugin's odometry once and integrates the step since the last
+	 * sample into the pose. The sampling thread calls this for you, but a
+	 * control loop that would rather not have another thread can call it
+	 * directly.
+	 *
+	 * @throws  UnsupportedOperationException  If the plugin has no odometry
+	 */
+	public synchronized void sample() {
+		if(!plugin.readOdometry(reading)) {
+			throw new UnsupportedOperationException(
+				"movement plugin has no odometry");
+		}
+		double distance = reading[0], angle = reading[1];
+		if(!primed) {
+			lastDistance = distance;
+			lastAngle = angle;
+			primed = true;
+			return;
+		}
+		double d = distance - lastDistance;
+		double turned = angle - lastAngle;
+		lastDistance = distance;
+		lastAngle = angle;
+		
+		DriveTrainPosition old = position;
+		double a = old.getRawAngleRadians();
+		double x = old.getX(), y = old.getY();
+		if(Math.abs(turned) < 1e-9) {
+			x += d * Math.cos(a);
+			y += d * Math.sin(a);
+		} else {
+			// along the arc of radius d/turned
+			double r = d / turned;
+			x += r * (Math.sin(a + turned) - Math.sin(a));
+			y += r * (Math.cos(a) - Math.cos(a + turned));
+		}
+		position = new DriveTrainPosition(x, y, a + turned);
+		++samples;
+	}
+	
+	/**
+	 * Starts sampling at the set period, if it isn't already.
+	 *
+	 * @throws  UnsupportedOperationException  If the plugin has no odometry
+	 */
+	public synchronized void start() {
+		if(thread != null) {
+			return;
+		}
+		sample();
+		thread = new Thread(this, "Odometry");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops sampling. The pose stays where it was.
+	 */
+	public synchronized void stop() {
+		if(thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+	
+	public synchronized boolean isRunning() {
+		return thread != null;
+	}
+	
+	/**
+	 * Don't call this function, it is the body of the sampling thread.
+	 */
+	public void run() {
+		Clock clock = Clock.get();
+		Thread self = Thread.currentThread();
+		long next = clock.nanoTime();
+		try {
+			while(true) {
+				synchronized(this) {
+					if(thread != self) {
+						return;
+					}
+					try {
+						sample();
+					} catch(RuntimeException ex) {
+						// one failed read shouldn't stop the tracking
+						ex.printStackTrace();
+					}
+				}
+				// keep to the schedule, rather than drifting by the sample
+				// time
+				next += periodNanos;
+				long remaining = next - clock.nanoTime();
+				if(remaining > 0) {
+					try {
+						clock.sleepNanos(remaining);
+					} catch(InterruptedException e) {
+						// stopped, checked at the top
+					}
+				} else {
+					next = clock.nanoTime();
+					Thread.yield();
+				}
+			}
+		} finally {
+			// dying some other way, so isRunning stops saying otherwise
+			synchronized(this) {
+				if(thread == self) {
+					thread = null;
+				}
+			}
+		}
+	}
+}
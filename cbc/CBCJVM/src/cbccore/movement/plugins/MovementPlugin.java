@@ -136,6 +136,23 @@ public abstract class MovementPlugin {
 	 */
 	public abstract double getRightMaxCmps();
 	
+	/**
+	 * Reads the robot's own record of how far it has moved, for
+	 * <code>Odometry</code>. Both values count from some fixed starting
+	 * point, which can be anything; only the change between two reads is
+	 * used. By default there is no odometry, and this returns
+	 * <code>false</code>.
+	 * 
+	 * @param  odometry  Filled with the distance the center of the robot has
+	 *                       travelled in centimeters, then the angle it has
+	 *                       turned counter-clockwise in radians
+	 * @return           <code>true</code> if <code>odometry</code> was filled
+	 * @see              cbccore.movement.Odometry
+	 */
+	public boolean readOdometry(double[] odometry) {
+		return false;
+	}
+	
 	/**
 	 * Gets the distance between the robot's two wheels in centimeters.
 	 * 
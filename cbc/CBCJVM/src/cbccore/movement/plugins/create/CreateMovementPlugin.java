@@ -18,6 +18,7 @@ package cbccore.movement.plugins.create;
 
 import cbccore.create.Create;
 import cbccore.create.CreateConnectException;
+import cbccore.create.OdometryState;
 import cbccore.movement.plugins.MovementPlugin;
 import cbccore.movement.efficiency.IEfficiencyCalibrator;
 import cbccore.movement.efficiency.SingleValueEfficiencyCalibrator;
@@ -37,6 +38,9 @@ public class CreateMovementPlugin extends MovementPlugin {
 	//private double leftCmps = 0.;
 	//private double rightCmps = 0.;
 	private Create create;
+	private OdometryState odometry = new OdometryState();
+	private int lastAngle = -1;
+	private long turned = 0; // degrees, unwrapped
 	
 	public CreateMovementPlugin() throws CreateConnectException {
 		this(new Create(), 1., 1.);
@@ -137,6 +141,29 @@ public class CreateMovementPlugin extends MovementPlugin {
 		);
 	}
 	
+	/**
+	 * Reads the Create's own distance and angle, from its sensor stream if
+	 * one is running. The angle wraps at 360 degrees, so it is unwrapped
+	 * here, which works as long as it is read at least once every half turn.
+	 */
+	public synchronized boolean readOdometry(double[] out) {
+		create.getOdometry(odometry);
+		int angle = odometry.getAngle();
+		if(lastAngle >= 0) {
+			int step = angle - lastAngle;
+			if(step > 180) {
+				step -= 360;
+			} else if(step < -180) {
+				step += 360;
+			}
+			turned += step;
+		}
+		lastAngle = angle;
+		out[0] = odometry.getDistance() * .1;
+		out[1] = Math.toRadians(turned);
+		return true;
+	}
+	
 	/**
 	 * The create has no freeze api. So this essentially calls <code>kill()</code>
 	 * 
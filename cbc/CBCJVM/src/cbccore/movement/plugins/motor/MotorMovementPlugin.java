@@ -49,6 +49,17 @@ public class MotorMovementPlugin extends MovementPlugin {
 		leftWheel.moveAtCmps(leftCmps);
 	}
 	
+	/**
+	 * Reads the wheel encoders' centimeter counters.
+	 */
+	public boolean readOdometry(double[] odometry) {
+		double left = leftWheel.getCmCounter();
+		double right = rightWheel.getCmCounter();
+		odometry[0] = (left + right) * .5;
+		odometry[1] = (right - left) / getTrainWidth();
+		return true;
+	}
+	
 	/** {@inheritDoc} */
 	public void freeze() {
 		leftWheel.freeze();
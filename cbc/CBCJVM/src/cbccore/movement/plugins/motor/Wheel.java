@@ -128,7 +128,10 @@ public class Wheel extends Motor {
 		moveAtCmps(toCm(tps));
 	}
 	
-	public void moveAtCmps(double cmps) throws IllegalArgumentException {
+	// synchronized with getCmCounter, which would count the old position
+	// twice if it ran between the two lines here
+	public synchronized void moveAtCmps(double cmps)
+	                                    throws IllegalArgumentException {
 		cmCount = getCmCounter();
 		clearPositionCounter(); //work-around for CBOBv2 motor bug
 		super.moveAtVelocity(toTicks(efficiency.translateCmps(cmps)));
@@ -151,7 +154,7 @@ public class Wheel extends Motor {
 	 * Returns the number of centimeters that this wheel has moved since it was
 	 * constructed.
 	 */
-	public double getCmCounter() {
+	public synchronized double getCmCounter() {
 		return cmCount + toCm(super.getPosition());
 	}
 	
@@ -16,6 +16,95 @@
 
 package cbccore.sensors;
 
-public class AbstractBooleanEmitter {
+import cbccore.events.Event;
+import cbccore.events.EventManager;
+import cbccore.sensors.digital.IBooleanSensor;
+
+import java.util.ArrayList;
+
+/**
+ * Base class for anything that turns the edges of <code>IBooleanSensor</code>s
+ * into events. Subclasses call <code>watch</code> for each sensor; nothing is
+ * read until <code>start</code> is called, and all of the reading is done by
+ * the shared <code>SensorScanner</code> rather than a thread per emitter.
+ * 
+ * @author Benjamin Woodruff
+ * @see    SensorScanner
+ */
+
+@SuppressWarnings("unchecked")
+public abstract class AbstractBooleanEmitter {
+	private SensorScanner scanner;
+	private EventManager manager;
+	private ArrayList<Watched> watched = new ArrayList<Watched>();
+	private boolean running = false;
+	
+	private static class Watched {
+		IBooleanSensor sensor;
+		Event onEvent;
+		Event offEvent;
+		SensorScanner.Entry entry = null;
+		
+		Watched(IBooleanSensor sensor, Event onEvent, Event offEvent) {
+			this.sensor = sensor;
+			this.onEvent = onEvent;
+			this.offEvent = offEvent;
+		}
+	}
+	
+	protected AbstractBooleanEmitter(SensorScanner scanner,
+	                                 EventManager manager) {
+		this.scanner = scanner;
+		this.manager = manager;
+	}
+	
+	/**
+	 * Emits <code>onEvent</code> when the sensor turns true and
+	 * <code>offEvent</code> when it turns false. Takes effect immediately if
+	 * the emitter is already running.
+	 */
+	protected synchronized void watch(IBooleanSensor sensor, Event onEvent,
+	                                  Event offEvent) {
+		Watched w = new Watched(sensor, onEvent, offEvent);
+		watched.add(w);
+		if(running) {
+			w.entry = scanner.register(sensor, onEvent, offEvent, manager);
+		}
+	}
+	
+	/**
+	 * Begins emitting events. Calling this more than once does nothing.
+	 */
+	public synchronized void start() {
+		if(running) {
+			return;
+		}
+		running = true;
+		for(Watched w : watched) {
+			w.entry = scanner.register(w.sensor, w.onEvent, w.offEvent,
+			                           manager);
+		}
+	}
+	
+	/**
+	 * Stops emitting events. The emitter may be started again later.
+	 */
+	public synchronized void exit() {
+		if(!running) {
+			return;
+		}
+		running = false;
+		for(Watched w : watched) {
+			scanner.unregister(w.entry);
+			w.entry = null;
+		}
+	}
+	
+	public synchronized boolean isRunning() {
+		return running;
+	}
 	
+	protected EventManager getManager() {
+		return manager;
+	}
 }
@@ -0,0 +1,271 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.sensors;
+
+import cbccore.Clock;
+import cbccore.events.Event;
+import cbccore.events.EventManager;
+import cbccore.sensors.digital.IBooleanSensor;
+
+/**
+ * Watches every registered <code>IBooleanSensor</code> from a single thread,
+ * emitting an event whenever one of them changes state. All sensors are read
+ * in one pass, and the time between passes adapts: every pass that sees no
+ * change doubles the period, up to the slowest period, and any edge drops it
+ * straight back to the fastest one. A robot sitting still therefore costs
+ * almost nothing, while a burst of button presses is still caught quickly.
+ * <p>
+ * You normally don't use this directly; <code>ButtonEmitter</code> and
+ * <code>DigitalSensorEmitter</code> register their sensors here when started.
+ * The thread is started by the first registration and exits once the last
+ * sensor is unregistered.
+ *
+ * @author Benjamin Woodruff
+ * @see    AbstractBooleanEmitter
+ */
+
+@SuppressWarnings("unchecked")
+public class SensorScanner implements Runnable {
+	/** Default fastest period, used right after an edge (2ms) */
+	public static final long DEFAULT_FASTEST_NANOS = 2000000L;
+	/** Default slowest period, reached after a quiet spell (20ms) */
+	public static final long DEFAULT_SLOWEST_NANOS = 20000000L;
+	
+	private static SensorScanner instance = null;
+	
+	private volatile Entry[] entries = new Entry[0];
+	private Thread thread = null;
+	private volatile long fastestNanos = DEFAULT_FASTEST_NANOS;
+	private volatile long slowestNanos = DEFAULT_SLOWEST_NANOS;
+	private volatile SensorSnapshot snapshot = null;
+	
+	// statistics, only written by the scanning thread
+	private volatile long passes = 0;
+	private volatile long edges = 0;
+	private volatile long busyNanos = 0;
+	private volatile long activeNanos = 0; // of previous runs of the thread
+	private volatile long runStart = 0;
+	
+	/**
+	 * One registered sensor. Returned by <code>register</code> so that the
+	 * same sensor can be registered by more than one emitter.
+	 */
+	public static final class Entry {
+		private IBooleanSensor sensor;
+		private Event onEvent;
+		private Event offEvent;
+		private EventManager manager;
+		private boolean state = false;
+		
+		private Entry(IBooleanSensor sensor, Event onEvent, Event offEvent,
+		              EventManager manager) {
+			this.sensor = sensor;
+			this.onEvent = onEvent;
+			this.offEvent = offEvent;
+			this.manager = manager;
+		}
+		
+		public IBooleanSensor getSensor() {
+			return sensor;
+		}
+	}
+	
+	/**
+	 * Gets the shared scanner used by the built in emitters.
+	 */
+	public static synchronized SensorScanner get() {
+		if(instance == null) {
+			instance = new SensorScanner();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Sets the range the scan period adapts within.
+	 *
+	 * @param  fastestMillis  Period right after an edge
+	 * @param  slowestMillis  Longest period when nothing changes
+	 */
+	public void setPeriods(double fastestMillis, double slowestMillis) {
+		if(fastestMillis <= 0. || slowestMillis < fastestMillis) {
+			throw new IllegalArgumentException(
+				"need 0 < fastestMillis <= slowestMillis");
+		}
+		fastestNanos = (long)(fastestMillis * 1000000.);
+		slowestNanos = (long)(slowestMillis * 1000000.);
+	}
+	
+	/**
+	 * Has the scanner update a <code>SensorSnapshot</code> at the start of
+	 * every pass. Sensors built on that snapshot then cost one native call
+	 * per pass between all of them.
+	 * 
+	 * @param  snapshot  The snapshot to update, or <code>null</code> for none
+	 */
+	public void setSnapshot(SensorSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * Starts watching a sensor. Starts the scanning thread if necessary. The
+	 * sensor is assumed to start out false, so a sensor that is already true
+	 * will emit <code>onEvent</code> on the first pass.
+	 *
+	 * @param  sensor    The sensor to read every pass
+	 * @param  onEvent   Emitted when the sensor goes from false to true, may
+	 *                       be <code>null</code>
+	 * @param  offEvent  Emitted when the sensor goes from true to false, may
+	 *                       be <code>null</code>
+	 * @param  manager   The <code>EventManager</code> to emit through
+	 * @return           A handle to pass to <code>unregister</code>
+	 */
+	public synchronized Entry register(IBooleanSensor sensor, Event onEvent,
+	                                   Event offEvent, EventManager manager) {
+		Entry entry = new Entry(sensor, onEvent, offEvent, manager);
+		Entry[] next = new Entry[entries.length + 1];
+		System.arraycopy(entries, 0, next, 0, entries.length);
+		next[entries.length] = entry;
+		entries = next;
+		if(thread == null) {
+			thread = new Thread(this, "SensorScanner");
+			// like the old emitter threads, keep the program alive while
+			// something is being watched
+			thread.setDaemon(false);
+			thread.start();
+		}
+		return entry;
+	}
+	
+	/**
+	 * Stops watching a sensor. The scanning thread exits after the last one.
+	 *
+	 * @param  entry  What <code>register</code> returned
+	 */
+	public synchronized void unregister(Entry entry) {
+		for(int i = 0; i < entries.length; ++i) {
+			if(entries[i] == entry) {
+				Entry[] next = new Entry[entries.length - 1];
+				System.arraycopy(entries, 0, next, 0, i);
+				System.arraycopy(entries, i + 1, next, i, next.length - i);
+				entries = next;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @return  The number of sensors currently being watched
+	 */
+	public int getSensorCount() {
+		return entries.length;
+	}
+	
+	/**
+	 * Don't call this function, it is the body of the scanning thread.
+	 */
+	public void run() {
+		long period = fastestNanos;
+		Clock clock = Clock.get();
+		runStart = System.nanoTime();
+		while(true) {
+			Entry[] current = entries;
+			if(current.length == 0) {
+				synchronized(this) {
+					if(entries.length == 0) {
+						thread = null;
+						activeNanos += System.nanoTime() - runStart;
+						return;
+					}
+				}
+				continue;
+			}
+			
+			long passStart = System.nanoTime();
+			long scheduled = clock.nanoTime();
+			boolean changed = false;
+			SensorSnapshot frame = snapshot;
+			if(frame != null) {
+				frame.update();
+			}
+			for(int i = 0; i < current.length; ++i) {
+				Entry e = current[i];
+				boolean state = e.sensor.getValue();
+				if(state != e.state) {
+					e.state = state;
+					changed = true;
+					Event ev = state ? e.onEvent : e.offEvent;
+					if(ev != null) {
+						ev.emit(e.manager);
+					}
+				}
+			}
+			long passEnd = System.nanoTime();
+			++passes;
+			busyNanos += passEnd - passStart;
+			
+			if(changed) {
+				++edges;
+				period = fastestNanos;
+			} else {
+				period = Math.min(period << 1, slowestNanos);
+			}
+			// busy time is real time, but passes follow the clock, so that
+			// simulated sensors are scanned in simulated time
+			long remaining = scheduled + period - clock.nanoTime();
+			if(remaining > 0) {
+				try {
+					clock.sleepNanos(remaining);
+				} catch(InterruptedException e) {
+					// keep scanning, like before
+				}
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+	
+	/**
+	 * @return  The number of passes made over all sensors so far
+	 */
+	public long getPassCount() {
+		return passes;
+	}
+	
+	/**
+	 * @return  The number of passes that saw at least one edge
+	 */
+	public long getEdgeCount() {
+		return edges;
+	}
+	
+	/**
+	 * Gets the fraction of time the scanning thread spent actually reading
+	 * sensors, since it was first started. The emitters used to each run a
+	 * thread that read its sensors non-stop, costing nearly a full core
+	 * between them; <code>1 - getDutyCycle()</code> is roughly the share of
+	 * the CPU this gives back.
+	 *
+	 * @return  busy time / running time, between 0 and 1
+	 */
+	public synchronized double getDutyCycle() {
+		long active = activeNanos;
+		if(thread != null) {
+			active += System.nanoTime() - runStart;
+		}
+		return active <= 0 ? 0. : Math.min(1., (double)busyNanos / active);
+	}
+}
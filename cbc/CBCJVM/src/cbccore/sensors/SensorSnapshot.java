@@ -0,0 +1,162 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.sensors;
+
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.InvalidPortException;
+import cbccore.low.Sensor;
+
+/**
+ * Every digital, analog and accelerometer reading on the CBC, taken at once.
+ * Each call to <code>update</code> is a single native call, where reading the
+ * same values through <code>Touch</code>, <code>Analog</code> and friends one
+ * at a time costs one JNI crossing per value, which adds up quickly on JamVM.
+ * <p>
+ * Sensors constructed with a <code>SensorSnapshot</code> read from its latest
+ * frame instead of calling native code, so a control loop can call
+ * <code>update</code> once at the top and then read as many sensors as it
+ * likes. <code>SensorScanner.setSnapshot</code> will do the updating for you
+ * once per scan pass.
+ * <p>
+ * Frames are double buffered: <code>update</code> fills a back buffer and then
+ * swaps it in, so readers never see a frame that is half written.
+ *
+ * @author Benjamin Woodruff
+ * @see    cbccore.low.Sensor#sensor_snapshot
+ */
+
+public class SensorSnapshot {
+	private static SensorSnapshot instance = null;
+	
+	private Sensor lowSensor;
+	private volatile int[] front = new int[Sensor.SNAPSHOT_SIZE];
+	private int[] back = new int[Sensor.SNAPSHOT_SIZE];
+	private volatile long updatedNanos = 0;
+	private volatile long frames = 0;
+	
+	public SensorSnapshot() {
+		this(Device.getLowSensorController());
+	}
+	
+	public SensorSnapshot(Sensor lowSensor) {
+		this.lowSensor = lowSensor;
+	}
+	
+	/**
+	 * Gets a shared snapshot, so that every part of a program can read from
+	 * (and update) the same frame.
+	 */
+	public static synchronized SensorSnapshot get() {
+		if(instance == null) {
+			instance = new SensorSnapshot();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Reads every sensor with one native call, and makes that the latest
+	 * frame.
+	 */
+	public synchronized void update() {
+		lowSensor.sensor_snapshot(back);
+		int[] old = front;
+		front = back;
+		back = old;
+		updatedNanos = Clock.get().nanoTime();
+		++frames;
+	}
+	
+	/**
+	 * Calls <code>update</code> only if the latest frame is older than
+	 * <code>maxAgeMillis</code>. Handy when several threads share a snapshot
+	 * and any of them might have just updated it.
+	 *
+	 * @param  maxAgeMillis  How stale the frame may be
+	 * @return               <code>true</code> if an update was done
+	 */
+	public boolean update(double maxAgeMillis) {
+		if(frames != 0 && getAgeMillis() <= maxAgeMillis) {
+			return false;
+		}
+		update();
+		return true;
+	}
+	
+	/**
+	 * @return  Milliseconds since the latest frame was taken
+	 */
+	public double getAgeMillis() {
+		return (Clock.get().nanoTime() - updatedNanos) / 1000000.;
+	}
+	
+	/**
+	 * @return  The number of frames taken so far
+	 */
+	public long getFrameCount() {
+		return frames;
+	}
+	
+	/**
+	 * @param  port  A digital port, 8-15
+	 * @return       The state of the port in the latest frame
+	 */
+	public boolean getDigital(int port) {
+		if(port < 8 || port > 15) { throw new InvalidPortException(); }
+		return front[Sensor.SNAPSHOT_DIGITAL + port - 8] != 0;
+	}
+	
+	/**
+	 * @param  port  An analog port, 0-7
+	 * @return       The 10-bit reading of the port in the latest frame
+	 */
+	public int getAnalog10(int port) {
+		if(port < 0 || port > 7) { throw new InvalidPortException(); }
+		return front[Sensor.SNAPSHOT_ANALOG10 + port];
+	}
+	
+	/**
+	 * @return  x acceleration (-2047 to 2047, +/- 1.5 gee) in the latest frame
+	 */
+	public int getAccelX() {
+		return front[Sensor.SNAPSHOT_ACCEL];
+	}
+	
+	/**
+	 * @return  y acceleration (-2047 to 2047, +/- 1.5 gee) in the latest frame
+	 */
+	public int getAccelY() {
+		return front[Sensor.SNAPSHOT_ACCEL + 1];
+	}
+	
+	/**
+	 * @return  z acceleration (-2047 to 2047, +/- 1.5 gee) in the latest frame
+	 */
+	public int getAccelZ() {
+		return front[Sensor.SNAPSHOT_ACCEL + 2];
+	}
+	
+	/**
+	 * Copies the whole latest frame, laid out as described by the
+	 * <code>SNAPSHOT_*</code> constants in <code>cbccore.low.Sensor</code>.
+	 *
+	 * @param  frame  At least <code>Sensor.SNAPSHOT_SIZE</code> ints
+	 */
+	public synchronized void copyTo(int[] frame) {
+		System.arraycopy(front, 0, frame, 0, Sensor.SNAPSHOT_SIZE);
+	}
+}
@@ -17,6 +17,7 @@
 package cbccore.sensors.analog;
 
 import cbccore.Device;
+import cbccore.sensors.SensorSnapshot;
 
 /**
  * Access to the analog sensor data from the CBOB
@@ -29,11 +30,21 @@ public class Analog implements IAnalogSensor {
 	protected static boolean[] floatingSensors = new boolean[8];
 	
 	private cbccore.low.Sensor lowSensor = Device.getLowSensorController();
+	private SensorSnapshot snapshot = null;
 	
 	public Analog(int port) {
 		this.port = port;
 	}
 	
+	/**
+	 * Reads the sensor from <code>snapshot</code>'s latest frame instead of
+	 * making a native call each time.
+	 */
+	public Analog(int port, SensorSnapshot snapshot) {
+		this(port);
+		this.snapshot = snapshot;
+	}
+	
 	/**
 	 * Returns getValueHigh()/4, for Handy-Board backwards compatabilty. This
 	 * method is deprecated. You should be using getValueHigh which corrisponds
@@ -43,6 +54,9 @@ public class Analog implements IAnalogSensor {
 	@Deprecated
 	@Override
 	public int getValue() {
+		if(snapshot != null) {
+			return snapshot.getAnalog10(port) >> 2;
+		}
 		return lowSensor.analog(port);
 	}
 	
@@ -52,6 +66,9 @@ public class Analog implements IAnalogSensor {
 	
 	@Override
 	public int getValueHigh() {
+		if(snapshot != null) {
+			return snapshot.getAnalog10(port);
+		}
 		return lowSensor.analog10(port);
 	}
 	
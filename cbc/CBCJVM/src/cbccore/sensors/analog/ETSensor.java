@@ -16,6 +16,8 @@
 
 package cbccore.sensors.analog;
 
+import cbccore.Clock;
+
 /**
  * Calculates a distance in centimeters based of the value given by a floating
  * analog sensor port. The ETSensor's values are approximately inversely
@@ -95,7 +97,7 @@ public class ETSensor extends Analog {
 		for(int i = 0; i < readings; ++i) {
 			sum += getValueHigh();
 			if(millisWait != 0) {
-				try { Thread.sleep(millisWait); } catch(Exception e) { return -1.; }
+				try { Clock.get().sleep(millisWait); } catch(Exception e) { return -1.; }
 			}
 		}
 		double avg = ((double)(sum))/((double)(readings));
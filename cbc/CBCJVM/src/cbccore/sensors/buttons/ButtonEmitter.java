@@ -19,6 +19,9 @@ package cbccore.sensors.buttons;
 import cbccore.events.Event;
 import cbccore.events.EventType;
 import cbccore.events.EventManager;
+import cbccore.events.EventPriority;
+import cbccore.sensors.AbstractBooleanEmitter;
+import cbccore.sensors.SensorScanner;
 
 /**
  * An unintuitive but necessary class to interface buttons with the event system
@@ -28,13 +31,11 @@ import cbccore.events.EventManager;
  * a button is pressed/released, the handler will be called.
  * 
  * @author Braden McDorman, Benjamin Woodruff
+ * @see    cbccore.sensors.SensorScanner
  */
 
 @SuppressWarnings("unchecked")
-public class ButtonEmitter extends Thread {
-	
-	@SuppressWarnings("unused")
-	private EventManager manager;
+public class ButtonEmitter extends AbstractBooleanEmitter {
 	
 	// Pressed EventTypes
 	public static EventType AButtonPressed = EventManager.get().getUniqueEventType();
@@ -54,6 +55,15 @@ public class ButtonEmitter extends Thread {
 	public static EventType LeftButtonReleased = EventManager.get().getUniqueEventType();
 	public static EventType RightButtonReleased = EventManager.get().getUniqueEventType();
 	
+	// before the Events, whose get() needs these in the constructor
+	private static final EventType[] TYPES = {
+		AButtonPressed, BButtonPressed, BlackButtonPressed,
+		DownButtonPressed, UpButtonPressed, LeftButtonPressed,
+		RightButtonPressed, AButtonReleased, BButtonReleased,
+		BlackButtonReleased, DownButtonReleased, UpButtonReleased,
+		LeftButtonReleased, RightButtonReleased
+	};
+	
 	// Pressed Events
 	private static Event AButtonPressedEvent = new Event(AButtonPressed, get());
 	private static Event BButtonPressedEvent = new Event(BButtonPressed, get());
@@ -81,21 +91,16 @@ public class ButtonEmitter extends Thread {
 	private LeftButton leftButton = new LeftButton();
 	private RightButton rightButton = new RightButton();
 	
-	private boolean aButtonState = false;
-	private boolean bButtonState = false;
-	private boolean blackButtonState = false;
-	private boolean downButtonState = false;
-	private boolean upButtonState = false;
-	private boolean leftButtonState = false;
-	private boolean rightButtonState = false;
-	
-	private boolean exit = false;
+	private boolean watching = false;
 	
 	private static ButtonEmitter instance = null;
 
 	public ButtonEmitter(EventManager manager) {
-		setDaemon(false);
-		this.manager = manager;
+		super(SensorScanner.get(), manager);
+		// buttons are UI, anything safety related should be handled first
+		for(EventType type : TYPES) {
+			manager.setPriority(type, EventPriority.LOW);
+		}
 	}
 
 	public static ButtonEmitter get() {
@@ -105,82 +110,25 @@ public class ButtonEmitter extends Thread {
 	}
 	
 	/**
-	 * Don't call this function. Call start() instead.
+	 * Begins listening for button events. The buttons are read by the shared
+	 * <code>SensorScanner</code> thread.
 	 */
 	@Override
-	public void run() {
-		while (!exit) {
-			boolean newState = aButton.getValue();
-			if (newState != aButtonState) {
-				if (newState) {
-					AButtonPressedEvent.emit();
-				} else {
-					AButtonReleasedEvent.emit();
-				}
-				aButtonState = newState;
-			}
-			newState = bButton.getValue();
-			if (newState != bButtonState) {
-				if (newState) {
-					BButtonPressedEvent.emit();
-				} else {
-					BButtonReleasedEvent.emit();
-				}
-				bButtonState = newState;
-			}
-			newState = blackButton.getValue();
-			if (newState != blackButtonState) {
-				if (newState) {
-					BlackButtonPressedEvent.emit();
-				} else {
-					BlackButtonReleasedEvent.emit();
-				}
-				blackButtonState = newState;
-			}
-			newState = downButton.getValue();
-			if (newState != downButtonState) {
-				if (newState) {
-					DownButtonPressedEvent.emit();
-				} else {
-					DownButtonReleasedEvent.emit();
-				}
-				downButtonState = newState;
-			}
-			newState = upButton.getValue();
-			if (newState != upButtonState) {
-				if (newState) {
-					UpButtonPressedEvent.emit();
-				} else {
-					UpButtonReleasedEvent.emit();
-				}
-				upButtonState = newState;
-			}
-			newState = leftButton.getValue();
-			if (newState != leftButtonState) {
-				if (newState) {
-					LeftButtonPressedEvent.emit();
-				} else {
-					LeftButtonReleasedEvent.emit();
-				}
-				leftButtonState = newState;
-			}
-			newState = rightButton.getValue();
-			if (newState != rightButtonState) {
-				if (newState) {
-					RightButtonPressedEvent.emit();
-				} else {
-					RightButtonReleasedEvent.emit();
-				}
-				rightButtonState = newState;
-			}
-			Thread.yield();
-			try { Thread.sleep(0l, 1); } catch (Exception e) {}
+	public synchronized void start() {
+		// the Events are static and constructed after get() is first called,
+		// so they can only be handed out here
+		if (!watching) {
+			watching = true;
+			watch(aButton, AButtonPressedEvent, AButtonReleasedEvent);
+			watch(bButton, BButtonPressedEvent, BButtonReleasedEvent);
+			watch(blackButton, BlackButtonPressedEvent,
+			      BlackButtonReleasedEvent);
+			watch(downButton, DownButtonPressedEvent, DownButtonReleasedEvent);
+			watch(upButton, UpButtonPressedEvent, UpButtonReleasedEvent);
+			watch(leftButton, LeftButtonPressedEvent, LeftButtonReleasedEvent);
+			watch(rightButton, RightButtonPressedEvent,
+			      RightButtonReleasedEvent);
 		}
-		exit = false;
-	}
-	
-	//dangerous
-	public void exit() {
-		exit = true;
+		super.start();
 	}
 }
@@ -18,6 +18,7 @@ package cbccore.sensors.digital;
 
 import cbccore.Device;
 import cbccore.InvalidPortException;
+import cbccore.sensors.SensorSnapshot;
 
 /**
  * 
@@ -28,11 +29,24 @@ import cbccore.InvalidPortException;
 public class BreakBeam implements IBooleanSensor {
 	private cbccore.low.Sensor lowSensor = Device.getLowSensorController();
 	private int port = 0;
+	private SensorSnapshot snapshot = null;
 	public BreakBeam(int port) throws InvalidPortException {
 		if(port < 8 || port > 15) { throw new InvalidPortException(); }
 		this.port = port;
 	}
+	/**
+	 * Reads the break beam from <code>snapshot</code>'s latest frame
+	 * instead of making a native call each time.
+	 */
+	public BreakBeam(int port, SensorSnapshot snapshot)
+			throws InvalidPortException {
+		this(port);
+		this.snapshot = snapshot;
+	}
 	public boolean getValue() {
+		if(snapshot != null) {
+			return snapshot.getDigital(port);
+		}
 		return lowSensor.digital(port) != 0;
 	}
 }
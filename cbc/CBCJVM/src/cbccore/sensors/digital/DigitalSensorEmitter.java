@@ -19,6 +19,8 @@ package cbccore.sensors.digital;
 import cbccore.events.Event;
 import cbccore.events.EventType;
 import cbccore.events.EventManager;
+import cbccore.sensors.AbstractBooleanEmitter;
+import cbccore.sensors.SensorScanner;
 
 /**
  * An unintuitive but necessary class to interface buttons with the event system
@@ -28,29 +30,22 @@ import cbccore.events.EventManager;
  * class, and when a button is pressed/released, the handler will be called.
  * 
  * @author Braden McDorman, Benjamin Woodruff
+ * @see    cbccore.sensors.SensorScanner
  */
 @SuppressWarnings("unchecked")
-public class DigitalSensorEmitter extends Thread {
-	
-	private EventManager manager;
+public class DigitalSensorEmitter extends AbstractBooleanEmitter {
 	
 	private static final int minPort = 8;
 	private static final int maxPort = 15;
 	
-	private IBooleanSensor[] sensors = new IBooleanSensor[maxPort-minPort];
-	private Event[] sensorOnEvents = new Event[maxPort-minPort];
-	private Event[] sensorOffEvents = new Event[maxPort-minPort];
-	private EventType[] sensorOnEventTypes = new EventType[maxPort-minPort];
-	private EventType[] sensorOffEventTypes = new EventType[maxPort-minPort];
-	private boolean[] sensorStates = new boolean[maxPort-minPort];
-	
-	private boolean exit = false;
+	private IBooleanSensor[] sensors = new IBooleanSensor[maxPort-minPort+1];
+	private EventType[] sensorOnEventTypes = new EventType[maxPort-minPort+1];
+	private EventType[] sensorOffEventTypes = new EventType[maxPort-minPort+1];
 	
 	private static DigitalSensorEmitter instance = null;
 
 	public DigitalSensorEmitter(EventManager manager) {
-		setDaemon(false);
-		this.manager = manager;
+		super(SensorScanner.get(), manager);
 	}
 
 	public static DigitalSensorEmitter get() {
@@ -61,98 +56,45 @@ public class DigitalSensorEmitter extends Thread {
 	
 	
 	public EventType getTouchPressedType(int index) {
-		index -= minPort;
-		EventType type = sensorOnEventTypes[index];
-		if(type != null) {
-			if(!(sensors[index] instanceof Touch)) {
-				throw new RuntimeException("EventType was already allocated to a different type of sensor.");
-			}
-			return sensorOnEventTypes[index];
-		}
-		sensorOnEventTypes[index] = manager.getUniqueEventType();
-		sensorOnEvents[index] = new Event(sensorOnEventTypes[index], this);
-		return sensorOnEventTypes[index];
+		return sensorOnEventTypes[watchPort(index, true)];
 	}
 	
 	public EventType getTouchReleasedType(int index) {
-		index -= minPort;
-		EventType type = sensorOffEventTypes[index];
-		if(type != null) {
-			if(!(sensors[index] instanceof Touch)) {
-				throw new RuntimeException("EventType was already allocated to a different type of sensor.");
-			}
-			return sensorOffEventTypes[index];
-		}
-		sensorOffEventTypes[index] = manager.getUniqueEventType();
-		sensorOffEvents[index] = new Event(sensorOffEventTypes[index], this);
-		return sensorOffEventTypes[index];
+		return sensorOffEventTypes[watchPort(index, true)];
 	}
 	
 	
 	
 	public EventType getBeamPressedType(int index) {
-		index -= minPort;
-		EventType type = sensorOnEventTypes[index];
-		if(type != null) {
-			if(!(sensors[index] instanceof BreakBeam)) {
-				throw new RuntimeException("EventType was already allocated to a different type of sensor.");
-			}
-			return sensorOnEventTypes[index];
-		}
-		sensorOnEventTypes[index] = manager.getUniqueEventType();
-		sensorOnEvents[index] = new Event(sensorOnEventTypes[index], this);
-		return sensorOnEventTypes[index];
+		return sensorOnEventTypes[watchPort(index, false)];
 	}
 	
 	public EventType getBeamReleasedType(int index) {
-		index -= minPort;
-		EventType type = sensorOffEventTypes[index];
-		if(type != null) {
-			if(!(sensors[index] instanceof BreakBeam)) {
-				throw new RuntimeException("EventType was already allocated to a different type of sensor.");
-			}
-			return sensorOffEventTypes[index];
-		}
-		sensorOffEventTypes[index] = manager.getUniqueEventType();
-		sensorOffEvents[index] = new Event(sensorOffEventTypes[index], this);
-		return sensorOffEventTypes[index];
+		return sensorOffEventTypes[watchPort(index, false)];
 	}
 	
 	
-	/**
-	 * Don't call this function. Call start() instead.
-	 */
-	@Override
-	public void run() {
-		while (!exit) {
-			for(int i = 0; i < sensors.length; ++i) {
-				if(sensors[i] != null) {
-					
-					
-					
-					boolean newState = sensors[i].getValue();
-					if (newState != sensorStates[i]) {
-						if (newState) {
-							sensorOnEvents[i].emit();
-						} else {
-							sensorOffEvents[i].emit();
-						}
-						sensorStates[i] = newState;
-					}
-					
-					
-					
-					
-				}
+	// Makes sure the port has a sensor of the right kind being watched, and
+	// returns its index in the arrays
+	private synchronized int watchPort(int port, boolean touch) {
+		if(port < minPort || port > maxPort) {
+			throw new cbccore.InvalidPortException();
+		}
+		int index = port - minPort;
+		IBooleanSensor sensor = sensors[index];
+		if(sensor != null) {
+			if(touch ? !(sensor instanceof Touch)
+			         : !(sensor instanceof BreakBeam)) {
+				throw new RuntimeException("EventType was already allocated to a different type of sensor.");
 			}
-			Thread.yield();
-			try { Thread.sleep(0l, 1); } catch (Exception e) {}
+			return index;
 		}
-		exit = false;
-	}
-	
-	//dangerous
-	public void exit() {
-		exit = true;
+		sensor = touch ? new Touch(port) : new BreakBeam(port);
+		sensors[index] = sensor;
+		sensorOnEventTypes[index] = getManager().getUniqueEventType();
+		sensorOffEventTypes[index] = getManager().getUniqueEventType();
+		watch(sensor, new Event(sensorOnEventTypes[index], this),
+		      new Event(sensorOffEventTypes[index], this));
+		return index;
 	}
 }
@@ -1,7 +1,9 @@
 package cbctools.image;
 
+import cbccore.display.ImageFormat;
+
 import java.awt.image.BufferedImage;
-import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -16,23 +18,30 @@ import javax.imageio.*;
  */
 public class ConvertImage {
 	public static void main(String[] args) throws IOException {
-		System.out.println("CBCJVM Image Converter Tool - Version 0.0.1");
+		System.out.println("CBCJVM Image Converter Tool - Version 0.1.0");
+		boolean deflate = false;
+		if(args.length == 3 && args[0].equals("-z")) {
+			deflate = true;
+			args = new String[] { args[1], args[2] };
+		}
 		if(args.length < 2) {
 			System.out.println("Usage: ");
-			System.out.println("\tjava cbctools.image.ConvertImage <source> <destination>");
+			System.out.println("\tjava cbctools.image.ConvertImage [-z] <source> <destination>");
+			System.out.println("\t-z\tcompress the output");
 			return;
 		}
-		OutputStream out = new FileOutputStream(new File(args[1]));
-		DataOutputStream dOut = new DataOutputStream(out);
 		BufferedImage image = ImageIO.read(new File(args[0]));
-		dOut.writeInt(image.getWidth());
-	
-		for(int iy = 0; iy < image.getHeight(); ++iy) {
-			for(int ix = 0; ix < image.getWidth(); ++ix) {
-				dOut.writeInt(image.getRGB(ix, iy));
-			}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+		OutputStream out = new BufferedOutputStream(
+			new FileOutputStream(new File(args[1])));
+		try {
+			ImageFormat.write(out, width, height, argb, deflate);
+		} finally {
+			out.close();
 		}
-		System.out.println("Success! Wrote the image " + args[0] + " (" + image.getWidth() + ", " + image.getHeight() + ")");
+		System.out.println("Success! Wrote the image " + args[0] + " (" + width + ", " + height + ")");
 		System.out.println("to " + args[1]);
 	}
 }
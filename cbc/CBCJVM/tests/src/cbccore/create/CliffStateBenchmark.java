@@ -0,0 +1,149 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Measures how much <code>Create.getCliffs()</code> allocates per call, and
+ * how fast it is, compared with refilling one <code>CliffState</code> through
+ * <code>getCliffs(CliffState)</code>. The serial port is faked by a low level
+ * Create that answers every query from a fixed buffer, so only the Java side
+ * is measured.
+ * <p>
+ * Allocation is read from the per-thread allocation counter where the VM has
+ * one (HotSpot). Otherwise, as on JamVM, it is estimated from the heap in use
+ * before and after each batch of calls, and batches during which the
+ * collector ran are thrown out.
+ * <p>
+ * Not a unit test, run it by hand:
+ * <code>java -cp bin:../bin cbccore.create.CliffStateBenchmark [calls]</code>
+ *
+ * @author Benjamin Woodruff
+ */
+public class CliffStateBenchmark {
+	private static final int BATCH = 10000;
+	
+	// keeps the results alive, so the VM can't optimize the calls away
+	static volatile CliffState sink;
+	
+	private static Object threadBean = null;
+	private static Method allocatedBytes = null;
+	
+	static {
+		try {
+			threadBean = ManagementFactory.getThreadMXBean();
+			allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+				.getMethod("getThreadAllocatedBytes", long.class);
+			allocated(); // make sure it works
+		} catch(Throwable t) {
+			allocatedBytes = null;
+		}
+	}
+	
+	// bytes allocated by this thread so far, or -1 if unknown
+	private static long allocated() {
+		if(allocatedBytes == null) {
+			return -1;
+		}
+		try {
+			return (Long) allocatedBytes.invoke(threadBean,
+				Thread.currentThread().getId());
+		} catch(Exception ex) {
+			return -1;
+		}
+	}
+	
+	private static long used() {
+		long counted = allocated();
+		if(counted >= 0) {
+			return counted;
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	// Answers every read with zeros, and ignores writes
+	private static class QuietCreate extends cbccore.low.Create {
+		public int create_connect() {
+			return 0;
+		}
+		
+		public void create_disconnect() {
+		}
+		
+		public int create_write_block(byte[] data, int off, int len) {
+			return len;
+		}
+		
+		public int create_read_block(byte[] buffer, int count) {
+			return count;
+		}
+	}
+	
+	private interface Body {
+		void run(Create create);
+	}
+	
+	public static void main(String[] args) throws CreateConnectException {
+		long calls = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+		Create create = new Create(new QuietCreate(), 0);
+		Body allocating = new Body() {
+			public void run(Create create) {
+				sink = create.getCliffs();
+			}
+		};
+		Body reusing = new Body() {
+			CliffState state = new CliffState();
+			
+			public void run(Create create) {
+				sink = create.getCliffs(state);
+			}
+		};
+		// warm up both before measuring either
+		run("warmup", create, allocating, calls / 4);
+		run("warmup", create, reusing, calls / 4);
+		run("getCliffs()          ", create, allocating, calls);
+		run("getCliffs(CliffState)", create, reusing, calls);
+	}
+	
+	private static void run(String name, Create create, Body body,
+	                        long calls) {
+		long batches = Math.max(1, calls / BATCH);
+		long allocated = 0, measured = 0, nanos = 0;
+		for(long b = 0; b < batches; ++b) {
+			long before = used();
+			long start = System.nanoTime();
+			for(int i = 0; i < BATCH; ++i) {
+				body.run(create);
+			}
+			nanos += System.nanoTime() - start;
+			long after = used();
+			if(after >= before) { // else the collector ran
+				allocated += after - before;
+				++measured;
+			}
+		}
+		if(name.equals("warmup")) { return; }
+		long total = batches * BATCH;
+		System.out.println(name + ": " + (nanos / total) + " ns/call, " +
+		                   (measured == 0 ? "?" :
+		                    String.valueOf(allocated / (measured * BATCH))) +
+		                   " bytes/call");
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.create.commands.Drive;
+import cbccore.create.commands.PowerLED;
+import cbccore.create.commands.Stop;
+import cbccore.create.commands.WaitDistance;
+import cbccore.create.commands.WaitTime;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class CommandBufferTest {
+	@Test
+	public void encodeTest() {
+		CommandBuffer buffer = new CommandBuffer(1);
+		buffer.add(new Drive(-200, 500)).add(new WaitTime(15));
+		buffer.add(new WaitDistance(-300)).add(new Stop());
+		int[] expected = {
+			137, 0xFF, 0x38, 0x01, 0xF4,
+			155, 15,
+			156, 0xFE, 0xD4,
+			137, 0, 0, 0, 0
+		};
+		assert buffer.size() == expected.length;
+		for(int i = 0; i < expected.length; ++i) {
+			assert buffer.get(i) == expected[i] : "byte " + i;
+		}
+	}
+	
+	@Test
+	public void powerLedTest() {
+		CommandBuffer buffer = new CommandBuffer();
+		// the play and advance LEDs are left the way they were set
+		buffer.setLeds(8);
+		buffer.add(new PowerLED(255, 128));
+		assert buffer.get(0) == 139 && buffer.get(1) == 8;
+		assert buffer.get(2) == 255 && buffer.get(3) == 128;
+	}
+	
+	@Test
+	public void writeToTest() {
+		CreateStreamTest.FakeCreate low = new CreateStreamTest.FakeCreate();
+		CommandBuffer buffer = new CommandBuffer();
+		for(int i = 0; i < 20; ++i) {
+			buffer.add(new Drive(100, i));
+		}
+		byte[] data = buffer.getData();
+		assert buffer.writeTo(low) == 100;
+		assert low.blocks == 1;
+		assert low.written.size() == 100;
+		assert buffer.size() == 0;
+		// the buffer is reused without growing
+		buffer.add(new Stop());
+		assert buffer.getData() == data;
+		assert buffer.writeTo(low) == 5;
+		assert low.blocks == 2;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.events.Event;
+import cbccore.events.EventManager;
+import cbccore.events.EventType;
+import cbccore.events.IEventListener;
+
+import java.util.ArrayList;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+@SuppressWarnings("unchecked")
+public class CreateSensorEmitterTest {
+	static class Recorder implements IEventListener {
+		ArrayList<EventType> seen = new ArrayList<EventType>();
+		
+		public void event(Event e) {
+			seen.add(e.getType());
+		}
+	}
+	
+	static void feed(CreateStream stream, byte[] packet) {
+		stream.feed(packet, 0, packet.length);
+	}
+	
+	@Test
+	public void edgeTest() {
+		EventManager manager = new EventManager();
+		Recorder recorder = new Recorder();
+		EventType[] types = {
+			CreateSensorEmitter.LeftBumpPressed,
+			CreateSensorEmitter.LeftBumpReleased,
+			CreateSensorEmitter.RightWheelDropped,
+			CreateSensorEmitter.LeftCliffDetected,
+			CreateSensorEmitter.LeftCliffCleared
+		};
+		for(EventType type : types) {
+			manager.connect(type, recorder);
+		}
+		CreateStream stream =
+			new CreateStream(new CreateStreamTest.FakeCreate(), 6);
+		CreateSensorEmitter emitter = new CreateSensorEmitter(stream, manager);
+		emitter.start();
+		
+		// every packet from makePacket has the left cliff set
+		feed(stream, CreateStreamTest.makePacket(CreateSensorFrame.BUMP_LEFT,
+		                                         0, 0, 0, 0, 2));
+		assert recorder.seen.size() == 2;
+		assert recorder.seen.contains(CreateSensorEmitter.LeftBumpPressed);
+		assert recorder.seen.contains(CreateSensorEmitter.LeftCliffDetected);
+		
+		// nothing changed, nothing emitted
+		feed(stream, CreateStreamTest.makePacket(CreateSensorFrame.BUMP_LEFT,
+		                                         0, 0, 0, 0, 2));
+		assert recorder.seen.size() == 2;
+		
+		recorder.seen.clear();
+		feed(stream, CreateStreamTest.makePacket(CreateSensorFrame.DROP_RIGHT,
+		                                         0, 0, 0, 0, 2));
+		assert recorder.seen.size() == 2;
+		assert recorder.seen.get(0) == CreateSensorEmitter.LeftBumpReleased;
+		assert recorder.seen.get(1) == CreateSensorEmitter.RightWheelDropped;
+		
+		emitter.exit();
+		recorder.seen.clear();
+		feed(stream, CreateStreamTest.makePacket(0, 0, 0, 0, 0, 2));
+		assert recorder.seen.isEmpty();
+		assert !emitter.isRunning();
+	}
+}
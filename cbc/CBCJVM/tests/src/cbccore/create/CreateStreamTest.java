@@ -0,0 +1,209 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedList;
+
+import cbccore.Clock;
+import cbccore.SystemClock;
+import cbccore.low.simulator.Arena;
+import cbccore.low.simulator.CreateFirmware;
+import cbccore.low.simulator.SimulatedCreate;
+import cbccore.low.simulator.VirtualClock;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class CreateStreamTest {
+	// Records what is written, and hands out queued bytes when read from
+	static class FakeCreate extends cbccore.low.Create {
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		LinkedList<byte[]> reads = new LinkedList<byte[]>();
+		int blocks = 0;
+		
+		public int create_connect() {
+			return 0;
+		}
+		
+		public void create_disconnect() {
+		}
+		
+		public void create_write_byte(char b) {
+			written.write(b);
+		}
+		
+		public int create_write_block(byte[] data, int off, int len) {
+			written.write(data, off, len);
+			++blocks;
+			return len;
+		}
+		
+		public synchronized int create_read_block(byte[] buffer, int count) {
+			byte[] next = reads.poll();
+			if(next == null) return -1;
+			System.arraycopy(next, 0, buffer, 0, next.length);
+			return next.length;
+		}
+		
+		public synchronized void queue(byte[] data) {
+			reads.add(data);
+		}
+	}
+	
+	// A group 6 packet: 19, length, 6, 52 data bytes, checksum
+	static byte[] makePacket(int bumps, int distance, int angle, int voltage,
+	                         int leftCliffSignal, int mode) {
+		byte[] data = new byte[52];
+		data[0] = (byte) bumps;
+		data[2] = 1; // left cliff
+		data[12] = (byte) (distance >> 8);
+		data[13] = (byte) distance;
+		data[14] = (byte) (angle >> 8);
+		data[15] = (byte) angle;
+		data[17] = (byte) (voltage >> 8);
+		data[18] = (byte) voltage;
+		data[28] = (byte) (leftCliffSignal >> 8);
+		data[29] = (byte) leftCliffSignal;
+		data[40] = (byte) mode;
+		byte[] packet = new byte[56];
+		packet[0] = 19;
+		packet[1] = 53;
+		packet[2] = 6;
+		System.arraycopy(data, 0, packet, 3, data.length);
+		int sum = 0;
+		for(int i = 0; i < 55; ++i) {
+			sum += packet[i] & 0xFF;
+		}
+		packet[55] = (byte) -sum;
+		return packet;
+	}
+	
+	@Test
+	public void decodeTest() {
+		CreateStream stream = new CreateStream(new FakeCreate(), 6);
+		byte[] first = makePacket(CreateSensorFrame.BUMP_LEFT, 100, -5, 15000,
+		                          1234, 2);
+		// some junk before it, and split across reads
+		stream.feed(new byte[] {0, 19, 7}, 0, 3);
+		stream.feed(first, 0, 20);
+		stream.feed(first, 20, first.length - 20);
+		assert stream.getFrameCount() == 1;
+		CreateSensorFrame frame = stream.getFrame();
+		assert frame.isLeftBump() && !frame.isRightBump();
+		assert frame.isLeftCliff() && !frame.isRightCliff();
+		assert frame.getDistanceDelta() == 100;
+		assert frame.getAngleDelta() == -5;
+		assert frame.getVoltage() == 15000;
+		assert frame.getLeftCliffSignal() == 1234;
+		assert frame.getMode() == 2;
+		
+		byte[] second = makePacket(0, 50, -10, 14990, 0, 2);
+		stream.feed(second, 0, second.length);
+		frame = stream.getFrame();
+		assert frame.getSequence() == 2;
+		assert !frame.isLeftBump();
+		assert frame.getDistance() == 150;
+		assert frame.getAngle() == -15;
+	}
+	
+	@Test
+	public void checksumTest() {
+		CreateStream stream = new CreateStream(new FakeCreate(), 6);
+		byte[] bad = makePacket(0, 1, 1, 1, 1, 1);
+		bad[10] ^= 0x40;
+		stream.feed(bad, 0, bad.length);
+		assert stream.getFrameCount() == 0;
+		assert stream.getErrorCount() == 1;
+		byte[] good = makePacket(0, 1, 1, 1, 1, 1);
+		stream.feed(good, 0, good.length);
+		assert stream.getFrameCount() == 1;
+	}
+	
+	@Test
+	public void threadTest() throws InterruptedException {
+		FakeCreate create = new FakeCreate();
+		CreateStream stream = new CreateStream(create, 6);
+		stream.start();
+		byte[] sent = create.written.toByteArray();
+		assert sent.length == 3;
+		assert (sent[0] & 0xFF) == 148 && sent[1] == 1 && sent[2] == 6;
+		
+		create.queue(makePacket(CreateSensorFrame.BUMP_RIGHT, 0, 0, 0, 0, 3));
+		CreateSensorFrame frame = stream.awaitFrame(0, 5000);
+		assert frame.getSequence() == 1;
+		assert frame.isRightBump();
+		stream.stop();
+		sent = create.written.toByteArray();
+		assert (sent[3] & 0xFF) == 150 && sent[4] == 0;
+	}
+	
+	@Test
+	public void awaitTimeoutTest() throws InterruptedException {
+		VirtualClock clock = new VirtualClock();
+		Clock.set(clock);
+		try {
+			CreateStream stream = new CreateStream(new FakeCreate(), 6);
+			long start = System.nanoTime();
+			CreateSensorFrame frame = stream.awaitFrame(0, 5000);
+			assert frame.getSequence() == 0;
+			// the timeout is simulated time, slept straight through
+			assert clock.millis() == 5000 : clock.millis();
+			assert System.nanoTime() - start < 1000000000L;
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+	
+	@Test
+	public void groupSizeTest() {
+		assert CreateSensorFrame.getGroupSize(0) == 26;
+		assert CreateSensorFrame.getGroupSize(1) == 10;
+		assert CreateSensorFrame.getGroupSize(2) == 6;
+		assert CreateSensorFrame.getGroupSize(3) == 10;
+		assert CreateSensorFrame.getGroupSize(4) == 14;
+		assert CreateSensorFrame.getGroupSize(5) == 12;
+		assert CreateSensorFrame.getGroupSize(6) == 52;
+	}
+	
+	@Test
+	public void simulatedStreamTest() {
+		SimulatedCreate create = new SimulatedCreate(new Arena());
+		CreateFirmware firmware = create.getFirmware();
+		CreateStream stream = new CreateStream(create, 6);
+		create.create_start();
+		create.create_full();
+		create.create_drive_straight(200);
+		// what start() would send, without the decoding thread
+		create.create_write_block(new byte[] {(byte) 148, 1, 6}, 0, 3);
+		byte[] chunk = new byte[256];
+		for(int i = 0; i < 100; ++i) {
+			create.advance(.01);
+			int read = create.create_read_block(chunk, chunk.length);
+			stream.feed(chunk, 0, read);
+		}
+		assert stream.getErrorCount() == 0;
+		// one frame every 15ms
+		assert stream.getFrameCount() == 67;
+		CreateSensorFrame frame = stream.getFrame();
+		assert frame.getMode() == CreateFirmware.MODE_FULL;
+		// at most 15ms, or 3mm, behind
+		assert Math.abs(frame.getDistance() - firmware.getTotalDistance()) <= 3;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import cbccore.create.commands.Drive;
+import cbccore.create.commands.PlayScript;
+import cbccore.create.commands.Reboot;
+import cbccore.create.commands.Stop;
+import cbccore.create.commands.WaitCWAngle;
+import cbccore.create.commands.WaitDistance;
+import cbccore.create.commands.WaitEvent;
+import cbccore.create.commands.WaitTime;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class ScriptCompilerTest {
+	@Test
+	public void compileTest() {
+		Script script = new Script();
+		script.add(new Drive(200, 32767));
+		script.add(new WaitDistance(500));
+		script.add(new WaitEvent(-5));
+		script.add(new Stop());
+		CompiledScript compiled = script.compile();
+		int[] expected = {
+			137, 0, 200, 0x7F, 0xFF,
+			156, 0x01, 0xF4,
+			158, 251,
+			137, 0, 0, 0, 0
+		};
+		byte[] body = compiled.getBytes();
+		assert body.length == expected.length;
+		for(int i = 0; i < expected.length; ++i) {
+			assert (body[i] & 0xFF) == expected[i] : "byte " + i;
+		}
+		assert compiled.getCommandCount() == 4;
+		
+		CommandBuffer buffer = new CommandBuffer();
+		buffer.add(new cbccore.create.commands.Script(compiled));
+		buffer.add(new PlayScript());
+		assert buffer.size() == expected.length + 3;
+		assert buffer.get(0) == 152;
+		assert buffer.get(1) == expected.length;
+		assert buffer.get(2) == 137;
+		assert buffer.get(buffer.size() - 1) == 153;
+	}
+	
+	@Test
+	public void cacheTest() {
+		Script script = new Script();
+		script.add(new Drive(100, 0));
+		CompiledScript first = script.compile();
+		assert script.compile() == first;
+		script.add(new Stop());
+		CompiledScript second = script.compile();
+		assert second != first;
+		assert second.getLength() == 10;
+	}
+	
+	@Test
+	public void cacheSetTest() {
+		Script script = new Script();
+		script.add(new WaitTime(5));
+		assert script.compile().getBytes()[1] == 5;
+		// set doesn't change the list's size, or its modCount
+		script.set(0, new WaitTime(50));
+		assert script.compile().getBytes()[1] == 50;
+		// a clone grown back to the same size isn't mistaken for the original
+		Script copy = (Script) script.clone();
+		copy.remove(0);
+		copy.add(new WaitTime(7));
+		assert copy.compile().getBytes()[1] == 7;
+		assert script.compile().getBytes()[1] == 50;
+	}
+	
+	private static boolean rejects(Script script, int index) {
+		try {
+			script.compile();
+		} catch(ScriptException ex) {
+			return ex.getIndex() == index;
+		}
+		return false;
+	}
+	
+	@Test
+	public void validateTest() {
+		Script script = new Script();
+		script.add(new Stop());
+		script.add(new WaitEvent(23));
+		assert rejects(script, 1);
+		
+		script = new Script();
+		script.add(new WaitCWAngle(40000));
+		assert rejects(script, 0);
+		
+		script = new Script();
+		script.add(new Stop());
+		script.add(new Reboot());
+		assert rejects(script, 1);
+		
+		script = new Script();
+		for(int i = 0; i < 20; ++i) {
+			script.add(new Stop());
+		}
+		script.compile(); // exactly 100 bytes
+		script.add(new Reboot());
+		script.remove(20);
+		script.add(new WaitDistance(1));
+		assert rejects(script, -1);
+	}
+}
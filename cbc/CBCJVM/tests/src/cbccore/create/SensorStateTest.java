@@ -0,0 +1,74 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.create;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class SensorStateTest {
+	@Test
+	public void cliffTest() throws CreateConnectException {
+		CreateStreamTest.FakeCreate low = new CreateStreamTest.FakeCreate();
+		Create create = new Create(low, 0);
+		low.queue(new byte[] {
+			1, 0, 0, 1,
+			0x01, 0x02, 0x03, 0x04, 0x05, 0x06, (byte) 0xFF, (byte) 0xFE
+		});
+		CliffState state = new CliffState();
+		assert create.getCliffs(state) == state;
+		assert state.getLeftCliff() == 1 && state.getRightCliff() == 1;
+		assert state.getLeftFrontCliff() == 0;
+		assert state.getRightFrontCliff() == 0;
+		assert state.getLeftCliffAmount() == 0x0102;
+		assert state.getLeftFrontCliffAmount() == 0x0304;
+		assert state.getRightFrontCliffAmount() == 0x0506;
+		assert state.getRightCliffAmount() == 0xFFFE;
+		byte[] sent = low.written.toByteArray();
+		assert sent.length == 10 && (sent[0] & 0xFF) == 149 && sent[1] == 8;
+		
+		// refilling the same object
+		low.queue(new byte[12]);
+		create.getCliffs(state);
+		assert state.getLeftCliff() == 0 && state.getRightCliffAmount() == 0;
+	}
+	
+	@Test
+	public void bumpBatteryTest() throws CreateConnectException {
+		CreateStreamTest.FakeCreate low = new CreateStreamTest.FakeCreate();
+		Create create = new Create(low, 0);
+		low.queue(new byte[] {
+			CreateSensorFrame.BUMP_RIGHT | CreateSensorFrame.DROP_CASTER
+		});
+		BumpState bumps = create.getBumps();
+		assert bumps.isRightBump() && !bumps.isLeftBump() && bumps.isBump();
+		assert bumps.isCasterDrop() && bumps.isDrop();
+		
+		low.queue(new byte[] {
+			2, 0x3A, (byte) 0x98, (byte) 0xFF, 0x38, 25,
+			0x0B, (byte) 0xB8, 0x0B, (byte) 0xB8
+		});
+		BatteryState battery = create.getBattery();
+		assert battery.getChargingState() == 2;
+		assert battery.getVoltage() == 15000;
+		assert battery.getCurrent() == -200;
+		assert battery.getTemperature() == 25;
+		assert battery.getCharge() == 3000 && battery.getCapacity() == 3000;
+		assert battery.getChargeFraction() == 1.;
+	}
+}
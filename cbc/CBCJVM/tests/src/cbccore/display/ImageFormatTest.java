@@ -0,0 +1,106 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.display;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class ImageFormatTest {
+	private static final int WIDTH = 7;
+	private static final int HEIGHT = 5;
+	
+	private static int[] makeImage(boolean translucent) {
+		int[] argb = new int[WIDTH * HEIGHT];
+		for(int i = 0; i < argb.length; ++i) {
+			int a = translucent && i >= 20 ? 0 : 0xFF;
+			argb[i] = a << 24 | (i * 7) << 16 | (255 - i) << 8 | i;
+		}
+		return argb;
+	}
+	
+	private static File write(int[] argb, boolean deflate)
+		throws IOException {
+		File file = File.createTempFile("image", ".cbci");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		ImageFormat.write(out, WIDTH, HEIGHT, argb, deflate);
+		out.close();
+		return file;
+	}
+	
+	private static void check(Image image, int[] argb) throws IOException {
+		assert image.getWidth() == WIDTH;
+		assert image.getHeight() == HEIGHT;
+		ImagePixmap pixmap = new ImagePixmap(image);
+		for(int i = 0; i < argb.length; ++i) {
+			assert pixmap.getRGB565(i) == ImageFormat.toRGB565(argb[i]);
+			assert pixmap.getAlpha(i) == argb[i] >>> 24;
+		}
+	}
+	
+	@Test
+	public void opaqueTest() throws IOException {
+		int[] argb = makeImage(false);
+		File file = write(argb, false);
+		assert file.length()
+		       == ImageFormat.HEADER_SIZE + WIDTH * HEIGHT * 2;
+		Image image = new Image(file);
+		assert image.getAlpha() == null;
+		check(image, argb);
+	}
+	
+	@Test
+	public void alphaTest() throws IOException {
+		int[] argb = makeImage(true);
+		File file = write(argb, false);
+		// two runs: 20 opaque pixels, then 15 clear ones
+		assert file.length()
+		       == ImageFormat.HEADER_SIZE + WIDTH * HEIGHT * 2 + 4;
+		check(new Image(file), argb);
+	}
+	
+	@Test
+	public void deflateTest() throws IOException {
+		int[] argb = makeImage(true);
+		check(new Image(write(argb, true)), argb);
+	}
+	
+	@Test
+	public void legacyTest() throws IOException {
+		int[] argb = makeImage(false);
+		File file = File.createTempFile("image", ".old");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(
+			new FileOutputStream(file));
+		out.writeInt(WIDTH);
+		for(int i = 0; i < argb.length; ++i) {
+			out.writeInt(argb[i]);
+		}
+		out.close();
+		Image image = new Image(file);
+		// used to be sized from available(), four times too big
+		assert image.getBytes().length == WIDTH * HEIGHT;
+		check(image, argb);
+	}
+}
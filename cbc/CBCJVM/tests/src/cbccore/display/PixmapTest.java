@@ -0,0 +1,234 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.display;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class PixmapTest {
+	private static final int RED = Pixel.toRGB565(255, 0, 0);
+	private static final int WHITE = Pixel.toRGB565(255, 255, 255);
+	
+	@Test
+	public void rgb565Test() {
+		assert RED == 0xF800;
+		assert WHITE == 0xFFFF;
+		assert Pixel.getRed565(RED) == 255;
+		assert Pixel.getGreen565(RED) == 0;
+		// the packed value matches the old two byte form
+		byte[] old = Pixel.rgb8ToRgb565(12, 200, 99);
+		int c = Pixel.toRGB565(12, 200, 99);
+		assert (old[0] & 0xFF) == (c & 0xFF);
+		assert (old[1] & 0xFF) == c >> 8;
+	}
+	
+	@Test
+	public void fillRectangleTest() {
+		Pixmap p = new Pixmap(8, 4);
+		p.fillRectangle(-2, 1, 3, 10, RED);
+		for(int y = 0; y < 4; ++y) {
+			for(int x = 0; x < 8; ++x) {
+				boolean inside = y >= 1 && x < 3;
+				assert p.getRGB565(y * 8 + x) == (inside ? RED : 0);
+			}
+		}
+		// little endian, the way /dev/fb0 wants it
+		assert p.getBytes()[(1 * 8) * 2] == (byte) 0x00;
+		assert p.getBytes()[(1 * 8) * 2 + 1] == (byte) 0xF8;
+		assert !p.hasAlpha();
+	}
+	
+	@Test
+	public void blitTest() {
+		Pixmap src = new Pixmap(3, 3);
+		src.fillRectangle(0, 0, 3, 3, WHITE);
+		Pixmap dst = new Pixmap(4, 4);
+		dst.blit(2, -1, src);
+		for(int y = 0; y < 4; ++y) {
+			for(int x = 0; x < 4; ++x) {
+				boolean inside = y < 2 && x >= 2;
+				assert dst.getRGB565(y * 4 + x) == (inside ? WHITE : 0);
+			}
+		}
+	}
+	
+	@Test
+	public void alphaBlendTest() {
+		Pixel half = new Pixel(255, 255, 255);
+		half.setAlpha(128);
+		Pixmap src = new Pixmap(2, 1);
+		src.setPixel(0, half);
+		assert src.hasAlpha();
+		assert src.getAlpha(0) == 128;
+		assert src.getAlpha(1) == Pixmap.OPAQUE;
+		
+		Pixmap dst = new Pixmap(2, 1);
+		dst.fillRectangle(0, 0, 2, 1, RED);
+		dst.blit(0, 0, src);
+		int c = dst.getRGB565(0);
+		// half white over red: red stays full, green and blue are about half
+		assert (c >> 11) == 0x1F;
+		assert Math.abs(((c >> 5) & 0x3F) - 32) <= 1;
+		assert Math.abs((c & 0x1F) - 16) <= 1;
+		// the opaque black pixel of src replaces red
+		assert dst.getRGB565(1) == 0;
+	}
+	
+	@Test
+	public void directBufferTest() {
+		Pixmap p = new Pixmap(4, 2, ByteBuffer.allocateDirect(4 * 2 * 2)) {};
+		p.fillRectangle(1, 0, 3, 2, RED);
+		assert p.getRGB565(1) == RED;
+		assert p.getRGB565(6) == RED;
+		assert p.getRGB565(7) == 0;
+		assert p.getPixel(5).getRed() == 255;
+		assert p.getBytes()[3] == (byte) 0xF8;
+	}
+	
+	@Test
+	public void dirtyRegionTest() {
+		Pixmap p = new Pixmap(10, 10);
+		DirtyRegion dirty = p.getDirtyRegion();
+		dirty.clear();
+		assert dirty.isEmpty();
+		p.fillRectangle(2, 3, 5, 5, RED);
+		p.putPixel(7 * 10 + 8, RED);
+		assert dirty.getTop() == 3;
+		assert dirty.getBottom() == 8;
+		assert dirty.getStart(3) == 2 && dirty.getEnd(3) == 5;
+		assert dirty.getStart(5) >= dirty.getEnd(5);
+		assert dirty.getStart(7) == 8 && dirty.getEnd(7) == 9;
+		// a run that wraps onto the next rows
+		dirty.clear();
+		p.fastCopy(new byte[30], 0, 18, 15);
+		assert dirty.getStart(1) == 8 && dirty.getEnd(1) == 10;
+		assert dirty.getStart(2) == 0 && dirty.getEnd(2) == 10;
+		assert dirty.getStart(3) == 0 && dirty.getEnd(3) == 3;
+	}
+	
+	@Test
+	public void autobufferTest() {
+		Autobuffer p = new Autobuffer(10, 10);
+		p.fillRectangle(0, 0, 10, 10, WHITE);
+		p.setClean();
+		p.fillRectangle(4, 4, 6, 6, RED);
+		p.getDirtyRegion().clear();
+		p.clean();
+		for(int i = 0; i < p.getBufferSize(); ++i) {
+			assert p.getRGB565(i) == WHITE;
+		}
+		// restoring only touched the rectangle, which now has to be synced
+		DirtyRegion dirty = p.getDirtyRegion();
+		assert dirty.getTop() == 4 && dirty.getBottom() == 6;
+		assert dirty.getStart(4) == 4 && dirty.getEnd(4) == 6;
+	}
+	
+	@Test
+	public void partialSyncTest() throws IOException {
+		File file = File.createTempFile("fb0", null);
+		file.deleteOnExit();
+		Framebuffer fb = new Framebuffer(file);
+		fb.sync();
+		assert file.length() == fb.getBufferSize() * 2;
+		
+		// scribble over the file, only the new rectangle gets rewritten
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		byte[] junk = new byte[(int) file.length()];
+		Arrays.fill(junk, (byte) 0x55);
+		raf.write(junk);
+		fb.fillRectangle(100, 50, 110, 52, RED);
+		fb.sync();
+		raf.seek(0);
+		raf.readFully(junk);
+		raf.close();
+		for(int y = 0; y < fb.getHeight(); ++y) {
+			for(int x = 0; x < fb.getWidth(); ++x) {
+				int i = (y * fb.getWidth() + x) * 2;
+				if(y >= 50 && y < 52 && x >= 100 && x < 110) {
+					assert junk[i] == 0 && junk[i + 1] == (byte) 0xF8;
+				} else if(y < 50 || y > 52) {
+					assert junk[i] == 0x55;
+				}
+			}
+		}
+		assert fb.getDirtyRegion().isEmpty();
+	}
+	
+	private static int readPixel(RandomAccessFile raf, int i)
+		throws IOException {
+		raf.seek(i * 2);
+		return raf.read() | (raf.read() << 8);
+	}
+	
+	@Test
+	public void mappedDoubleBufferTest() throws IOException {
+		File file = File.createTempFile("fb0", null);
+		file.deleteOnExit();
+		Framebuffer fb = new Framebuffer(file, true);
+		assert fb.isMapped() && fb.isDoubleBuffered();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		fb.sync();
+		fb.putPixel(321, RED);
+		// nothing reaches the screen until the flip
+		assert readPixel(raf, 321) == 0;
+		fb.sync();
+		assert readPixel(raf, 321) == RED;
+		raf.close();
+	}
+	
+	@Test
+	public void mappedSingleBufferTest() throws IOException {
+		File file = File.createTempFile("fb0", null);
+		file.deleteOnExit();
+		Framebuffer fb = new Framebuffer(file, false);
+		assert fb.isMapped() && !fb.isDoubleBuffered();
+		assert fb.getBuffer().isDirect();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		fb.fillRectangle(10, 10, 20, 20, WHITE);
+		// drawing lands straight in the mapping
+		assert readPixel(raf, 15 * 320 + 15) == WHITE;
+		fb.setClean();
+		fb.putPixel(12 * 320 + 12, RED);
+		assert readPixel(raf, 12 * 320 + 12) == RED;
+		fb.clean();
+		assert readPixel(raf, 12 * 320 + 12) == WHITE;
+		raf.close();
+	}
+	
+	@Test
+	public void simulatedSyncTest() {
+		assert SimulatedFramebuffer.toRGB(RED) == 0xFF0000;
+		assert SimulatedFramebuffer.toRGB(WHITE) == 0xFFFFFF;
+		assert SimulatedFramebuffer.toRGB(Pixel.toRGB565(0, 128, 0))
+		       == Pixel.getGreen565(Pixel.toRGB565(0, 128, 0)) << 8;
+		
+		SimulatedFramebuffer fb = new SimulatedFramebuffer("fb0");
+		fb.fillRectangle(5, 6, 7, 8, RED);
+		fb.sync();
+		assert (fb.getImage().getRGB(5, 6) & 0xFFFFFF) == 0xFF0000;
+		assert (fb.getImage().getRGB(7, 6) & 0xFFFFFF) == 0;
+		assert fb.getDirtyRegion().isEmpty();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.easing;
+
+import cbccore.Clock;
+import cbccore.SystemClock;
+import cbccore.low.simulator.VirtualClock;
+import cbccore.movement.DriveTrain;
+import cbccore.movement.plugins.MovementPlugin;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class EasingTableTest {
+	// Wheels that go exactly as fast as they're told, in clock time
+	private static class ExactPlugin extends MovementPlugin {
+		double left = 0, right = 0; // cm
+		double leftCmps = 0, rightCmps = 0;
+		double peak = 0;
+		int drives = 0;
+		long since = Clock.get().nanoTime();
+		
+		ExactPlugin() {
+			super(20.);
+		}
+		
+		public void directDrive(double leftCmps, double rightCmps) {
+			long now = Clock.get().nanoTime();
+			left += this.leftCmps * (now - since) / 1e9;
+			right += this.rightCmps * (now - since) / 1e9;
+			since = now;
+			this.leftCmps = leftCmps;
+			this.rightCmps = rightCmps;
+			peak = Math.max(peak, Math.abs(leftCmps));
+			++drives;
+		}
+		
+		public void freeze() { directDrive(0, 0); }
+		public double getLeftMaxCmps() { return 100.; }
+		public double getRightMaxCmps() { return 100.; }
+	}
+	
+	@Test
+	public void testTable() {
+		QuadEasingEquation quad = QuadEasingEquation.getInstance();
+		EasingTable table = EasingTable.get(quad, EasingEquation.EASE_IN_OUT);
+		assert table == EasingTable.get(quad, EasingEquation.EASE_IN_OUT);
+		assert table.get(0.) == 0.;
+		assert table.get(1.) == 1.;
+		assert table.get(-3.) == 0.;
+		assert table.get(7.) == 1.;
+		for(int i = 0; i <= 100; ++i) {
+			double p = i / 100.;
+			assert Math.abs(table.get(p) - quad.easeInOut(p)) < 2e-3;
+		}
+		// quadratic in and out peaks at twice the average speed
+		assert Math.abs(table.getMaxSlope() - 2.) < 1e-2;
+		assert Math.abs(table.getSlope(.25) - 1.) < 1e-2;
+		
+		EasingTable linear = EasingTable.get(
+			LinearEasingEquation.getInstance(), EasingEquation.EASE_IN);
+		assert Math.abs(linear.getSlope(.3) - 1.) < 1e-9;
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testBadType() {
+		EasingTable.get(QuadEasingEquation.getInstance(), 42);
+	}
+	
+	@Test
+	public void testDriveTrain() {
+		VirtualClock clock = new VirtualClock();
+		Clock.set(clock);
+		try {
+			ExactPlugin plugin = new ExactPlugin();
+			DriveTrain train = new DriveTrain(plugin);
+			EasingTable table = EasingTable.get(
+				QuadEasingEquation.getInstance(), EasingEquation.EASE_IN_OUT);
+			train.moveCm(30., 10., table);
+			// twice as long as full speed the whole way, then stopped
+			assert Math.abs(clock.nanoTime() / 1e9 - 6.) < .05
+				: clock.nanoTime();
+			assert Math.abs(plugin.left - 30.) < .1 : plugin.left;
+			assert Math.abs(plugin.right - 30.) < .1 : plugin.right;
+			assert plugin.peak <= 10.01 : plugin.peak;
+			assert plugin.leftCmps == 0.;
+			assert plugin.drives > 100;
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+}
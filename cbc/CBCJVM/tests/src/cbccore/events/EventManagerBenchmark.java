@@ -0,0 +1,171 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.events;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Contention benchmark for the listener registry. Two emitter threads (like
+ * ButtonEmitter and DigitalSensorEmitter) emit as fast as they can while a
+ * third thread keeps connecting and disconnecting a listener. This is run
+ * against the copy-on-write <code>EventManager</code> and against a copy of
+ * the old HashMap/synchronizedSet registry, printing the emit throughput and
+ * how many emits blew up with a <code>ConcurrentModificationException</code>.
+ * <p>
+ * Not a unit test, run it by hand:
+ * <code>java -cp bin:../bin cbccore.events.EventManagerBenchmark [ms]</code>
+ *
+ * @author Benjamin Woodruff
+ */
+@SuppressWarnings("unchecked")
+public class EventManagerBenchmark {
+	private static final int EMITTERS = 2;
+	private static final int LISTENERS = 8;
+	
+	private static volatile boolean stop = false;
+
+	// The minimal interface both registries have to provide
+	private interface Bus {
+		void connect(EventType type, IEventListener listener);
+		void disconnect(EventType type, IEventListener listener);
+		void emit(Event e);
+	}
+
+	// The registry EventManager used before switching to ListenerRegistry
+	private static class LegacyBus implements Bus {
+		private HashMap<EventType, Set<IEventListener>> events =
+			new HashMap<EventType, Set<IEventListener>>();
+
+		public synchronized void connect(EventType type,
+		                                 IEventListener listener) {
+			getListeners(type).add(listener);
+		}
+
+		public synchronized void disconnect(EventType type,
+		                                    IEventListener listener) {
+			getListeners(type).remove(listener);
+		}
+
+		public void emit(Event e) {
+			for(IEventListener i : getListeners(e.getType())) {
+				i.event(e);
+			}
+		}
+
+		private Set<IEventListener> getListeners(EventType type) {
+			Set<IEventListener> listeners = events.get(type);
+			if(listeners == null) {
+				listeners = Collections.synchronizedSet(
+					new HashSet<IEventListener>()
+				);
+				events.put(type, listeners);
+			}
+			return listeners;
+		}
+	}
+
+	private static class ManagerBus implements Bus {
+		private EventManager em = new EventManager();
+
+		public void connect(EventType type, IEventListener listener) {
+			em.connect(type, listener);
+		}
+
+		public void disconnect(EventType type, IEventListener listener) {
+			em.disconnect(type, listener);
+		}
+
+		public void emit(Event e) {
+			e.emit(em);
+		}
+	}
+
+	private static class CountingListener extends EventListenerAdapter {
+		public volatile int count = 0;
+
+		public void event(Event e) {
+			++count;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000L;
+		// warm up both before measuring either
+		run("warmup", new LegacyBus(), millis / 4);
+		run("warmup", new ManagerBus(), millis / 4);
+		run("HashMap/synchronizedSet", new LegacyBus(), millis);
+		run("copy-on-write", new ManagerBus(), millis);
+	}
+
+	private static void run(String name, final Bus bus, long millis)
+			throws InterruptedException {
+		final EventType type = new EventType();
+		final Event event = new Event(type);
+		for(int i = 0; i < LISTENERS; ++i) {
+			bus.connect(type, new CountingListener());
+		}
+		stop = false;
+		final long[] emits = new long[EMITTERS];
+		final long[] failures = new long[EMITTERS];
+		Thread[] emitters = new Thread[EMITTERS];
+		for(int i = 0; i < EMITTERS; ++i) {
+			final int index = i;
+			emitters[i] = new Thread() {
+				public void run() {
+					while(!stop) {
+						try {
+							bus.emit(event);
+							++emits[index];
+						} catch(ConcurrentModificationException ex) {
+							++failures[index];
+						}
+					}
+				}
+			};
+		}
+		Thread churn = new Thread() {
+			public void run() {
+				IEventListener listener = new CountingListener();
+				while(!stop) {
+					bus.connect(type, listener);
+					bus.disconnect(type, listener);
+					Thread.yield();
+				}
+			}
+		};
+		for(Thread t : emitters) { t.start(); }
+		churn.start();
+		Thread.sleep(millis);
+		stop = true;
+		for(Thread t : emitters) { t.join(); }
+		churn.join();
+
+		long totalEmits = 0, totalFailures = 0;
+		for(int i = 0; i < EMITTERS; ++i) {
+			totalEmits += emits[i];
+			totalFailures += failures[i];
+		}
+		if(name.equals("warmup")) { return; }
+		System.out.println(name + ": " + (totalEmits * 1000L / millis) +
+		                   " emits/s, " + totalFailures +
+		                   " ConcurrentModificationExceptions");
+	}
+}
@@ -18,6 +18,7 @@ package cbccore.events;
 
 import org.testng.annotations.Test;
 import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
 
 /*
  * @author Benjamin Woodruff
@@ -70,4 +71,161 @@ public class EventSystemTest {
 		em.connect(ev.getType(), eventListener);
 		ev.emit(em);
 	}
+	
+	// Listeners that (dis)connect during an emit must not break that emit
+	@Test(dependsOnMethods={"eventDispatchTest"})
+	public void modifyDuringEmitTest() {
+		final EventManager em = new EventManager();
+		final EventType type = em.getUniqueEventType();
+		final int[] calls = new int[1];
+		final IEventListener counter = new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				++calls[0];
+			}
+		};
+		IEventListener selfRemover = new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				++calls[0];
+				em.disconnect(type, this);
+				em.connect(type, counter);
+			}
+		};
+		em.connect(type, selfRemover);
+		em.connect(type, selfRemover); // duplicates are ignored
+		new Event(type).emit(em);
+		assert calls[0] == 1;
+		new Event(type).emit(em);
+		assert calls[0] == 2;
+	}
+	
+	// Listeners must run off the emitting thread, in order for one type
+	@Test(dependsOnMethods={"eventDispatchTest"})
+	public void asyncDispatchTest() throws InterruptedException {
+		final EventManager em = new EventManager();
+		final EventType type = em.getUniqueEventType();
+		final Thread emitter = Thread.currentThread();
+		final int count = 200;
+		final int[] received = new int[1];
+		final boolean[] ordered = {true};
+		em.connect(type, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				if(Thread.currentThread() == emitter ||
+				   ((Integer)e.getData()).intValue() != received[0]) {
+					ordered[0] = false;
+				}
+				++received[0];
+			}
+		});
+		em.startAsync(2, count, OverflowPolicy.BLOCK);
+		assert em.isAsync();
+		for(int i = 0; i < count; ++i) {
+			Event e = new Event(type);
+			e.setData(Integer.valueOf(i));
+			e.emit(em);
+		}
+		em.stopAsync();
+		assert !em.isAsync();
+		assert received[0] == count;
+		assert ordered[0];
+	}
+	
+	@Test
+	public void overflowPolicyTest() {
+		EventType type = new EventType();
+		Event a = new Event(type), b = new Event(type), c = new Event(type);
+		
+		EventQueue q = new EventQueue(2, OverflowPolicy.DROP_OLDEST);
+		assert q.offer(a, true); // idle queue needs scheduling
+		assert !q.offer(b, true);
+		q.offer(c, true);
+		assert q.poll() == b && q.poll() == c && q.poll() == null;
+		
+		q = new EventQueue(2, OverflowPolicy.COALESCE);
+		q.offer(a, true); q.offer(b, true); q.offer(c, true);
+		assert q.poll() == a && q.poll() == c && q.poll() == null;
+		
+		// without permission to block, BLOCK falls back to DROP_OLDEST
+		q = new EventQueue(1, OverflowPolicy.BLOCK);
+		q.offer(a, false); q.offer(b, false);
+		assert q.poll() == b;
+	}
+	
+	// HIGH priority events must overtake pending LOW ones
+	@Test(dependsOnMethods={"asyncDispatchTest"})
+	public void priorityTest() throws InterruptedException {
+		EventManager em = new EventManager();
+		EventType gate = new EventType();
+		EventType low = new EventType();
+		EventType high = new EventType();
+		final CountDownLatch release = new CountDownLatch(1);
+		final StringBuffer order = new StringBuffer();
+		em.connect(gate, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				try { release.await(); } catch(InterruptedException ex) {}
+			}
+		});
+		IEventListener recorder = new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				order.append(e.getData());
+			}
+		};
+		em.connect(low, recorder);
+		em.connect(high, recorder);
+		em.setPriority(low, EventPriority.LOW);
+		em.setPriority(high, EventPriority.HIGH);
+		em.startAsync(1);
+		new Event(gate).emit(em); // keeps the only worker busy
+		Thread.sleep(50L);
+		for(int i = 0; i < 3; ++i) {
+			Event e = new Event(low);
+			e.setData("L");
+			e.emit(em);
+		}
+		Event e = new Event(high);
+		e.setData("H");
+		e.emit(em);
+		release.countDown();
+		em.stopAsync();
+		assert order.toString().equals("HLLL") : order;
+	}
+	
+	@Test(dependsOnMethods={"asyncDispatchTest"})
+	public void coalescingTest() throws InterruptedException {
+		EventManager em = new EventManager();
+		EventType gate = new EventType();
+		EventType reading = new EventType();
+		final CountDownLatch release = new CountDownLatch(1);
+		final StringBuffer seen = new StringBuffer();
+		em.connect(gate, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				try { release.await(); } catch(InterruptedException ex) {}
+			}
+		});
+		em.connect(reading, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				seen.append(e.getData());
+			}
+		});
+		em.setCoalescing(reading, true);
+		em.startAsync(1);
+		new Event(gate).emit(em);
+		Thread.sleep(50L);
+		for(int i = 0; i < 5; ++i) {
+			Event e = new Event(reading);
+			e.setData(Integer.valueOf(i));
+			e.emit(em);
+		}
+		release.countDown();
+		em.stopAsync();
+		assert seen.toString().equals("4") : seen;
+		assert em.getCoalescedCount(reading) == 4;
+		assert em.getDroppedCount(reading) == 0;
+	}
 }
@@ -0,0 +1,226 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.create.CreateSensorFrame;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class CreateFirmwareTest {
+	private static final long SECOND = 1000000000L;
+	
+	private static void send(CreateFirmware firmware, int... bytes) {
+		for(int b : bytes) {
+			firmware.receive(b);
+		}
+	}
+	
+	// started, in safe mode, driving straight
+	private static CreateFirmware driving(Arena arena, int speed) {
+		CreateFirmware firmware = new CreateFirmware(arena);
+		send(firmware, 128, 131, 137, (speed >> 8) & 0xFF, speed & 0xFF,
+		     0x7F, 0xFF);
+		return firmware;
+	}
+	
+	@Test
+	public void testIgnoredUntilStarted() {
+		CreateFirmware firmware = new CreateFirmware();
+		send(firmware, 131, 137, 0, 200, 0x80, 0);
+		firmware.advance(SECOND);
+		assert firmware.getMode() == CreateFirmware.MODE_OFF;
+		assert firmware.getTotalDistance() == 0;
+		send(firmware, 128, 137, 0, 200, 0x80, 0);
+		firmware.advance(SECOND);
+		// passive mode doesn't drive either
+		assert firmware.getMode() == CreateFirmware.MODE_PASSIVE;
+		assert firmware.getTotalDistance() == 0;
+	}
+	
+	@Test
+	public void testDriveStraight() {
+		CreateFirmware firmware = driving(new Arena(), 200);
+		double x = firmware.getX();
+		firmware.advance(SECOND);
+		assert Math.abs(firmware.getX() - x - 200) < 1e-6;
+		assert Math.abs(firmware.getTotalDistance() - 200) < 1e-6;
+		assert firmware.getHeading() == 0;
+		assert firmware.getPacket(CreateSensorFrame.PACKET_DISTANCE) == 200;
+	}
+	
+	@Test
+	public void testSpinBlock() {
+		SimulatedCreate create = new SimulatedCreate(new Arena());
+		create.create_connect();
+		create.create_start();
+		create.create_safe();
+		assert create.create_spin_block(100, 90) == 0;
+		CreateFirmware firmware = create.getFirmware();
+		assert Math.abs(firmware.getHeading() - 90) < 1;
+		assert firmware.getLeftSpeed() == 0 && firmware.getRightSpeed() == 0;
+		assert create.get_create_total_angle(0) == 90;
+		assert create.create_spin_block(100, -180) == 0;
+		assert create.get_create_normalized_angle(0) == 270;
+	}
+	
+	@Test
+	public void testBumpWall() {
+		Arena arena = new Arena(1000, 1000);
+		CreateFirmware firmware = driving(arena, 300);
+		firmware.setPose(500, 500, 0);
+		assert firmware.getPacket(CreateSensorFrame.PACKET_BUMPS_DROPS) == 0;
+		firmware.advance(3 * SECOND);
+		// pushed up against the far wall, and stalled there
+		assert Math.abs(firmware.getX() - (1000 - CreateFirmware.RADIUS)) < 2;
+		int bumps = firmware.getPacket(CreateSensorFrame.PACKET_BUMPS_DROPS);
+		assert bumps == (CreateSensorFrame.BUMP_LEFT
+		                 | CreateSensorFrame.BUMP_RIGHT);
+		double distance = firmware.getTotalDistance();
+		firmware.advance(SECOND);
+		assert firmware.getTotalDistance() == distance;
+		
+		// a wall off to the left only presses the left bumper
+		firmware.setPose(500, 1000 - CreateFirmware.RADIUS, 45);
+		bumps = firmware.getPacket(CreateSensorFrame.PACKET_BUMPS_DROPS);
+		assert bumps == CreateSensorFrame.BUMP_LEFT;
+	}
+	
+	@Test
+	public void testCliffTripsSafeMode() {
+		Arena arena = new Arena(2000, 1000).addCliff(1300, 0, 700, 1000);
+		CreateFirmware firmware = driving(arena, 200);
+		firmware.setPose(1000, 500, 0);
+		firmware.advance(3 * SECOND);
+		assert firmware.getMode() == CreateFirmware.MODE_PASSIVE;
+		assert firmware.getLeftSpeed() == 0 && firmware.getRightSpeed() == 0;
+		assert firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT) == 1;
+		// stopped with the sensors over the edge, but not the wheels
+		assert firmware.getX() < 1300;
+		assert firmware.getX() > 1300 - 140;
+	}
+	
+	@Test
+	public void testTape() {
+		Arena arena = new Arena().addTape(0, 700, 2000, 700, 20);
+		CreateFirmware firmware = new CreateFirmware(arena);
+		firmware.setPose(1000, 530, 90);
+		assert firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_LEFT_SIGNAL) == Arena.WHITE_SIGNAL;
+		assert firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT_SIGNAL)
+			== Arena.WHITE_SIGNAL;
+		firmware.setPose(1000, 700 - 140 * Math.cos(Math.toRadians(15)), 90);
+		assert firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_FRONT_LEFT_SIGNAL)
+			== Arena.TAPE_SIGNAL;
+		assert firmware.getPacket(
+			CreateSensorFrame.PACKET_CLIFF_LEFT_SIGNAL) == Arena.WHITE_SIGNAL;
+	}
+	
+	@Test
+	public void testScriptWaitDistance() {
+		CreateFirmware firmware = new CreateFirmware();
+		// drive, wait for 100mm, stop
+		send(firmware, 128, 131, 152, 13,
+		     137, 0, 200, 0x7F, 0xFF, 156, 0, 100, 137, 0, 0, 0, 0, 153);
+		assert firmware.isScriptPlaying() && firmware.isWaiting();
+		// commands sent while the script plays wait their turn
+		send(firmware, 142, CreateSensorFrame.PACKET_MODE);
+		assert firmware.available() == 0;
+		firmware.advance(2 * SECOND);
+		assert !firmware.isScriptPlaying();
+		assert Math.abs(firmware.getTotalDistance() - 100) <= 1;
+		assert firmware.available() == 1;
+		byte[] mode = new byte[1];
+		assert firmware.read(mode, 1) == 1;
+		assert mode[0] == CreateFirmware.MODE_SAFE;
+		
+		send(firmware, 154);
+		byte[] shown = new byte[14];
+		assert firmware.read(shown, 14) == 14;
+		assert shown[0] == 13 && (shown[1] & 0xFF) == 137;
+	}
+	
+	@Test
+	public void testScriptLoop() {
+		CreateFirmware firmware = new CreateFirmware();
+		// a script that plays itself again, with no wait in it
+		send(firmware, 128, 131, 152, 6, 137, 0, 100, 0x80, 0, 153, 153);
+		assert firmware.isScriptPlaying();
+		firmware.advance(SECOND);
+		assert firmware.isScriptPlaying();
+		assert firmware.getTotalDistance() > 90;
+	}
+	
+	@Test
+	public void testLongSong() {
+		CreateFirmware firmware = new CreateFirmware();
+		send(firmware, 128, 140, 0, 200);
+		for(int i = 0; i < 200; ++i) {
+			send(firmware, 60, 8);
+		}
+		// the whole song was taken, so this is read as a command
+		send(firmware, 142, CreateSensorFrame.PACKET_MODE);
+		assert firmware.available() == 1;
+	}
+	
+	@Test
+	public void testQueries() {
+		CreateFirmware firmware = driving(new Arena(), 100);
+		firmware.setWheelDrops(CreateSensorFrame.DROP_CASTER);
+		// wheel drops in safe mode stop the Create on the next step
+		firmware.step();
+		assert firmware.getMode() == CreateFirmware.MODE_PASSIVE;
+		send(firmware, 149, 2, CreateSensorFrame.PACKET_BUMPS_DROPS,
+		     CreateSensorFrame.PACKET_BATTERY_CAPACITY);
+		byte[] data = new byte[8];
+		assert firmware.read(data, 8) == 3;
+		assert data[0] == CreateSensorFrame.DROP_CASTER;
+		assert ((data[1] & 0xFF) << 8 | (data[2] & 0xFF)) == 3000;
+		
+		// a whole group
+		send(firmware, 142, 1);
+		assert firmware.available() == CreateSensorFrame.getGroupSize(1);
+	}
+	
+	@Test
+	public void testDeterministic() {
+		double[] a = run();
+		double[] b = run();
+		for(int i = 0; i < a.length; ++i) {
+			assert a[i] == b[i];
+		}
+	}
+	
+	// an arc into a box, sent in uneven pieces
+	private static double[] run() {
+		Arena arena = new Arena().addBox(1600, 200, 300, 300);
+		CreateFirmware firmware = new CreateFirmware(arena);
+		send(firmware, 128, 132, 137, 0, 250, 0x01, 0xF4);
+		for(int i = 0; i < 1000; ++i) {
+			firmware.advance(1234567L * (i % 7));
+		}
+		return new double[] {
+			firmware.getX(), firmware.getY(), firmware.getHeading(),
+			firmware.getTotalDistance(), firmware.getTimeNanos()
+		};
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import java.util.List;
+
+import cbccore.Botball;
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.low.Create;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class MatchRunnerTest {
+	// drives for five seconds and stops
+	public static class Robot {
+		static boolean ran = false;
+		
+		public static void main(String[] args) throws InterruptedException {
+			if(ran) {
+				throw new IllegalStateException("not isolated");
+			}
+			ran = true;
+			Create create = Device.getLowCreateController();
+			create.create_connect();
+			create.create_start();
+			create.create_safe();
+			create.create_drive_straight(200);
+			Clock.get().sleep(5000);
+			create.create_stop();
+		}
+	}
+	
+	// quits three seconds in
+	public static class Quitter {
+		public static void main(String[] args) throws InterruptedException {
+			Botball.shutDownIn(3);
+			Clock.get().sleep(100000);
+		}
+	}
+	
+	// leaves a thread driving for four seconds, and returns straight away
+	public static class Leaver {
+		public static void main(String[] args) {
+			final Create create = Device.getLowCreateController();
+			create.create_connect();
+			create.create_start();
+			create.create_safe();
+			new Thread() {
+				public void run() {
+					create.create_drive_straight(200);
+					try {
+						Clock.get().sleep(4000);
+					} catch(InterruptedException e) {
+					}
+					create.create_stop();
+				}
+			}.start();
+		}
+	}
+	
+	@Test
+	public void testRun() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(Robot.class.getName());
+		runner.setThreads(4);
+		runner.setMatchSeconds(10);
+		runner.setStartPose(600, 600, 0);
+		runner.setEfficiencySpread(.05);
+		runner.setStartJitter(10, 2);
+		List<MatchResult> results = runner.run(8);
+		assert results.size() == 8;
+		for(int i = 0; i < results.size(); ++i) {
+			MatchResult r = results.get(i);
+			assert r.getIndex() == i;
+			assert r.getError() == null : r.getError();
+			assert !r.isTimedOut();
+			assert r.getEndSeconds() == 10;
+			assert Math.abs(r.getMainSeconds() - 5) < .01;
+			double efficiency =
+				(r.getLeftEfficiency() + r.getRightEfficiency()) / 2;
+			assert Math.abs(r.getDistance() - 1000 * efficiency) < 2;
+			assert r.getBumpCount() == 0;
+		}
+		// the robot never ran in this class loader
+		assert !Robot.ran;
+	}
+	
+	@Test
+	public void testRepeatable() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(Robot.class.getName());
+		runner.setMatchSeconds(6);
+		runner.setEfficiencySpread(.1);
+		runner.setStartJitter(20, 5);
+		runner.setSignalNoise(30);
+		runner.setThreads(3);
+		List<MatchResult> a = runner.run(4);
+		runner.setThreads(1);
+		List<MatchResult> b = runner.run(4);
+		for(int i = 0; i < a.size(); ++i) {
+			assert a.get(i).getX() == b.get(i).getX();
+			assert a.get(i).getY() == b.get(i).getY();
+			assert a.get(i).getHeading() == b.get(i).getHeading();
+		}
+		assert a.get(0).getX() != a.get(1).getX();
+	}
+	
+	@Test
+	public void testExit() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(Quitter.class.getName());
+		MatchResult r = runner.run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getExitStatus() == 0;
+		assert Math.abs(r.getEndSeconds() - 3) < .01;
+		// the whole two minute match would have been slept through
+		assert r.getRealSeconds() < 5;
+	}
+	
+	@Test
+	public void testThreadsOutliveMain() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(Leaver.class.getName());
+		runner.setMatchSeconds(10);
+		MatchResult r = runner.run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getMainSeconds() < .01;
+		assert r.getEndSeconds() == 10;
+		// the thread got to stop the Create, instead of dying at the halt
+		assert Math.abs(r.getDistance() - 800) < 2 : r.getDistance();
+	}
+	
+	@Test
+	public void testMissingClass() throws InterruptedException {
+		MatchRunner runner = new MatchRunner("no.such.Robot");
+		MatchResult r = runner.run(1).get(0);
+		assert r.getError().contains("ClassNotFoundException");
+	}
+}
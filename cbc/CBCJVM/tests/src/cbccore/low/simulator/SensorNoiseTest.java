@@ -0,0 +1,138 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.Clock;
+import cbccore.SystemClock;
+import cbccore.low.Sensor;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class SensorNoiseTest {
+	@Test
+	public void testPerfect() {
+		SimulatedSensor sensor = new SimulatedSensor();
+		sensor.setAnalog(3, 511.6);
+		sensor.setAnalog(4, 2000);
+		sensor.setDigital(9, true);
+		assert sensor.analog10(3) == 512;
+		assert sensor.analog(3) == 128;
+		assert sensor.analog10(4) == 1023; // clamped to 10 bits
+		assert sensor.digital(9) == 1;
+		assert sensor.digital(8) == 0;
+		assert sensor.accel_y() == -1364;
+	}
+	
+	@Test
+	public void testGaussian() {
+		SimulatedSensor sensor = new SimulatedSensor();
+		SensorNoise noise = new SensorNoise(1);
+		noise.setSigma(10);
+		sensor.setAnalogNoise(noise);
+		sensor.setAnalog(0, 500);
+		double sum = 0, squares = 0;
+		int n = 2000;
+		for(int i = 0; i < n; ++i) {
+			int v = sensor.analog10(0);
+			sum += v;
+			squares += (v - 500.) * (v - 500.);
+		}
+		assert Math.abs(sum / n - 500) < 1.5;
+		assert Math.abs(Math.sqrt(squares / n) - 10) < 1.;
+	}
+	
+	@Test
+	public void testRepeatable() {
+		SensorNoise a = new SensorNoise(7), b = new SensorNoise(7);
+		a.setSigma(3);
+		b.setSigma(3);
+		a.setDropout(.2);
+		b.setDropout(.2);
+		for(int i = 0; i < 100; ++i) {
+			assert a.read(100, 0, 1023, 5) == b.read(100, 0, 1023, 5);
+		}
+	}
+	
+	@Test
+	public void testDropout() {
+		SimulatedSensor sensor = new SimulatedSensor();
+		SensorNoise noise = new SensorNoise(2);
+		noise.setDropout(.5);
+		sensor.setAnalogNoise(noise);
+		sensor.setAnalog(1, 100);
+		int first = sensor.analog10(1);
+		sensor.setAnalog(1, 200);
+		int reads = 1000;
+		// stale until the first read that doesn't drop out
+		for(int v = sensor.analog10(1); v != 200; v = sensor.analog10(1)) {
+			assert v == first;
+		}
+		// once read, the new value is what a dropout repeats
+		for(int i = 0; i < reads; ++i) {
+			assert sensor.analog10(1) == 200;
+		}
+		assert noise.getDropoutCount() >= reads / 3;
+	}
+	
+	@Test
+	public void testLatency() throws InterruptedException {
+		VirtualClock clock = new VirtualClock();
+		Clock.set(clock);
+		try {
+			SimulatedSensor sensor = new SimulatedSensor();
+			SensorNoise noise = new SensorNoise(3);
+			noise.setLatencyMicros(250);
+			sensor.setAnalogNoise(noise);
+			for(int i = 0; i < 8; ++i) {
+				sensor.analog10(i);
+			}
+			assert clock.nanoTime() == 2000000L;
+			// one call for every reading at once
+			sensor.sensor_snapshot(new int[Sensor.SNAPSHOT_SIZE]);
+			assert clock.nanoTime() == 2250000L;
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+	
+	@Test
+	public void testPositionJitter() {
+		VirtualClock clock = new VirtualClock();
+		Clock.set(clock);
+		try {
+			SimulatedCBOB cbob = new SimulatedCBOB();
+			SensorNoise noise = new SensorNoise(4);
+			noise.setSigma(2);
+			cbob.setPositionNoise(noise);
+			cbob.setMotorPosition(0, 1000);
+			boolean jittered = false;
+			for(int i = 0; i < 100; ++i) {
+				int v = cbob.readMotorPosition(0);
+				assert Math.abs(v - 1000) < 20;
+				jittered |= v != 1000;
+			}
+			assert jittered;
+			// targets are still reached exactly
+			assert cbob.getMotorPosition(0) == 1000;
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.low.simulator;
+
+import cbccore.Clock;
+import cbccore.SystemClock;
+import cbccore.low.Create;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class VirtualClockTest {
+	@Test
+	public void testSleepJumps() throws InterruptedException {
+		VirtualClock clock = new VirtualClock();
+		long real = System.nanoTime();
+		clock.sleep(120000);
+		assert clock.millis() == 120000;
+		// two minutes, in much less than one
+		assert System.nanoTime() - real < 1000000000L;
+	}
+	
+	@Test
+	public void testListener() {
+		VirtualClock clock = new VirtualClock();
+		final long[] total = new long[1];
+		VirtualClock.Listener listener = new VirtualClock.Listener() {
+			public void clockAdvanced(long nanos) {
+				total[0] += nanos;
+			}
+		};
+		clock.addListener(listener);
+		clock.advance(5);
+		clock.advance(7);
+		clock.removeListener(listener);
+		clock.advance(11);
+		assert total[0] == 12;
+		assert clock.nanoTime() == 23;
+	}
+	
+	@Test
+	public void testThreadsTakeTurns() throws InterruptedException {
+		final VirtualClock clock = new VirtualClock();
+		clock.setGraceMillis(1000); // plenty, nothing should need it
+		final int[] ticks = new int[1];
+		Thread ticker = new Thread() {
+			public void run() {
+				try {
+					while(true) {
+						clock.sleep(10);
+						synchronized(ticks) {
+							++ticks[0];
+						}
+					}
+				} catch(InterruptedException e) {
+				}
+			}
+		};
+		clock.register(Thread.currentThread());
+		clock.register(ticker);
+		ticker.start();
+		long real = System.nanoTime();
+		clock.sleep(1000);
+		int seen;
+		synchronized(ticks) {
+			seen = ticks[0];
+		}
+		ticker.interrupt();
+		ticker.join();
+		// every tick before the wakeup happened, none were skipped
+		assert seen == 99 || seen == 100 : seen;
+		assert System.nanoTime() - real < 1000000000L;
+	}
+	
+	@Test
+	public void testHeadlessSimulator() throws InterruptedException {
+		HeadlessSimulator sim = new HeadlessSimulator();
+		try {
+			assert Clock.get() == sim.getClock();
+			Create create = sim.getCreate();
+			CreateFirmware firmware =
+				((SimulatedCreate) create).getFirmware();
+			create.create_connect();
+			create.create_start();
+			create.create_safe();
+			create.create_drive_straight(200);
+			sim.getMotor().mav(0, 1000);
+			Clock.get().sleep(2000);
+			assert Math.abs(firmware.getTotalDistance() - 400) < 1e-6;
+			assert sim.getMotor().get_motor_position_counter(0) == 2000;
+			create.create_stop();
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+}
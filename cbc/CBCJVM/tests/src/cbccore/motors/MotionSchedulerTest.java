@@ -0,0 +1,146 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.motors;
+
+import java.util.concurrent.CountDownLatch;
+
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.SystemClock;
+import cbccore.easing.EasingEquation;
+import cbccore.easing.EasingTable;
+import cbccore.easing.QuadEasingEquation;
+import cbccore.low.simulator.MatchResult;
+import cbccore.low.simulator.MatchRunner;
+import cbccore.low.simulator.VirtualClock;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class MotionSchedulerTest {
+	// Runs for a set number of ticks
+	private static class Counter implements MotionScheduler.Motion {
+		int ticks = 0;
+		int limit;
+		
+		Counter(int limit) {
+			this.limit = limit;
+		}
+		
+		public boolean tick(long nanos) {
+			return ++ticks < limit;
+		}
+	}
+	
+	// Sweeps a servo, asserting that it gets there on time
+	public static class Sweeper {
+		public static void main(String[] args) throws Exception {
+			Servo servo = new Servo(0);
+			servo.setPosition(100);
+			long start = Clock.get().millis();
+			servo.setPositionTime(1100, 1000, true);
+			long took = Clock.get().millis() - start;
+			assert took == 1000 : "took " + took;
+			assert servo.getPosition() == 1100 : "at " + servo.getPosition();
+			assert !servo.isMoving() : "still moving";
+			// halfway through a non-blocking move
+			servo.setPositionTime(100, 1000, false);
+			Clock.get().sleep(500);
+			int halfway = servo.getPosition();
+			assert servo.isMoving() : "stopped halfway";
+			assert halfway >= 580 && halfway <= 620 : "halfway " + halfway;
+			// a quarter of the way through an eased move, from 100 to 1100,
+			// is an eighth of the way there
+			servo.setPositionTime(100, 0, true);
+			servo.setPositionTime(1100, 1000, EasingTable.get(
+				QuadEasingEquation.getInstance(), EasingEquation.EASE_IN_OUT),
+				false);
+			Clock.get().sleep(250);
+			int eighth = servo.getPosition();
+			assert eighth >= 200 && eighth <= 250 : "an eighth " + eighth;
+			Clock.get().sleep(1000);
+			assert servo.getPosition() == 1100 : "at " + servo.getPosition();
+			Device.exit(0);
+		}
+	}
+	
+	// Turns a motor off part way through an eased move, asserting that the
+	// move doesn't carry on without it
+	public static class Easer {
+		public static void main(String[] args) throws Exception {
+			Motor motor = new Motor(0);
+			motor.setPositionTime(1000, 1000, EasingTable.get(
+				QuadEasingEquation.getInstance(), EasingEquation.EASE_IN_OUT),
+				false);
+			Clock.get().sleep(300);
+			assert motor.isMoving() : "not moving";
+			motor.off();
+			int stopped = motor.getPosition();
+			Clock.get().sleep(1000);
+			assert motor.getPosition() == stopped
+			       : "moved from " + stopped + " to " + motor.getPosition();
+			assert !motor.isMoving() : "still moving";
+			Device.exit(0);
+		}
+	}
+	
+	@Test
+	public void testLatch() throws InterruptedException {
+		VirtualClock clock = new VirtualClock();
+		Clock.set(clock);
+		try {
+			MotionScheduler scheduler = new MotionScheduler();
+			Counter counter = new Counter(10);
+			CountDownLatch done = scheduler.schedule(counter);
+			clock.await(done);
+			assert counter.ticks == 10;
+			// ticks at 0, 20, ... 180ms
+			assert clock.nanoTime() == 180000000L : clock.nanoTime();
+			assert scheduler.getMotionCount() == 0;
+		} finally {
+			Clock.set(new SystemClock());
+		}
+	}
+	
+	@Test
+	public void testCancel() throws InterruptedException {
+		MotionScheduler scheduler = new MotionScheduler();
+		Counter counter = new Counter(Integer.MAX_VALUE);
+		CountDownLatch done = scheduler.schedule(counter);
+		assert scheduler.isScheduled(counter);
+		assert scheduler.cancel(counter);
+		done.await();
+		assert !scheduler.isScheduled(counter);
+		assert !scheduler.cancel(counter);
+	}
+	
+	@Test
+	public void testServo() throws InterruptedException {
+		MatchResult r = new MatchRunner(Sweeper.class.getName()).run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getExitStatus() == 0;
+	}
+	
+	@Test
+	public void testOffCancelsEasing() throws InterruptedException {
+		MatchResult r = new MatchRunner(Easer.class.getName()).run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getExitStatus() == 0;
+	}
+}
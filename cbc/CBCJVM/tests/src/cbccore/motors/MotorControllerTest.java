@@ -0,0 +1,104 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package cbccore.motors;
+
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.low.simulator.MatchResult;
+import cbccore.low.simulator.MatchRunner;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class MotorControllerTest {
+	// Only gets 70% of the speed it's told
+	private static class WeakMotor extends Motor {
+		WeakMotor() {
+			super(0);
+		}
+		
+		int driveVelocity(int velocity) {
+			return super.driveVelocity(velocity * 7 / 10);
+		}
+	}
+	
+	// Never moves at all
+	private static class StalledMotor extends Motor {
+		StalledMotor() {
+			super(1);
+		}
+		
+		int driveVelocity(int velocity) {
+			return super.driveVelocity(0);
+		}
+	}
+	
+	// Moves weak and stalled motors, asserting that it goes as expected
+	public static class Mover {
+		public static void main(String[] args) throws Exception {
+			Motor motor = new WeakMotor();
+			
+			// in closed loop, it gets there, a little late
+			motor.setClosedLoop(true);
+			long start = Clock.get().millis();
+			motor.setPositionSpeed(1000, 500, true);
+			long took = Clock.get().millis() - start;
+			MotorController.Statistics stats =
+				motor.getController().getStatistics();
+			assert took > 2000 && took < 3000 : "took " + took;
+			assert Math.abs(1000 - motor.getPosition()) <= 5
+			       : "at " + motor.getPosition();
+			assert !motor.isMoving() : "still moving";
+			assert stats.hasArrived() : "didn't arrive";
+			assert stats.getMaxError() > 0. : "no error";
+			assert stats.getRmsError() <= stats.getMaxError() : "rms error";
+			assert stats.getSamples() == (int) (stats.getMillis() / 20) + 1
+			       : stats.getSamples() + " samples";
+			
+			// anything else that drives the motor cancels the move
+			motor.setPositionSpeed(0, 500, false);
+			Clock.get().sleep(500);
+			assert motor.isMoving() : "stopped early";
+			motor.moveAtVelocity(0);
+			assert !motor.isMoving() : "not cancelled";
+			assert !motor.getController().getStatistics().hasArrived()
+			       : "cancelled move arrived";
+			
+			// a stalled motor is given up on after the settle time
+			Motor stalled = new StalledMotor();
+			stalled.setClosedLoop(true);
+			start = Clock.get().millis();
+			stalled.setPositionSpeed(100, 500, true);
+			took = Clock.get().millis() - start;
+			stats = stalled.getController().getStatistics();
+			assert took >= 1200 && took <= 1240 : "gave up after " + took;
+			assert !stats.hasArrived() : "stalled motor arrived";
+			assert stats.getFinalError() == 100 : stats.getFinalError();
+			Device.exit(0);
+		}
+	}
+	
+	@Test
+	public void testClosedLoop() throws InterruptedException {
+		MatchResult r = new MatchRunner(Mover.class.getName()).run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getExitStatus() == 0;
+	}
+}
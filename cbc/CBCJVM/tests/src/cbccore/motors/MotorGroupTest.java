@@ -0,0 +1,104 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package cbccore.motors;
+
+import cbccore.Clock;
+import cbccore.Device;
+import cbccore.low.simulator.MatchResult;
+import cbccore.low.simulator.MatchRunner;
+import cbccore.motors.statemotors.IStateMotor;
+import cbccore.motors.statemotors.composed.ComposedBlockingAdvancedStateMotor;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class MotorGroupTest {
+	// Lifts with two motors, asserting that they stay together
+	public static class Lift {
+		public static void main(String[] args) throws Exception {
+			Motor left = new Motor(0);
+			Motor right = new Motor(1);
+			right.moveAtVelocity(1000);
+			Clock.get().sleep(200);
+			right.off();
+			ComposedBlockingAdvancedStateMotor<Motor> lift =
+				new ComposedBlockingAdvancedStateMotor<Motor>(left, right);
+			MotorGroup group = lift.getGroup();
+			assert group != null : "not grouped";
+			assert lift.getPosition() == 100 : "at " + lift.getPosition();
+			assert !lift.isSynced(99) && lift.isSynced(100) : "skew";
+			
+			// from 0 and 200, both get to 1000 at the same time
+			long start = Clock.get().millis();
+			lift.setPositionSpeed(1000, 500, false);
+			Clock.get().sleep(1000);
+			assert Math.abs(left.getPosition() - 500) <= 20
+			       : "left at " + left.getPosition();
+			assert Math.abs(right.getPosition() - 600) <= 20
+			       : "right at " + right.getPosition();
+			assert lift.isSynced(10) : "out of sync on the way";
+			assert lift.isMoving() : "stopped on the way";
+			lift.setPositionSpeed(1000, 500, true);
+			long took = Clock.get().millis() - start;
+			assert Math.abs(took - 2000) <= 60 : "took " + took;
+			assert Math.abs(left.getPosition() - 1000) <= 5
+			       : "left at " + left.getPosition();
+			assert Math.abs(right.getPosition() - 1000) <= 5
+			       : "right at " + right.getPosition();
+			assert group.hasArrived() : "didn't arrive";
+			assert group.getHoldCount() == 0
+			       : group.getHoldCount() + " holds";
+			assert !lift.isMoving() : "still moving";
+			assert lift.isSynced(10) : "out of sync at the top";
+			
+			// one motor jumping ahead has the other catch up with it, rather
+			// than carry on with the plan
+			start = Clock.get().millis();
+			lift.setPositionSpeed(0, 500, false);
+			Clock.get().sleep(500);
+			Device.getLowMotorController().clear_motor_position_counter(1);
+			assert !lift.isSynced(group.getThreshold()) : "jump not seen";
+			group.waitForDone();
+			took = Clock.get().millis() - start;
+			assert group.hasArrived() : "didn't arrive after the jump";
+			assert group.getHoldCount() > 0 : "never held";
+			assert group.getMaxSkew() >= 300 : "skew " + group.getMaxSkew();
+			assert took < 2000 : "took " + took + " after the jump";
+			assert Math.abs(left.getPosition()) <= 5
+			       : "left at " + left.getPosition();
+			assert Math.abs(right.getPosition()) <= 5
+			       : "right at " + right.getPosition();
+			
+			// only plain motors on ports of their own can be grouped
+			assert MotorGroup.of(new IStateMotor[] {left, left}, null) == null
+			       : "grouped one port twice";
+			assert MotorGroup.of(new IStateMotor[] {new Servo(0)}, null)
+			       == null : "grouped a servo";
+			Device.exit(0);
+		}
+	}
+	
+	@Test
+	public void testLift() throws InterruptedException {
+		MatchResult r = new MatchRunner(Lift.class.getName()).run(1).get(0);
+		assert r.getError() == null : r.getError();
+		assert r.getExitStatus() == 0;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package cbccore.movement;
+
+import cbccore.Clock;
+import cbccore.SystemClock;
+import cbccore.low.simulator.VirtualClock;
+import cbccore.movement.plugins.MovementPlugin;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class MotionProfileTest {
+	// Wheels that go exactly as fast as they're told, in clock time
+	private static class ExactPlugin extends MovementPlugin {
+		double left = 0, right = 0; // cm
+		double leftCmps = 0, rightCmps = 0;
+		double peak = 0, jump = 0;
+		int drives = 0;
+		long since = Clock.get().nanoTime();
+		
+		ExactPlugin() {
+			super(20.);
+		}
+		
+		public void directDrive(double leftCmps, double rightCmps) {
+			long now = Clock.get().nanoTime();
+			left += this.leftCmps * (now - since) / 1e9;
+			right += this.rightCmps * (now - since) / 1e9;
+			since = now;
+			jump = Math.max(jump, Math.abs(leftCmps - this.leftCmps));
+			this.leftCmps = leftCmps;
+			this.rightCmps = rightCmps;
+			peak = Math.max(peak, Math.abs(leftCmps));
+			++drives;
+		}
+		
+		public void freeze() { directDrive(0, 0); }
+		public double getLeftMaxCmps() { return 50.; }
+		public double getRightMaxCmps() { return 50.; }
+	}
+	
+	private static boolean near(double a, double b, double tolerance) {
+		return Math.abs(a - b) <= tolerance;
+	}
+	
+	@Test
+	public void testTrapezoid() {
+		MotionProfile profile = new MotionProfile(100., 20., 40.,
+			Double.POSITIVE_INFINITY);
+		// half a second each way at 40cm/s^2, cruising for the rest
+		assert near(profile.getDuration(), 100. / 20. + .5, 1e-9);
+		assert profile.getPeakSpeed() == 20.;
+		assert near(profile.getPosition(.5), 5., 1e-9);
+		assert near(profile.getSpeed(.25), 10., 1e-9);
+		assert near(profile.getSpeed(2.), 20., 1e-9);
+		assert near(profile.getPosition(profile.getDuration() - .5), 95.,
+		            1e-9);
+		assert profile.getPosition(100.) == 100.;
+		assert profile.getSpeed(100.) == 0.;
+	}
+	
+	@Test
+	public void testShort() {
+		// too short to get to 20cm/s, so it peaks halfway
+		MotionProfile profile = new MotionProfile(4., 20., 40.,
+			Double.POSITIVE_INFINITY);
+		double peak = Math.sqrt(4. * 40.);
+		assert near(profile.getPeakSpeed(), peak, 1e-9);
+		assert near(profile.getDuration(), peak / 40. * 2., 1e-9);
+		assert near(profile.getPosition(profile.getDuration() / 2), 2., 1e-9);
+		
+		MotionProfile none = new MotionProfile(0., 20., 40., 100.);
+		assert none.getDuration() == 0.;
+		assert none.getPosition(1.) == 0.;
+	}
+	
+	@Test
+	public void testSCurve() {
+		double[] distances = {.1, 3., 100.};
+		for(int k = 0; k < distances.length; ++k) {
+			double d = distances[k];
+			MotionProfile profile = new MotionProfile(d, 20., 40., 200.);
+			double t = profile.getDuration();
+			assert near(profile.getPosition(t - 1e-9), d, 1e-6);
+			assert near(profile.getSpeed(t - 1e-9), 0., 1e-4);
+			// smooth, and inside every limit
+			double step = t / 10000.;
+			double lastSpeed = 0., lastAccel = 0.;
+			for(int i = 1; i < 10000; ++i) {
+				double speed = profile.getSpeed(i * step);
+				double accel = (speed - lastSpeed) / step;
+				assert speed <= 20. + 1e-9;
+				assert Math.abs(accel) <= 40. + 1e-3 : accel;
+				if(i > 1) {
+					assert Math.abs(accel - lastAccel) / step <= 200.1;
+				}
+				lastSpeed = speed;
+				lastAccel = accel;
+			}
+		}
+		// limited jerk costs a little time over the trapezoid
+		MotionProfile trapezoid = new MotionProfile(100., 20., 40.,
+			Double.POSITIVE_INFINITY);
+		MotionProfile curve = new MotionProfile(100., 20., 40., 200.);
+		assert near(curve.getDuration() - trapezoid.getDuration(), .2, 1e-9);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testBadStepMode() {
+		new DriveTrain(new ExactPlugin()).setStepMode(-5);
+	}
+	
+	@Test
+	public void testDriveTrain() {
+		int[] modes = {
+			DriveTrainStepModes.HIGH_PRECISION, DriveTrainStepModes.YIELD,
+			DriveTrainStepModes.MIN_SLEEP,
+			DriveTrainStepModes.MIN_SLEEP_AND_YIELD, 10
+		};
+		for(int i = 0; i < modes.length; ++i) {
+			VirtualClock clock = new VirtualClock();
+			Clock.set(clock);
+			try {
+				ExactPlugin plugin = new ExactPlugin();
+				DriveTrain train = new DriveTrain(plugin);
+				train.setStepMode(modes[i]);
+				train.setAcceleration(40.);
+				// asks for more than the wheels can do
+				train.moveCm(100., 80.);
+				assert near(clock.nanoTime() / 1e9, 100. / 50. + 50. / 40.,
+				            .001) : clock.nanoTime();
+				assert near(plugin.left, 100., 1e-6) : plugin.left;
+				assert near(plugin.right, 100., 1e-6);
+				assert plugin.peak <= 50. + 1e-9;
+				double millis = modes[i] > 0 ? modes[i] : 20.;
+				assert plugin.jump <= 40. * millis / 1000. + 1e-6
+					: plugin.jump;
+				assert plugin.leftCmps == 0.;
+				
+				// the right wheel leads, with the left one going backwards
+				plugin.left = plugin.right = 0;
+				train.setJerk(400.);
+				train.moveCurveDegrees(90., 5., 10.);
+				assert near(plugin.right, 7.5 * Math.PI, 1e-6);
+				assert near(plugin.left, -2.5 * Math.PI, 1e-6);
+			} finally {
+				Clock.set(new SystemClock());
+			}
+		}
+	}
+	
+	@Test
+	public void testRealTime() {
+		ExactPlugin plugin = new ExactPlugin();
+		DriveTrain train = new DriveTrain(plugin);
+		train.setStepMode(DriveTrainStepModes.MIN_SLEEP_AND_YIELD);
+		train.setAcceleration(200.);
+		long begin = System.nanoTime();
+		train.moveCm(10., 50.);
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		// late steps are made up for, so it gets there all the same
+		assert near(plugin.left, 10., .05) : plugin.left;
+		assert near(seconds, .45, .1) : seconds;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package cbccore.movement;
+
+import cbccore.movement.plugins.MovementPlugin;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class OdometryTest {
+	// Wheels that go wherever they are told, with counters set by the test
+	private static class FakePlugin extends MovementPlugin {
+		volatile double left = 0, right = 0; // cm
+		volatile double leftCmps = 0, rightCmps = 0;
+		volatile long since = System.nanoTime();
+		
+		FakePlugin() {
+			super(20.);
+		}
+		
+		private synchronized void catchUp() {
+			long now = System.nanoTime();
+			double seconds = (now - since) / 1e9;
+			left += leftCmps * seconds;
+			right += rightCmps * seconds;
+			since = now;
+		}
+		
+		public synchronized void directDrive(double leftCmps,
+		                                     double rightCmps) {
+			catchUp();
+			this.leftCmps = leftCmps;
+			this.rightCmps = rightCmps;
+		}
+		
+		public synchronized boolean readOdometry(double[] odometry) {
+			catchUp();
+			odometry[0] = (left + right) * .5;
+			odometry[1] = (right - left) / getTrainWidth();
+			return true;
+		}
+		
+		public void freeze() { directDrive(0, 0); }
+		public double getLeftMaxCmps() { return 100.; }
+		public double getRightMaxCmps() { return 100.; }
+	}
+	
+	private static boolean near(double a, double b, double tolerance) {
+		return Math.abs(a - b) <= tolerance;
+	}
+	
+	@Test
+	public void testStraight() {
+		FakePlugin plugin = new FakePlugin();
+		Odometry odometry = new Odometry(plugin);
+		odometry.reset(0, 0, Math.PI / 2);
+		odometry.sample();
+		plugin.left = plugin.right = 30;
+		odometry.sample();
+		DriveTrainPosition pos = odometry.getPosition();
+		assert near(pos.getX(), 0, 1e-9);
+		assert near(pos.getY(), 30, 1e-9);
+		assert near(pos.getRawAngleRadians(), Math.PI / 2, 1e-9);
+		// reads don't allocate
+		assert odometry.getPosition() == pos;
+	}
+	
+	@Test
+	public void testArc() {
+		FakePlugin plugin = new FakePlugin();
+		Odometry odometry = new Odometry(plugin);
+		odometry.sample();
+		// a quarter circle of radius 50 to the left, in many small steps
+		double quarter = Math.PI / 2;
+		for(int i = 1; i <= 100; ++i) {
+			double a = quarter * i / 100;
+			plugin.left = a * (50 - 10);
+			plugin.right = a * (50 + 10);
+			odometry.sample();
+		}
+		DriveTrainPosition pos = odometry.getPosition();
+		assert near(pos.getX(), 50, 1e-6) : pos.getX();
+		assert near(pos.getY(), 50, 1e-6) : pos.getY();
+		assert near(pos.getRawAngleRadians(), quarter, 1e-9);
+		// the arc model is exact, so one big step lands in the same place
+		odometry.reset(0, 0, 0);
+		plugin.left = plugin.right = 0;
+		odometry.sample();
+		plugin.left = quarter * 40;
+		plugin.right = quarter * 60;
+		odometry.sample();
+		assert near(odometry.getPosition().getX(), 50, 1e-6);
+		assert near(odometry.getPosition().getY(), 50, 1e-6);
+	}
+	
+	@Test
+	public void testDriveTrain() throws InterruptedException {
+		FakePlugin plugin = new FakePlugin();
+		DriveTrain train = new DriveTrain(plugin);
+		Odometry odometry = train.startOdometry(5.);
+		try {
+			assert odometry.isRunning();
+			plugin.directDrive(20, 20);
+			Thread.sleep(200);
+			plugin.directDrive(0, 0);
+			long samples = odometry.getSampleCount();
+			Thread.sleep(50);
+			assert odometry.getSampleCount() > samples;
+			// about 4cm, whatever the drive train thinks it commanded
+			DriveTrainPosition pos = train.getPosition();
+			assert pos == odometry.getPosition();
+			assert near(pos.getX(), 4, 1.) : pos.getX();
+			assert near(pos.getY(), 0, 1e-9);
+		} finally {
+			odometry.stop();
+		}
+		assert !odometry.isRunning();
+	}
+	
+	@Test
+	public void testFailedRead() throws InterruptedException {
+		final int[] reads = {0};
+		FakePlugin plugin = new FakePlugin() {
+			public synchronized boolean readOdometry(double[] odometry) {
+				if(++reads[0] == 3) {
+					throw new IllegalStateException("expected by the test");
+				}
+				return super.readOdometry(odometry);
+			}
+		};
+		Odometry odometry = new Odometry(plugin);
+		odometry.setPeriodMillis(5.);
+		odometry.start();
+		try {
+			Thread.sleep(100);
+			// sampling carried on past the failed read
+			assert odometry.isRunning();
+			assert reads[0] > 3 : reads[0];
+			assert odometry.getSampleCount() > 0;
+		} finally {
+			odometry.stop();
+		}
+	}
+	
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testNoOdometry() {
+		new Odometry(new FakePlugin() {
+			public boolean readOdometry(double[] odometry) {
+				return false;
+			}
+		}).start();
+	}
+}
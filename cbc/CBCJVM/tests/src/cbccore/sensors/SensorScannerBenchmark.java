@@ -0,0 +1,133 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.sensors;
+
+import cbccore.events.Event;
+import cbccore.events.EventManager;
+import cbccore.events.EventType;
+import cbccore.sensors.digital.IBooleanSensor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Compares the CPU time used by the old design (ButtonEmitter and
+ * DigitalSensorEmitter each spinning in their own thread) with the shared,
+ * adaptive <code>SensorScanner</code>, watching the same 15 sensors for the
+ * same amount of time. The sensors flip every 500ms, like a button being
+ * pressed now and then.
+ * <p>
+ * Not a unit test, run it by hand:
+ * <code>java -cp bin:../bin cbccore.sensors.SensorScannerBenchmark [ms]</code>
+ *
+ * @author Benjamin Woodruff
+ */
+@SuppressWarnings("unchecked")
+public class SensorScannerBenchmark {
+	private static final int BUTTONS = 7;
+	private static final int DIGITALS = 8;
+	
+	private static volatile boolean stop = false;
+	
+	private static class FlippingSensor implements IBooleanSensor {
+		public boolean getValue() {
+			return (System.currentTimeMillis() / 500) % 2 == 1;
+		}
+	}
+	
+	// What the emitter threads used to do
+	private static class LegacyEmitter extends Thread {
+		private IBooleanSensor[] sensors;
+		private boolean[] states;
+		private Event event;
+		
+		public LegacyEmitter(int count, Event event) {
+			sensors = new IBooleanSensor[count];
+			states = new boolean[count];
+			for(int i = 0; i < count; ++i) {
+				sensors[i] = new FlippingSensor();
+			}
+			this.event = event;
+		}
+		
+		public void run() {
+			while(!stop) {
+				for(int i = 0; i < sensors.length; ++i) {
+					boolean newState = sensors[i].getValue();
+					if(newState != states[i]) {
+						event.emit();
+						states[i] = newState;
+					}
+				}
+				Thread.yield();
+				try { Thread.sleep(0l, 1); } catch (Exception e) {}
+			}
+		}
+	}
+	
+	public static void main(String[] args) throws InterruptedException {
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 3000L;
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if(!mx.isThreadCpuTimeSupported()) {
+			System.out.println("Per-thread CPU time isn't supported here");
+			return;
+		}
+		mx.setThreadCpuTimeEnabled(true);
+		Event event = new Event(new EventType());
+		
+		LegacyEmitter buttons = new LegacyEmitter(BUTTONS, event);
+		LegacyEmitter digitals = new LegacyEmitter(DIGITALS, event);
+		buttons.start();
+		digitals.start();
+		Thread.sleep(millis);
+		long legacyNanos = mx.getThreadCpuTime(buttons.getId()) +
+		                   mx.getThreadCpuTime(digitals.getId());
+		stop = true;
+		buttons.join();
+		digitals.join();
+		
+		SensorScanner scanner = new SensorScanner();
+		SensorScanner.Entry[] entries =
+			new SensorScanner.Entry[BUTTONS + DIGITALS];
+		for(int i = 0; i < entries.length; ++i) {
+			entries[i] = scanner.register(new FlippingSensor(), event, event,
+			                              EventManager.get());
+		}
+		Thread scanThread = null;
+		for(Thread t : Thread.getAllStackTraces().keySet()) {
+			if(t.getName().equals("SensorScanner")) {
+				scanThread = t;
+			}
+		}
+		Thread.sleep(millis);
+		long scannerNanos = mx.getThreadCpuTime(scanThread.getId());
+		double duty = scanner.getDutyCycle();
+		for(SensorScanner.Entry e : entries) {
+			scanner.unregister(e);
+		}
+		
+		System.out.println("two spinning threads: " +
+		                   (legacyNanos / 1000000L) + "ms CPU in " + millis +
+		                   "ms");
+		System.out.println("SensorScanner:        " +
+		                   (scannerNanos / 1000000L) + "ms CPU in " + millis +
+		                   "ms (" + scanner.getPassCount() + " passes, " +
+		                   "duty cycle " + duty + ")");
+		System.out.println("CPU time saved:       " +
+		                   ((legacyNanos - scannerNanos) / 1000000L) + "ms");
+	}
+}
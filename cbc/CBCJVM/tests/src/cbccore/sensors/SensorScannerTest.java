@@ -0,0 +1,74 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.sensors;
+
+import cbccore.events.Event;
+import cbccore.events.EventListenerAdapter;
+import cbccore.events.EventManager;
+import cbccore.events.EventType;
+import cbccore.sensors.digital.IBooleanSensor;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+@SuppressWarnings("unchecked")
+public class SensorScannerTest {
+	private static class SwitchSensor implements IBooleanSensor {
+		public volatile boolean value = false;
+		
+		public boolean getValue() {
+			return value;
+		}
+	}
+	
+	@Test
+	public void edgeTest() throws InterruptedException {
+		EventManager em = new EventManager();
+		EventType on = new EventType(), off = new EventType();
+		final int[] counts = new int[2];
+		em.connect(on, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				++counts[0];
+			}
+		});
+		em.connect(off, new EventListenerAdapter() {
+			@Override
+			public void event(Event e) {
+				++counts[1];
+			}
+		});
+		SensorScanner scanner = new SensorScanner();
+		scanner.setPeriods(1., 5.);
+		SwitchSensor sensor = new SwitchSensor();
+		SensorScanner.Entry entry =
+			scanner.register(sensor, new Event(on), new Event(off), em);
+		Thread.sleep(50L);
+		sensor.value = true;
+		Thread.sleep(50L);
+		sensor.value = false;
+		Thread.sleep(50L);
+		scanner.unregister(entry);
+		assert scanner.getSensorCount() == 0;
+		assert counts[0] == 1 && counts[1] == 1;
+		assert scanner.getEdgeCount() == 2;
+		// backed off while idle: far fewer passes than 1 per ms
+		assert scanner.getPassCount() < 100 : scanner.getPassCount();
+	}
+}
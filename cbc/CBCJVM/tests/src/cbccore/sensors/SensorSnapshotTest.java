@@ -0,0 +1,61 @@
+/*
+ * This file is part of CBCJVM.
+ * CBCJVM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CBCJVM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CBCJVM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cbccore.sensors;
+
+import cbccore.InvalidPortException;
+import cbccore.low.simulator.SimulatedSensor;
+
+import org.testng.annotations.Test;
+
+/*
+ * @author Benjamin Woodruff
+ */
+public class SensorSnapshotTest {
+	// Every port reads back something derived from its number
+	private static class NumberedSensor extends SimulatedSensor {
+		public NumberedSensor() {
+			for(int port = 0; port <= 7; ++port) {
+				setDigital(port + 8, port % 2 == 1);
+				setAnalog(port, port * 100);
+			}
+			setAccel(0, 0, 42);
+		}
+	}
+	
+	@Test
+	public void frameLayoutTest() {
+		SensorSnapshot snapshot = new SensorSnapshot(new NumberedSensor());
+		assert snapshot.getFrameCount() == 0;
+		snapshot.update();
+		assert snapshot.getFrameCount() == 1;
+		for(int port = 8; port <= 15; ++port) {
+			assert snapshot.getDigital(port) == (port % 2 == 1);
+		}
+		for(int port = 0; port <= 7; ++port) {
+			assert snapshot.getAnalog10(port) == port * 100;
+		}
+		assert snapshot.getAccelZ() == 42;
+		// a fresh frame isn't taken again
+		assert !snapshot.update(1000.);
+		assert snapshot.getFrameCount() == 1;
+	}
+	
+	@Test(expectedExceptions = InvalidPortException.class)
+	public void badPortTest() {
+		new SensorSnapshot(new NumberedSensor()).getDigital(3);
+	}
+}